@@ -46,9 +46,13 @@ import com.example.mborper.breathbetter.api.ApiClient;
 import com.example.mborper.breathbetter.api.ApiService;
 import com.example.mborper.breathbetter.graphs.ChartConfigHelper;
 import com.example.mborper.breathbetter.login.SessionManager;
+import com.example.mborper.breathbetter.measurements.BucketRollup;
+import com.example.mborper.breathbetter.measurements.DashboardSeries;
+import com.example.mborper.breathbetter.measurements.ExposureIntegrator;
 import com.example.mborper.breathbetter.measurements.GasAlertManager;
 import com.example.mborper.breathbetter.measurements.LocationUtils;
 import com.example.mborper.breathbetter.measurements.Measurement;
+import com.example.mborper.breathbetter.measurements.MeasurementHistoryDb;
 import com.example.mborper.breathbetter.bluetooth.BluetoothPermissionHandler;
 
 
@@ -69,6 +73,8 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -78,7 +84,7 @@ import java.util.ArrayList;
  * @author Manuel Borregales
  * @author Alejandro Rosado
  * @since  2024-10-07
- * last edited: 2025-01-10
+ * last edited: 2026-10-18
  */
 public class MainActivity extends BaseActivity
         implements NodeConnectionState.ConnectionStatusListener {
@@ -111,6 +117,15 @@ public class MainActivity extends BaseActivity
     private Handler dashboardUpdateHandler = new Handler(Looper.getMainLooper());
     private Runnable dashboardUpdateRunnable;
 
+    private static final long DASHBOARD_SPAN_MS = 24 * 60 * 60 * 1000L;
+    private MeasurementHistoryDb historyDb;
+    // Database reads and writes of the dashboard run here, off the UI thread
+    private final ExecutorService historyExecutor = Executors.newSingleThreadExecutor();
+    private DashboardSeries shownDashboard; // Last dashboard readings merged, UI thread only
+    // 2-hour buckets of the chart, of the dashboard and of the node's own readings. UI thread only
+    private final BucketRollup dashboardBuckets = ChartConfigHelper.newDashboardRollup();
+    private final BucketRollup localBuckets = ChartConfigHelper.newDashboardRollup();
+
     /**
      * Handles the mutable variable
      */
@@ -356,6 +371,11 @@ public class MainActivity extends BaseActivity
             public void onFailure(String error) {
                 updateBuzzerButtonState(false);
             }
+
+            @Override
+            public void onNotAcknowledged(boolean on) {
+                Log.w(LOG_TAG, "The node did not confirm the buzzer command");
+            }
         });
         setupBuzzerButton();
 
@@ -373,6 +393,8 @@ public class MainActivity extends BaseActivity
         barChart = findViewById(R.id.barChart);
         ChartConfigHelper.setupChartBasics(barChart);
         ChartConfigHelper.configureYAxis(barChart);
+        historyDb = MeasurementHistoryDb.getInstance(this);
+        renderCachedDashboard();
 
         // Only require biometric authentication on first launch
         // and if it hasn't been performed before in this session
@@ -432,9 +454,7 @@ public class MainActivity extends BaseActivity
 
                             // Update chart only if there are readings
                             if (airQualityReadings.size() > 0) {
-                                ChartConfigHelper.setupChartBasics(barChart);
-                                ChartConfigHelper.configureYAxis(barChart);
-                                ChartConfigHelper.updateBarChart(barChart, airQualityReadings, MainActivity.this);
+                                refreshDashboardChart(DashboardSeries.fromJson(airQualityReadings));
                             } else {
                                 Log.w(LOG_TAG, "No air quality readings available");
                             }
@@ -456,6 +476,97 @@ public class MainActivity extends BaseActivity
         });
     }
 
+    /**
+     * Draws the chart from the dashboard readings stored by the last successful fetch, so it
+     * shows up before, or without, the network. Skipped if a fresh response got there first.
+     * <p>
+     * void -> renderCachedDashboard() -> void
+     */
+    private void renderCachedDashboard() {
+        historyExecutor.execute(() -> {
+            DashboardSeries cached = historyDb.readLatestDashboardReadings(DASHBOARD_SPAN_MS);
+            if (cached.isEmpty()) {
+                return;
+            }
+            runOnUiThread(() -> {
+                if (shownDashboard == null && !isDestroyed()) {
+                    dashboardBuckets.mergeDashboard(cached, null);
+                    shownDashboard = cached;
+                    redrawDashboardChart();
+                }
+            });
+        });
+    }
+
+    /**
+     * Stores the readings of a dashboard response, only those that changed, merges them into
+     * the chart's buckets and redraws the chart only if a bucket changed.
+     * <p>
+     * DashboardSeries -> refreshDashboardChart() -> void
+     * @param series The readings of the response, in time order.
+     */
+    private void refreshDashboardChart(DashboardSeries series) {
+        if (historyExecutor.isShutdown()) {
+            return; // A response that arrived after onDestroy()
+        }
+        historyExecutor.execute(() -> {
+            int written = historyDb.storeDashboardReadings(series);
+            Log.d(LOG_TAG, "Dashboard readings stored: " + written + " of " + series.size());
+        });
+        int changedBuckets = dashboardBuckets.mergeDashboard(series, shownDashboard);
+        shownDashboard = series;
+        if (changedBuckets > 0) {
+            redrawDashboardChart();
+        }
+    }
+
+    /**
+     * Adds a reading received from the node to the chart's buckets, so the hours the dashboard
+     * has no reading for yet show the node's own. Redraws only if the bar of the reading shows
+     * it, i.e. the dashboard has nothing for that bucket.
+     * <p>
+     * Measurement -> addLocalReading() -> void
+     * @param measurement The reading, with its O3 value in ppm.
+     */
+    private void addLocalReading(Measurement measurement) {
+        if (barChart == null) {
+            return;
+        }
+        long timestamp = measurement.getTimestamp() > 0 ? measurement.getTimestamp() : System.currentTimeMillis();
+        int proportionalValue = DashboardSeries.proportionalValueOf(measurement.getO3Value());
+        if (localBuckets.add(timestamp, proportionalValue, DashboardSeries.qualityOf(proportionalValue))
+                && dashboardBuckets.getCount(localBuckets.bucketOf(timestamp)) == 0) {
+            redrawDashboardChart();
+        }
+    }
+
+    /**
+     * Shows the user's dose of today and of the last 7 days, computed by the service from the
+     * node's readings, so it needs no server round-trip.
+     * <p>
+     * void -> updateExposureDisplay() -> void
+     */
+    private void updateExposureDisplay() {
+        TextView textExposure = findViewById(R.id.text_exposure);
+        if (beaconService == null || textExposure == null) {
+            return;
+        }
+        ExposureIntegrator exposure = beaconService.getExposure();
+        if (exposure.getSampleCount() == 0) {
+            return; // Nothing measured yet, or the service is still loading its storage
+        }
+        long now = System.currentTimeMillis();
+        textExposure.setText(getString(R.string.exposure_dose,
+                exposure.getDayDose(now), exposure.getDoseOfLastDays(now, 7)));
+        textExposure.setVisibility(View.VISIBLE);
+    }
+
+    private void redrawDashboardChart() {
+        ChartConfigHelper.setupChartBasics(barChart);
+        ChartConfigHelper.configureYAxis(barChart);
+        ChartConfigHelper.updateBarChart(barChart, dashboardBuckets, localBuckets, MainActivity.this);
+    }
+
     /**
      * Updates the display of air quality based on the overall air quality status.
      * <p>
@@ -677,6 +788,8 @@ public class MainActivity extends BaseActivity
             beaconService.setMeasurementCallback(measurement -> {
                 mainHandler.post(() -> {
                     lastMeasurementLiveData.setValue(measurement); // Updates LiveData with new measurement.
+                    addLocalReading(measurement);
+                    updateExposureDisplay();
                 });
             });
             isBound = true;
@@ -688,6 +801,7 @@ public class MainActivity extends BaseActivity
                 lastMeasurementLiveData.setValue(lastMeasurement);
                 receiveAndSendMeasurement();
             }
+            updateExposureDisplay();
         }
 
         /**
@@ -955,6 +1069,14 @@ public class MainActivity extends BaseActivity
             dashboardUpdateHandler.removeCallbacks(dashboardUpdateRunnable);
         }
 
+        // Release the buzzer's advertising set and ack scan
+        if (buzzerControl != null) {
+            buzzerControl.close();
+        }
+
+        // Pending dashboard writes still run; nothing new is accepted
+        historyExecutor.shutdown();
+
         try {
             if (isBound && serviceConnection != null) {
                 unbindService(serviceConnection);
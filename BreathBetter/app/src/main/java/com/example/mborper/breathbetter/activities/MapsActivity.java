@@ -28,6 +28,8 @@ import androidx.viewpager2.widget.ViewPager2;
 import com.example.mborper.breathbetter.R;
 import com.example.mborper.breathbetter.api.ApiClient;
 import com.example.mborper.breathbetter.api.ApiService;
+import com.example.mborper.breathbetter.graphs.PersonalMapRenderer;
+import com.example.mborper.breathbetter.measurements.GeohashIndex;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.gson.JsonObject;
 
@@ -51,12 +53,16 @@ import retrofit2.Response;
  *
  * @author Alejandro Rosado
  * @since  2024-12-11
- * last updated 2025-01-10
+ * last updated 2026-10-18
  */
 public class MapsActivity extends BaseActivity {
 
     private WebView webView;
     private ExecutorService executorService;
+    private Button personalMapButton;
+    // The server's map once downloaded, so switching back to it needs no new request
+    private String serverMapHtml;
+    private boolean showingPersonalMap;
 
     private static final String TAG = "MapsActivity";
 
@@ -77,6 +83,16 @@ public class MapsActivity extends BaseActivity {
         Button showPopupButton = findViewById(R.id.show_popup_button); // Este botón debe estar definido en el layout XML
         showPopupButton.setOnClickListener(v -> showPopupDialog());
 
+        executorService = Executors.newSingleThreadExecutor();
+        personalMapButton = findViewById(R.id.personal_map_button);
+        personalMapButton.setOnClickListener(v -> {
+            if (showingPersonalMap) {
+                showServerMap();
+            } else {
+                showPersonalMap();
+            }
+        });
+
         // Configure WebView
         webView = findViewById(R.id.webview_mapa);
 
@@ -132,6 +148,12 @@ public class MapsActivity extends BaseActivity {
         setupBottomNavigation();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        executorService.shutdown();
+    }
+
     /**
      * Loads HTML content into the WebView by fetching a URL from the API.
      * <p>
@@ -169,27 +191,80 @@ public class MapsActivity extends BaseActivity {
 
                             // Load the downloaded content in the WebView
                             runOnUiThread(() -> {
-                                webView.loadDataWithBaseURL(null, htmlContent, "text/html", "UTF-8", null);
+                                serverMapHtml = htmlContent;
+                                if (!showingPersonalMap) {
+                                    webView.loadDataWithBaseURL(null, htmlContent, "text/html", "UTF-8", null);
+                                }
                                 // Optional: Log the timestamp of the map
                                 Log.d(TAG, "Map loaded from: " + mapUrl + " at " + timestamp);
                             });
 
                         } catch (IOException e) {
                             Log.e(TAG, "Error downloading HTML: " + e.getMessage());
+                            runOnUiThread(() -> onServerMapUnavailable());
                         }
                     });
                 } else {
                     Log.e(TAG, "Failed to retrieve map URL: " + response.code());
+                    onServerMapUnavailable();
                 }
             }
 
             @Override
             public void onFailure(Call<JsonObject> call, Throwable t) {
                 Log.e(TAG, "Error fetching map URL: " + t.getMessage());
+                onServerMapUnavailable();
             }
         });
     }
 
+    /**
+     * Falls back to the personal map when the server's map cannot be loaded, e.g. offline.
+     */
+    private void onServerMapUnavailable() {
+        if (serverMapHtml == null && !showingPersonalMap) {
+            showPersonalMap();
+        }
+    }
+
+    /**
+     * Shows the user's personal pollution map, drawn on the phone from the readings of the
+     * linked node, in the WebView. The page is built off the UI thread, since the index is
+     * locked while its cells are read.
+     */
+    private void showPersonalMap() {
+        if (executorService.isShutdown()) {
+            return; // A late server callback after the activity was destroyed
+        }
+        showingPersonalMap = true;
+        personalMapButton.setText(R.string.general_map);
+        String title = getString(R.string.personal_map_title);
+        String empty = getString(R.string.personal_map_empty);
+        executorService.execute(() -> {
+            String html = PersonalMapRenderer.toHtml(GeohashIndex.getInstance(), title,
+                    PersonalMapRenderer.DEFAULT_MAX_CELLS);
+            String page = html != null ? html : "<html><body><h3>" + empty + "</h3></body></html>";
+            runOnUiThread(() -> {
+                if (showingPersonalMap) {
+                    webView.loadDataWithBaseURL(null, page, "text/html", "UTF-8", null);
+                }
+            });
+        });
+    }
+
+    /**
+     * Shows the server's map again, downloading it if it was never loaded.
+     */
+    private void showServerMap() {
+        showingPersonalMap = false;
+        personalMapButton.setText(R.string.personal_map);
+        if (serverMapHtml != null) {
+            webView.loadDataWithBaseURL(null, serverMapHtml, "text/html", "UTF-8", null);
+        } else {
+            loadHtmlContent();
+        }
+    }
+
     /**
      * Displays a popup dialog with detailed information about different air pollutants
      * <p>
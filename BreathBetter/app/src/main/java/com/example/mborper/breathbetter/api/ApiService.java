@@ -8,8 +8,6 @@ import com.example.mborper.breathbetter.login.pojos.LoginResponse;
 import com.example.mborper.breathbetter.measurements.Measurement;
 import com.google.gson.JsonObject;
 
-import java.util.List;
-
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 import retrofit2.Call;
@@ -29,7 +27,7 @@ import retrofit2.http.Query;
  *
  * @author Manuel Borregales, Alejandro Rosado
  * @since 2024-10-04
- * last updated 2024-12-01
+ * last updated 2026-10-18
  */
 public interface ApiService {
 
@@ -42,6 +40,17 @@ public interface ApiService {
     @POST("measurements/")
     Call<Measurement> sendMeasurement(@Body Measurement measurement);
 
+    /**
+     * Sends several measurements, possibly from different nodes, in a single POST request.
+     * The body is a JSON array already written by MeasurementBatch.writeJson(), so no
+     * Measurement object is built per sample. Used by the batcher and by gateway mode.
+     *
+     * @param measurements JSON array of measurements, each tagged with its node ID.
+     * @return Call object encapsulating the response.
+     */
+    @POST("measurements/batch")
+    Call<Void> sendMeasurementBatchJson(@Body RequestBody measurements);
+
     /**
      * Authenticates a user by sending login credentials to the API.
      * <p>
@@ -0,0 +1,270 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import com.example.mborper.breathbetter.measurements.Clock;
+
+/**
+ * ScanScheduler that adapts the scan duty cycle to how easily the node is found and to the
+ * state of the device.
+ * <ul>
+ *   <li> Window length follows a moving average of the hit latency (time from window start to
+ *        the reception of the first target advert, however late it is reported), plus the time the node needs to send the rest of the
+ *        readings the service waits for, and the window may end as soon as the target is
+ *        received. It is never shorter than those readings take, however low the latency.
+ *   <li> Consecutive windows without the target grow the window a little at first, then back
+ *        off the interval exponentially up to MAX_INTERVAL_MS.
+ *   <li> A user that has not moved for a while is sampled less often, a user looking at the
+ *        screen more often, and a low battery stretches the interval.
+ *   <li> A weak link that keeps fading, the user walking away, is scanned harder: longer
+ *        windows, shorter interval. If the node then goes silent it is out of range and the
+ *        usual back-off applies; if it goes silent while its signal was good, longer windows
+ *        will not find it, so the scheduler backs off straight away.
+ * </ul>
+ * Time is read from an injected Clock, so the scheduler can be simulated on the JVM.
+ *
+ * @since 2026-10-18
+ */
+public class AdaptiveScanScheduler implements ScanScheduler {
+    public static final long DEFAULT_WINDOW_MS = 1000;
+    public static final long MIN_WINDOW_MS = 250; // For the first advert; each further sample adds an advert period
+    public static final long MAX_WINDOW_MS = 3000;
+    public static final long BASE_INTERVAL_MS = 10000;
+    public static final long SCREEN_ON_INTERVAL_MS = 5000;
+    public static final long SCREEN_ON_SEARCH_INTERVAL_MS = 30000;
+    public static final long MIN_INTERVAL_MS = 2000;
+    public static final long MAX_INTERVAL_MS = 300000; // 5 minutes
+    public static final long MIN_DELAY_MS = 500;
+    public static final long STATIONARY_AFTER_MS = 10 * 60 * 1000; // 10 minutes without movement
+    public static final int MISS_BACKOFF_THRESHOLD = 3;
+    public static final int MAX_BACKOFF_SHIFT = 5;
+    public static final int LOW_BATTERY_PERCENT = 30;
+    public static final int CRITICAL_BATTERY_PERCENT = 15;
+    public static final long DEFAULT_ADVERT_PERIOD_MS = 300; // The node sends a new reading about this often
+
+    // Weight of the newest latency sample in the moving average
+    private static final double LATENCY_ALPHA = 0.25;
+    // The window is this many times the average latency, so most hits still fit in it
+    private static final double LATENCY_WINDOW_FACTOR = 3.0;
+    private static final long LATENCY_WINDOW_MARGIN_MS = 100;
+    // A miss means the average underestimates the latency, so it is inflated by this factor
+    private static final double MISS_LATENCY_GROWTH = 1.5;
+
+    private final Clock clock;
+    private final int samplesPerWindow;
+    private final long advertPeriodMs;
+
+    private double latencyAverageMs = -1;
+    private int missStreak = 0;
+    private long windowStart;
+    private long lastWindowDurationMs = 0;
+    private long currentWindowMs = DEFAULT_WINDOW_MS;
+    private boolean hitInWindow = false;
+
+    private long lastMovingAt;
+    private int batteryPercent = -1;
+    private boolean screenOn = false;
+
+    private double linkQuality = -1;
+    private boolean fading = false;
+    private boolean silentWhileStrong = false;
+
+    /**
+     * Creates an adaptive scheduler for a caller that may end the window at the first advert.
+     *
+     * @param clock The clock used to measure latencies and stationary time.
+     */
+    public AdaptiveScanScheduler(Clock clock) {
+        this(clock, 1, DEFAULT_ADVERT_PERIOD_MS);
+    }
+
+    /**
+     * Creates an adaptive scheduler for a caller that only ends a window early once it holds
+     * a number of readings, so every window is long enough to receive them.
+     *
+     * @param clock            The clock used to measure latencies and stationary time.
+     * @param samplesPerWindow Readings the caller waits for before ending a window early.
+     * @param advertPeriodMs   Time between two new readings of the node.
+     */
+    public AdaptiveScanScheduler(Clock clock, int samplesPerWindow, long advertPeriodMs) {
+        if (samplesPerWindow < 1 || advertPeriodMs <= 0) {
+            throw new IllegalArgumentException("Samples per window and advert period must be positive");
+        }
+        this.clock = clock;
+        this.samplesPerWindow = samplesPerWindow;
+        this.advertPeriodMs = advertPeriodMs;
+        this.lastMovingAt = clock.now();
+    }
+
+    @Override
+    public void updateConditions(boolean moving, int batteryPercent, boolean screenOn) {
+        if (moving) {
+            lastMovingAt = clock.now();
+        }
+        this.batteryPercent = batteryPercent;
+        this.screenOn = screenOn;
+    }
+
+    @Override
+    public void onWindowStarted() {
+        windowStart = clock.now();
+        hitInWindow = false;
+        currentWindowMs = computeWindowMs();
+    }
+
+    @Override
+    public void onTargetReceived(long receivedAtMs) {
+        if (hitInWindow) {
+            return;
+        }
+        hitInWindow = true;
+        missStreak = 0;
+        silentWhileStrong = false;
+
+        // Measured from the advert itself: a batched report arrives up to its delay later
+        long latency = Math.max(0, Math.min(receivedAtMs, clock.now()) - windowStart);
+        if (latencyAverageMs < 0) {
+            latencyAverageMs = latency;
+        } else {
+            latencyAverageMs = LATENCY_ALPHA * latency + (1 - LATENCY_ALPHA) * latencyAverageMs;
+        }
+    }
+
+    @Override
+    public void onWindowEnded() {
+        lastWindowDurationMs = clock.now() - windowStart;
+        if (!hitInWindow) {
+            if (missStreak == 0) {
+                silentWhileStrong = linkQuality >= SignalTracker.WEAK_LINK_QUALITY && !fading;
+            }
+            missStreak++;
+            if (latencyAverageMs >= 0) {
+                latencyAverageMs = Math.min(latencyAverageMs * MISS_LATENCY_GROWTH, MAX_WINDOW_MS);
+            }
+        }
+    }
+
+    @Override
+    public void onSignalUpdate(double distanceMeters, double linkQuality, boolean fading) {
+        this.linkQuality = linkQuality;
+        this.fading = fading;
+    }
+
+    @Override
+    public long getScanWindowMs() {
+        return currentWindowMs;
+    }
+
+    @Override
+    public boolean shouldEndWindowEarly() {
+        return hitInWindow;
+    }
+
+    @Override
+    public long getNextDelayMs() {
+        return Math.max(MIN_DELAY_MS, computeIntervalMs() - lastWindowDurationMs);
+    }
+
+    /**
+     * Returns the number of consecutive windows that ended without the target.
+     *
+     * @return The miss streak.
+     */
+    public int getMissStreak() {
+        return missStreak;
+    }
+
+    /**
+     * Returns the moving average of the hit latency.
+     *
+     * @return The average in milliseconds, or -1 before the first hit.
+     */
+    public double getLatencyAverageMs() {
+        return latencyAverageMs;
+    }
+
+    /**
+     * Returns whether the link is weak and getting weaker, so the node may be lost soon.
+     *
+     * @return true while the user seems to be walking away from the node.
+     */
+    public boolean isLinkFading() {
+        return fading && linkQuality >= 0 && linkQuality < SignalTracker.WEAK_LINK_QUALITY;
+    }
+
+    /**
+     * Returns the shortest window: enough for the first advert and one advert period for each
+     * further reading the caller waits for, so a window is not closed before it can end early.
+     *      getMinWindowMs() ---> Natural
+     *
+     * @return The floor of the window length in milliseconds.
+     */
+    public long getMinWindowMs() {
+        return Math.min(MIN_WINDOW_MS + (samplesPerWindow - 1) * advertPeriodMs, MAX_WINDOW_MS);
+    }
+
+    /**
+     * Computes the window length from the hit latency, the current miss streak and the link.
+     *
+     * @return The window length in milliseconds.
+     */
+    private long computeWindowMs() {
+        long window = latencyAverageMs < 0
+                ? DEFAULT_WINDOW_MS
+                : (long) (latencyAverageMs * LATENCY_WINDOW_FACTOR) + LATENCY_WINDOW_MARGIN_MS
+                        + (samplesPerWindow - 1) * advertPeriodMs;
+
+        // The first misses may only mean the window was too short for the node's advert rate,
+        // unless the node vanished with a good signal
+        if (missStreak > 0 && missStreak <= MISS_BACKOFF_THRESHOLD && !silentWhileStrong) {
+            window = Math.max(window, DEFAULT_WINDOW_MS) * (missStreak + 1);
+        } else if (missStreak == 0 && isLinkFading()) {
+            // At the edge of range fewer adverts get through
+            window = Math.max(window, 2 * DEFAULT_WINDOW_MS);
+        }
+        return clamp(window, getMinWindowMs(), MAX_WINDOW_MS);
+    }
+
+    /**
+     * Computes the time between the starts of two windows from the miss streak, the link and
+     * the conditions.
+     *
+     * @return The interval in milliseconds.
+     */
+    private long computeIntervalMs() {
+        int backoffThreshold = silentWhileStrong ? 0 : MISS_BACKOFF_THRESHOLD;
+        boolean searching = missStreak > backoffThreshold;
+        long interval = BASE_INTERVAL_MS;
+
+        if (searching) {
+            int shift = Math.min(missStreak - backoffThreshold, MAX_BACKOFF_SHIFT);
+            interval = BASE_INTERVAL_MS << shift;
+        } else if (isLinkFading()) {
+            interval /= 2;
+        } else if (clock.now() - lastMovingAt > STATIONARY_AFTER_MS) {
+            interval *= 2;
+        }
+
+        if (screenOn) {
+            interval = Math.min(interval, searching ? SCREEN_ON_SEARCH_INTERVAL_MS : SCREEN_ON_INTERVAL_MS);
+        }
+
+        if (batteryPercent >= 0 && batteryPercent < CRITICAL_BATTERY_PERCENT) {
+            interval *= 4;
+        } else if (batteryPercent >= 0 && batteryPercent < LOW_BATTERY_PERCENT) {
+            interval *= 2;
+        }
+
+        return clamp(interval, MIN_INTERVAL_MS, MAX_INTERVAL_MS);
+    }
+
+    /**
+     * Limits a value to a range.
+     *
+     * @param value The value
+     * @param min   Lower bound
+     * @param max   Upper bound
+     * @return The clamped value
+     */
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Dispatches the AD structures of a scan record to the decoder registered for them.
+ * <p>
+ * Decoders are keyed by AD type plus the 16-bit identifier that follows it: the company ID for
+ * manufacturer data (0xFF) or the service UUID for service data (0x16). The keys live in a small
+ * open-addressing table of primitive ints, so a lookup is a hash and one or two array reads and
+ * decoding a record allocates nothing.
+ * <p>
+ * Registration is meant to happen once at start-up; decoding can then be shared by a single
+ * thread with its own BeaconReading.
+ *
+ * @since 2026-10-18
+ */
+public class BeaconCodecRegistry {
+    public static final int AD_TYPE_SERVICE_DATA = 0x16;
+    public static final int AD_TYPE_MANUFACTURER_DATA = 0xFF;
+
+    private static final int TABLE_SIZE = 16; // power of two, comfortably above the formats we know
+    private static final int EMPTY = 0;
+
+    private final int[] keys = new int[TABLE_SIZE];
+    private final BeaconDecoder[] decoders = new BeaconDecoder[TABLE_SIZE];
+    private int size = 0;
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Creates a registry with the decoders for every format the app understands.
+     *      createDefault() ---> BeaconCodecRegistry
+     *
+     * @return A registry for iBeacon, Eddystone-TLM and HowsAir frames.
+     */
+    public static BeaconCodecRegistry createDefault() {
+        BeaconCodecRegistry registry = new BeaconCodecRegistry();
+        registry.register(AD_TYPE_MANUFACTURER_DATA, IBeaconScanFilters.IBEACON_COMPANY_ID,
+                new IBeaconDecoder());
+        registry.register(AD_TYPE_SERVICE_DATA, EddystoneTlmDecoder.EDDYSTONE_SERVICE_UUID,
+                new EddystoneTlmDecoder());
+        registry.register(AD_TYPE_MANUFACTURER_DATA, HowsAirFrameCodec.COMPANY_ID,
+                new HowsAirFrameCodec());
+        return registry;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Registers a decoder, replacing any previous one for the same key.
+     *      Natural, Natural, BeaconDecoder ---> register()
+     *
+     * @param adType  AD type, 0xFF or 0x16.
+     * @param id      Company ID or 16-bit service UUID.
+     * @param decoder The decoder.
+     */
+    public void register(int adType, int id, BeaconDecoder decoder) {
+        int key = key(adType, id);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        if (keys[slot] == EMPTY) {
+            if (size == TABLE_SIZE - 1) {
+                throw new IllegalStateException("Codec table full");
+            }
+            size++;
+        }
+        keys[slot] = key;
+        decoders[slot] = decoder;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the decoder registered for an AD type and identifier.
+     *      Natural, Natural ---> lookup() ---> BeaconDecoder
+     *
+     * @param adType AD type.
+     * @param id     Company ID or 16-bit service UUID.
+     * @return The decoder, or null if none is registered.
+     */
+    public BeaconDecoder lookup(int adType, int id) {
+        int key = key(adType, id);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return decoders[slot];
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        return null;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Walks the AD structures of a scan record and decodes the first one a registered decoder
+     * accepts.
+     *      [byte], BeaconReading ---> decode() ---> T/F
+     *
+     * @param record The raw scan-record bytes.
+     * @param out    Reset and then filled with the decoded fields.
+     * @return true if some AD structure was decoded.
+     */
+    public boolean decode(byte[] record, BeaconReading out) {
+        if (record == null) {
+            return false;
+        }
+        out.reset();
+
+        int i = 0;
+        while (i < record.length) {
+            int length = record[i] & 0xFF;
+            if (length == 0) {
+                break; // zero padding after the last structure
+            }
+            int end = i + 1 + length;
+            if (end > record.length) {
+                break; // truncated structure
+            }
+            int adType = record[i + 1] & 0xFF;
+            if (length >= 3 && (adType == AD_TYPE_MANUFACTURER_DATA || adType == AD_TYPE_SERVICE_DATA)) {
+                // Both the company ID and the 16-bit service UUID are little endian
+                int id = ByteCodec.u16LE(record, i + 2);
+                BeaconDecoder decoder = lookup(adType, id);
+                if (decoder != null && decoder.decode(record, i + 4, end, out)) {
+                    return true;
+                }
+            }
+            i = end;
+        }
+        return false;
+    }
+
+    private static int key(int adType, int id) {
+        // AD type in the high half keeps every real key different from EMPTY
+        return ((adType & 0xFF) << 16) | (id & 0xFFFF);
+    }
+
+    private static int slot(int key) {
+        return (key * 0x9E3779B9) >>> 28;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Decodes the payload of one AD structure of a known type.
+ * <p>
+ * Implementations must not allocate: they read the record in place and write into the
+ * BeaconReading they are given.
+ *
+ * @since 2026-10-18
+ */
+public interface BeaconDecoder {
+
+    /**
+     * Decodes the payload of an AD structure.
+     *      [byte], Natural, Natural, BeaconReading ---> decode() ---> T/F
+     *
+     * @param record The whole scan record.
+     * @param from   First payload byte, right after the company ID or 16-bit service UUID.
+     * @param to     One past the last byte of the AD structure.
+     * @param out    Where the decoded fields are written.
+     * @return true if the payload had this decoder's layout and out was filled.
+     */
+    boolean decode(byte[] record, int from, int to, BeaconReading out);
+}
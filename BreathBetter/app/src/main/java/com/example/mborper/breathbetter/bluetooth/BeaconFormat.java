@@ -0,0 +1,23 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Advert layouts understood by the BeaconCodecRegistry.
+ *
+ * @since 2026-10-18
+ */
+public enum BeaconFormat {
+    /**
+     * Apple iBeacon manufacturer data; the O3 value travels in major as ppm * 100.
+     */
+    IBEACON,
+
+    /**
+     * Eddystone telemetry service data: battery voltage, temperature and counters.
+     */
+    EDDYSTONE_TLM,
+
+    /**
+     * HowsAir manufacturer data carrying several gases, battery and a sequence number.
+     */
+    HOWSAIR
+}
@@ -6,31 +6,69 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
 import android.bluetooth.le.ScanSettings;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.database.SQLException;
 import android.location.Location;
+import android.os.BatteryManager;
 import android.os.Binder;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanRecord;
 import android.bluetooth.le.ScanResult;
 import android.content.pm.PackageManager;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.IntentCompat;
 
 import android.Manifest;
 
 import com.example.mborper.breathbetter.R;
 import com.example.mborper.breathbetter.activities.MainActivity;
+import com.example.mborper.breathbetter.api.ApiClient;
+import com.example.mborper.breathbetter.api.ApiService;
+import com.example.mborper.breathbetter.measurements.ExposureIntegrator;
 import com.example.mborper.breathbetter.measurements.GasAlertManager;
+import com.example.mborper.breathbetter.measurements.GasType;
+import com.example.mborper.breathbetter.measurements.GeohashIndex;
+import com.example.mborper.breathbetter.measurements.HistoryCompactor;
 import com.example.mborper.breathbetter.measurements.LocationUtils;
 import com.example.mborper.breathbetter.measurements.Measurement;
+import com.example.mborper.breathbetter.measurements.MeasurementBatch;
+import com.example.mborper.breathbetter.measurements.MeasurementBatcher;
+import com.example.mborper.breathbetter.measurements.MeasurementHistoryDb;
+import com.example.mborper.breathbetter.measurements.MeasurementLog;
 import com.example.mborper.breathbetter.measurements.NodeConnectionState;
+import com.example.mborper.breathbetter.measurements.TimeSeriesStore;
+import com.example.mborper.breathbetter.measurements.WindowSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
 
 /**
  * BeaconListeningService is an Android Service that scans for Bluetooth Low Energy (BLE) devices using
@@ -40,31 +78,159 @@ import com.example.mborper.breathbetter.measurements.NodeConnectionState;
  *
  * @author Alejandro Rosado & Manuel Borregales
  * @since 2024-10-07
- * last edited: 2025-01-10
+ * last edited: 2026-10-18
  */
 public class BeaconListeningService extends Service {
 
     private static final String LOG_TAG = "BEACON_LISTENING_SERVICE";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
     private static final int NOTIFICATION_ID = 1;
+    private static final int BACKGROUND_SCAN_REQUEST_CODE = 1;
+    private static final long BACKGROUND_REPORT_DELAY = 10000; // Batch delay of the PendingIntent scan
+
+    public static final String ACTION_SCAN_RESULTS = "com.example.mborper.breathbetter.ACTION_SCAN_RESULTS";
+    public static final String EXTRA_SCAN_RESULTS = "scanResults";
     private String targetDeviceUUID;
+    private BeaconUuidMatcher targetMatcher;
 
     private volatile boolean keepRunning = true;
+    private BluetoothAdapter bluetoothAdapter;
     private BluetoothLeScanner scanner;
-    private ScanCallback scanCallback;
+    private boolean hardwareFilteringEnabled = true; // Cleared if the controller rejects the filtered scan
+    private boolean batchingActive = false;
+    private static final int SCAN_RING_CAPACITY = 256; // Records buffered between the Bluetooth and service threads
     private HandlerThread handlerThread;
     private Handler serviceHandler;
-    private static final long SCAN_PERIOD = 1000;  // The time in milliseconds to scan for BLE devices
-    private static final long SCAN_INTERVAL = 10000; // The interval between scans
+    private static final float MOVING_SPEED_MPS = 0.5f; // Speed above which the user counts as moving
+    private static final float MOVING_DISTANCE_M = 25f; // Displacement between fixes that counts as moving
+    private ScanScheduler scanScheduler = new FixedScanScheduler(); // Only touched by the service thread
+    private boolean scanWindowOpen = false;
+    private volatile boolean userMoving = false;
+    private IngestionMode ingestionMode = IngestionMode.DUTY_CYCLE;
+    private PendingIntent backgroundScanIntent;
+    private long cpuTimeAtModeStart;
+    private long elapsedAtModeStart;
 
     private final IBinder binder = new LocalBinder();
     private MeasurementCallback measurementCallback;
     private GasAlertManager gasAlertManager;
-    private Measurement lastMeasurement;
+    private volatile Measurement lastMeasurement;
     private LocationUtils locationUtils;
-    private Location currentLocation; // Stores the most recent location update
+    private volatile Location currentLocation; // Stores the most recent location update
 
-    private boolean measurementSentInCycle = false;
+    private static final int MIN_SAMPLES_PER_WINDOW = 3; // Readings needed before a window may end early
+    // Only touched by the service thread: dedup, validation and aggregation of the target adverts
+    private final BeaconPipeline pipeline = new BeaconPipeline();
+    private volatile WindowSummary lastWindowSummary;
+    // Raw scan records are appended here when capture mode is on, null otherwise
+    private volatile ScanCaptureWriter captureWriter;
     private NodeConnectionState connectionState;
+    // On-device copy of every measurement, kept whether or not its upload succeeds
+    private volatile TimeSeriesStore timeSeriesStore;
+    // Every accepted reading is logged here first, so it survives the service being killed
+    private volatile MeasurementLog measurementLog;
+    // Queryable history of every reading, of all nodes and gases, inserted in batches
+    private MeasurementHistoryDb historyDb;
+    // The user's dose of the last days, from the readings of the linked node
+    private final ExposureIntegrator exposure = new ExposureIntegrator(ZoneId.systemDefault());
+    // Where the user's readings were taken, for the personal map; shared with MapsActivity
+    private GeohashIndex exposureMap;
+
+    // Gateway mode: the service collects from a whole set of nodes. Null in single-node mode
+    private GatewayRouter gateway; // service thread only
+    private volatile NodeUuidIndex gatewayIndex; // read on the Bluetooth callback thread
+    private MeasurementBatcher uploadBatcher;
+    private ApiService apiService;
+
+    // History sync: pulls what the node buffered while out of range once it is close again
+    private static final long HISTORY_SYNC_INTERVAL_MS = 15 * 60 * 1000;
+    private static final long HISTORY_SYNC_TIMEOUT_MS = 60 * 1000;
+    private static final long HISTORY_SYNC_CLOSE_GRACE_MS = 5 * 1000; // For the disconnection to be reported
+    private static final double HISTORY_SYNC_MIN_LINK_QUALITY = 0.5;
+    private static final String HISTORY_PREFS = "history_sync";
+    private volatile BluetoothDevice targetDevice; // set on the Bluetooth callback thread
+    private HistorySyncClient historySync; // service thread only
+    private long lastHistorySyncMs = -HISTORY_SYNC_INTERVAL_MS;
+    private boolean historySyncEnabled = true;
+
+    // Retention: rolls old history up into coarser tiers, a bounded slice per run
+    private static final long COMPACTION_FIRST_DELAY_MS = 60 * 1000;
+    private static final long COMPACTION_INTERVAL_MS = 30 * 60 * 1000;
+    private static final long COMPACTION_BACKLOG_DELAY_MS = 5 * 1000; // While a backlog is worked off
+    private HandlerThread compactionThread;
+    private Handler compactionHandler;
+    private HistoryCompactor historyCompactor;
+
+    // Decodes adverts on the Bluetooth callback thread and hands the target ones to the service thread
+    private final ScanIngestor ingestor = new ScanIngestor(SCAN_RING_CAPACITY,
+            () -> serviceHandler.post(this.drainRunnable));
+    // Reused for every drain request so posting it allocates nothing
+    private final Runnable drainRunnable = this::drainIngestor;
+
+    /**
+     * Single ScanCallback for the whole life of the service. It only decodes matching adverts and
+     * pushes them into the ring; all the processing happens on the service thread.
+     */
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            processScanResult(result);
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            for (int i = 0; i < results.size(); i++) {
+                processScanResult(results.get(i));
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e(LOG_TAG, "Scan failed with error code: " + errorCode);
+            serviceHandler.post(() -> {
+                if (hardwareFilteringEnabled && errorCode != SCAN_FAILED_ALREADY_STARTED) {
+                    Log.w(LOG_TAG, "Offloaded scan rejected, falling back to unfiltered scan");
+                    hardwareFilteringEnabled = false;
+                    if (keepRunning && scanWindowOpen) {
+                        startScan();
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * Drains whatever is left in the ring and emits the summary of the readings collected so far.
+     * Used in PendingIntent mode, where each delivered batch plays the role of a scan window.
+     */
+    private final Runnable flushSummaryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drainIngestor();
+            emitWindowSummary();
+        }
+    };
+
+    private final ScanRecordRing.RecordHandler recordHandler = this::processBeaconRecord;
+    private final ScanRecordRing.NodeRecordHandler gatewayRecordHandler = this::processGatewayRecord;
+    private final GatewayRouter.SummaryListener gatewaySummaryListener = this::onGatewaySummary;
+
+    /**
+     * Reports the losses of gateway nodes; they arrive on the connection thread.
+     */
+    private final NodeConnectionState.NodeStatusListener gatewayNodeListener =
+            new NodeConnectionState.NodeStatusListener() {
+        @Override
+        public void onNodeLost(String nodeId, long lastSeenMs) {
+            Log.w(LOG_TAG, "Gateway node lost: " + nodeId + ", silent for "
+                    + (SystemClock.elapsedRealtime() - lastSeenMs) + " ms");
+        }
+
+        @Override
+        public void onNodeRestored(String nodeId) {
+            Log.i(LOG_TAG, "Gateway node heard again: " + nodeId);
+        }
+    };
 
     /**
      * Interface for callback when a new measurement is received.
@@ -74,20 +240,52 @@ public class BeaconListeningService extends Service {
     }
 
     /**
-     * Manages the intervals between scanning and non scanning periods
+     * Manages the intervals between scanning and non scanning periods.
+     * The ScanScheduler decides how long each window lasts and how long to wait until the next one.
      */
     private final Runnable scanRunnable = new Runnable() {
         @Override
         public void run() {
-            measurementSentInCycle = false;
+            updateSchedulerConditions();
+            scanScheduler.onWindowStarted();
+            // The nodes kept advertising while the scanner slept; that is not packet loss
+            pipeline.onListeningResumed();
+            if (gateway != null) {
+                gateway.onListeningResumed();
+            }
+            scanWindowOpen = true;
             startScan();
 
-            serviceHandler.postDelayed(() -> {
-                stopScan();
-                if (keepRunning) {
-                    serviceHandler.postDelayed(scanRunnable, SCAN_INTERVAL - SCAN_PERIOD);
-                }
-            }, SCAN_PERIOD);
+            serviceHandler.postDelayed(endScanWindowRunnable, scanScheduler.getScanWindowMs());
+        }
+    };
+
+    /**
+     * Closes the current scan window, either when its length has elapsed or as soon as the
+     * scheduler allows it after enough target adverts were received, emits the window summary
+     * and schedules the next one.
+     */
+    private final Runnable endScanWindowRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!scanWindowOpen) {
+                return;
+            }
+            scanWindowOpen = false;
+            serviceHandler.removeCallbacks(this);
+            stopScan();
+            drainIngestor();
+            boolean heard = emitWindowSummary();
+            scanScheduler.onWindowEnded();
+            long delayMs = scanScheduler.getNextDelayMs();
+            if (heard) {
+                // Only a cycle that heard the node sets the pace; the miss backoff must not
+                // push the loss further away
+                connectionState.setExpectedReadingInterval(scanScheduler.getScanWindowMs() + delayMs);
+            }
+            if (keepRunning) {
+                serviceHandler.postDelayed(scanRunnable, delayMs);
+            }
         }
     };
 
@@ -125,6 +323,161 @@ public class BeaconListeningService extends Service {
         startBackgroundService();
         initializeLocationUtils();
         this.connectionState = NodeConnectionState.getInstance();
+        connectionState.setNodeStatusListener(gatewayNodeListener);
+        historyDb = MeasurementHistoryDb.getInstance(this);
+        exposureMap = GeohashIndex.getInstance();
+        // The compactor is created first, since opening the storage hands it the store
+        startHistoryCompaction();
+        serviceHandler.post(this::openMeasurementStorage);
+    }
+
+    /**
+     * Starts the compaction of the history database on a background-priority thread of its
+     * own, so it never delays the scan windows of the service thread.
+     */
+    private void startHistoryCompaction() {
+        historyCompactor = new HistoryCompactor(historyDb, SystemClock::elapsedRealtime);
+        compactionThread = new HandlerThread("HistoryCompactionThread", Process.THREAD_PRIORITY_BACKGROUND);
+        compactionThread.start();
+        compactionHandler = new Handler(compactionThread.getLooper());
+        compactionHandler.postDelayed(compactionRunnable, COMPACTION_FIRST_DELAY_MS);
+    }
+
+    private final Runnable compactionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            boolean backlog = false;
+            try {
+                backlog = historyCompactor.run(System.currentTimeMillis());
+                Log.i(LOG_TAG, "History compaction: " + historyCompactor);
+            } catch (SQLException e) {
+                Log.e(LOG_TAG, "History compaction failed: " + e.getMessage());
+            }
+            compactionHandler.postDelayed(this, backlog ? COMPACTION_BACKLOG_DELAY_MS : COMPACTION_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * Opens the measurement store and log in the app's files directory. The last logged
+     * reading becomes the last measurement again, and the readings the store lost with its
+     * open chunk, if the service was killed, are replayed into it from the log. The exposure
+     * of the days kept and the personal map are rebuilt from both, in one scan of the store
+     * bounded by the raw tier, which is all the compactor lets the store keep. The store is
+     * then handed to the compactor. Runs on the service thread, since both read their files.
+     */
+    private void openMeasurementStorage() {
+        try {
+            timeSeriesStore = new TimeSeriesStore(new File(getFilesDir(), "measurements.hats"));
+            Log.i(LOG_TAG, "Measurement store opened with " + timeSeriesStore.getSampleCount() + " samples");
+            long now = System.currentTimeMillis();
+            long exposureFromMs = now - ExposureIntegrator.DEFAULT_DAYS * 24 * 60 * 60 * 1000L;
+            long mapFromMs = Math.min(exposureFromMs, historyCompactor.getRawCutoffMs(now));
+            timeSeriesStore.scan(mapFromMs, now, (timestampMs, value, latitude, longitude) -> {
+                // The map outlives the service, so readings it already has are skipped as not newer
+                exposureMap.add(latitude, longitude, value, timestampMs);
+                if (timestampMs >= exposureFromMs) {
+                    exposure.add(timestampMs, value);
+                }
+            });
+            historyCompactor.setTimeSeriesStore(timeSeriesStore);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot open the measurement store: " + e.getMessage());
+        }
+        MeasurementLog log;
+        try {
+            log = new MeasurementLog(new File(getFilesDir(), "measurement-log"));
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot open the measurement log: " + e.getMessage());
+            return;
+        }
+        Log.i(LOG_TAG, "Measurement log recovered " + log.getRecoveredCount() + " records");
+        log.readLast((sequence, timestampMs, value, latitude, longitude) -> {
+            if (lastMeasurement == null) {
+                lastMeasurement = toMeasurement(timestampMs, value, latitude, longitude);
+            }
+        });
+        final TimeSeriesStore store = timeSeriesStore;
+        final long storedUntil = store != null ? store.getLastTimestampMs() : Long.MAX_VALUE;
+        final int[] replayed = {0};
+        log.read(log.getFirstSequence(), Integer.MAX_VALUE, (sequence, timestampMs, value, latitude, longitude) -> {
+            // Readings the exposure and the map already have from the store are rejected as not newer
+            exposure.add(timestampMs, value);
+            exposureMap.add(latitude, longitude, value, timestampMs);
+            if (timestampMs > storedUntil) {
+                try {
+                    store.append(timestampMs, value, latitude, longitude);
+                    replayed[0]++;
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Cannot replay into the measurement store: " + e.getMessage());
+                }
+            }
+        });
+        if (replayed[0] > 0) {
+            Log.i(LOG_TAG, "Replayed " + replayed[0] + " logged measurements into the store");
+        }
+        measurementLog = log;
+    }
+
+    private static Measurement toMeasurement(long timestampMs, float value, double latitude, double longitude) {
+        Measurement measurement = new Measurement();
+        measurement.setTimestamp(timestampMs);
+        measurement.setO3Value(value);
+        measurement.setLatitude(latitude);
+        measurement.setLongitude(longitude);
+        return measurement;
+    }
+
+    /**
+     * Logs an accepted measurement and appends it to the store, whichever of them is open,
+     * queues it for the history database and adds it to the exposure and, if it has a
+     * location, to the personal map. Logging it only writes to memory mapped from the log
+     * file. Runs on the service thread.
+     *
+     * @param measurement The measurement, with its location already set.
+     */
+    private void storeMeasurement(Measurement measurement) {
+        long now = System.currentTimeMillis();
+        MeasurementLog log = measurementLog;
+        if (log != null) {
+            try {
+                log.append(measurement, now);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Cannot write to the measurement log: " + e.getMessage());
+            }
+        }
+        TimeSeriesStore store = timeSeriesStore;
+        if (store != null) {
+            try {
+                store.append(measurement, now);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Cannot write to the measurement store: " + e.getMessage());
+            }
+        }
+        historyDb.add(measurement, now);
+        long timestampMs = measurement.getTimestamp() > 0 ? measurement.getTimestamp() : now;
+        exposure.add(timestampMs, measurement.getO3Value());
+        exposureMap.add(measurement.getLatitude(), measurement.getLongitude(), measurement.getO3Value(), timestampMs);
+    }
+
+    /**
+     * Seals the open chunk of the store, forces the log to storage and inserts the queued
+     * history rows, so everything measured so far is on disk. Runs on the service thread.
+     */
+    private void flushMeasurementStorage() {
+        MeasurementLog log = measurementLog;
+        if (log != null) {
+            log.force();
+        }
+        historyDb.flush();
+        TimeSeriesStore store = timeSeriesStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            store.flush();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot flush the measurement store: " + e.getMessage());
+        }
     }
 
     /**
@@ -135,6 +488,9 @@ public class BeaconListeningService extends Service {
     private void initializeLocationUtils() {
         locationUtils = new LocationUtils(this);
         locationUtils.setLocationUpdateListener(location -> {
+            Location previous = currentLocation;
+            userMoving = (location.hasSpeed() && location.getSpeed() > MOVING_SPEED_MPS)
+                    || (previous != null && previous.distanceTo(location) > MOVING_DISTANCE_M);
             currentLocation = location;
             Log.d(LOG_TAG, "Location retrieved from LocationUtils: " + location.getLatitude() + ", " + location.getLongitude());
         });
@@ -206,14 +562,303 @@ public class BeaconListeningService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(LOG_TAG, "BeaconListeningService.onStartCommand: starts");
+        if (intent != null && ACTION_SCAN_RESULTS.equals(intent.getAction())) {
+            handleDeliveredScanResults(intent);
+            return START_NOT_STICKY;
+        }
+
         if (intent != null) {
+            String previousUuid = targetDeviceUUID;
             targetDeviceUUID = intent.getStringExtra("targetDeviceUUID");
+            boolean targetChanged = !Objects.equals(previousUuid, targetDeviceUUID);
+            hardwareFilteringEnabled = intent.getBooleanExtra("hardwareFiltering", true);
+            boolean adaptiveScan = intent.getBooleanExtra("adaptiveScan", true);
+            try {
+                targetMatcher = BeaconUuidMatcher.forTarget(targetDeviceUUID);
+            } catch (IllegalArgumentException e) {
+                Log.e(LOG_TAG, "Invalid target UUID: " + targetDeviceUUID);
+                targetMatcher = null;
+            }
             keepRunning = true;
-            serviceHandler.post(scanRunnable);
+            IngestionMode mode = IngestionMode.fromName(intent.getStringExtra("ingestionMode"));
+            boolean capture = intent.getBooleanExtra("captureScans", false);
+            String[] gatewayNodeUuids = intent.getStringArrayExtra("gatewayNodeUUIDs");
+            boolean historySyncWanted = intent.getBooleanExtra("historySync", true);
+            serviceHandler.post(() -> {
+                if (capture) {
+                    startCapture();
+                } else {
+                    stopCapture();
+                }
+                historySyncEnabled = historySyncWanted;
+                if (targetChanged) {
+                    // A new node means a new device to connect to and a new resume point
+                    dropHistorySync(false);
+                    targetDevice = null;
+                }
+                configureGateway(gatewayNodeUuids);
+                // The scheduler is only used by the service thread, so it is swapped there. The
+                // adaptive window is sized to hear one node; a gateway keeps the fixed one, so
+                // every node gets the same chance and the loss timeout matches the cycle
+                scanScheduler = adaptiveScan && gateway == null
+                        ? new AdaptiveScanScheduler(SystemClock::elapsedRealtime, MIN_SAMPLES_PER_WINDOW,
+                                AdaptiveScanScheduler.DEFAULT_ADVERT_PERIOD_MS)
+                        : new FixedScanScheduler();
+                if (scanWindowOpen) {
+                    scanScheduler.onWindowStarted();
+                }
+                // A gateway is a fixed, powered device: it always runs its own scan windows
+                switchIngestionMode(gateway != null ? IngestionMode.DUTY_CYCLE : mode);
+            });
         }
         return START_NOT_STICKY;
     }
 
+    /**
+     * Enters gateway mode for the given node UUIDs, or leaves it if there are none. Whatever
+     * was collected under the previous configuration is emitted and uploaded first. Runs on the
+     * service thread.
+     * <p>
+     * In gateway mode each node is tracked in the connection engine under its UUID from the
+     * start, and the linked node is not tracked at all, since nothing would refresh it.
+     *
+     * @param nodeUuids UUIDs of the nodes to collect from, or null for single-node mode.
+     */
+    private void configureGateway(String[] nodeUuids) {
+        drainIngestor();
+        if (gateway != null) {
+            gateway.closeWindows(gatewaySummaryListener);
+            gateway.release();
+            uploadBatcher.flush();
+        }
+        gateway = null;
+        gatewayIndex = null;
+        if (nodeUuids == null || nodeUuids.length == 0) {
+            connectionState.setLinkedNodeTracked(true);
+            return;
+        }
+
+        try {
+            gateway = new GatewayRouter(Arrays.asList(nodeUuids), connectionState.getEngine(),
+                    NodeConnectionState.getTimeoutForInterval(FixedScanScheduler.DEFAULT_SCAN_INTERVAL));
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Invalid node UUID for gateway mode: " + e.getMessage());
+            connectionState.setLinkedNodeTracked(true);
+            return;
+        }
+        connectionState.setLinkedNodeTracked(false);
+        ensureUploadBatcher();
+        gatewayIndex = gateway.getIndex();
+        Log.i(LOG_TAG, "Gateway mode for " + gateway.getNodeCount() + " nodes");
+    }
+
+    /**
+     * Creates the batcher shared by gateway uploads and history sync, if not created yet.
+     */
+    private void ensureUploadBatcher() {
+        if (uploadBatcher == null) {
+            apiService = ApiClient.getClient(this).create(ApiService.class);
+            uploadBatcher = new MeasurementBatcher(MeasurementBatcher.DEFAULT_MAX_BATCH,
+                    MeasurementBatcher.DEFAULT_MAX_DELAY_MS, SystemClock::elapsedRealtime,
+                    this::sendMeasurementBatch);
+        }
+    }
+
+    /**
+     * Feeds the scan results delivered by BeaconScanReceiver into the same pipeline as the
+     * duty-cycled scan. If the process was restarted just to handle them, the service adopts
+     * the PendingIntent mode the OS scan is still running in.
+     * <p>
+     * Runs on the main thread, like the ScanCallback, so the ring keeps a single producer.
+     *
+     * @param intent The intent forwarded by BeaconScanReceiver.
+     */
+    private void handleDeliveredScanResults(Intent intent) {
+        if (targetMatcher == null) {
+            targetDeviceUUID = intent.getStringExtra("targetDeviceUUID");
+            try {
+                targetMatcher = BeaconUuidMatcher.forTarget(targetDeviceUUID);
+            } catch (IllegalArgumentException e) {
+                Log.e(LOG_TAG, "Invalid target UUID in delivered results: " + targetDeviceUUID);
+                return;
+            }
+            serviceHandler.post(() -> {
+                if (ingestionMode != IngestionMode.PENDING_INTENT) {
+                    ingestionMode = IngestionMode.PENDING_INTENT;
+                    backgroundScanIntent = buildBackgroundScanIntent();
+                    markModeStart();
+                    locationUtils.setHoldWakeLock(false);
+                    connectionState.setExpectedReadingInterval(BACKGROUND_REPORT_DELAY);
+                }
+            });
+        }
+
+        ArrayList<ScanResult> results = IntentCompat.getParcelableArrayListExtra(intent, EXTRA_SCAN_RESULTS,
+                ScanResult.class);
+        if (results == null) {
+            return;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            processScanResult(results.get(i));
+        }
+        // Queued after every drain posted above, so the whole batch ends up in one summary
+        serviceHandler.post(flushSummaryRunnable);
+    }
+
+    /**
+     * Selects how adverts are received. Can be called at runtime by bound clients, e.g. to
+     * compare the CPU time of both modes; the switch happens on the service thread.
+     *
+     * @param mode The new ingestion mode.
+     */
+    public void setIngestionMode(IngestionMode mode) {
+        serviceHandler.post(() -> switchIngestionMode(mode));
+    }
+
+    /**
+     * Returns the ingestion mode currently in use.
+     *
+     * @return The ingestion mode.
+     */
+    public IngestionMode getIngestionMode() {
+        return ingestionMode;
+    }
+
+    /**
+     * Returns the CPU time the process has used since the current ingestion mode started.
+     *
+     * @return CPU time in milliseconds.
+     */
+    public long getIngestionCpuTimeMs() {
+        return Process.getElapsedCpuTime() - cpuTimeAtModeStart;
+    }
+
+    /**
+     * Stops the current way of receiving adverts and starts the requested one. Falls back to
+     * the duty cycle if the PendingIntent scan cannot be registered.
+     *
+     * @param mode The new ingestion mode.
+     */
+    private void switchIngestionMode(IngestionMode mode) {
+        stopIngestion();
+        logModeCpuTime();
+
+        ingestionMode = mode;
+        markModeStart();
+        if (!keepRunning) {
+            return;
+        }
+
+        if (mode == IngestionMode.PENDING_INTENT && startBackgroundScan()) {
+            // The OS wakes us up with results; the CPU does not need to stay awake in between
+            locationUtils.setHoldWakeLock(false);
+            connectionState.setExpectedReadingInterval(BACKGROUND_REPORT_DELAY);
+        } else {
+            ingestionMode = IngestionMode.DUTY_CYCLE;
+            locationUtils.setHoldWakeLock(true);
+            scanRunnable.run();
+        }
+    }
+
+    /**
+     * Stops whichever ingestion is running: the pending scan windows or the PendingIntent scan.
+     */
+    private void stopIngestion() {
+        serviceHandler.removeCallbacks(scanRunnable);
+        serviceHandler.removeCallbacks(endScanWindowRunnable);
+        if (scanWindowOpen) {
+            scanWindowOpen = false;
+            stopScan();
+        }
+        stopBackgroundScan();
+    }
+
+    /**
+     * Records the CPU and wall-clock time at which the current ingestion mode started.
+     */
+    private void markModeStart() {
+        cpuTimeAtModeStart = Process.getElapsedCpuTime();
+        elapsedAtModeStart = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Logs how much CPU time the process used while in the current ingestion mode.
+     */
+    private void logModeCpuTime() {
+        if (elapsedAtModeStart == 0) {
+            return;
+        }
+        Log.i(LOG_TAG, "Ingestion mode " + ingestionMode + ": " + getIngestionCpuTimeMs() + " ms CPU over "
+                + (SystemClock.elapsedRealtime() - elapsedAtModeStart) + " ms");
+    }
+
+    /**
+     * Builds the PendingIntent the OS fills with scan results and sends to BeaconScanReceiver.
+     * It has to be mutable so the Bluetooth stack can add the results to it.
+     *
+     * @return The broadcast PendingIntent.
+     */
+    private PendingIntent buildBackgroundScanIntent() {
+        Intent intent = new Intent(this, BeaconScanReceiver.class);
+        intent.setAction(BeaconScanReceiver.ACTION_SCAN_RESULT);
+        intent.putExtra("targetDeviceUUID", targetDeviceUUID);
+        return PendingIntent.getBroadcast(this, BACKGROUND_SCAN_REQUEST_CODE, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_MUTABLE);
+    }
+
+    /**
+     * Registers a filtered, low power scan whose results the OS delivers through a PendingIntent,
+     * even while the process is idle. A filter is mandatory for this kind of scan.
+     *
+     * @return true if the scan was registered.
+     */
+    private boolean startBackgroundScan() {
+        if (scanner == null) {
+            initializeBluetooth();
+        }
+        if (scanner == null || targetMatcher == null) {
+            Log.e(LOG_TAG, "Cannot start background scan without scanner or target UUID");
+            return false;
+        }
+
+        try {
+            backgroundScanIntent = buildBackgroundScanIntent();
+            BluetoothDevice device = targetDevice;
+            int result = scanner.startScan(IBeaconScanFilters.buildFilters(targetMatcher,
+                            device != null ? device.getAddress() : null),
+                    IBeaconScanFilters.buildSettings(bluetoothAdapter, ScanSettings.SCAN_MODE_LOW_POWER,
+                            BACKGROUND_REPORT_DELAY),
+                    backgroundScanIntent);
+            if (result != 0) {
+                Log.e(LOG_TAG, "Background scan failed with error code: " + result);
+                backgroundScanIntent = null;
+                return false;
+            }
+            Log.d(LOG_TAG, "Background PendingIntent scan started");
+            return true;
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "Permission denied starting background scan: " + e.getMessage());
+            backgroundScanIntent = null;
+            return false;
+        }
+    }
+
+    /**
+     * Unregisters the PendingIntent scan, if any.
+     */
+    private void stopBackgroundScan() {
+        if (scanner == null || backgroundScanIntent == null) {
+            return;
+        }
+        try {
+            scanner.stopScan(backgroundScanIntent);
+            Log.d(LOG_TAG, "Background PendingIntent scan stopped");
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "Permission denied stopping background scan: " + e.getMessage());
+        }
+        backgroundScanIntent = null;
+    }
+
     /**
      * Initializes a background thread to handle the scanning of BLE devices.
      */
@@ -239,6 +884,7 @@ public class BeaconListeningService extends Service {
         }
 
         if (bta.isEnabled()) {
+            this.bluetoothAdapter = bta;
             this.scanner = bta.getBluetoothLeScanner();
             Log.d(LOG_TAG, "Bluetooth scanner initialized");
         } else {
@@ -249,6 +895,10 @@ public class BeaconListeningService extends Service {
     /**
      * Continuously performs BLE device scans while the service is running.
      * then sends the result to processScanResult()
+     * <p>
+     * When the controller supports it, the iBeacon/UUID filter and batched reports are
+     * offloaded to the chipset; otherwise the scan falls back to an unfiltered one and the
+     * matching is done in software by processScanResult().
      */
     private void startScan() {
         if (scanner == null) {
@@ -260,35 +910,58 @@ public class BeaconListeningService extends Service {
             }
         }
 
-        scanCallback = new ScanCallback() {
-            @Override
-            public void onScanResult(int callbackType, ScanResult result) {
-                super.onScanResult(callbackType, result);
-                processScanResult(result);
-            }
-
-            @Override
-            public void onScanFailed(int errorCode) {
-                Log.e(LOG_TAG, "Scan failed with error code: " + errorCode);
-            }
-        };
-
         try {
             if (ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
                 // empty body because on old android versions wouldnt work
             }
-            scanner.startScan(null, new ScanSettings.Builder().build(), scanCallback);
-            Log.d(LOG_TAG, "Scan started successfully");
+
+            NodeUuidIndex index = gatewayIndex;
+            boolean offload = hardwareFilteringEnabled && (targetMatcher != null || index != null)
+                    && IBeaconScanFilters.isFilteringSupported(bluetoothAdapter);
+            if (offload) {
+                batchingActive = IBeaconScanFilters.isBatchingSupported(bluetoothAdapter);
+                BluetoothDevice device = targetDevice;
+                scanner.startScan(index != null
+                                ? IBeaconScanFilters.buildFilters(index)
+                                : IBeaconScanFilters.buildFilters(targetMatcher, device != null ? device.getAddress() : null),
+                        IBeaconScanFilters.buildSettings(bluetoothAdapter, scanScheduler.getScanWindowMs() / 2),
+                        scanCallback);
+            } else {
+                batchingActive = false;
+                scanner.startScan(null, new ScanSettings.Builder().build(), scanCallback);
+            }
+            Log.d(LOG_TAG, "Scan started successfully (offloaded filter: " + offload
+                    + ", batching: " + batchingActive + ")");
         } catch (Exception e) {
             Log.e(LOG_TAG, "Error starting scan: " + e.getMessage());
         }
     }
 
+    /**
+     * Feeds the scheduler with the current motion, battery level and screen state.
+     */
+    private void updateSchedulerConditions() {
+        int batteryPercent = -1;
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery != null) {
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            if (level >= 0 && scale > 0) {
+                batteryPercent = level * 100 / scale;
+            }
+        }
+
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        boolean screenOn = powerManager != null && powerManager.isInteractive();
+
+        scanScheduler.updateConditions(userMoving, batteryPercent, screenOn);
+    }
+
     /**
      * Stops the BLE device scans when the service is stopped
      */
     private void stopScan() {
-        if (scanner != null && scanCallback != null) {
+        if (scanner != null) {
             if (ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_SCAN)
                     != PackageManager.PERMISSION_GRANTED) {
                 return;
@@ -300,6 +973,10 @@ public class BeaconListeningService extends Service {
             }
 
             try {
+                if (batchingActive) {
+                    // Deliver what the controller has queued before the window closes
+                    scanner.flushPendingScanResults(scanCallback);
+                }
                 scanner.stopScan(scanCallback);
                 Log.d(LOG_TAG, "Scan stopped successfully");
 
@@ -309,22 +986,6 @@ public class BeaconListeningService extends Service {
                         locationUtils.startLocationUpdates();
                     }
                 }
-
-                // Generate and send the measurement after scan
-                if (currentLocation != null) {
-                    Measurement measurement = new Measurement();
-                    measurement.setLatitude(currentLocation.getLatitude());
-                    measurement.setLongitude(currentLocation.getLongitude());
-
-                    if (isValidMeasurement(measurement)) {
-                        processMeasurement(measurement);
-                    } else {
-                        Log.w(LOG_TAG, "Medida inválida ignorada.");
-                    }
-                } else {
-                    Log.w(LOG_TAG, "Ubicación no disponible para la medida.");
-                }
-
             } catch (Exception e) {
                 Log.e(LOG_TAG, "Error stopping scan: " + e.getMessage());
             }
@@ -332,28 +993,402 @@ public class BeaconListeningService extends Service {
     }
 
     /**
-     * Processes the result of a BLE device scan. If a device with the matching UUID is found,
-     * creates a new Measurement with location data and processes it if valid.
+     * Processes the result of a BLE device scan on the Bluetooth callback thread. The
+     * ScanIngestor rejects non-iBeacon adverts by their prefix before any field is read and,
+     * if the UUID matches, pushes only the decoded fields into its ring and wakes up the service
+     * thread to drain it; nothing here allocates or touches service state. Other frames are
+     * only decoded if they come from the target's address. In gateway mode the UUID is looked
+     * up among all the registered nodes instead. In capture mode the raw record is also
+     * appended to the capture log first.
      *
      * @param result The result of the BLE scan containing device information.
      */
     private void processScanResult(ScanResult result) {
-        if (measurementSentInCycle) {
+        ScanRecord record = result.getScanRecord();
+        if (record == null) {
+            return;
+        }
+        captureScanRecord(result.getTimestampNanos(), result.getRssi(), record.getBytes());
+        NodeUuidIndex index = gatewayIndex;
+        if (index != null) {
+            ingestor.onScanRecord(index, record.getBytes(), result.getTimestampNanos(), result.getRssi());
+        } else {
+            BluetoothDevice device = targetDevice;
+            boolean fromTarget = device != null && device.equals(result.getDevice());
+            if (ingestor.onScanRecord(targetMatcher, record.getBytes(), result.getTimestampNanos(),
+                    result.getRssi(), fromTarget) && device == null) {
+                targetDevice = result.getDevice(); // Where the history sync connects to
+            }
+        }
+    }
+
+    /**
+     * Drains the ingestor's ring on the service thread, into the gateway router in gateway mode.
+     */
+    private void drainIngestor() {
+        if (gateway != null) {
+            ingestor.drain(gatewayRecordHandler);
+        } else {
+            ingestor.drain(recordHandler);
+        }
+    }
+
+    /**
+     * Handles one advert of the target node on the service thread. The BeaconPipeline drops
+     * retransmissions by sequence number and adds every new valid reading to the window
+     * aggregate; the Measurement is only built when the window closes.
+     *
+     * @param timestampNanos Time the advert was received.
+     * @param major          Major field, carrying the O3 value in ppm * 100.
+     * @param minor          Minor field, carrying the node's rolling sequence number.
+     * @param rssi           Received signal strength in dBm.
+     * @param txPower        Calibrated txPower in dBm.
+     */
+    private void processBeaconRecord(long timestampNanos, int major, int minor, int rssi, int txPower) {
+        if (scanWindowOpen) {
+            // Both on the elapsed-realtime base, so batched results keep their real latency
+            scanScheduler.onTargetReceived(timestampNanos / 1_000_000);
+        }
+
+        pipeline.onRecord(timestampNanos, major, minor, rssi, txPower);
+
+        // A single advert is a poor sample: keep listening until the window has a few readings
+        if (scanWindowOpen && pipeline.getWindowCount() >= MIN_SAMPLES_PER_WINDOW
+                && scanScheduler.shouldEndWindowEarly()) {
+            endScanWindowRunnable.run();
+        }
+    }
+
+    /**
+     * Handles one advert of a registered node in gateway mode, on the service thread. The
+     * scheduler is not told, since a gateway keeps a fixed window and never ends it early:
+     * every node should get the chance to be heard.
+     *
+     * @param node           Index of the node in the gateway's UUID index.
+     * @param timestampNanos Time the advert was received.
+     * @param major          Major field, carrying the O3 value in ppm * 100.
+     * @param minor          Minor field, carrying the node's rolling sequence number.
+     * @param rssi           Received signal strength in dBm.
+     * @param txPower        Calibrated txPower in dBm.
+     */
+    private void processGatewayRecord(int node, long timestampNanos, int major, int minor, int rssi, int txPower) {
+        gateway.onNodeRecord(node, timestampNanos, major, minor, rssi, txPower);
+    }
+
+    /**
+     * Turns the readings aggregated during the window into a single Measurement, using the
+     * median as the O3 value since it is robust against an odd corrupted advert, and processes it.
+     * The node's signal estimate is reported at the same time. In gateway mode every node heard
+     * gets its own summary instead, see onGatewaySummary().
+     * Does nothing if no reading arrived. The capture log, if any, is flushed at the same point.
+     *
+     * @return Whether the linked node was heard during the window.
+     */
+    private boolean emitWindowSummary() {
+        flushCapture();
+        if (gateway != null) {
+            gateway.closeWindows(gatewaySummaryListener);
+            uploadBatcher.poll();
+            historyDb.poll();
+            return false;
+        }
+        historyDb.poll();
+        WindowSummary summary = pipeline.closeWindow();
+        if (summary == null) {
+            return false;
+        }
+        lastWindowSummary = summary;
+        Log.d(LOG_TAG, "Window summary: " + summary + ", battery " + ingestor.getBatteryPercent() + "% / "
+                + ingestor.getBatteryMillivolts() + " mV, " + ingestor.getTemperatureCelsius() + " °C");
+        reportSignal();
+        maybeStartHistorySync();
+
+        Measurement newMeasurement = new Measurement();
+        newMeasurement.setO3Value(summary.getMedian());
+        newMeasurement.setTimestamp(toWallClockMs(summary.getLastTimestamp()));
+        newMeasurement.setSequence(pipeline.getSequenceWindow().getHighestSequence());
+        updateMeasurementWithLocation(newMeasurement);
+
+        // Duplicates were already dropped by sequence number, so every summary is a new reading
+        if (isValidMeasurement(newMeasurement)) {
+            storeMeasurement(newMeasurement);
+            processMeasurement(newMeasurement);
+            lastMeasurement = newMeasurement;
+        }
+        return true;
+    }
+
+    /**
+     * Converts the receive time of a scan result, in elapsed-realtime nanoseconds, to Unix
+     * milliseconds, so a measurement is stamped with when its last advert arrived rather than
+     * when it is processed or uploaded.
+     *
+     * @param elapsedNanos Time on the SystemClock.elapsedRealtimeNanos() base.
+     * @return The same instant in Unix milliseconds.
+     */
+    private static long toWallClockMs(long elapsedNanos) {
+        return System.currentTimeMillis() - (SystemClock.elapsedRealtimeNanos() - elapsedNanos) / 1_000_000;
+    }
+
+    /**
+     * Handles the window summary of one node in gateway mode: queues its median, tagged with
+     * the node UUID, capture time and sequence number, for the next shared upload batch and
+     * for the history database, and
+     * raises the gas alert if the level is dangerous. Its connection state was already
+     * refreshed by the GatewayRouter.
+     *
+     * @param nodeId   UUID of the node.
+     * @param summary  Its readings during the window.
+     * @param sequence The node's sequence number of its newest reading.
+     * @param alert    Whether the median is above the danger threshold.
+     */
+    private void onGatewaySummary(String nodeId, WindowSummary summary, int sequence, boolean alert) {
+        Location location = currentLocation;
+        long timestampMs = toWallClockMs(summary.getLastTimestamp());
+        // No fix yet: the location is left unknown rather than sent as 0, 0
+        double latitude = location != null ? location.getLatitude() : Double.NaN;
+        double longitude = location != null ? location.getLongitude() : Double.NaN;
+        uploadBatcher.add(timestampMs, summary.getMedian(), latitude, longitude, nodeId, sequence, GasType.O3);
+        historyDb.add(timestampMs, summary.getMedian(), latitude, longitude, nodeId, sequence, GasType.O3);
+
+        if (alert) {
+            Log.w(LOG_TAG, "Dangerous level at node " + nodeId + ": " + summary.getMedian() + " ppm");
+            gasAlertManager.checkAndAlert(summary.getMedian());
+        }
+    }
+
+    /**
+     * Uploads a batch of measurements in a single request. The JSON body is written right away,
+     * since the batcher reuses the batch once this returns.
+     *
+     * @param batch The measurements, e.g. of several nodes.
+     */
+    private void sendMeasurementBatch(MeasurementBatch batch) {
+        final int size = batch.size();
+        RequestBody body = RequestBody.create(batch.toJson(), JSON);
+        apiService.sendMeasurementBatchJson(body).enqueue(new Callback<Void>() {
+            @Override
+            public void onResponse(Call<Void> call, Response<Void> response) {
+                if (!response.isSuccessful()) {
+                    Log.e(LOG_TAG, "Batch upload rejected: " + response.code());
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Void> call, Throwable t) {
+                Log.e(LOG_TAG, "Batch upload of " + size + " measurements failed: " + t.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Passes the node's smoothed signal to the scan scheduler and to the connection state, so a
+     * user walking away can be told apart from a node that stopped advertising.
+     */
+    private void reportSignal() {
+        SignalTracker signal = pipeline.getSignalTracker();
+        double distance = signal.getDistanceMeters();
+        double quality = signal.getLinkQuality();
+        boolean fading = signal.isFading();
+        scanScheduler.onSignalUpdate(distance, quality, fading);
+        connectionState.updateSignal(distance, quality, signal.explainSilence());
+    }
+
+    /**
+     * Starts syncing the node's buffered history if the node is close enough for a reliable
+     * GATT link and the last sync is old enough. The node only buffers while no phone listens,
+     * so a sync every HISTORY_SYNC_INTERVAL_MS is plenty. Runs on the service thread.
+     */
+    private void maybeStartHistorySync() {
+        BluetoothDevice device = targetDevice;
+        long now = SystemClock.elapsedRealtime();
+        if (!historySyncEnabled || device == null || gateway != null
+                || now - lastHistorySyncMs < HISTORY_SYNC_INTERVAL_MS
+                || pipeline.getSignalTracker().getLinkQuality() < HISTORY_SYNC_MIN_LINK_QUALITY) {
+            return;
+        }
+        if (historySync == null) {
+            ensureUploadBatcher();
+            final HistorySyncClient client = new HistorySyncClient(
+                    new GattHistoryTransport(this, device, serviceHandler), newHistorySink(targetDeviceUUID),
+                    SystemClock::elapsedRealtime, HistorySyncClient.DEFAULT_ACK_INTERVAL);
+            // A client dropped for a new target still reports its late disconnection here
+            client.setSyncListener((complete, records, lastSequence, elapsedMs) -> {
+                if (client == historySync) {
+                    serviceHandler.removeCallbacks(historySyncTimeoutRunnable);
+                }
+                Log.i(LOG_TAG, "History sync " + (complete ? "finished" : "interrupted") + ": " + records
+                        + " records in " + elapsedMs + " ms (MTU " + client.getMtu()
+                        + "), resumes after " + lastSequence);
+            });
+            historySync = client;
+        }
+        if (historySync.start()) {
+            lastHistorySyncMs = now;
+            serviceHandler.postDelayed(historySyncTimeoutRunnable, HISTORY_SYNC_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Aborts a sync that takes too long. If the link does not report its disconnection within
+     * HISTORY_SYNC_CLOSE_GRACE_MS, it runs again and the second abort() closes the link.
+     */
+    private final Runnable historySyncTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            HistorySyncClient client = historySync;
+            if (client == null) {
+                return;
+            }
+            client.abort();
+            if (client.getState() != HistorySyncClient.State.IDLE) {
+                serviceHandler.postDelayed(this, HISTORY_SYNC_CLOSE_GRACE_MS);
+            }
+        }
+    };
+
+    /**
+     * Drops the history sync client and its timeout. Runs on the service thread.
+     *
+     * @param close true to release the link at once, when the service thread is about to end;
+     *              false to let it disconnect, and commit what arrived, in the background.
+     */
+    private void dropHistorySync(boolean close) {
+        serviceHandler.removeCallbacks(historySyncTimeoutRunnable);
+        if (historySync == null) {
             return;
         }
+        final HistorySyncClient client = historySync;
+        historySync = null;
+        if (close) {
+            client.close();
+            return;
+        }
+        client.abort();
+        if (client.getState() != HistorySyncClient.State.IDLE) {
+            // No longer reachable through historySync, so its own second abort() closes it
+            serviceHandler.postDelayed(client::abort, HISTORY_SYNC_CLOSE_GRACE_MS);
+        }
+    }
 
-        IBeaconFrame tib = new IBeaconFrame(result.getScanRecord().getBytes());
-        if (Utilities.bytesToString(tib.getUUID()).equals(targetDeviceUUID)) {
-            Measurement newMeasurement = new Measurement();
-            newMeasurement.setO3Value(Utilities.bytesToFloat(tib.getMajor()) / 100);
-            updateMeasurementWithLocation(newMeasurement);
+    /**
+     * Returns a sink for the synced history of one node: each gas the node measured in a
+     * record is queued for upload, and for the history database, with the record's timestamp
+     * and sequence, and a commit sends the queue and saves the resume point of that node, even
+     * if the target changed meanwhile.
+     *
+     * @param nodeUuid UUID of the node the client syncs.
+     * @return The sink.
+     */
+    private HistorySink newHistorySink(final String nodeUuid) {
+        return new HistorySink() {
+            @Override
+            public void onRecord(long sequence, long timestampMs, float o3Ppm, float coPpm, float no2Ppm) {
+                addHistoryReading(sequence, timestampMs, o3Ppm, GasType.O3);
+                addHistoryReading(sequence, timestampMs, coPpm, GasType.CO);
+                addHistoryReading(sequence, timestampMs, no2Ppm, GasType.NO2);
+            }
 
-            if (isValidMeasurement(newMeasurement)) {
-                if (!newMeasurement.equals(lastMeasurement)) {
-                    processMeasurement(newMeasurement);
-                    lastMeasurement = newMeasurement;
+            private void addHistoryReading(long sequence, long timestampMs, float ppm, GasType gasType) {
+                if (!Float.isNaN(ppm)) {
+                    // Where the node was when it measured is not known, so no location is sent
+                    uploadBatcher.add(timestampMs, ppm, Double.NaN, Double.NaN, null, sequence, gasType);
+                    // Records arrive older than the live readings; the database takes any order
+                    historyDb.add(timestampMs, ppm, Double.NaN, Double.NaN, null, sequence, gasType);
                 }
             }
+
+            @Override
+            public void commit(long lastSequence) {
+                uploadBatcher.flush();
+                historyPreferences().edit().putLong(nodeUuid, lastSequence).apply();
+            }
+
+            @Override
+            public long getCommittedSequence() {
+                return historyPreferences().getLong(nodeUuid, -1);
+            }
+
+            private SharedPreferences historyPreferences() {
+                return getSharedPreferences(HISTORY_PREFS, Context.MODE_PRIVATE);
+            }
+        };
+    }
+
+    /**
+     * Opens a new capture log in the app's files directory, unless one is already open.
+     * Runs on the service thread.
+     */
+    private void startCapture() {
+        if (captureWriter != null) {
+            return;
+        }
+        File directory = new File(getFilesDir(), "captures");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Cannot create capture directory");
+            return;
+        }
+        File file = new File(directory, "scans-" + System.currentTimeMillis() + ".hacp");
+        try {
+            captureWriter = new ScanCaptureWriter(new BufferedOutputStream(new FileOutputStream(file)));
+            Log.i(LOG_TAG, "Capturing scan records to " + file.getName());
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot open capture log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends a raw scan record to the capture log, if capture mode is on. Called from the
+     * Bluetooth callback thread; the writer only copies into memory, and when a buffer fills
+     * the disk write is posted to the service thread.
+     *
+     * @param timestampNanos Time the advert was received.
+     * @param rssi           Received signal strength in dBm.
+     * @param bytes          Raw scan-record bytes.
+     */
+    private void captureScanRecord(long timestampNanos, int rssi, byte[] bytes) {
+        ScanCaptureWriter writer = captureWriter;
+        if (writer == null) {
+            return;
+        }
+        if (writer.append(timestampNanos, rssi, bytes)) {
+            serviceHandler.post(this::flushCapture);
+        }
+    }
+
+    /**
+     * Writes the records captured so far to disk. Called on the service thread at the end of
+     * every window and whenever a capture buffer fills, so the disk writes stay off the
+     * Bluetooth callback thread.
+     */
+    private void flushCapture() {
+        ScanCaptureWriter writer = captureWriter;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Capture failed, disabling it: " + e.getMessage());
+            captureWriter = null;
+        }
+    }
+
+    /**
+     * Closes the capture log, if one is open.
+     */
+    private void stopCapture() {
+        ScanCaptureWriter writer = captureWriter;
+        if (writer == null) {
+            return;
+        }
+        captureWriter = null;
+        try {
+            writer.close();
+            Log.i(LOG_TAG, "Capture closed with " + writer.getRecordCount() + " records, "
+                    + writer.getDroppedCount() + " dropped");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error closing capture log: " + e.getMessage());
         }
     }
 
@@ -397,13 +1432,28 @@ public class BeaconListeningService extends Service {
 
         if (serviceHandler != null) {
             serviceHandler.removeCallbacks(scanRunnable);
+            serviceHandler.removeCallbacks(endScanWindowRunnable);
         }
+        scanWindowOpen = false;
 
         if (gasAlertManager != null) {
             gasAlertManager.cleanup();
         }
 
         stopScan();
+        stopBackgroundScan();
+        stopCapture();
+        if (serviceHandler != null) {
+            serviceHandler.post(() -> dropHistorySync(false));
+        }
+        if (uploadBatcher != null && serviceHandler != null) {
+            // Whatever the gateway still holds goes out before the service thread quits
+            serviceHandler.post(uploadBatcher::flush);
+        }
+        if (serviceHandler != null) {
+            serviceHandler.post(this::flushMeasurementStorage);
+        }
+        logModeCpuTime();
         stopForeground(true);
         stopSelf();
     }
@@ -419,13 +1469,39 @@ public class BeaconListeningService extends Service {
 
         if (serviceHandler != null) {
             serviceHandler.removeCallbacks(scanRunnable);
+            serviceHandler.removeCallbacks(endScanWindowRunnable);
         }
+        scanWindowOpen = false;
         stopScan();
+        stopBackgroundScan();
+        stopCapture();
 
         if (gasAlertManager != null) {
             gasAlertManager.cleanup();
         }
 
+        if (serviceHandler != null) {
+            // Queued before quitSafely(), so they run before the thread ends. The GATT link
+            // is closed now, since its disconnection could no longer be delivered
+            serviceHandler.post(() -> dropHistorySync(true));
+            serviceHandler.post(this::flushMeasurementStorage);
+            serviceHandler.post(() -> {
+                if (gateway != null) {
+                    gateway.release();
+                }
+                connectionState.setLinkedNodeTracked(true);
+            });
+        }
+        if (connectionState != null) {
+            connectionState.setNodeStatusListener(null);
+        }
+
+        if (compactionThread != null) {
+            // A run in progress finishes its transaction; the next one is dropped
+            compactionHandler.removeCallbacks(compactionRunnable);
+            compactionThread.quitSafely();
+        }
+
         if (handlerThread != null) {
             handlerThread.quitSafely();
             try {
@@ -459,4 +1535,81 @@ public class BeaconListeningService extends Service {
     public Measurement getLastMeasurement() {
         return lastMeasurement;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the number of the target node's packets that never arrived, according to the
+     * gaps in its sequence numbers.
+     *
+     * @return The lost packet count.
+     */
+    public long getLostPacketCount() {
+        return pipeline.getSequenceWindow().getLostCount();
+    }
+
+    /**
+     * Returns the fraction of the target node's packets that never arrived.
+     *
+     * @return The packet loss ratio, between 0 and 1.
+     */
+    public double getPacketLossRatio() {
+        return pipeline.getSequenceWindow().getLossRatio();
+    }
+
+    /**
+     * Returns the on-device measurement store, e.g. for charts that should not depend on the
+     * network.
+     *
+     * @return The store, or null if it could not be opened.
+     */
+    public TimeSeriesStore getTimeSeriesStore() {
+        return timeSeriesStore;
+    }
+
+    /**
+     * Returns the write-ahead log of accepted measurements, e.g. for uploaders that resume from
+     * a sequence number.
+     *
+     * @return The log, or null if it could not be opened.
+     */
+    public MeasurementLog getMeasurementLog() {
+        return measurementLog;
+    }
+
+    /**
+     * Returns the compactor of the history database, whose metrics tell the size of the
+     * database and the cost of keeping it within its retention.
+     *
+     * @return The compactor.
+     */
+    public HistoryCompactor getHistoryCompactor() {
+        return historyCompactor;
+    }
+
+    /**
+     * Returns the user's exposure of the last days, computed on the phone from the readings of
+     * the linked node, so the dashboard can show it without asking the server.
+     *
+     * @return The exposure; safe to read from any thread.
+     */
+    public ExposureIntegrator getExposure() {
+        return exposure;
+    }
+
+    /**
+     * Returns whether the service is collecting from a set of nodes as a gateway.
+     *
+     * @return true in gateway mode.
+     */
+    public boolean isGatewayMode() {
+        return gatewayIndex != null;
+    }
+
+    /**
+     * Returns the statistics of the last scan window in which the node was heard.
+     *
+     * @return The last WindowSummary, or null if none has been emitted yet.
+     */
+    public WindowSummary getLastWindowSummary() {
+        return lastWindowSummary;
+    }
+}
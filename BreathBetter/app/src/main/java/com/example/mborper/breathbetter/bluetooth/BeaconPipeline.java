@@ -0,0 +1,140 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import com.example.mborper.breathbetter.measurements.WindowAggregator;
+import com.example.mborper.breathbetter.measurements.WindowSummary;
+
+/**
+ * Ingest stages applied to every advert of the target node once it has been decoded:
+ * signal tracking, sequence-number deduplication, range validation and aggregation into the
+ * window summary.
+ * <p>
+ * It has no Android dependency, so BeaconListeningService runs it on its service thread and
+ * ScanReplayDriver runs the very same code on the JVM over a captured log.
+ * <p>
+ * Not thread-safe: records and window closes must come from a single thread.
+ *
+ * @since 2026-10-18
+ */
+public class BeaconPipeline implements ScanRecordRing.RecordHandler {
+    public static final float MIN_VALID_PPM = 0f;
+    public static final float MAX_VALID_PPM = 1000f;
+
+    private final SequenceWindow sequence = new SequenceWindow();
+    private final SignalTracker signal = new SignalTracker();
+    private final WindowAggregator aggregator = new WindowAggregator();
+
+    private long recordCount;
+    private long duplicateCount;
+    private long invalidCount;
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Decodes a raw scan record and feeds it to the pipeline if it is an advert of the target.
+     * Used where the decoding and the processing happen on the same thread.
+     *      [byte], Natural, Z, IBeaconFrameView, BeaconUuidMatcher ---> onScanRecord() ---> T/F
+     *
+     * @param bytes          Raw scan-record bytes.
+     * @param timestampNanos Time the advert was received.
+     * @param rssi           Received signal strength in dBm.
+     * @param view           Reusable view to parse the record with.
+     * @param matcher        Matcher of the target UUID.
+     * @return true if the record was an advert of the target.
+     */
+    public boolean onScanRecord(byte[] bytes, long timestampNanos, int rssi,
+                                IBeaconFrameView view, BeaconUuidMatcher matcher) {
+        if (!view.wrap(bytes) || !matcher.matches(view)) {
+            return false;
+        }
+        onRecord(timestampNanos, view.majorU16(), view.minorU16(), rssi, view.txPower());
+        return true;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Processes one decoded advert of the target node. Its RSSI always goes to the signal
+     * tracker, since a retransmission is still a fresh radio sample; then retransmissions are
+     * dropped by sequence number and out-of-range readings are discarded, and the rest go into
+     * the window aggregate.
+     *      Natural, Natural, Natural, Z, Z ---> onRecord()
+     *
+     * @param timestampNanos Time the advert was received.
+     * @param major          Major field, carrying the O3 value in ppm * 100.
+     * @param minor          Minor field, carrying the node's rolling sequence number.
+     * @param rssi           Received signal strength in dBm.
+     * @param txPower        Calibrated txPower in dBm.
+     */
+    @Override
+    public void onRecord(long timestampNanos, int major, int minor, int rssi, int txPower) {
+        recordCount++;
+        signal.update(timestampNanos, rssi, txPower);
+        if (!sequence.accept(minor).isNew()) {
+            duplicateCount++;
+            return;
+        }
+
+        float o3Value = major / 100f;
+        if (o3Value < MIN_VALID_PPM || o3Value > MAX_VALID_PPM) {
+            invalidCount++;
+            return;
+        }
+        aggregator.add(o3Value, timestampNanos);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Closes the current window and returns its summary.
+     *      closeWindow() ---> WindowSummary
+     *
+     * @return The summary, or null if no valid reading arrived during the window.
+     */
+    public WindowSummary closeWindow() {
+        return aggregator.summarize();
+    }
+
+    /**
+     * Tells the pipeline the scanner starts a new listening window after sleeping, so the
+     * adverts the node sent meanwhile are not counted as lost.
+     */
+    public void onListeningResumed() {
+        sequence.onListeningResumed();
+    }
+
+    /**
+     * Returns the number of valid readings in the current window.
+     *
+     * @return The reading count.
+     */
+    public int getWindowCount() {
+        return aggregator.getCount();
+    }
+
+    /**
+     * Returns the sequence history of the node, with its loss and duplicate counters.
+     *
+     * @return The sequence window.
+     */
+    public SequenceWindow getSequenceWindow() {
+        return sequence;
+    }
+
+    /**
+     * Returns the tracker of the node's signal, with its distance and link-quality estimates.
+     *
+     * @return The signal tracker.
+     */
+    public SignalTracker getSignalTracker() {
+        return signal;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Mutable holder the beacon decoders write into.
+ * <p>
+ * One instance is reused for every advert so decoding allocates nothing; the caller must copy
+ * out what it needs before decoding the next advert. Fields a format does not carry keep their
+ * "unknown" value after reset(): NaN for floats and -1 for integers.
+ * <p>
+ * Not thread-safe.
+ *
+ * @since 2026-10-18
+ */
+public class BeaconReading {
+    public static final int UNKNOWN = -1;
+
+    public BeaconFormat format;
+
+    // iBeacon identity
+    public long uuidMsb;
+    public long uuidLsb;
+    public int major;
+    public int minor;
+    public int txPower;
+
+    // Sensor values, in ppm
+    public float o3Ppm;
+    public float coPpm;
+    public float no2Ppm;
+
+    // Node status
+    public int sequence;
+    public int batteryPercent;
+    public int batteryMillivolts;
+    public float temperatureCelsius;
+    public long advertCount;
+    public long uptimeDeciseconds;
+
+    /**
+     * Creates an empty reading.
+     */
+    public BeaconReading() {
+        reset();
+    }
+
+    /**
+     * Sets every field back to unknown.
+     */
+    public void reset() {
+        format = null;
+        uuidMsb = 0;
+        uuidLsb = 0;
+        major = UNKNOWN;
+        minor = UNKNOWN;
+        txPower = 0;
+        o3Ppm = Float.NaN;
+        coPpm = Float.NaN;
+        no2Ppm = Float.NaN;
+        sequence = UNKNOWN;
+        batteryPercent = UNKNOWN;
+        batteryMillivolts = UNKNOWN;
+        temperatureCelsius = Float.NaN;
+        advertCount = UNKNOWN;
+        uptimeDeciseconds = UNKNOWN;
+    }
+}
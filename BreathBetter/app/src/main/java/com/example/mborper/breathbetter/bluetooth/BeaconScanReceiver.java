@@ -0,0 +1,64 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanResult;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+import androidx.core.content.IntentCompat;
+
+import java.util.ArrayList;
+
+/**
+ * Receives the scan results the OS delivers for the PendingIntent registered by
+ * BeaconListeningService in IngestionMode.PENDING_INTENT, and forwards them to the service
+ * so they go through the same measurement pipeline as the duty-cycled scan.
+ * <p>
+ * If the process was idle or killed in between, forwarding the results starts the service again.
+ *
+ * @since 2026-10-18
+ */
+public class BeaconScanReceiver extends BroadcastReceiver {
+    private static final String LOG_TAG = "BeaconScanReceiver";
+
+    public static final String ACTION_SCAN_RESULT = "com.example.mborper.breathbetter.ACTION_BLE_SCAN_RESULT";
+
+    /**
+     * Forwards the delivered scan results, or logs the scan error.
+     *
+     * @param context The context in which the receiver is running.
+     * @param intent  The intent filled in by the Bluetooth stack.
+     */
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_SCAN_RESULT.equals(intent.getAction())) {
+            return;
+        }
+
+        int errorCode = intent.getIntExtra(BluetoothLeScanner.EXTRA_ERROR_CODE, 0);
+        if (errorCode != 0) {
+            Log.e(LOG_TAG, "Background scan failed with error code: " + errorCode);
+            return;
+        }
+
+        ArrayList<ScanResult> results = IntentCompat.getParcelableArrayListExtra(intent,
+                BluetoothLeScanner.EXTRA_LIST_SCAN_RESULT, ScanResult.class);
+        if (results == null || results.isEmpty()) {
+            return;
+        }
+
+        Intent serviceIntent = new Intent(context, BeaconListeningService.class);
+        serviceIntent.setAction(BeaconListeningService.ACTION_SCAN_RESULTS);
+        serviceIntent.putExtra("targetDeviceUUID", intent.getStringExtra("targetDeviceUUID"));
+        serviceIntent.putParcelableArrayListExtra(BeaconListeningService.EXTRA_SCAN_RESULTS, results);
+
+        try {
+            ContextCompat.startForegroundService(context, serviceIntent);
+        } catch (IllegalStateException e) {
+            Log.e(LOG_TAG, "Could not deliver scan results to the service: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * Matches the UUID of raw iBeacon scan records against a target UUID without allocating.
+ * <p>
+ * The target is encoded once into a 16-byte key (and its two big-endian longs). Every advert
+ * is then checked byte by byte directly on the scan-record array, exiting at the first byte
+ * that differs, which for adverts of foreign devices is almost always the first one.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ *
+ * @since 2026-10-18
+ */
+public final class BeaconUuidMatcher {
+    private final byte[] key = new byte[IBeaconFrameView.UUID_LENGTH];
+    private final long msb;
+    private final long lsb;
+
+    /**
+     * Creates a matcher from the two halves of the target UUID.
+     *
+     * @param msb The 8 most significant bytes, big endian.
+     * @param lsb The 8 least significant bytes, big endian.
+     */
+    public BeaconUuidMatcher(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
+        for (int i = 0; i < 8; i++) {
+            key[i] = (byte) (msb >>> (56 - 8 * i));
+            key[i + 8] = (byte) (lsb >>> (56 - 8 * i));
+        }
+    }
+
+    /**
+     * Builds a matcher from the UUID format used by the app. A 16-character string, such as
+     * MainActivity's TARGET_UUID, is taken as the raw ASCII bytes the node broadcasts (the
+     * inverse of Utilities.bytesToString()); a canonical 36-character UUID is parsed as hex.
+     *      Texto ---> forTarget() ---> BeaconUuidMatcher
+     *
+     * @param uuid The target UUID.
+     * @return The matcher for that UUID.
+     * @throws IllegalArgumentException if the string is in neither format.
+     */
+    public static BeaconUuidMatcher forTarget(String uuid) {
+        if (uuid == null) {
+            throw new IllegalArgumentException("Target UUID is null");
+        }
+
+        if (uuid.length() == IBeaconFrameView.UUID_LENGTH) {
+            long msb = 0;
+            long lsb = 0;
+            for (int i = 0; i < 8; i++) {
+                msb = (msb << 8) | ((byte) uuid.charAt(i) & 0xFFL);
+                lsb = (lsb << 8) | ((byte) uuid.charAt(i + 8) & 0xFFL);
+            }
+            return new BeaconUuidMatcher(msb, lsb);
+        }
+
+        UUID parsed = UUID.fromString(uuid);
+        return new BeaconUuidMatcher(parsed.getMostSignificantBits(), parsed.getLeastSignificantBits());
+    }
+
+    /**
+     * Checks whether the 16 bytes at the given offset are the target UUID.
+     *      [byte], Natural ---> matches() ---> T/F
+     *
+     * @param record The raw scan record.
+     * @param offset Offset of the first UUID byte.
+     * @return true if the UUID matches.
+     */
+    public boolean matches(byte[] record, int offset) {
+        if (record == null || offset < 0 || record.length - offset < IBeaconFrameView.UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < IBeaconFrameView.UUID_LENGTH; i++) {
+            if (record[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether an iBeacon scan record carries the target UUID at the standard offset.
+     *      [byte] ---> matches() ---> T/F
+     *
+     * @param record The raw scan record.
+     * @return true if the record is an iBeacon frame with the target UUID.
+     */
+    public boolean matches(byte[] record) {
+        return IBeaconFrameView.isIBeacon(record) && matches(record, IBeaconFrameView.UUID_OFFSET);
+    }
+
+    /**
+     * Checks whether the frame currently wrapped by the view carries the target UUID.
+     *      IBeaconFrameView ---> matches() ---> T/F
+     *
+     * @param view A view that has successfully wrapped a record.
+     * @return true if the UUID matches.
+     */
+    public boolean matches(IBeaconFrameView view) {
+        return view.isValid() && matches(view.bytes(), IBeaconFrameView.UUID_OFFSET);
+    }
+
+    /**
+     * Returns the 8 most significant bytes of the target UUID.
+     *
+     * @return The high half of the UUID.
+     */
+    public long getMsb() {
+        return msb;
+    }
+
+    /**
+     * Returns the 8 least significant bytes of the target UUID.
+     *
+     * @return The low half of the UUID.
+     */
+    public long getLsb() {
+        return lsb;
+    }
+
+    /**
+     * Returns a copy of the 16-byte key, e.g. to build a scan filter.
+     *
+     * @return The UUID bytes, big endian.
+     */
+    public byte[] getKey() {
+        return key.clone();
+    }
+}
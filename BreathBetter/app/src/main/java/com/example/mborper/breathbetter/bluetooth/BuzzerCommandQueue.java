@@ -0,0 +1,276 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import com.example.mborper.breathbetter.measurements.Clock;
+
+/**
+ * Schedules buzzer commands to the node one at a time over a single advertisement, and confirms
+ * each one by the node's acknowledgement.
+ * <p>
+ * Only one command is in flight at a time. Requests made while it is in flight are coalesced:
+ * only the latest requested state is remembered, and it is sent once the command in flight is
+ * acknowledged or times out, and only if it differs from what the node reported. Rapid toggles
+ * therefore end in a single extra command instead of a burst of advertisements.
+ * <p>
+ * Each command carries an 8-bit ID that the node echoes in its acknowledgement, so a late ack
+ * of an older command is never taken for the current one. The time from advertising a command
+ * to receiving its ack is recorded as its latency.
+ * <p>
+ * Not thread-safe: requests, acks and polls must come from the same thread, e.g. the main one.
+ *
+ * @since 2026-10-18
+ */
+public class BuzzerCommandQueue {
+    public static final long DEFAULT_ACK_TIMEOUT_MS = 3000;
+
+    private static final int NO_STATE = -1;
+
+    /**
+     * Puts the commands on the air, e.g. through an AdvertisingSet that is kept alive.
+     */
+    public interface Transport {
+
+        /**
+         * Advertises the given manufacturer data, replacing whatever was advertised before.
+         *
+         * @param manufacturerData The command frame.
+         */
+        void advertise(byte[] manufacturerData);
+
+        /**
+         * Stops advertising, keeping the transport ready for the next command.
+         */
+        void stopAdvertising();
+    }
+
+    /**
+     * Receives the outcome of each command.
+     */
+    public interface Listener {
+        void onCommandSent(boolean on, int commandId);
+
+        void onCommandAcknowledged(boolean on, long latencyMs);
+
+        void onCommandTimedOut(boolean on);
+    }
+
+    private final Clock clock;
+    private final Transport transport;
+    private final long ackTimeoutMs;
+    private Listener listener;
+
+    private final byte[] frame = new byte[HowsAirFrameCodec.COMMAND_WITH_ID_LENGTH];
+    private int nextId = 1;
+    private int inFlightState = NO_STATE;
+    private int inFlightId;
+    private long sentAtMs;
+    private int desiredState = NO_STATE;
+    private int nodeState = NO_STATE;
+
+    private long sentCount;
+    private long ackedCount;
+    private long timeoutCount;
+    private long coalescedCount;
+    private long lastLatencyMs = -1;
+    private long maxLatencyMs;
+    private long totalLatencyMs;
+
+    /**
+     * Creates a queue.
+     *
+     * @param clock        Source of time for timeouts and latencies.
+     * @param transport    Advertises the commands.
+     * @param ackTimeoutMs How long to wait for an ack before giving up on a command.
+     */
+    public BuzzerCommandQueue(Clock clock, Transport transport, long ackTimeoutMs) {
+        this.clock = clock;
+        this.transport = transport;
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Requests a buzzer state. Sent at once if nothing is in flight, otherwise coalesced with
+     * any other request waiting behind the command in flight.
+     *      T/F ---> request()
+     *
+     * @param on true to turn the buzzer on, false to turn it off.
+     */
+    public void request(boolean on) {
+        int state = on ? HowsAirFrameCodec.BUZZER_ON : HowsAirFrameCodec.BUZZER_OFF;
+        if (inFlightState == NO_STATE) {
+            send(state);
+            return;
+        }
+        if (desiredState != NO_STATE) {
+            coalescedCount++;
+        }
+        desiredState = state;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Handles an acknowledgement seen in a scan. Acks of older commands are ignored.
+     *      Natural, Natural ---> onAck() ---> T/F
+     *
+     * @param state     Buzzer state reported by the node.
+     * @param commandId ID of the acknowledged command.
+     * @return true if it acknowledged the command in flight.
+     */
+    public boolean onAck(int state, int commandId) {
+        if (inFlightState == NO_STATE || commandId != inFlightId) {
+            return false;
+        }
+        long latency = clock.now() - sentAtMs;
+        ackedCount++;
+        lastLatencyMs = latency;
+        maxLatencyMs = Math.max(maxLatencyMs, latency);
+        totalLatencyMs += latency;
+        nodeState = state;
+        boolean on = inFlightState == HowsAirFrameCodec.BUZZER_ON;
+        finishInFlight();
+        if (listener != null) {
+            listener.onCommandAcknowledged(on, latency);
+        }
+        sendDesired();
+        return true;
+    }
+
+    /**
+     * Handles the manufacturer data of a scanned advert, passing it to onAck() if it is an
+     * acknowledgement.
+     *      [byte] ---> onManufacturerData() ---> T/F
+     *
+     * @param data Manufacturer data for HowsAirFrameCodec.COMPANY_ID, may be null.
+     * @return true if it acknowledged the command in flight.
+     */
+    public boolean onManufacturerData(byte[] data) {
+        int ack = HowsAirFrameCodec.decodeBuzzerAck(data, 0, data == null ? 0 : data.length);
+        return ack >= 0 && onAck(ack >>> 8, ack & 0xFF);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Gives up on the command in flight if its ack is overdue, then sends any waiting request.
+     * The owner calls it when the timeout of a sent command elapses.
+     *      poll() ---> T/F
+     *
+     * @return true if a command timed out.
+     */
+    public boolean poll() {
+        if (inFlightState == NO_STATE || clock.now() - sentAtMs < ackTimeoutMs) {
+            return false;
+        }
+        timeoutCount++;
+        boolean on = inFlightState == HowsAirFrameCodec.BUZZER_ON;
+        // What the node is doing is now unknown, so a waiting request is always sent
+        nodeState = NO_STATE;
+        finishInFlight();
+        if (listener != null) {
+            listener.onCommandTimedOut(on);
+        }
+        sendDesired();
+        return true;
+    }
+
+    /**
+     * Drops the command in flight and any waiting request, and stops advertising.
+     */
+    public void cancel() {
+        if (inFlightState != NO_STATE) {
+            finishInFlight();
+        }
+        desiredState = NO_STATE;
+    }
+
+    private void send(int state) {
+        inFlightState = state;
+        inFlightId = nextId;
+        nextId = nextId % 255 + 1;
+        sentAtMs = clock.now();
+        sentCount++;
+        HowsAirFrameCodec.encodeBuzzerCommand((byte) state, inFlightId, frame, 0);
+        transport.advertise(frame.clone());
+        if (listener != null) {
+            listener.onCommandSent(state == HowsAirFrameCodec.BUZZER_ON, inFlightId);
+        }
+    }
+
+    private void sendDesired() {
+        int state = desiredState;
+        desiredState = NO_STATE;
+        if (state != NO_STATE && state != nodeState) {
+            send(state);
+        }
+    }
+
+    private void finishInFlight() {
+        inFlightState = NO_STATE;
+        transport.stopAdvertising();
+    }
+
+    /**
+     * Returns whether a command is waiting for its ack.
+     *
+     * @return true if a command is in flight.
+     */
+    public boolean isInFlight() {
+        return inFlightState != NO_STATE;
+    }
+
+    /**
+     * Returns when the command in flight times out.
+     *      getDeadlineMs() ---> Z
+     *
+     * @return The deadline on the clock, or -1 if nothing is in flight.
+     */
+    public long getDeadlineMs() {
+        return inFlightState == NO_STATE ? -1 : sentAtMs + ackTimeoutMs;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getAckedCount() {
+        return ackedCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * Returns the number of requests replaced by a later one before they were sent.
+     *
+     * @return The coalesced count.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Returns the command-to-ack latency of the last acknowledged command.
+     *
+     * @return The latency in milliseconds, or -1 if no command was acknowledged yet.
+     */
+    public long getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    public long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    /**
+     * Returns the mean command-to-ack latency of all acknowledged commands.
+     *
+     * @return The mean latency in milliseconds, or 0 if none was acknowledged.
+     */
+    public double getMeanLatencyMs() {
+        return ackedCount == 0 ? 0 : (double) totalLatencyMs / ackedCount;
+    }
+}
@@ -2,37 +2,67 @@ package com.example.mborper.breathbetter.bluetooth;
 
 import android.Manifest;
 import android.app.Activity;
+import android.bluetooth.le.AdvertisingSet;
+import android.bluetooth.le.AdvertisingSetCallback;
+import android.bluetooth.le.AdvertisingSetParameters;
 import android.bluetooth.le.BluetoothLeAdvertiser;
-import android.bluetooth.le.AdvertiseSettings;
 import android.bluetooth.le.AdvertiseData;
-import android.bluetooth.le.AdvertiseCallback;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
 import android.bluetooth.BluetoothAdapter;
 import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import java.util.Collections;
+
 /**
  * This class controls the buzzer on the Arduino by sending commands via Bluetooth Low Energy (BLE).
  * <p>
  * It handles permissions and Bluetooth status to ensure BLE advertisements
  * are properly configured and sent to trigger the buzzer.
+ * <p>
+ * The commands go through a BuzzerCommandQueue over a single AdvertisingSet that is started
+ * once and then reused with setAdvertisingData() and enableAdvertising(), so rapid toggles
+ * never collide with an advertisement still running. While a command is in flight a filtered
+ * scan watches for the node's acknowledgement, which confirms delivery and gives the
+ * command-to-ack latency.
  *
  * @author Alejandro Rosado
  * @since 2024-11-08
- * last updated 2024-11-10
+ * last updated 2026-10-18
  */
 public class BuzzerControl {
     private static final String LOG_TAG = "BuzzerControl";
-    private static final byte BUZZER_ON = 0x01;
-    private static final byte BUZZER_OFF = 0x00;
+    private static final byte BUZZER_ON = HowsAirFrameCodec.BUZZER_ON;
+    private static final byte BUZZER_OFF = HowsAirFrameCodec.BUZZER_OFF;
+    // The ack scan is kept a little after each command so a quick toggle does not restart it;
+    // Android throttles apps that start more than five scans in 30 seconds
+    private static final long ACK_SCAN_LINGER_MS = 5000;
 
     private final Activity activity;
     private BluetoothAdapter bluetoothAdapter;
     private BluetoothLeAdvertiser advertiser;
     private Callback callback;
 
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final BuzzerCommandQueue queue;
+    private AdvertisingSet advertisingSet;
+    private boolean setStarting = false;
+    private byte[] currentData;
+    private boolean advertisingWanted = false;
+    private BluetoothLeScanner ackScanner;
+    private boolean ackScanning = false;
+
     /**
      * Callback interface to handle Bluetooth control events.
      */
@@ -41,6 +71,24 @@ public class BuzzerControl {
         void onBluetoothNotSupported();
         void onSuccess();
         void onFailure(String error);
+
+        /**
+         * Called when the node acknowledges a command.
+         *
+         * @param on        The state the command set.
+         * @param latencyMs Time from advertising the command to seeing its ack.
+         */
+        default void onAcknowledged(boolean on, long latencyMs) {
+        }
+
+        /**
+         * Called when a command was not acknowledged in time. Nodes with older firmware never
+         * acknowledge, so the command may still have worked.
+         *
+         * @param on The state the command set.
+         */
+        default void onNotAcknowledged(boolean on) {
+        }
     }
 
     /**
@@ -55,7 +103,11 @@ public class BuzzerControl {
         this.bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         if (bluetoothAdapter != null) {
             this.advertiser = bluetoothAdapter.getBluetoothLeAdvertiser();
+            this.ackScanner = bluetoothAdapter.getBluetoothLeScanner();
         }
+        this.queue = new BuzzerCommandQueue(SystemClock::elapsedRealtime, transport,
+                BuzzerCommandQueue.DEFAULT_ACK_TIMEOUT_MS);
+        this.queue.setListener(queueListener);
     }
 
     /**
@@ -78,6 +130,34 @@ public class BuzzerControl {
         sendBuzzerCommand(BUZZER_OFF);
     }
 
+    /**
+     * Drops any pending command and releases the advertising set and the ack scan. Called when
+     * the owner is destroyed.
+     */
+    public void close() {
+        queue.cancel();
+        handler.removeCallbacksAndMessages(null);
+        stopAckScan();
+        try {
+            if (advertiser != null && (advertisingSet != null || setStarting)) {
+                advertiser.stopAdvertisingSet(advertisingSetCallback);
+            }
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "Permission denied stopping the advertising set: " + e.getMessage());
+        }
+        advertisingSet = null;
+        setStarting = false;
+    }
+
+    /**
+     * Returns the queue the commands go through, with its delivery and latency counters.
+     *
+     * @return The command queue.
+     */
+    public BuzzerCommandQueue getQueue() {
+        return queue;
+    }
+
     /**
      * Sends a command to control the buzzer via BLE advertisement.
      * <p>
@@ -88,8 +168,9 @@ public class BuzzerControl {
      *   <li> Checks for necessary Bluetooth permissions
      *   <li> Confirms Bluetooth is enabled
      * </ul>
-     * The method constructs and sends a manufacturer-specific data packet with the format:
-     * [0xBE, 0xEE, command], where command is either 0x00 (OFF) or 0x01 (ON).
+     * The command is then handed to the queue, which sends a manufacturer-specific data packet
+     * with the format [0xBE, 0xEE, command, commandId], where command is either 0x00 (OFF) or
+     * 0x01 (ON), or coalesces it if another command is still waiting for its ack.
      *
      * @param command the buzzer command to send (BUZZER_ON or BUZZER_OFF)
      */
@@ -109,61 +190,228 @@ public class BuzzerControl {
             return;
         }
 
-        try {
-            AdvertiseSettings settings = new AdvertiseSettings.Builder()
-                    .setAdvertiseMode(AdvertiseSettings.ADVERTISE_MODE_LOW_LATENCY)
-                    .setTxPowerLevel(AdvertiseSettings.ADVERTISE_TX_POWER_HIGH)
-                    .setConnectable(false)
-                    .setTimeout(1000)
-                    .build();
+        queue.request(command == BUZZER_ON);
+    }
+
+    /**
+     * Puts the queued commands on the air through the one advertising set.
+     */
+    private final BuzzerCommandQueue.Transport transport = new BuzzerCommandQueue.Transport() {
+        @Override
+        public void advertise(byte[] manufacturerData) {
+            currentData = manufacturerData;
+            advertisingWanted = true;
+            try {
+                if (advertisingSet != null) {
+                    advertisingSet.setAdvertisingData(buildData(manufacturerData));
+                    advertisingSet.enableAdvertising(true, 0, 0);
+                } else if (!setStarting) {
+                    AdvertisingSetParameters parameters = new AdvertisingSetParameters.Builder()
+                            .setLegacyMode(true)
+                            .setConnectable(false)
+                            .setScannable(false)
+                            .setInterval(AdvertisingSetParameters.INTERVAL_MIN)
+                            .setTxPowerLevel(AdvertisingSetParameters.TX_POWER_HIGH)
+                            .build();
+                    setStarting = true;
+                    advertiser.startAdvertisingSet(parameters, buildData(manufacturerData),
+                            null, null, null, advertisingSetCallback);
+                }
+                // While the set is starting, the latest data is applied once it has started
+            } catch (SecurityException e) {
+                callback.onFailure("Permission denied: " + e.getMessage());
+            }
+            startAckScan();
+            handler.removeCallbacks(ackTimeoutRunnable);
+            handler.postDelayed(ackTimeoutRunnable, BuzzerCommandQueue.DEFAULT_ACK_TIMEOUT_MS);
+        }
+
+        @Override
+        public void stopAdvertising() {
+            advertisingWanted = false;
+            handler.removeCallbacks(ackTimeoutRunnable);
+            try {
+                if (advertisingSet != null) {
+                    advertisingSet.enableAdvertising(false, 0, 0);
+                }
+            } catch (SecurityException e) {
+                Log.e(LOG_TAG, "Permission denied stopping advertising: " + e.getMessage());
+            }
+            handler.removeCallbacks(stopAckScanRunnable);
+            handler.postDelayed(stopAckScanRunnable, ACK_SCAN_LINGER_MS);
+        }
+    };
+
+    private AdvertiseData buildData(byte[] manufacturerData) {
+        return new AdvertiseData.Builder()
+                .addManufacturerData(HowsAirFrameCodec.COMPANY_ID, manufacturerData)
+                .build();
+    }
+
+    /**
+     * Forwards the outcome of each command to the callback.
+     */
+    private final BuzzerCommandQueue.Listener queueListener = new BuzzerCommandQueue.Listener() {
+        @Override
+        public void onCommandSent(boolean on, int commandId) {
+            Log.d(LOG_TAG, "Command " + commandId + " sent: buzzer " + (on ? "on" : "off"));
+        }
+
+        @Override
+        public void onCommandAcknowledged(boolean on, long latencyMs) {
+            Log.d(LOG_TAG, "Buzzer " + (on ? "on" : "off") + " acknowledged in " + latencyMs
+                    + " ms (mean " + Math.round(queue.getMeanLatencyMs()) + " ms)");
+            callback.onAcknowledged(on, latencyMs);
+        }
 
-            byte[] manufacturerData = new byte[]{
-                    (byte)0xBE, (byte)0xEE, // Identifier
-                    command  // Command to activate/deactivate
-            };
+        @Override
+        public void onCommandTimedOut(boolean on) {
+            Log.w(LOG_TAG, "Buzzer " + (on ? "on" : "off") + " not acknowledged");
+            callback.onNotAcknowledged(on);
+        }
+    };
 
-            AdvertiseData data = new AdvertiseData.Builder()
-                    .addManufacturerData(0x0000, manufacturerData)
-                    .build();
+    private final Runnable ackTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            queue.poll();
+            handler.removeCallbacks(this);
+            long deadline = queue.getDeadlineMs();
+            if (deadline >= 0) {
+                handler.postDelayed(this, Math.max(0, deadline - SystemClock.elapsedRealtime()));
+            }
+        }
+    };
 
-            advertiser.startAdvertising(settings, data, advertiseCallback);
+    private final Runnable stopAckScanRunnable = this::stopAckScan;
 
+    /**
+     * Starts the scan for acknowledgements, filtered in the controller to HowsAir ack frames.
+     */
+    private void startAckScan() {
+        handler.removeCallbacks(stopAckScanRunnable);
+        if (ackScanning || ackScanner == null) {
+            return;
+        }
+        byte[] prefix = {HowsAirFrameCodec.IDENTIFIER_0, HowsAirFrameCodec.IDENTIFIER_1,
+                HowsAirFrameCodec.FRAME_TYPE_BUZZER_ACK};
+        byte[] mask = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+        ScanFilter filter = new ScanFilter.Builder()
+                .setManufacturerData(HowsAirFrameCodec.COMPANY_ID, prefix, mask)
+                .build();
+        ScanSettings settings = new ScanSettings.Builder()
+                .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+                .build();
+        try {
+            ackScanner.startScan(Collections.singletonList(filter), settings, ackScanCallback);
+            ackScanning = true;
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "Permission denied starting the ack scan: " + e.getMessage());
+        }
+    }
+
+    private void stopAckScan() {
+        if (!ackScanning) {
+            return;
+        }
+        try {
+            ackScanner.stopScan(ackScanCallback);
         } catch (SecurityException e) {
-            callback.onFailure("Permission denied: " + e.getMessage());
+            Log.e(LOG_TAG, "Permission denied stopping the ack scan: " + e.getMessage());
         }
+        ackScanning = false;
     }
 
+    /**
+     * Passes the acknowledgements seen in scans to the queue.
+     */
+    private final ScanCallback ackScanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            ScanRecord record = result.getScanRecord();
+            if (record != null) {
+                queue.onManufacturerData(
+                        record.getManufacturerSpecificData(HowsAirFrameCodec.COMPANY_ID));
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            ackScanning = false;
+            Log.e(LOG_TAG, "Ack scan failed with error code: " + errorCode);
+        }
+    };
 
     /**
-     * Callback to handle the result of the BLE advertisement start operation.
+     * Callback to handle the lifecycle of the advertising set.
      */
-    private final AdvertiseCallback advertiseCallback = new AdvertiseCallback() {
+    private final AdvertisingSetCallback advertisingSetCallback = new AdvertisingSetCallback() {
         @Override
-        public void onStartSuccess(AdvertiseSettings settingsInEffect) {
+        public void onAdvertisingSetStarted(AdvertisingSet set, int txPower, int status) {
+            setStarting = false;
+            if (status != ADVERTISE_SUCCESS) {
+                queue.cancel();
+                callback.onFailure(describeError(status));
+                return;
+            }
+            advertisingSet = set;
+            try {
+                // Catch up with commands coalesced or cancelled while the set was starting
+                if (!advertisingWanted) {
+                    set.enableAdvertising(false, 0, 0);
+                } else if (currentData != null) {
+                    set.setAdvertisingData(buildData(currentData));
+                }
+            } catch (SecurityException e) {
+                callback.onFailure("Permission denied: " + e.getMessage());
+                return;
+            }
             callback.onSuccess();
         }
 
         @Override
-        public void onStartFailure(int errorCode) {
-            String errorMessage = "Advertisement failed with error code: " + errorCode;
-            switch (errorCode) {
-                case ADVERTISE_FAILED_ALREADY_STARTED:
-                    errorMessage = "Advertisement already started";
-                    break;
-                case ADVERTISE_FAILED_DATA_TOO_LARGE:
-                    errorMessage = "Advertisement data too large";
-                    break;
-                case ADVERTISE_FAILED_FEATURE_UNSUPPORTED:
-                    errorMessage = "Advertisement feature unsupported";
-                    break;
-                case ADVERTISE_FAILED_INTERNAL_ERROR:
-                    errorMessage = "Internal advertising error";
-                    break;
-                case ADVERTISE_FAILED_TOO_MANY_ADVERTISERS:
-                    errorMessage = "Too many advertisers";
-                    break;
+        public void onAdvertisingDataSet(AdvertisingSet set, int status) {
+            if (status != ADVERTISE_SUCCESS) {
+                callback.onFailure(describeError(status));
+            }
+        }
+
+        @Override
+        public void onAdvertisingEnabled(AdvertisingSet set, boolean enable, int status) {
+            if (status != ADVERTISE_SUCCESS) {
+                callback.onFailure(describeError(status));
+            } else if (enable) {
+                callback.onSuccess();
+            }
+        }
+
+        @Override
+        public void onAdvertisingSetStopped(AdvertisingSet set) {
+            if (advertisingSet == set) {
+                advertisingSet = null;
             }
-            callback.onFailure(errorMessage);
         }
     };
+
+    private static String describeError(int errorCode) {
+        String errorMessage = "Advertisement failed with error code: " + errorCode;
+        switch (errorCode) {
+            case AdvertisingSetCallback.ADVERTISE_FAILED_ALREADY_STARTED:
+                errorMessage = "Advertisement already started";
+                break;
+            case AdvertisingSetCallback.ADVERTISE_FAILED_DATA_TOO_LARGE:
+                errorMessage = "Advertisement data too large";
+                break;
+            case AdvertisingSetCallback.ADVERTISE_FAILED_FEATURE_UNSUPPORTED:
+                errorMessage = "Advertisement feature unsupported";
+                break;
+            case AdvertisingSetCallback.ADVERTISE_FAILED_INTERNAL_ERROR:
+                errorMessage = "Internal advertising error";
+                break;
+            case AdvertisingSetCallback.ADVERTISE_FAILED_TOO_MANY_ADVERTISERS:
+                errorMessage = "Too many advertisers";
+                break;
+        }
+        return errorMessage;
+    }
 }
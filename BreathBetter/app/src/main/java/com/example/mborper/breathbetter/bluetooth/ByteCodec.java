@@ -0,0 +1,215 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Primitive readers and writers for the fixed-width fields of BLE adverts.
+ * <p>
+ * Every method reads in place at an offset, so no intermediate array or BigInteger is built,
+ * and the signedness is in the name: uN readers return the unsigned value in a wider type,
+ * sN and iN readers sign-extend. Multi-byte values are big endian unless the name ends in LE,
+ * as used by the company ID and 16-bit service UUIDs of the AD structures.
+ *
+ * @since 2026-10-18
+ */
+public final class ByteCodec {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ByteCodec() {
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads an unsigned byte.
+     *      [byte], Natural ---> u8() ---> Natural
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the byte.
+     * @return A value between 0 and 255.
+     */
+    public static int u8(byte[] bytes, int offset) {
+        return bytes[offset] & 0xFF;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads an unsigned big-endian 16-bit value.
+     *      [byte], Natural ---> u16BE() ---> Natural
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the most significant byte.
+     * @return A value between 0 and 65535.
+     */
+    public static int u16BE(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads a signed big-endian 16-bit value.
+     *      [byte], Natural ---> s16BE() ---> Z
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the most significant byte.
+     * @return A value between -32768 and 32767.
+     */
+    public static int s16BE(byte[] bytes, int offset) {
+        return (bytes[offset] << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads an unsigned little-endian 16-bit value.
+     *      [byte], Natural ---> u16LE() ---> Natural
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the least significant byte.
+     * @return A value between 0 and 65535.
+     */
+    public static int u16LE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads an unsigned big-endian 32-bit value.
+     *      [byte], Natural ---> u32BE() ---> Natural
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the most significant byte.
+     * @return A value between 0 and 2^32 - 1.
+     */
+    public static long u32BE(byte[] bytes, int offset) {
+        return s32BE(bytes, offset) & 0xFFFFFFFFL;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads a signed big-endian 32-bit value.
+     *      [byte], Natural ---> s32BE() ---> Z
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the most significant byte.
+     * @return The two's complement value.
+     */
+    public static int s32BE(byte[] bytes, int offset) {
+        return (bytes[offset] << 24)
+                | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8)
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads a signed big-endian 64-bit value.
+     *      [byte], Natural ---> i64BE() ---> Z
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the most significant byte.
+     * @return The two's complement value.
+     */
+    public static long i64BE(byte[] bytes, int offset) {
+        return ((long) s32BE(bytes, offset) << 32) | (s32BE(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads a signed big-endian value of 1 to 8 bytes, sign-extending from its first byte.
+     *      [byte], Natural, Natural ---> signedBE() ---> Z
+     *
+     * @param bytes  Source array.
+     * @param offset Offset of the most significant byte.
+     * @param length Number of bytes, 1 to 8.
+     * @return The two's complement value.
+     */
+    public static long signedBE(byte[] bytes, int offset, int length) {
+        if (length < 1 || length > 8) {
+            throw new IllegalArgumentException("Length must be between 1 and 8: " + length);
+        }
+        long value = bytes[offset]; // sign extension comes from the first byte
+        for (int i = 1; i < length; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Writes a big-endian 16-bit value.
+     *      [byte], Natural, Z ---> writeU16BE()
+     *
+     * @param bytes  Destination array.
+     * @param offset Offset of the most significant byte.
+     * @param value  The value; only its low 16 bits are written.
+     */
+    public static void writeU16BE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 8);
+        bytes[offset + 1] = (byte) value;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Writes a big-endian 32-bit value.
+     *      [byte], Natural, Z ---> writeU32BE()
+     *
+     * @param bytes  Destination array.
+     * @param offset Offset of the most significant byte.
+     * @param value  The value; only its low 32 bits are written.
+     */
+    public static void writeU32BE(byte[] bytes, int offset, long value) {
+        writeU16BE(bytes, offset, (int) (value >>> 16));
+        writeU16BE(bytes, offset + 2, (int) value);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Writes a big-endian 64-bit value.
+     *      [byte], Natural, Z ---> writeI64BE()
+     *
+     * @param bytes  Destination array.
+     * @param offset Offset of the most significant byte.
+     * @param value  The value.
+     */
+    public static void writeI64BE(byte[] bytes, int offset, long value) {
+        writeU32BE(bytes, offset, value >>> 32);
+        writeU32BE(bytes, offset + 4, value);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Appends the bytes as lowercase hex pairs, each followed by the separator, using a lookup
+     * table instead of formatting every byte.
+     *      [byte], Natural, Natural, Char, StringBuilder ---> appendHex()
+     *
+     * @param bytes     Source array.
+     * @param offset    First byte.
+     * @param length    Number of bytes.
+     * @param separator Character written after each pair, or 0 for none.
+     * @param out       Where the text is appended.
+     */
+    public static void appendHex(byte[] bytes, int offset, int length, char separator, StringBuilder out) {
+        for (int i = offset; i < offset + length; i++) {
+            int b = bytes[i] & 0xFF;
+            out.append(HEX_DIGITS[b >>> 4]).append(HEX_DIGITS[b & 0x0F]);
+            if (separator != 0) {
+                out.append(separator);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Converts the bytes to lowercase hex pairs, each followed by the separator.
+     *      [byte], Char ---> toHex() ---> Texto hexadecimal
+     *
+     * @param bytes     Source array.
+     * @param separator Character written after each pair, or 0 for none.
+     * @return The hexadecimal text, empty for null.
+     */
+    public static String toHex(byte[] bytes, char separator) {
+        if (bytes == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(bytes.length * (separator != 0 ? 3 : 2));
+        appendHex(bytes, 0, bytes.length, separator, sb);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Decoder for unencrypted Eddystone-TLM telemetry frames (service data of UUID 0xFEAA).
+ * <p>
+ * Payload after the service UUID, all big endian:
+ * <pre>
+ *   0      frame type (0x20)
+ *   1      version (0x00)
+ *   2..3   battery voltage, mV (0 if not supported)
+ *   4..5   temperature, signed 8.8 fixed point °C (0x8000 if not supported)
+ *   6..9   advertising PDU count since boot
+ *   10..13 time since boot, in 0.1 s
+ * </pre>
+ *
+ * @since 2026-10-18
+ */
+public class EddystoneTlmDecoder implements BeaconDecoder {
+    public static final int EDDYSTONE_SERVICE_UUID = 0xFEAA;
+    public static final byte FRAME_TYPE_TLM = 0x20;
+    public static final byte TLM_VERSION = 0x00;
+
+    private static final int PAYLOAD_LENGTH = 14;
+    private static final int TEMPERATURE_NOT_SUPPORTED = 0x8000;
+
+    @Override
+    public boolean decode(byte[] record, int from, int to, BeaconReading out) {
+        if (to - from < PAYLOAD_LENGTH
+                || record[from] != FRAME_TYPE_TLM
+                || record[from + 1] != TLM_VERSION) {
+            return false;
+        }
+
+        out.format = BeaconFormat.EDDYSTONE_TLM;
+
+        int millivolts = ByteCodec.u16BE(record, from + 2);
+        if (millivolts != 0) {
+            out.batteryMillivolts = millivolts;
+        }
+        if (ByteCodec.u16BE(record, from + 4) != TEMPERATURE_NOT_SUPPORTED) {
+            out.temperatureCelsius = ByteCodec.s16BE(record, from + 4) / 256f;
+        }
+        out.advertCount = ByteCodec.u32BE(record, from + 6);
+        out.uptimeDeciseconds = ByteCodec.u32BE(record, from + 10);
+        return true;
+    }
+}
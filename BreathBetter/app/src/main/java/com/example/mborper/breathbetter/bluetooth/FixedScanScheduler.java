@@ -0,0 +1,68 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * ScanScheduler with a constant duty cycle: a scan window of fixed length every fixed period,
+ * regardless of conditions. With the defaults it reproduces the original 1 s scan every 10 s.
+ *
+ * @since 2026-10-18
+ */
+public class FixedScanScheduler implements ScanScheduler {
+    public static final long DEFAULT_SCAN_PERIOD = 1000;  // The time in milliseconds to scan for BLE devices
+    public static final long DEFAULT_SCAN_INTERVAL = 10000; // The interval between scans
+
+    private final long scanPeriod;
+    private final long scanInterval;
+
+    /**
+     * Creates a scheduler with the default 1 s every 10 s duty cycle.
+     */
+    public FixedScanScheduler() {
+        this(DEFAULT_SCAN_PERIOD, DEFAULT_SCAN_INTERVAL);
+    }
+
+    /**
+     * Creates a scheduler with a custom duty cycle.
+     *
+     * @param scanPeriod   Length of each scan window in milliseconds.
+     * @param scanInterval Time between the starts of two windows in milliseconds.
+     */
+    public FixedScanScheduler(long scanPeriod, long scanInterval) {
+        if (scanPeriod <= 0 || scanInterval < scanPeriod) {
+            throw new IllegalArgumentException("Invalid duty cycle: " + scanPeriod + "/" + scanInterval);
+        }
+        this.scanPeriod = scanPeriod;
+        this.scanInterval = scanInterval;
+    }
+
+    @Override
+    public void updateConditions(boolean moving, int batteryPercent, boolean screenOn) {
+        // Fixed duty cycle ignores conditions
+    }
+
+    @Override
+    public void onWindowStarted() {
+    }
+
+    @Override
+    public void onTargetReceived(long receivedAtMs) {
+    }
+
+    @Override
+    public void onWindowEnded() {
+    }
+
+    @Override
+    public long getScanWindowMs() {
+        return scanPeriod;
+    }
+
+    @Override
+    public boolean shouldEndWindowEarly() {
+        return false;
+    }
+
+    @Override
+    public long getNextDelayMs() {
+        return scanInterval - scanPeriod;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import com.example.mborper.breathbetter.measurements.ConnectionStateEngine;
+import com.example.mborper.breathbetter.measurements.GasAlertManager;
+import com.example.mborper.breathbetter.measurements.WindowSummary;
+
+import java.util.List;
+
+/**
+ * Service-thread half of gateway mode, where one phone or tablet collects from a whole set of
+ * HowsAir nodes at once.
+ * <p>
+ * The registered UUIDs are kept in a NodeUuidIndex, which ScanIngestor uses on the Bluetooth
+ * thread to tag each advert with its node. Here every tagged record goes in O(1) to that node's
+ * own BeaconPipeline, so deduplication, validation, signal tracking and aggregation never mix
+ * nodes. When the window closes, each node heard gets its own summary, its connection state is
+ * refreshed in the shared ConnectionStateEngine and a danger level is flagged for alerting.
+ * Every node is registered in the engine as soon as the router is created, so a node that is
+ * dead from the start is lost at its first deadline like any other.
+ * <p>
+ * Not thread-safe: records and window closes must come from the service thread.
+ *
+ * @since 2026-10-18
+ */
+public class GatewayRouter implements ScanRecordRing.NodeRecordHandler {
+
+    /**
+     * Receives the summary of every node heard in a window, with the node's sequence number
+     * of its newest reading.
+     */
+    public interface SummaryListener {
+        void onNodeSummary(String nodeId, WindowSummary summary, int sequence, boolean alert);
+    }
+
+    private final NodeUuidIndex index = new NodeUuidIndex();
+    private final BeaconPipeline[] pipelines;
+    private final ConnectionStateEngine connections;
+
+    private long routedCount;
+
+    /**
+     * Creates a router for a set of nodes, lost after the engine's default timeout.
+     *
+     * @param nodeUuids   UUIDs of the nodes, in any format BeaconUuidMatcher.forTarget() accepts.
+     *                    Repeated UUIDs are registered once.
+     * @param connections Engine tracking the connection of each node by UUID; may be null.
+     * @throws IllegalArgumentException if a UUID is malformed.
+     */
+    public GatewayRouter(List<String> nodeUuids, ConnectionStateEngine connections) {
+        this(nodeUuids, connections, 0);
+    }
+
+    /**
+     * Creates a router for a set of nodes and registers them all in the engine as just seen.
+     *
+     * @param nodeUuids   UUIDs of the nodes, in any format BeaconUuidMatcher.forTarget() accepts.
+     *                    Repeated UUIDs are registered once.
+     * @param connections Engine tracking the connection of each node by UUID; may be null.
+     * @param timeoutMs   Silence after which a node is lost; 0 for the engine's default.
+     * @throws IllegalArgumentException if a UUID is malformed.
+     */
+    public GatewayRouter(List<String> nodeUuids, ConnectionStateEngine connections, long timeoutMs) {
+        for (String uuid : nodeUuids) {
+            index.add(uuid);
+        }
+        this.pipelines = new BeaconPipeline[index.size()];
+        for (int i = 0; i < pipelines.length; i++) {
+            pipelines[i] = new BeaconPipeline();
+        }
+        this.connections = connections;
+        if (connections != null) {
+            for (int node = 0; node < pipelines.length; node++) {
+                if (timeoutMs > 0) {
+                    connections.nodeSeen(index.getUuid(node), timeoutMs);
+                } else {
+                    connections.nodeSeen(index.getUuid(node));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops tracking the connection of every node, when the gateway is reconfigured or stops.
+     */
+    public void release() {
+        if (connections == null) {
+            return;
+        }
+        for (int node = 0; node < pipelines.length; node++) {
+            connections.remove(index.getUuid(node));
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Routes one record to the pipeline of the node that sent it.
+     *      Natural, Natural, Natural, Natural, Z, Z ---> onNodeRecord()
+     */
+    @Override
+    public void onNodeRecord(int node, long timestampNanos, int major, int minor, int rssi, int txPower) {
+        routedCount++;
+        pipelines[node].onRecord(timestampNanos, major, minor, rssi, txPower);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Closes the window of every node and reports the summary of each node heard in it.
+     *      SummaryListener ---> closeWindows() ---> Natural
+     *
+     * @param listener Receives each summary.
+     * @return The number of nodes heard in the window.
+     */
+    public int closeWindows(SummaryListener listener) {
+        int heard = 0;
+        for (int node = 0; node < pipelines.length; node++) {
+            WindowSummary summary = pipelines[node].closeWindow();
+            if (summary == null) {
+                continue;
+            }
+            heard++;
+            String nodeId = index.getUuid(node);
+            if (connections != null) {
+                connections.nodeSeen(nodeId);
+            }
+            listener.onNodeSummary(nodeId, summary,
+                    pipelines[node].getSequenceWindow().getHighestSequence(),
+                    summary.getMedian() > GasAlertManager.PPM_DANGER_THRESHOLD);
+        }
+        return heard;
+    }
+
+    /**
+     * Tells every node's pipeline the scanner starts a new listening window after sleeping.
+     */
+    public void onListeningResumed() {
+        for (BeaconPipeline pipeline : pipelines) {
+            pipeline.onListeningResumed();
+        }
+    }
+
+    /**
+     * Returns the index the ingestor routes adverts with.
+     *
+     * @return The UUID index.
+     */
+    public NodeUuidIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the pipeline of a node, with its sequence, signal and window state.
+     *
+     * @param node The node index.
+     * @return The node's pipeline.
+     */
+    public BeaconPipeline getPipeline(int node) {
+        return pipelines[node];
+    }
+
+    public int getNodeCount() {
+        return pipelines.length;
+    }
+
+    public long getRoutedCount() {
+        return routedCount;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * HistorySyncTransport over a BluetoothGatt connection to the node.
+ * <p>
+ * The GATT callbacks arrive on a Binder thread; every one is re-posted to the given handler,
+ * so the HistorySyncClient runs on a single thread. The connection asks for high priority,
+ * i.e. a short connection interval, while the history streams, and is closed on disconnect.
+ *
+ * @since 2026-10-18
+ */
+public class GattHistoryTransport implements HistorySyncTransport {
+    private static final String LOG_TAG = "GattHistoryTransport";
+
+    private final Context context;
+    private final BluetoothDevice device;
+    private final Handler handler;
+    private Listener listener;
+
+    private BluetoothGatt gatt;
+    private BluetoothGattCharacteristic controlPoint;
+    private BluetoothGattCharacteristic data;
+
+    /**
+     * Creates a transport to a node.
+     *
+     * @param context Context to connect from.
+     * @param device  The node, e.g. taken from its scan result.
+     * @param handler Handler of the thread that drives the client.
+     */
+    public GattHistoryTransport(Context context, BluetoothDevice device, Handler handler) {
+        this.context = context;
+        this.device = device;
+        this.handler = handler;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void connect() {
+        try {
+            gatt = device.connectGatt(context, false, gattCallback, BluetoothDevice.TRANSPORT_LE);
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "Permission denied connecting: " + e.getMessage());
+            gatt = null;
+        }
+        if (gatt == null) {
+            handler.post(() -> listener.onDisconnected());
+        }
+    }
+
+    @Override
+    public void requestMtu(int mtu) {
+        try {
+            if (!gatt.requestMtu(mtu)) {
+                handler.post(() -> listener.onMtuChanged(HistorySyncProtocol.DEFAULT_MTU));
+            }
+        } catch (SecurityException e) {
+            fail("Permission denied requesting the MTU: " + e.getMessage());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void enableNotifications() {
+        try {
+            BluetoothGattDescriptor cccd = data.getDescriptor(HistorySyncProtocol.CCCD_UUID);
+            if (cccd == null || !gatt.setCharacteristicNotification(data, true)) {
+                fail("Cannot enable history notifications");
+                return;
+            }
+            byte[] value = BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                gatt.writeDescriptor(cccd, value);
+            } else {
+                cccd.setValue(value);
+                gatt.writeDescriptor(cccd);
+            }
+        } catch (SecurityException e) {
+            fail("Permission denied enabling notifications: " + e.getMessage());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void writeControl(byte[] value) {
+        try {
+            int writeType = BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                gatt.writeCharacteristic(controlPoint, value, writeType);
+            } else {
+                controlPoint.setWriteType(writeType);
+                controlPoint.setValue(value);
+                gatt.writeCharacteristic(controlPoint);
+            }
+        } catch (SecurityException e) {
+            fail("Permission denied writing the control point: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (gatt == null) {
+            return;
+        }
+        try {
+            gatt.disconnect();
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "Permission denied disconnecting: " + e.getMessage());
+            closeGatt();
+            handler.post(() -> listener.onDisconnected());
+        }
+    }
+
+    @Override
+    public void close() {
+        closeGatt();
+    }
+
+    private void fail(String error) {
+        Log.e(LOG_TAG, error);
+        disconnect();
+    }
+
+    private void closeGatt() {
+        if (gatt == null) {
+            return;
+        }
+        try {
+            gatt.close();
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "Permission denied closing: " + e.getMessage());
+        }
+        gatt = null;
+    }
+
+    /**
+     * Re-posts the GATT events to the client's thread.
+     */
+    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt g, int status, int newState) {
+            handler.post(() -> {
+                if (newState == BluetoothProfile.STATE_CONNECTED) {
+                    try {
+                        g.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+                        if (!g.discoverServices()) {
+                            fail("Service discovery could not start");
+                        }
+                    } catch (SecurityException e) {
+                        fail("Permission denied discovering services: " + e.getMessage());
+                    }
+                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                    closeGatt();
+                    listener.onDisconnected();
+                }
+            });
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt g, int status) {
+            handler.post(() -> {
+                BluetoothGattService service = g.getService(HistorySyncProtocol.SERVICE_UUID);
+                if (status != BluetoothGatt.GATT_SUCCESS || service == null) {
+                    fail("Node has no history service");
+                    return;
+                }
+                controlPoint = service.getCharacteristic(HistorySyncProtocol.CONTROL_POINT_UUID);
+                data = service.getCharacteristic(HistorySyncProtocol.DATA_UUID);
+                if (controlPoint == null || data == null) {
+                    fail("History service is incomplete");
+                    return;
+                }
+                listener.onConnected();
+            });
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt g, int mtu, int status) {
+            int negotiated = status == BluetoothGatt.GATT_SUCCESS ? mtu : HistorySyncProtocol.DEFAULT_MTU;
+            handler.post(() -> listener.onMtuChanged(negotiated));
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt g, BluetoothGattDescriptor descriptor, int status) {
+            handler.post(() -> {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    listener.onNotificationsEnabled();
+                } else {
+                    fail("Enabling history notifications failed: " + status);
+                }
+            });
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic characteristic,
+                                            byte[] value) {
+            // Android 13 and later; the value array belongs to this call
+            handler.post(() -> listener.onNotification(value));
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic characteristic) {
+            // Before Android 13 the characteristic is reused, so its value is copied here
+            byte[] value = characteristic.getValue().clone();
+            handler.post(() -> listener.onNotification(value));
+        }
+    };
+}
@@ -0,0 +1,28 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Local store the node's history is synced into.
+ * <p>
+ * Records arrive in increasing sequence order through onRecord(); commit() makes everything
+ * received so far durable. HistorySyncClient only acknowledges a sequence to the node after
+ * committing it, and resumes the next sync after the committed sequence, so a record can be
+ * delivered twice after a crash but is never lost.
+ *
+ * @since 2026-10-18
+ */
+public interface HistorySink extends HistorySyncProtocol.RecordHandler {
+
+    /**
+     * Makes the records received so far durable.
+     *
+     * @param lastSequence Sequence of the last record received.
+     */
+    void commit(long lastSequence);
+
+    /**
+     * Returns the last sequence committed, where the next sync resumes.
+     *
+     * @return The sequence, or -1 if nothing was ever committed.
+     */
+    long getCommittedSequence();
+}
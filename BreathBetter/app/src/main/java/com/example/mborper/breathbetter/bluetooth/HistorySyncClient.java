@@ -0,0 +1,257 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import com.example.mborper.breathbetter.measurements.Clock;
+
+/**
+ * Pulls the readings the node buffered while no phone was listening, over a
+ * HistorySyncTransport, into a HistorySink.
+ * <p>
+ * One sync runs through connect, MTU exchange, enabling notifications and streaming: the client
+ * asks for everything after the sink's committed sequence and the node notifies packets with as
+ * many records as the MTU allows. Every ackInterval records, and at the end, the sink commits
+ * and the client acknowledges the last sequence to the node. If the link drops halfway, what
+ * arrived is still committed, and the next sync resumes right after it. Records at or below
+ * the last sequence seen are dropped, so a node that resends after a resume does no harm.
+ * <p>
+ * Not thread-safe: start(), abort(), close() and the transport callbacks must all come from
+ * one thread.
+ *
+ * @since 2026-10-18
+ */
+public class HistorySyncClient implements HistorySyncTransport.Listener, HistorySyncProtocol.RecordHandler {
+    public static final int DEFAULT_ACK_INTERVAL = 256;
+
+    /**
+     * Steps of a sync.
+     */
+    public enum State {
+        IDLE, CONNECTING, NEGOTIATING_MTU, SUBSCRIBING, STREAMING, DISCONNECTING
+    }
+
+    /**
+     * Receives the outcome of each sync.
+     */
+    public interface SyncListener {
+
+        /**
+         * Called when the link of a sync is down.
+         *
+         * @param complete     Whether the node reported the end of its buffer.
+         * @param records      New records stored during the sync.
+         * @param lastSequence Last sequence committed to the sink, -1 if none.
+         * @param elapsedMs    Duration of the sync.
+         */
+        void onSyncFinished(boolean complete, long records, long lastSequence, long elapsedMs);
+    }
+
+    private final HistorySyncTransport transport;
+    private final HistorySink sink;
+    private final Clock clock;
+    private final int ackInterval;
+    private SyncListener listener;
+
+    private final byte[] control = new byte[HistorySyncProtocol.CONTROL_LENGTH];
+    private State state = State.IDLE;
+    private int mtu = HistorySyncProtocol.DEFAULT_MTU;
+    private long startedAtMs;
+    private long lastSequence;
+    private long committedSequence;
+    private int uncommitted;
+    private boolean complete;
+
+    private long recordCount;
+    private long packetCount;
+    private long duplicateCount;
+    private long ackCount;
+
+    /**
+     * Creates a client.
+     *
+     * @param transport   Link to the node.
+     * @param sink        Store the records go into; its committed sequence is the resume point.
+     * @param clock       Source of time for the sync duration.
+     * @param ackInterval Records between acknowledgements.
+     */
+    public HistorySyncClient(HistorySyncTransport transport, HistorySink sink, Clock clock, int ackInterval) {
+        this.transport = transport;
+        this.sink = sink;
+        this.clock = clock;
+        this.ackInterval = ackInterval;
+        transport.setListener(this);
+    }
+
+    public void setSyncListener(SyncListener listener) {
+        this.listener = listener;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Starts a sync, unless one is already running.
+     *      start() ---> T/F
+     *
+     * @return true if a sync was started.
+     */
+    public boolean start() {
+        if (state != State.IDLE) {
+            return false;
+        }
+        committedSequence = sink.getCommittedSequence();
+        lastSequence = committedSequence;
+        uncommitted = 0;
+        complete = false;
+        recordCount = 0;
+        packetCount = 0;
+        duplicateCount = 0;
+        ackCount = 0;
+        mtu = HistorySyncProtocol.DEFAULT_MTU;
+        startedAtMs = clock.now();
+        state = State.CONNECTING;
+        transport.connect();
+        return true;
+    }
+
+    /**
+     * Ends the running sync, e.g. when it takes too long. What arrived so far is kept.
+     * <p>
+     * The first call asks the transport to disconnect. A link torn down while still connecting
+     * may never report it, so a call while already DISCONNECTING gives up waiting and close()s.
+     */
+    public void abort() {
+        if (state == State.DISCONNECTING) {
+            close();
+        } else if (state != State.IDLE) {
+            state = State.DISCONNECTING;
+            transport.disconnect();
+        }
+    }
+
+    /**
+     * Ends the running sync at once and releases the link, e.g. when the service stops. What
+     * arrived so far is committed, as when the link drops.
+     */
+    public void close() {
+        transport.close();
+        onDisconnected();
+    }
+
+    @Override
+    public void onConnected() {
+        if (state == State.CONNECTING) {
+            state = State.NEGOTIATING_MTU;
+            transport.requestMtu(HistorySyncProtocol.MAX_MTU);
+        }
+    }
+
+    @Override
+    public void onMtuChanged(int mtu) {
+        if (state == State.NEGOTIATING_MTU) {
+            this.mtu = mtu;
+            state = State.SUBSCRIBING;
+            transport.enableNotifications();
+        }
+    }
+
+    @Override
+    public void onNotificationsEnabled() {
+        if (state == State.SUBSCRIBING) {
+            state = State.STREAMING;
+            HistorySyncProtocol.encodeControl(HistorySyncProtocol.OP_START, committedSequence + 1, control, 0);
+            transport.writeControl(control.clone());
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Stores the records of a RECORDS packet, acknowledging every ackInterval records, or
+     * finishes the sync on the END packet.
+     *      [byte] ---> onNotification()
+     */
+    @Override
+    public void onNotification(byte[] value) {
+        if (state != State.STREAMING) {
+            return;
+        }
+        if (HistorySyncProtocol.decodeRecords(value, this) >= 0) {
+            packetCount++;
+            if (uncommitted >= ackInterval) {
+                commitAndAck();
+            }
+        } else if (HistorySyncProtocol.decodeEnd(value) >= 0) {
+            commitAndAck();
+            complete = true;
+            state = State.DISCONNECTING;
+            transport.disconnect();
+        }
+    }
+
+    @Override
+    public void onRecord(long sequence, long timestampMs, float o3Ppm, float coPpm, float no2Ppm) {
+        if (sequence <= lastSequence) {
+            duplicateCount++;
+            return;
+        }
+        lastSequence = sequence;
+        uncommitted++;
+        recordCount++;
+        sink.onRecord(sequence, timestampMs, o3Ppm, coPpm, no2Ppm);
+    }
+
+    @Override
+    public void onDisconnected() {
+        if (state == State.IDLE) {
+            return;
+        }
+        // The node was not told, but the records are valid: keep them and resume after them
+        if (uncommitted > 0) {
+            sink.commit(lastSequence);
+            committedSequence = lastSequence;
+            uncommitted = 0;
+        }
+        state = State.IDLE;
+        if (listener != null) {
+            listener.onSyncFinished(complete, recordCount, committedSequence, clock.now() - startedAtMs);
+        }
+    }
+
+    private void commitAndAck() {
+        if (uncommitted > 0) {
+            sink.commit(lastSequence);
+            committedSequence = lastSequence;
+            uncommitted = 0;
+        }
+        if (committedSequence >= 0) {
+            HistorySyncProtocol.encodeControl(HistorySyncProtocol.OP_ACK, committedSequence, control, 0);
+            transport.writeControl(control.clone());
+            ackCount++;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the MTU negotiated for the current or last sync.
+     *
+     * @return The ATT MTU.
+     */
+    public int getMtu() {
+        return mtu;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public long getPacketCount() {
+        return packetCount;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public long getAckCount() {
+        return ackCount;
+    }
+}
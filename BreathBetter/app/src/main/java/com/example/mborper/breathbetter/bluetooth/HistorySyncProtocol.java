@@ -0,0 +1,146 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * GATT protocol for syncing the readings the node keeps in its on-board buffer while no phone
+ * is listening.
+ * <p>
+ * The node exposes one service with two characteristics: a control point the phone writes to,
+ * and a data characteristic the node notifies on. The phone writes START with the sequence
+ * number to resume from; the node then notifies RECORDS packets, as many records per packet as
+ * the negotiated MTU allows, and an END packet once its buffer is exhausted. The phone writes
+ * ACK with the last sequence it has stored, so the node may free the buffer up to it; START
+ * implies the same for everything before its sequence, so a lost ACK costs nothing. Layouts
+ * (multi-byte values big endian):
+ * <pre>
+ *   START   0x01, u32 first sequence wanted
+ *   ACK     0x02, u32 last sequence stored
+ *   RECORDS 0x10, u8 count, count * record
+ *   END     0x11, u32 last sequence in the buffer
+ *   record  u32 sequence, u32 Unix time in seconds, u16 O3, u16 CO, u16 NO2 (ppm * 100)
+ * </pre>
+ * Gases use the same encoding as HowsAirFrameCodec, with 0xFFFF for a gas not measured.
+ *
+ * @since 2026-10-18
+ */
+public final class HistorySyncProtocol {
+    public static final UUID SERVICE_UUID = UUID.fromString("6e4a0001-b5a3-f393-e0a9-e50e24dcca9e");
+    public static final UUID CONTROL_POINT_UUID = UUID.fromString("6e4a0002-b5a3-f393-e0a9-e50e24dcca9e");
+    public static final UUID DATA_UUID = UUID.fromString("6e4a0003-b5a3-f393-e0a9-e50e24dcca9e");
+    // Standard Client Characteristic Configuration descriptor, written to enable notifications
+    public static final UUID CCCD_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    public static final byte OP_START = 0x01;
+    public static final byte OP_ACK = 0x02;
+    public static final byte PACKET_RECORDS = 0x10;
+    public static final byte PACKET_END = 0x11;
+
+    public static final int CONTROL_LENGTH = 5;
+    public static final int END_LENGTH = 5;
+    public static final int RECORDS_HEADER_LENGTH = 2;
+    public static final int RECORD_LENGTH = 14;
+
+    public static final int DEFAULT_MTU = 23;
+    public static final int MAX_MTU = 517;
+    // Bytes of each ATT packet taken by the opcode and handle of a notification
+    public static final int ATT_HEADER_LENGTH = 3;
+
+    /**
+     * Receives the records decoded from a RECORDS packet.
+     */
+    public interface RecordHandler {
+        void onRecord(long sequence, long timestampMs, float o3Ppm, float coPpm, float no2Ppm);
+    }
+
+    private HistorySyncProtocol() {
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns how many records fit in one notification with the given MTU.
+     *      Natural ---> recordsPerPacket() ---> Natural
+     *
+     * @param mtu The negotiated ATT MTU.
+     * @return The records per RECORDS packet, at most 255.
+     */
+    public static int recordsPerPacket(int mtu) {
+        int payload = mtu - ATT_HEADER_LENGTH - RECORDS_HEADER_LENGTH;
+        return Math.max(0, Math.min(255, payload / RECORD_LENGTH));
+    }
+
+    /**
+     * Writes a control point command.
+     *      Byte, Natural, [byte], Natural ---> encodeControl() ---> Natural
+     *
+     * @param opcode   OP_START or OP_ACK.
+     * @param sequence The sequence number it carries.
+     * @param out      Destination array.
+     * @param offset   Where to start writing.
+     * @return The number of bytes written.
+     */
+    public static int encodeControl(byte opcode, long sequence, byte[] out, int offset) {
+        out[offset] = opcode;
+        ByteCodec.writeU32BE(out, offset + 1, sequence);
+        return CONTROL_LENGTH;
+    }
+
+    /**
+     * Writes one record into a RECORDS packet. Used by tests and simulated nodes; the real
+     * packets come from the node firmware.
+     *      Natural, Natural, Real, Real, Real, [byte], Natural ---> encodeRecord() ---> Natural
+     *
+     * @return The number of bytes written.
+     */
+    public static int encodeRecord(long sequence, long timestampMs, float o3Ppm, float coPpm,
+                                   float no2Ppm, byte[] out, int offset) {
+        ByteCodec.writeU32BE(out, offset, sequence);
+        ByteCodec.writeU32BE(out, offset + 4, timestampMs / 1000);
+        ByteCodec.writeU16BE(out, offset + 8, HowsAirFrameCodec.encodeGas(o3Ppm));
+        ByteCodec.writeU16BE(out, offset + 10, HowsAirFrameCodec.encodeGas(coPpm));
+        ByteCodec.writeU16BE(out, offset + 12, HowsAirFrameCodec.encodeGas(no2Ppm));
+        return RECORD_LENGTH;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Decodes the records of a RECORDS packet.
+     *      [byte], RecordHandler ---> decodeRecords() ---> Z
+     *
+     * @param packet  The notification value.
+     * @param handler Receives each record.
+     * @return The number of records, or -1 if it is not a well-formed RECORDS packet.
+     */
+    public static int decodeRecords(byte[] packet, RecordHandler handler) {
+        if (packet == null || packet.length < RECORDS_HEADER_LENGTH || packet[0] != PACKET_RECORDS) {
+            return -1;
+        }
+        int count = ByteCodec.u8(packet, 1);
+        if (packet.length < RECORDS_HEADER_LENGTH + count * RECORD_LENGTH) {
+            return -1;
+        }
+        int offset = RECORDS_HEADER_LENGTH;
+        for (int i = 0; i < count; i++, offset += RECORD_LENGTH) {
+            handler.onRecord(ByteCodec.u32BE(packet, offset),
+                    ByteCodec.u32BE(packet, offset + 4) * 1000,
+                    HowsAirFrameCodec.decodeGas(ByteCodec.u16BE(packet, offset + 8)),
+                    HowsAirFrameCodec.decodeGas(ByteCodec.u16BE(packet, offset + 10)),
+                    HowsAirFrameCodec.decodeGas(ByteCodec.u16BE(packet, offset + 12)));
+        }
+        return count;
+    }
+
+    /**
+     * Reads the last sequence of an END packet.
+     *      [byte] ---> decodeEnd() ---> Z
+     *
+     * @param packet The notification value.
+     * @return The last sequence in the node's buffer, or -1 if it is not an END packet.
+     */
+    public static long decodeEnd(byte[] packet) {
+        if (packet == null || packet.length < END_LENGTH || packet[0] != PACKET_END) {
+            return -1;
+        }
+        return ByteCodec.u32BE(packet, 1);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Link to the node's history sync service, as seen by HistorySyncClient.
+ * <p>
+ * On the device it is GattHistoryTransport over a BluetoothGatt connection; on the JVM a fake
+ * peripheral can stand in for it. Every operation is asynchronous: its outcome arrives through
+ * the Listener, which must be called on the same thread that drives the client.
+ *
+ * @since 2026-10-18
+ */
+public interface HistorySyncTransport {
+
+    /**
+     * Receives the outcome of the transport operations and the node's notifications.
+     */
+    interface Listener {
+
+        /**
+         * The link is up and the history service was found.
+         */
+        void onConnected();
+
+        /**
+         * The MTU exchange finished.
+         *
+         * @param mtu The negotiated ATT MTU, DEFAULT_MTU if the node refused a larger one.
+         */
+        void onMtuChanged(int mtu);
+
+        /**
+         * Notifications on the data characteristic are enabled.
+         */
+        void onNotificationsEnabled();
+
+        /**
+         * The node notified a packet on the data characteristic.
+         *
+         * @param value The packet.
+         */
+        void onNotification(byte[] value);
+
+        /**
+         * The link went down, whether asked to or not.
+         */
+        void onDisconnected();
+    }
+
+    void setListener(Listener listener);
+
+    /**
+     * Connects to the node and discovers its history service.
+     */
+    void connect();
+
+    /**
+     * Asks for a larger ATT MTU.
+     *
+     * @param mtu The MTU wanted.
+     */
+    void requestMtu(int mtu);
+
+    /**
+     * Enables notifications on the data characteristic.
+     */
+    void enableNotifications();
+
+    /**
+     * Writes a command to the control point, without response.
+     *
+     * @param value The command.
+     */
+    void writeControl(byte[] value);
+
+    /**
+     * Closes the link. onDisconnected() follows.
+     */
+    void disconnect();
+
+    /**
+     * Releases the link at once, e.g. when the thread that delivers the callbacks is about
+     * to end. No callback follows.
+     */
+    void close();
+}
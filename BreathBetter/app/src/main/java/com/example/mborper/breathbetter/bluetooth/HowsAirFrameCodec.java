@@ -0,0 +1,190 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Encoder and decoder for the HowsAir manufacturer-data frames.
+ * <p>
+ * Every HowsAir frame starts with the 0xBE 0xEE identifier the buzzer commands already use.
+ * The byte after it tells the frames apart: 0x00 and 0x01 are the legacy three-byte buzzer
+ * commands sent by BuzzerControl, 0x10 is a measurement frame sent by the node and 0x20 is the
+ * node's acknowledgement of a buzzer command. A buzzer command may carry a fourth byte with a
+ * command ID, which the node echoes in its acknowledgement [0xBE, 0xEE, 0x20, state, ID]; nodes
+ * that only read the first three bytes keep working. Layout of the measurement frame after the
+ * company ID (multi-byte values big endian):
+ * <pre>
+ *   0..1   identifier 0xBE 0xEE
+ *   2      frame type (0x10)
+ *   3      version (0x01)
+ *   4..5   sequence number
+ *   6..7   O3, ppm * 100
+ *   8..9   CO, ppm * 100
+ *   10..11 NO2, ppm * 100
+ *   12     battery, percent
+ *   13     txPower, signed dBm
+ * </pre>
+ * A gas the node does not measure is sent as 0xFFFF and decoded as NaN. Encoding writes into a
+ * caller-supplied array and decoding into a BeaconReading, so neither allocates.
+ *
+ * @since 2026-10-18
+ */
+public class HowsAirFrameCodec implements BeaconDecoder {
+    // The nodes have no assigned company ID; 0x0000 is what BuzzerControl has always advertised
+    public static final int COMPANY_ID = 0x0000;
+
+    public static final byte IDENTIFIER_0 = (byte) 0xBE;
+    public static final byte IDENTIFIER_1 = (byte) 0xEE;
+    public static final byte BUZZER_OFF = 0x00;
+    public static final byte BUZZER_ON = 0x01;
+    public static final byte FRAME_TYPE_MEASUREMENT = 0x10;
+    public static final byte FRAME_TYPE_BUZZER_ACK = 0x20;
+    public static final byte VERSION = 0x01;
+
+    public static final int COMMAND_LENGTH = 3;
+    public static final int COMMAND_WITH_ID_LENGTH = 4;
+    public static final int BUZZER_ACK_LENGTH = 5;
+    public static final int MEASUREMENT_LENGTH = 14;
+
+    private static final int GAS_NOT_MEASURED = 0xFFFF;
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Writes a buzzer command frame.
+     *      Byte, [byte], Natural ---> encodeBuzzerCommand() ---> Natural
+     *
+     * @param command BUZZER_ON or BUZZER_OFF.
+     * @param out     Destination array.
+     * @param offset  Where to start writing.
+     * @return The number of bytes written.
+     */
+    public static int encodeBuzzerCommand(byte command, byte[] out, int offset) {
+        out[offset] = IDENTIFIER_0;
+        out[offset + 1] = IDENTIFIER_1;
+        out[offset + 2] = command;
+        return COMMAND_LENGTH;
+    }
+
+    /**
+     * Writes a buzzer command frame carrying a command ID for the node to acknowledge.
+     *      Byte, Natural, [byte], Natural ---> encodeBuzzerCommand() ---> Natural
+     *
+     * @param command   BUZZER_ON or BUZZER_OFF.
+     * @param commandId Command ID, 0..255.
+     * @param out       Destination array.
+     * @param offset    Where to start writing.
+     * @return The number of bytes written.
+     */
+    public static int encodeBuzzerCommand(byte command, int commandId, byte[] out, int offset) {
+        encodeBuzzerCommand(command, out, offset);
+        out[offset + 3] = (byte) commandId;
+        return COMMAND_WITH_ID_LENGTH;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Writes the acknowledgement a node sends for a buzzer command. Used by tests and simulated
+     * nodes; the real acknowledgement comes from the node firmware.
+     *      Byte, Natural, [byte], Natural ---> encodeBuzzerAck() ---> Natural
+     *
+     * @param state     Buzzer state after the command, BUZZER_ON or BUZZER_OFF.
+     * @param commandId ID of the acknowledged command.
+     * @param out       Destination array.
+     * @param offset    Where to start writing.
+     * @return The number of bytes written.
+     */
+    public static int encodeBuzzerAck(byte state, int commandId, byte[] out, int offset) {
+        out[offset] = IDENTIFIER_0;
+        out[offset + 1] = IDENTIFIER_1;
+        out[offset + 2] = FRAME_TYPE_BUZZER_ACK;
+        out[offset + 3] = state;
+        out[offset + 4] = (byte) commandId;
+        return BUZZER_ACK_LENGTH;
+    }
+
+    /**
+     * Reads a buzzer acknowledgement from manufacturer data.
+     *      [byte], Natural, Natural ---> decodeBuzzerAck() ---> Z
+     *
+     * @param data Manufacturer data, without the company ID.
+     * @param from Offset of the first byte.
+     * @param to   Offset after the last byte.
+     * @return (state << 8) | commandId, or -1 if the data is not an acknowledgement.
+     */
+    public static int decodeBuzzerAck(byte[] data, int from, int to) {
+        if (data == null || to - from < BUZZER_ACK_LENGTH
+                || data[from] != IDENTIFIER_0
+                || data[from + 1] != IDENTIFIER_1
+                || data[from + 2] != FRAME_TYPE_BUZZER_ACK) {
+            return -1;
+        }
+        return (data[from + 3] & 0xFF) << 8 | (data[from + 4] & 0xFF);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Writes a measurement frame.
+     *      Natural, Real, Real, Real, Natural, Z, [byte], Natural ---> encodeMeasurement() ---> Natural
+     *
+     * @param sequence       Rolling sequence number, 0..65535.
+     * @param o3Ppm          O3 in ppm, or NaN if not measured.
+     * @param coPpm          CO in ppm, or NaN if not measured.
+     * @param no2Ppm         NO2 in ppm, or NaN if not measured.
+     * @param batteryPercent Battery level, 0..100.
+     * @param txPower        Calibrated txPower in dBm.
+     * @param out            Destination array.
+     * @param offset         Where to start writing.
+     * @return The number of bytes written.
+     */
+    public static int encodeMeasurement(int sequence, float o3Ppm, float coPpm, float no2Ppm,
+                                        int batteryPercent, int txPower, byte[] out, int offset) {
+        out[offset] = IDENTIFIER_0;
+        out[offset + 1] = IDENTIFIER_1;
+        out[offset + 2] = FRAME_TYPE_MEASUREMENT;
+        out[offset + 3] = VERSION;
+        ByteCodec.writeU16BE(out, offset + 4, sequence);
+        ByteCodec.writeU16BE(out, offset + 6, encodeGas(o3Ppm));
+        ByteCodec.writeU16BE(out, offset + 8, encodeGas(coPpm));
+        ByteCodec.writeU16BE(out, offset + 10, encodeGas(no2Ppm));
+        out[offset + 12] = (byte) batteryPercent;
+        out[offset + 13] = (byte) txPower;
+        return MEASUREMENT_LENGTH;
+    }
+
+    @Override
+    public boolean decode(byte[] record, int from, int to, BeaconReading out) {
+        if (to - from < MEASUREMENT_LENGTH
+                || record[from] != IDENTIFIER_0
+                || record[from + 1] != IDENTIFIER_1
+                || record[from + 2] != FRAME_TYPE_MEASUREMENT
+                || record[from + 3] != VERSION) {
+            return false;
+        }
+
+        out.format = BeaconFormat.HOWSAIR;
+        out.sequence = ByteCodec.u16BE(record, from + 4);
+        out.o3Ppm = decodeGas(ByteCodec.u16BE(record, from + 6));
+        out.coPpm = decodeGas(ByteCodec.u16BE(record, from + 8));
+        out.no2Ppm = decodeGas(ByteCodec.u16BE(record, from + 10));
+        out.batteryPercent = record[from + 12] & 0xFF;
+        out.txPower = record[from + 13];
+        return true;
+    }
+
+    /**
+     * Encodes a gas reading as ppm * 100, the format shared with the history sync records.
+     *      Real ---> encodeGas() ---> Natural
+     */
+    static int encodeGas(float ppm) {
+        if (Float.isNaN(ppm)) {
+            return GAS_NOT_MEASURED;
+        }
+        // Clamp just below the sentinel so a reading is never mistaken for "not measured"
+        return Math.max(0, Math.min(GAS_NOT_MEASURED - 1, Math.round(ppm * 100)));
+    }
+
+    /**
+     * Decodes a gas reading written by encodeGas().
+     *      Natural ---> decodeGas() ---> Real
+     */
+    static float decodeGas(int value) {
+        return value == GAS_NOT_MEASURED ? Float.NaN : value / 100f;
+    }
+}
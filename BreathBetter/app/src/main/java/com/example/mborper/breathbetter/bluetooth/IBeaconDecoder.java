@@ -0,0 +1,34 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Decoder for the iBeacon manufacturer data sent by the current HowsAir firmware.
+ * <p>
+ * Payload after the company ID: type 0x02, length 0x15, 16-byte UUID, major, minor (both big
+ * endian) and txPower. The O3 value is taken from major (ppm * 100) and the sequence number
+ * from minor.
+ *
+ * @since 2026-10-18
+ */
+public class IBeaconDecoder implements BeaconDecoder {
+    private static final int PAYLOAD_LENGTH = 23;
+
+    @Override
+    public boolean decode(byte[] record, int from, int to, BeaconReading out) {
+        if (to - from < PAYLOAD_LENGTH
+                || record[from] != IBeaconFrameView.IBEACON_TYPE
+                || record[from + 1] != IBeaconFrameView.IBEACON_LENGTH) {
+            return false;
+        }
+
+        int p = from + 2;
+        out.format = BeaconFormat.IBEACON;
+        out.uuidMsb = ByteCodec.i64BE(record, p);
+        out.uuidLsb = ByteCodec.i64BE(record, p + 8);
+        out.major = ByteCodec.u16BE(record, p + 16);
+        out.minor = ByteCodec.u16BE(record, p + 18);
+        out.txPower = record[p + 20];
+        out.o3Ppm = out.major / 100f;
+        out.sequence = out.minor;
+        return true;
+    }
+}
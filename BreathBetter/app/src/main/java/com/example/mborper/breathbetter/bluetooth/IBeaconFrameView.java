@@ -0,0 +1,169 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Reusable, zero-copy view over the raw bytes of an iBeacon advertisement.
+ * <p>
+ * Unlike {@link IBeaconFrame}, which copies every field into its own array, this class keeps a
+ * reference to the scan-record bytes and reads each field in place at its fixed offset. A single
+ * instance is meant to be re-pointed with {@link #wrap(byte[])} for every advert, so the scan hot
+ * path allocates nothing per result.
+ * <p>
+ * Layout of the scan record (offsets in bytes):
+ * <pre>
+ *   0..2   advertising flags
+ *   3      AD length (0x1A)
+ *   4      AD type, manufacturer specific data (0xFF)
+ *   5..6   company ID (little endian)
+ *   7      iBeacon type (0x02)
+ *   8      iBeacon length (0x15)
+ *   9..24  UUID
+ *   25..26 major (big endian)
+ *   27..28 minor (big endian)
+ *   29     txPower
+ * </pre>
+ * Instances are not thread safe; each thread must use its own view.
+ *
+ * @since 2026-10-18
+ */
+public class IBeaconFrameView {
+    public static final int FRAME_LENGTH = 30;
+
+    public static final int AD_TYPE_OFFSET = 4;
+    public static final int COMPANY_ID_OFFSET = 5;
+    public static final int BEACON_TYPE_OFFSET = 7;
+    public static final int BEACON_LENGTH_OFFSET = 8;
+    public static final int UUID_OFFSET = 9;
+    public static final int UUID_LENGTH = 16;
+    public static final int MAJOR_OFFSET = 25;
+    public static final int MINOR_OFFSET = 27;
+    public static final int TX_POWER_OFFSET = 29;
+
+    public static final byte AD_TYPE_MANUFACTURER_DATA = (byte) 0xFF;
+    public static final byte IBEACON_TYPE = 0x02;
+    public static final byte IBEACON_LENGTH = 0x15;
+
+    private byte[] bytes;
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Points this view at a new scan record after checking that it carries an iBeacon prefix.
+     * The prefix is validated before any field can be read; when it does not match, the view
+     * is left empty and every accessor must not be called until the next successful wrap.
+     *      [byte] ---> wrap() ---> T/F
+     *
+     * @param bytes The raw scan-record bytes, as returned by ScanRecord.getBytes().
+     * @return true if the record is an iBeacon frame and the view now reads from it.
+     */
+    public boolean wrap(byte[] bytes) {
+        if (!isIBeacon(bytes)) {
+            this.bytes = null;
+            return false;
+        }
+        this.bytes = bytes;
+        return true;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Checks, without allocating, whether the given scan record has the iBeacon layout.
+     *      [byte] ---> isIBeacon() ---> T/F
+     *
+     * @param bytes The raw scan-record bytes.
+     * @return true if the record is long enough and carries the iBeacon prefix.
+     */
+    public static boolean isIBeacon(byte[] bytes) {
+        return bytes != null
+                && bytes.length >= FRAME_LENGTH
+                && bytes[AD_TYPE_OFFSET] == AD_TYPE_MANUFACTURER_DATA
+                && bytes[BEACON_TYPE_OFFSET] == IBEACON_TYPE
+                && bytes[BEACON_LENGTH_OFFSET] == IBEACON_LENGTH;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns whether the view currently wraps a valid frame.
+     *      isValid() ---> T/F
+     *
+     * @return true if the last call to wrap() succeeded.
+     */
+    public boolean isValid() {
+        return bytes != null;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the scan record the view is reading from, without copying it.
+     *      bytes() ---> [byte]
+     *
+     * @return The wrapped bytes, or null if the view is empty.
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the company ID of the manufacturer data, decoded from little endian.
+     *      companyId() ---> Natural
+     *
+     * @return The company ID as an unsigned 16-bit value.
+     */
+    public int companyId() {
+        return ByteCodec.u16LE(bytes, COMPANY_ID_OFFSET);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the 8 most significant bytes of the UUID as a big-endian long.
+     *      uuidMsb() ---> Natural
+     *
+     * @return The high half of the UUID.
+     */
+    public long uuidMsb() {
+        return ByteCodec.i64BE(bytes, UUID_OFFSET);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the 8 least significant bytes of the UUID as a big-endian long.
+     *      uuidLsb() ---> Natural
+     *
+     * @return The low half of the UUID.
+     */
+    public long uuidLsb() {
+        return ByteCodec.i64BE(bytes, UUID_OFFSET + 8);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the major field as an unsigned 16-bit value.
+     *      majorU16() ---> Natural
+     *
+     * @return The major value, between 0 and 65535.
+     */
+    public int majorU16() {
+        return ByteCodec.u16BE(bytes, MAJOR_OFFSET);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the minor field as an unsigned 16-bit value.
+     *      minorU16() ---> Natural
+     *
+     * @return The minor value, between 0 and 65535.
+     */
+    public int minorU16() {
+        return ByteCodec.u16BE(bytes, MINOR_OFFSET);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the calibrated transmission power at 1 m, in dBm.
+     *      txPower() ---> Z
+     *
+     * @return The signed txPower byte.
+     */
+    public int txPower() {
+        return bytes[TX_POWER_OFFSET];
+    }
+} // class
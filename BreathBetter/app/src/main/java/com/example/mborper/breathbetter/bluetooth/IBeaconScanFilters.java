@@ -0,0 +1,176 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanSettings;
+import android.os.ParcelUuid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the ScanFilter and ScanSettings used to let the Bluetooth controller do the iBeacon
+ * matching instead of the application CPU.
+ * <p>
+ * The filter matches the manufacturer data of an iBeacon frame: the 0x02 0x15 type/length
+ * prefix followed by the 16 bytes of the target UUID, all under a full mask. When the chipset
+ * supports offloaded filtering, adverts from other devices never wake the CPU. When it also
+ * supports offloaded batching, results are queued in the controller and delivered in batches
+ * through onBatchScanResults().
+ * <p>
+ * Once the address of the target is known, two more filters on that address let through its
+ * HowsAir measurement frames and Eddystone-TLM frames, which the ScanIngestor decodes with the
+ * BeaconCodecRegistry.
+ *
+ * @since 2026-10-18
+ */
+public class IBeaconScanFilters {
+    // Apple's company ID, used by every iBeacon frame including HowsAir nodes
+    public static final int IBEACON_COMPANY_ID = 0x004C;
+    // Filter slots a typical controller offers; more nodes than this share one prefix filter
+    public static final int MAX_UUID_FILTERS = 16;
+    private static final ParcelUuid EDDYSTONE_UUID = ParcelUuid.fromString(String.format(
+            "0000%04X-0000-1000-8000-00805F9B34FB", EddystoneTlmDecoder.EDDYSTONE_SERVICE_UUID));
+
+    /**
+     * Builds the manufacturer-data filter that only lets through iBeacon frames with the target UUID.
+     *      BeaconUuidMatcher ---> buildFilters() ---> [ScanFilter]
+     *
+     * @param matcher The matcher holding the target UUID.
+     * @return A list with a single filter.
+     */
+    public static List<ScanFilter> buildFilters(BeaconUuidMatcher matcher) {
+        return buildFilters(matcher, null);
+    }
+
+    /**
+     * Builds the filter on the target's iBeacon frames plus, if its address is known, the
+     * filters on its other frames.
+     *      BeaconUuidMatcher, Texto ---> buildFilters() ---> [ScanFilter]
+     *
+     * @param matcher       The matcher holding the target UUID.
+     * @param targetAddress Address the target's iBeacon adverts came from, or null.
+     * @return The filters.
+     */
+    public static List<ScanFilter> buildFilters(BeaconUuidMatcher matcher, String targetAddress) {
+        List<ScanFilter> filters = new ArrayList<>(3);
+        filters.add(buildFilter(matcher.getKey()));
+        if (targetAddress != null) {
+            byte[] measurement = {HowsAirFrameCodec.IDENTIFIER_0, HowsAirFrameCodec.IDENTIFIER_1,
+                    HowsAirFrameCodec.FRAME_TYPE_MEASUREMENT};
+            filters.add(new ScanFilter.Builder()
+                    .setDeviceAddress(targetAddress)
+                    .setManufacturerData(HowsAirFrameCodec.COMPANY_ID, measurement, fullMask(measurement.length))
+                    .build());
+            filters.add(new ScanFilter.Builder()
+                    .setDeviceAddress(targetAddress)
+                    .setServiceData(EDDYSTONE_UUID, new byte[]{EddystoneTlmDecoder.FRAME_TYPE_TLM}, fullMask(1))
+                    .build());
+        }
+        return Collections.unmodifiableList(filters);
+    }
+
+    /**
+     * Builds the filters for gateway mode: one per node UUID. Controllers only hold a few
+     * filters, so beyond MAX_UUID_FILTERS a single filter on the iBeacon prefix is used instead
+     * and the NodeUuidIndex does the UUID matching in software.
+     *      NodeUuidIndex ---> buildFilters() ---> [ScanFilter]
+     *
+     * @param index The registered node UUIDs.
+     * @return The filters.
+     */
+    public static List<ScanFilter> buildFilters(NodeUuidIndex index) {
+        List<ScanFilter> filters = new ArrayList<>(Math.min(index.size(), MAX_UUID_FILTERS));
+        if (index.size() > MAX_UUID_FILTERS) {
+            filters.add(buildFilter(null));
+        } else {
+            for (int node = 0; node < index.size(); node++) {
+                filters.add(buildFilter(BeaconUuidMatcher.forTarget(index.getUuid(node)).getKey()));
+            }
+        }
+        return Collections.unmodifiableList(filters);
+    }
+
+    /**
+     * Builds a manufacturer-data filter on the iBeacon prefix followed, if given, by a UUID.
+     *
+     * @param uuid The 16 UUID bytes, or null to match every iBeacon frame.
+     * @return The filter.
+     */
+    private static ScanFilter buildFilter(byte[] uuid) {
+        int uuidLength = uuid == null ? 0 : uuid.length;
+
+        // Manufacturer data as seen by the filter starts after the company ID
+        byte[] data = new byte[2 + uuidLength];
+        data[0] = IBeaconFrameView.IBEACON_TYPE;
+        data[1] = IBeaconFrameView.IBEACON_LENGTH;
+        if (uuid != null) {
+            System.arraycopy(uuid, 0, data, 2, uuidLength);
+        }
+
+        return new ScanFilter.Builder()
+                .setManufacturerData(IBEACON_COMPANY_ID, data, fullMask(data.length))
+                .build();
+    }
+
+    private static byte[] fullMask(int length) {
+        byte[] mask = new byte[length];
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = (byte) 0xFF;
+        }
+        return mask;
+    }
+
+    /**
+     * Builds low-latency scan settings, enabling batched reports only if the controller can hold them.
+     *      BluetoothAdapter, Natural ---> buildSettings() ---> ScanSettings
+     *
+     * @param adapter       The Bluetooth adapter, used to query offload support.
+     * @param reportDelayMs Desired delay between batch reports, 0 to disable batching.
+     * @return The scan settings.
+     */
+    public static ScanSettings buildSettings(BluetoothAdapter adapter, long reportDelayMs) {
+        return buildSettings(adapter, ScanSettings.SCAN_MODE_LOW_LATENCY, reportDelayMs);
+    }
+
+    /**
+     * Builds the scan settings with the given scan mode, enabling batched reports only if the
+     * controller can hold them.
+     *      BluetoothAdapter, Natural, Natural ---> buildSettings() ---> ScanSettings
+     *
+     * @param adapter       The Bluetooth adapter, used to query offload support.
+     * @param scanMode      One of the ScanSettings.SCAN_MODE_* constants.
+     * @param reportDelayMs Desired delay between batch reports, 0 to disable batching.
+     * @return The scan settings.
+     */
+    public static ScanSettings buildSettings(BluetoothAdapter adapter, int scanMode, long reportDelayMs) {
+        ScanSettings.Builder builder = new ScanSettings.Builder()
+                .setScanMode(scanMode);
+
+        if (reportDelayMs > 0 && isBatchingSupported(adapter)) {
+            builder.setReportDelay(reportDelayMs);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns whether the controller can filter adverts itself.
+     *
+     * @param adapter The Bluetooth adapter.
+     * @return true if offloaded filtering is supported.
+     */
+    public static boolean isFilteringSupported(BluetoothAdapter adapter) {
+        return adapter != null && adapter.isOffloadedFilteringSupported();
+    }
+
+    /**
+     * Returns whether the controller can queue scan results and report them in batches.
+     *
+     * @param adapter The Bluetooth adapter.
+     * @return true if offloaded scan batching is supported.
+     */
+    public static boolean isBatchingSupported(BluetoothAdapter adapter) {
+        return adapter != null && adapter.isOffloadedScanBatchingSupported();
+    }
+}
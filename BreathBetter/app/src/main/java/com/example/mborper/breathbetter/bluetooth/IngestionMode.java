@@ -0,0 +1,37 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * How BeaconListeningService receives adverts from the node.
+ *
+ * @since 2026-10-18
+ */
+public enum IngestionMode {
+    /**
+     * The service runs its own scan windows on the service thread, driven by the ScanScheduler.
+     */
+    DUTY_CYCLE,
+
+    /**
+     * A single filtered scan is registered with a PendingIntent; the OS delivers matching results
+     * to BeaconScanReceiver, so the process can stay idle between them.
+     */
+    PENDING_INTENT;
+
+    /**
+     * Parses a mode name, falling back to DUTY_CYCLE for null or unknown values.
+     *      Texto ---> fromName() ---> IngestionMode
+     *
+     * @param name The mode name.
+     * @return The matching mode.
+     */
+    public static IngestionMode fromName(String name) {
+        if (name != null) {
+            for (IngestionMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name)) {
+                    return mode;
+                }
+            }
+        }
+        return DUTY_CYCLE;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open-addressing hash index from the UUID of an iBeacon advert to the index of a registered
+ * node, used by gateway mode to route each advert to its own pipeline.
+ * <p>
+ * The UUID is read straight from the scan record as two big-endian longs, hashed and looked up
+ * with linear probing in parallel primitive arrays kept at most half full, so a lookup is O(1),
+ * allocation-free and costs the same for a foreign device as for a registered node. Nodes get
+ * consecutive indexes in registration order.
+ * <p>
+ * Registration is not thread-safe; the index is built before scanning starts and is immutable
+ * afterwards, so lookups can run on any thread.
+ *
+ * @since 2026-10-18
+ */
+public class NodeUuidIndex {
+    private static final int MIN_CAPACITY = 16;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long[] msbs;
+    private long[] lsbs;
+    private int[] values; // node index + 1, 0 for an empty slot
+    private int mask;
+    private final List<String> uuids = new ArrayList<>();
+
+    /**
+     * Creates an empty index.
+     */
+    public NodeUuidIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Registers a node. Registering the same UUID twice returns its existing index.
+     *      Texto ---> add() ---> Natural
+     *
+     * @param uuid The node UUID, in any format BeaconUuidMatcher.forTarget() accepts.
+     * @return The index of the node.
+     * @throws IllegalArgumentException if the UUID is malformed.
+     */
+    public int add(String uuid) {
+        BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(uuid);
+        long msb = matcher.getMsb();
+        long lsb = matcher.getLsb();
+        int existing = lookup(msb, lsb);
+        if (existing >= 0) {
+            return existing;
+        }
+
+        if ((uuids.size() + 1) * 2 > values.length) {
+            rehash(values.length * 2);
+        }
+        int node = uuids.size();
+        uuids.add(uuid);
+        insert(msb, lsb, node);
+        return node;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Looks up the node whose UUID is at the given offset of a scan record.
+     *      [byte], Natural ---> lookup() ---> Z
+     *
+     * @param record The raw scan record.
+     * @param offset Offset of the first UUID byte.
+     * @return The node index, or -1 if the UUID is not registered or the record is too short.
+     */
+    public int lookup(byte[] record, int offset) {
+        if (record == null || offset < 0 || record.length - offset < IBeaconFrameView.UUID_LENGTH) {
+            return -1;
+        }
+        return lookup(ByteCodec.i64BE(record, offset), ByteCodec.i64BE(record, offset + 8));
+    }
+
+    /**
+     * Looks up the node of the frame currently wrapped by the view.
+     *      IBeaconFrameView ---> lookup() ---> Z
+     *
+     * @param view A view that has successfully wrapped a record.
+     * @return The node index, or -1 if the UUID is not registered.
+     */
+    public int lookup(IBeaconFrameView view) {
+        return view.isValid() ? lookup(view.bytes(), IBeaconFrameView.UUID_OFFSET) : -1;
+    }
+
+    /**
+     * Looks up a node by the two halves of its UUID.
+     *      Z, Z ---> lookup() ---> Z
+     *
+     * @param msb The 8 most significant bytes, big endian.
+     * @param lsb The 8 least significant bytes, big endian.
+     * @return The node index, or -1 if the UUID is not registered.
+     */
+    public int lookup(long msb, long lsb) {
+        int slot = slotOf(msb, lsb);
+        while (values[slot] != 0) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return values[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the UUID a node was registered with.
+     *
+     * @param node The node index.
+     * @return The UUID string.
+     */
+    public String getUuid(int node) {
+        return uuids.get(node);
+    }
+
+    /**
+     * Returns the number of registered nodes.
+     *
+     * @return The node count.
+     */
+    public int size() {
+        return uuids.size();
+    }
+
+    private int slotOf(long msb, long lsb) {
+        long h = (msb ^ Long.rotateLeft(lsb, 32)) * HASH_MULTIPLIER;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private void insert(long msb, long lsb, int node) {
+        int slot = slotOf(msb, lsb);
+        while (values[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        values[slot] = node + 1;
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                insert(oldMsbs[i], oldLsbs[i], oldValues[i] - 1);
+            }
+        }
+    }
+}
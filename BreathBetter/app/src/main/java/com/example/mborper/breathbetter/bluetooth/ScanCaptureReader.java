@@ -0,0 +1,102 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads back a capture log written by ScanCaptureWriter, one record at a time.
+ * <p>
+ * The fields of the current record are exposed through getters and its bytes are copied into a
+ * buffer reused for every record, so iterating a log allocates nothing once the buffer has
+ * grown to the longest record. Bytes past the record length are kept at zero, which is how the
+ * scan records of legacy adverts are padded anyway.
+ *
+ * @since 2026-10-18
+ */
+public class ScanCaptureReader implements Closeable {
+    private static final int INITIAL_BUFFER_SIZE = 62; // legacy advert plus scan response
+
+    private final DataInputStream in;
+    private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+    private int length = 0;
+    private long timestampNanos;
+    private int rssi;
+
+    /**
+     * Creates a reader and checks the log header.
+     *
+     * @param in Stream positioned at the start of the log; buffer it for file input.
+     * @throws IOException if the header is missing or of an unknown version.
+     */
+    public ScanCaptureReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        byte[] magic = new byte[ScanCaptureWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, ScanCaptureWriter.MAGIC)) {
+            throw new IOException("Not a scan capture log");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != ScanCaptureWriter.VERSION) {
+            throw new IOException("Unsupported capture version: " + version);
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Advances to the next record.
+     *      next() ---> T/F
+     *
+     * @return false at the end of the log.
+     * @throws IOException if the stream fails or the last record is truncated.
+     */
+    public boolean next() throws IOException {
+        long timestamp;
+        try {
+            timestamp = in.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        rssi = in.readByte();
+        int newLength = in.readUnsignedShort();
+
+        if (newLength > bytes.length) {
+            bytes = new byte[newLength];
+        } else if (newLength < length) {
+            Arrays.fill(bytes, newLength, length, (byte) 0);
+        }
+        in.readFully(bytes, 0, newLength);
+        length = newLength;
+        timestampNanos = timestamp;
+        return true;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Returns the bytes of the current record, valid until the next call to next().
+     *
+     * @return The reused record buffer; only the first getLength() bytes are the record.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Appends raw scan records to a compact binary capture log that ScanCaptureReader and
+ * ScanReplayDriver can read back.
+ * <p>
+ * Layout (multi-byte values big endian):
+ * <pre>
+ *   header: "HACP" magic, version (1 byte)
+ *   record: timestamp in ns (8 bytes, monotonic), rssi (1 byte, signed),
+ *           length (2 bytes), scan-record bytes
+ * </pre>
+ * Records are staged in one of two in-memory buffers. append() only copies into the active
+ * one, so it never touches the stream and is cheap enough for the Bluetooth callback thread;
+ * when it fills, it is swapped with the spare one and append() tells the caller to flush().
+ * flush() takes the filled buffers under the lock and writes them to the stream outside it, so
+ * appends go on while the disk is written. If both buffers are full, records are dropped and
+ * counted until the next flush() frees one.
+ *
+ * @since 2026-10-18
+ */
+public class ScanCaptureWriter implements Closeable {
+    public static final byte[] MAGIC = {'H', 'A', 'C', 'P'};
+    public static final byte VERSION = 1;
+    public static final int RECORD_HEADER_LENGTH = 8 + 1 + 2;
+    public static final int MAX_RECORD_LENGTH = 0xFFFF;
+
+    // Each buffer must hold the largest record, so this is also about the smallest size
+    private static final int DEFAULT_BUFFER_SIZE = 128 * 1024;
+
+    private final OutputStream out;
+    private final Object writeLock = new Object(); // Held by the thread writing to the stream
+    private byte[] active;
+    private int position = 0;
+    private byte[] full;       // Filled buffer waiting for flush(), or null
+    private int fullLength;
+    private byte[] spare;      // null while the other buffer is full or being written
+    private long recordCount = 0;
+    private long byteCount = 0;
+    private long droppedCount = 0;
+
+    /**
+     * Creates a writer with the default buffer size and writes the log header.
+     *
+     * @param out Stream the log is written to.
+     * @throws IOException if the header cannot be written.
+     */
+    public ScanCaptureWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a writer and writes the log header.
+     *
+     * @param out        Stream the log is written to.
+     * @param bufferSize Bytes each of the two buffers stages in memory; raised to the size of
+     *                   the largest record if smaller.
+     * @throws IOException if the header cannot be written.
+     */
+    public ScanCaptureWriter(OutputStream out, int bufferSize) throws IOException {
+        if (bufferSize < RECORD_HEADER_LENGTH + MAX_RECORD_LENGTH) {
+            // A single record must always fit once the buffer is empty
+            bufferSize = RECORD_HEADER_LENGTH + MAX_RECORD_LENGTH;
+        }
+        this.out = out;
+        this.active = new byte[bufferSize];
+        this.spare = new byte[bufferSize];
+        out.write(MAGIC);
+        out.write(VERSION);
+        byteCount = MAGIC.length + 1;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Appends one scan record to the active buffer, without any I/O.
+     *      Natural, Z, [byte] ---> append() ---> T/F
+     *
+     * @param timestampNanos Monotonic time the advert was received.
+     * @param rssi           Received signal strength in dBm.
+     * @param bytes          Raw scan-record bytes; only the first 65535 are kept.
+     * @return true if this append filled a buffer, so flush() should be called soon.
+     */
+    public synchronized boolean append(long timestampNanos, int rssi, byte[] bytes) {
+        int length = bytes == null ? 0 : Math.min(bytes.length, MAX_RECORD_LENGTH);
+        boolean swapped = false;
+        if (position + RECORD_HEADER_LENGTH + length > active.length) {
+            if (full != null || spare == null) {
+                droppedCount++;
+                return false;
+            }
+            full = active;
+            fullLength = position;
+            active = spare;
+            spare = null;
+            position = 0;
+            swapped = true;
+        }
+
+        ByteCodec.writeI64BE(active, position, timestampNanos);
+        active[position + 8] = (byte) rssi;
+        ByteCodec.writeU16BE(active, position + 9, length);
+        position += RECORD_HEADER_LENGTH;
+        if (length > 0) {
+            System.arraycopy(bytes, 0, active, position, length);
+            position += length;
+        }
+        recordCount++;
+        byteCount += RECORD_HEADER_LENGTH + length;
+        return swapped;
+    }
+
+    /**
+     * Writes the staged records to the stream and flushes it. Appends are only blocked while
+     * the buffers are swapped, not during the writes.
+     *
+     * @throws IOException if the stream fails.
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            // The filled buffer, if any, then what the active one held when it was written
+            for (int i = 0; i < 2; i++) {
+                byte[] buffer;
+                int length;
+                synchronized (this) {
+                    if (full == null) {
+                        if (position == 0) {
+                            break;
+                        }
+                        // No write is under way, so the other buffer is the spare one
+                        full = active;
+                        fullLength = position;
+                        active = spare;
+                        spare = null;
+                        position = 0;
+                    }
+                    buffer = full;
+                    length = fullLength;
+                    full = null;
+                }
+                out.write(buffer, 0, length);
+                synchronized (this) {
+                    spare = buffer;
+                }
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Flushes the staged records and closes the stream.
+     *
+     * @throws IOException if the stream fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            try {
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the number of records dropped because both buffers were full.
+     *
+     * @return The dropped count.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+}
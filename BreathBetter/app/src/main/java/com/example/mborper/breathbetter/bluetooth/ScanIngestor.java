@@ -0,0 +1,218 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Front end of the ingest path, run on the thread that receives the scan results.
+ * <p>
+ * Every raw scan record goes through onScanRecord(): the iBeacon prefix is checked in place,
+ * the UUID compared with the target and, only for adverts of the target, the decoded fields
+ * are pushed into a ScanRecordRing. In gateway mode the UUID is looked up in a NodeUuidIndex
+ * instead and the record carries the index of the node it came from. The consumer thread is asked to drain the ring at most once
+ * per batch of records through the DrainRequest. Nothing here allocates, so the cost of a
+ * foreign advert is a few byte comparisons.
+ * <p>
+ * Frames without an iBeacon prefix carry no UUID, so they are only decoded when the caller
+ * knows they come from the target's device. They go through the BeaconCodecRegistry: a HowsAir
+ * measurement frame is queued like an iBeacon advert, its O3 value as ppm * 100 and its
+ * sequence number in place of major and minor, and an Eddystone-TLM frame updates the node's
+ * telemetry.
+ * <p>
+ * One producer thread calls onScanRecord() and one consumer thread calls drain(). Android code
+ * and the JVM stress harness share it, so both measure the same path.
+ *
+ * @since 2026-10-18
+ */
+public class ScanIngestor {
+
+    /**
+     * Asks the consumer thread to call drain(), e.g. by posting to its Handler.
+     */
+    public interface DrainRequest {
+        void requestDrain();
+    }
+
+    private final IBeaconFrameView frameView = new IBeaconFrameView(); // producer thread only
+    private final BeaconCodecRegistry codecs = BeaconCodecRegistry.createDefault(); // producer thread only
+    private final BeaconReading reading = new BeaconReading(); // producer thread only
+    private final ScanRecordRing ring;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final DrainRequest drainRequest;
+
+    // Telemetry of the target from its non-iBeacon frames, written by the producer thread
+    private volatile int batteryPercent = BeaconReading.UNKNOWN;
+    private volatile int batteryMillivolts = BeaconReading.UNKNOWN;
+    private volatile float temperatureCelsius = Float.NaN;
+
+    /**
+     * Creates the front end.
+     *
+     * @param ringCapacity Records buffered between the two threads, a power of two.
+     * @param drainRequest Called when the ring goes from idle to having records.
+     */
+    public ScanIngestor(int ringCapacity, DrainRequest drainRequest) {
+        this.ring = new ScanRecordRing(ringCapacity);
+        this.drainRequest = drainRequest;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Handles one raw scan record on the producer thread.
+     *      BeaconUuidMatcher, [byte], Natural, Z ---> onScanRecord() ---> T/F
+     *
+     * @param matcher        Matcher of the target UUID; null rejects everything.
+     * @param bytes          Raw scan-record bytes.
+     * @param timestampNanos Time the advert was received.
+     * @param rssi           Received signal strength in dBm.
+     * @return true if the record was an advert of the target and was queued.
+     */
+    public boolean onScanRecord(BeaconUuidMatcher matcher, byte[] bytes, long timestampNanos, int rssi) {
+        return onScanRecord(matcher, bytes, timestampNanos, rssi, false);
+    }
+
+    /**
+     * Handles one raw scan record on the producer thread, also decoding the other formats of
+     * the target if the record comes from its device.
+     *      BeaconUuidMatcher, [byte], Natural, Z, T/F ---> onScanRecord() ---> T/F
+     *
+     * @param matcher          Matcher of the target UUID; null rejects everything.
+     * @param bytes            Raw scan-record bytes.
+     * @param timestampNanos   Time the advert was received.
+     * @param rssi             Received signal strength in dBm.
+     * @param fromTargetDevice Whether the advert comes from the address the target's iBeacon
+     *                         adverts came from.
+     * @return true if the record was a reading of the target and was queued.
+     */
+    public boolean onScanRecord(BeaconUuidMatcher matcher, byte[] bytes, long timestampNanos, int rssi,
+                                boolean fromTargetDevice) {
+        if (matcher == null) {
+            return false;
+        }
+        if (frameView.wrap(bytes)) {
+            return matcher.matches(frameView) && queue(0, timestampNanos, frameView.majorU16(),
+                    frameView.minorU16(), rssi, frameView.txPower());
+        }
+        return fromTargetDevice && decodeOtherFormat(bytes, timestampNanos, rssi);
+    }
+
+    /**
+     * Decodes a frame of the target that is not an iBeacon one through the codec registry.
+     */
+    private boolean decodeOtherFormat(byte[] bytes, long timestampNanos, int rssi) {
+        if (!codecs.decode(bytes, reading)) {
+            return false;
+        }
+        if (reading.format == BeaconFormat.EDDYSTONE_TLM) {
+            if (reading.batteryMillivolts != BeaconReading.UNKNOWN) {
+                batteryMillivolts = reading.batteryMillivolts;
+            }
+            if (!Float.isNaN(reading.temperatureCelsius)) {
+                temperatureCelsius = reading.temperatureCelsius;
+            }
+            return false;
+        }
+        if (reading.format != BeaconFormat.HOWSAIR) {
+            return false;
+        }
+        batteryPercent = reading.batteryPercent;
+        if (Float.isNaN(reading.o3Ppm)) {
+            return false; // A node without an O3 sensor has nothing for the pipeline
+        }
+        // Same units as an iBeacon advert: O3 in ppm * 100, the sequence from the same counter
+        return queue(0, timestampNanos, Math.round(reading.o3Ppm * 100), reading.sequence, rssi, reading.txPower);
+    }
+
+    /**
+     * Handles one raw scan record on the producer thread in gateway mode, routing it to the
+     * registered node whose UUID it carries.
+     *      NodeUuidIndex, [byte], Natural, Z ---> onScanRecord() ---> T/F
+     *
+     * @param index          Index of the registered node UUIDs; null rejects everything.
+     * @param bytes          Raw scan-record bytes.
+     * @param timestampNanos Time the advert was received.
+     * @param rssi           Received signal strength in dBm.
+     * @return true if the record was an advert of a registered node and was queued.
+     */
+    public boolean onScanRecord(NodeUuidIndex index, byte[] bytes, long timestampNanos, int rssi) {
+        if (index == null || !frameView.wrap(bytes)) {
+            return false;
+        }
+        int node = index.lookup(frameView);
+        if (node < 0) {
+            return false;
+        }
+        return queue(node, timestampNanos, frameView.majorU16(), frameView.minorU16(), rssi, frameView.txPower());
+    }
+
+    /**
+     * Pushes the fields of a reading into the ring and requests a drain if none is pending.
+     */
+    private boolean queue(int node, long timestampNanos, int major, int minor, int rssi, int txPower) {
+        boolean queued = ring.offer(node, timestampNanos, major, minor, rssi, txPower);
+        if (drainScheduled.compareAndSet(false, true)) {
+            drainRequest.requestDrain();
+        }
+        return queued;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Hands every queued record to the handler, on the consumer thread.
+     *      ScanRecordRing.RecordHandler ---> drain() ---> Natural
+     *
+     * @param handler Receives each record.
+     * @return The number of records drained.
+     */
+    public int drain(ScanRecordRing.RecordHandler handler) {
+        drainScheduled.set(false);
+        return ring.drain(handler);
+    }
+
+    /**
+     * Hands every queued record to the handler with its node index, on the consumer thread.
+     *      ScanRecordRing.NodeRecordHandler ---> drain() ---> Natural
+     *
+     * @param handler Receives each record.
+     * @return The number of records drained.
+     */
+    public int drain(ScanRecordRing.NodeRecordHandler handler) {
+        drainScheduled.set(false);
+        return ring.drain(handler);
+    }
+
+    /**
+     * Returns the number of target records lost because the consumer fell behind.
+     *
+     * @return The ring overflow count.
+     */
+    public long getDroppedCount() {
+        return ring.getDroppedCount();
+    }
+
+    /**
+     * Returns the battery level the target's HowsAir frames last reported.
+     *
+     * @return The level in percent, or BeaconReading.UNKNOWN.
+     */
+    public int getBatteryPercent() {
+        return batteryPercent;
+    }
+
+    /**
+     * Returns the battery voltage the target's Eddystone-TLM frames last reported.
+     *
+     * @return The voltage in mV, or BeaconReading.UNKNOWN.
+     */
+    public int getBatteryMillivolts() {
+        return batteryMillivolts;
+    }
+
+    /**
+     * Returns the temperature the target's Eddystone-TLM frames last reported.
+     *
+     * @return The temperature in °C, or NaN if unknown.
+     */
+    public float getTemperatureCelsius() {
+        return temperatureCelsius;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer carrying decoded beacon records from the
+ * Bluetooth callback thread to the service thread.
+ * <p>
+ * Each record is only the fields the pipeline needs (timestamp, major, minor, rssi, txPower,
+ * plus the index of the node that sent it in gateway mode), stored in preallocated parallel arrays, so offering and draining allocate nothing. Exactly one
+ * thread may call offer() and exactly one thread may call drain(). When the consumer falls
+ * behind, new records are dropped and counted instead of blocking the producer.
+ *
+ * @since 2026-10-18
+ */
+public class ScanRecordRing {
+
+    /**
+     * Receives the records drained from the ring.
+     */
+    public interface RecordHandler {
+        void onRecord(long timestampNanos, int major, int minor, int rssi, int txPower);
+    }
+
+    /**
+     * Receives the drained records together with the index of the node that sent them.
+     */
+    public interface NodeRecordHandler {
+        void onNodeRecord(int node, long timestampNanos, int major, int minor, int rssi, int txPower);
+    }
+
+    private final int mask;
+    private final int[] nodes;
+    private final long[] timestamps;
+    private final int[] majors;
+    private final int[] minors;
+    private final int[] rssis;
+    private final int[] txPowers;
+
+    // Next slot to write, only advanced by the producer
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to read, only advanced by the consumer
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a ring with room for the given number of records.
+     *
+     * @param capacity Number of slots, must be a power of two.
+     */
+    public ScanRecordRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        nodes = new int[capacity];
+        timestamps = new long[capacity];
+        majors = new int[capacity];
+        minors = new int[capacity];
+        rssis = new int[capacity];
+        txPowers = new int[capacity];
+    }
+
+    /**
+     * Adds a record. Called only by the producer thread.
+     *      Natural, Natural, Natural, Z, Z ---> offer() ---> T/F
+     *
+     * @param timestampNanos Time the advert was received.
+     * @param major          Major field of the advert.
+     * @param minor          Minor field of the advert.
+     * @param rssi           Received signal strength in dBm.
+     * @param txPower        Calibrated txPower of the advert in dBm.
+     * @return false if the ring was full and the record was dropped.
+     */
+    public boolean offer(long timestampNanos, int major, int minor, int rssi, int txPower) {
+        return offer(0, timestampNanos, major, minor, rssi, txPower);
+    }
+
+    /**
+     * Adds a record of a given node. Called only by the producer thread.
+     *      Natural, Natural, Natural, Natural, Z, Z ---> offer() ---> T/F
+     *
+     * @param node           Index of the node that sent the advert.
+     * @param timestampNanos Time the advert was received.
+     * @param major          Major field of the advert.
+     * @param minor          Minor field of the advert.
+     * @param rssi           Received signal strength in dBm.
+     * @param txPower        Calibrated txPower of the advert in dBm.
+     * @return false if the ring was full and the record was dropped.
+     */
+    public boolean offer(int node, long timestampNanos, int major, int minor, int rssi, int txPower) {
+        long h = head.get();
+        if (h - tail.get() > mask) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int slot = (int) h & mask;
+        nodes[slot] = node;
+        timestamps[slot] = timestampNanos;
+        majors[slot] = major;
+        minors[slot] = minor;
+        rssis[slot] = rssi;
+        txPowers[slot] = txPower;
+        // Ordered store publishes the slot contents before the new head
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Hands every available record to the handler, oldest first. Called only by the consumer thread.
+     *      RecordHandler ---> drain() ---> Natural
+     *
+     * @param handler Receives each record.
+     * @return The number of records drained.
+     */
+    public int drain(RecordHandler handler) {
+        long t = tail.get();
+        long h = head.get();
+        int count = 0;
+        while (t < h) {
+            int slot = (int) t & mask;
+            handler.onRecord(timestamps[slot], majors[slot], minors[slot], rssis[slot], txPowers[slot]);
+            t++;
+            count++;
+            // Free the slot as soon as it has been read
+            tail.lazySet(t);
+        }
+        return count;
+    }
+
+    /**
+     * Hands every available record to the handler with its node index, oldest first. Called
+     * only by the consumer thread.
+     *      NodeRecordHandler ---> drain() ---> Natural
+     *
+     * @param handler Receives each record.
+     * @return The number of records drained.
+     */
+    public int drain(NodeRecordHandler handler) {
+        long t = tail.get();
+        long h = head.get();
+        int count = 0;
+        while (t < h) {
+            int slot = (int) t & mask;
+            handler.onNodeRecord(nodes[slot], timestamps[slot], majors[slot], minors[slot],
+                    rssis[slot], txPowers[slot]);
+            t++;
+            count++;
+            tail.lazySet(t);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of records waiting to be drained.
+     *
+     * @return The current size.
+     */
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * Returns how many records have been dropped because the ring was full.
+     *
+     * @return The dropped count.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+import com.example.mborper.breathbetter.measurements.GasAlertManager;
+import com.example.mborper.breathbetter.measurements.WindowSummary;
+
+import java.io.IOException;
+
+/**
+ * Replays a scan capture log through the same ingest code the service runs: iBeacon parsing,
+ * UUID matching, then BeaconPipeline's deduplication, validation and window aggregation, and
+ * finally the alert threshold check on every window summary.
+ * <p>
+ * Runs on the plain JVM. Windows are cut every windowNanos of capture time, measured from the
+ * first record of each window. A silence longer than a window means the scanner slept, and
+ * the pipeline is told so, as the service does, before the next record. At MAXIMUM speed records are pushed back to back and the result
+ * gives the ingest throughput; at WALL_CLOCK speed the original gaps between records are
+ * reproduced through the Sleeper.
+ *
+ * @since 2026-10-18
+ */
+public class ScanReplayDriver {
+
+    /**
+     * How fast records are replayed.
+     */
+    public enum Speed {
+        /** Keep the time between records of the capture. */
+        WALL_CLOCK,
+        /** Replay as fast as the pipeline allows. */
+        MAXIMUM
+    }
+
+    /**
+     * Receives the summary of every replayed window.
+     */
+    public interface SummaryListener {
+        void onWindowSummary(WindowSummary summary, boolean alert);
+    }
+
+    /**
+     * Waits between records at WALL_CLOCK speed.
+     */
+    public interface Sleeper {
+        void sleepNanos(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * Counters of one replay.
+     */
+    public static class Result {
+        public long records;
+        public long matched;
+        public long duplicates;
+        public long invalid;
+        public long lost;
+        public long summaries;
+        public long alerts;
+        public long elapsedNanos;
+
+        /**
+         * Returns the replay throughput.
+         *      getAdvertsPerSecond() ---> Real
+         *
+         * @return Records processed per second of real time.
+         */
+        public double getAdvertsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{records=" + records + ", matched=" + matched + ", duplicates=" + duplicates
+                    + ", invalid=" + invalid + ", lost=" + lost + ", summaries=" + summaries
+                    + ", alerts=" + alerts + ", advertsPerSecond=" + Math.round(getAdvertsPerSecond()) + "}";
+        }
+    }
+
+    private final BeaconUuidMatcher matcher;
+    private final long windowNanos;
+    private final IBeaconFrameView view = new IBeaconFrameView();
+    private SummaryListener summaryListener;
+    private Sleeper sleeper = nanos -> Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+
+    /**
+     * Creates a replay driver.
+     *
+     * @param matcher     Matcher of the target UUID.
+     * @param windowNanos Length of each replayed scan window, in nanoseconds.
+     */
+    public ScanReplayDriver(BeaconUuidMatcher matcher, long windowNanos) {
+        this.matcher = matcher;
+        this.windowNanos = windowNanos;
+    }
+
+    public void setSummaryListener(SummaryListener summaryListener) {
+        this.summaryListener = summaryListener;
+    }
+
+    public void setSleeper(Sleeper sleeper) {
+        this.sleeper = sleeper;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Replays a whole capture log through a fresh pipeline, so every replay of the same log
+     * produces the same summaries.
+     *      ScanCaptureReader, Speed ---> replay() ---> Result
+     *
+     * @param reader The capture log, positioned after its header.
+     * @param speed  Replay speed.
+     * @return The counters of the replay.
+     * @throws IOException          if the log cannot be read.
+     * @throws InterruptedException if interrupted while waiting at WALL_CLOCK speed.
+     */
+    public Result replay(ScanCaptureReader reader, Speed speed) throws IOException, InterruptedException {
+        BeaconPipeline pipeline = new BeaconPipeline();
+        Result result = new Result();
+        long windowStart = -1;
+        long previousTimestamp = -1;
+        long start = System.nanoTime();
+
+        while (reader.next()) {
+            long timestamp = reader.getTimestampNanos();
+            if (speed == Speed.WALL_CLOCK && previousTimestamp >= 0 && timestamp > previousTimestamp) {
+                sleeper.sleepNanos(timestamp - previousTimestamp);
+            }
+
+            if (windowStart >= 0 && timestamp - windowStart >= windowNanos) {
+                closeWindow(pipeline, result);
+                windowStart = -1;
+            }
+            if (windowStart < 0) {
+                windowStart = timestamp;
+            }
+            if (previousTimestamp >= 0 && timestamp - previousTimestamp >= windowNanos) {
+                pipeline.onListeningResumed();
+            }
+
+            result.records++;
+            if (pipeline.onScanRecord(reader.getBytes(), timestamp, reader.getRssi(), view, matcher)) {
+                result.matched++;
+            }
+            previousTimestamp = timestamp;
+        }
+        closeWindow(pipeline, result);
+
+        result.elapsedNanos = System.nanoTime() - start;
+        result.duplicates = pipeline.getDuplicateCount();
+        result.invalid = pipeline.getInvalidCount();
+        result.lost = pipeline.getSequenceWindow().getLostCount();
+        return result;
+    }
+
+    /**
+     * Closes the replayed window and applies the alert threshold to its summary.
+     */
+    private void closeWindow(BeaconPipeline pipeline, Result result) {
+        WindowSummary summary = pipeline.closeWindow();
+        if (summary == null) {
+            return;
+        }
+        boolean alert = summary.getMedian() > GasAlertManager.PPM_DANGER_THRESHOLD;
+        result.summaries++;
+        if (alert) {
+            result.alerts++;
+        }
+        if (summaryListener != null) {
+            summaryListener.onWindowSummary(summary, alert);
+        }
+    }
+}
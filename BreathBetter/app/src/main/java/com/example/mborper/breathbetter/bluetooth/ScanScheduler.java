@@ -0,0 +1,81 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Decides when BeaconListeningService scans and for how long.
+ * <p>
+ * The service drives one scan cycle at a time: it calls onWindowStarted() when it starts
+ * scanning, onTargetReceived() for every advert of the target node, and onWindowEnded() when
+ * it stops. Scan results may be delivered in batches, so an advert is passed with the time it
+ * was received, not the time it was processed. Between those calls it asks the scheduler for the window length, whether the window
+ * can end early and how long to sleep before the next one.
+ * <p>
+ * All methods are called from the service thread.
+ *
+ * @since 2026-10-18
+ */
+public interface ScanScheduler {
+
+    /**
+     * Updates the device conditions the scheduler can adapt to. Called once per cycle,
+     * before the window starts.
+     *
+     * @param moving         Whether the user has moved recently.
+     * @param batteryPercent Battery level between 0 and 100, or -1 if unknown.
+     * @param screenOn       Whether the screen is on.
+     */
+    void updateConditions(boolean moving, int batteryPercent, boolean screenOn);
+
+    /**
+     * Marks the start of a scan window.
+     */
+    void onWindowStarted();
+
+    /**
+     * Records that an advert from the target node was received in the current window.
+     *
+     * @param receivedAtMs Time the radio received the advert, on the scheduler's clock; earlier
+     *                     than now when the scan results were batched.
+     */
+    void onTargetReceived(long receivedAtMs);
+
+    /**
+     * Marks the end of the current scan window.
+     */
+    void onWindowEnded();
+
+    /**
+     * Passes the latest estimate of the link to the target node, from its SignalTracker. Called
+     * when a window that received the target closes, before onWindowEnded(). Schedulers that
+     * do not adapt to the signal can ignore it.
+     *
+     * @param distanceMeters Estimated distance to the node.
+     * @param linkQuality    Link quality between 0 and 1.
+     * @param fading         Whether the signal is dropping steadily.
+     */
+    default void onSignalUpdate(double distanceMeters, double linkQuality, boolean fading) {
+    }
+
+    /**
+     * Returns the maximum length of the next (or current) scan window.
+     *      getScanWindowMs() ---> Natural
+     *
+     * @return The window length in milliseconds.
+     */
+    long getScanWindowMs();
+
+    /**
+     * Returns whether the current window can be closed now because the target was received.
+     *      shouldEndWindowEarly() ---> T/F
+     *
+     * @return true to stop scanning before the window length has elapsed.
+     */
+    boolean shouldEndWindowEarly();
+
+    /**
+     * Returns the pause between the end of the last window and the start of the next one.
+     *      getNextDelayMs() ---> Natural
+     *
+     * @return The delay in milliseconds.
+     */
+    long getNextDelayMs();
+}
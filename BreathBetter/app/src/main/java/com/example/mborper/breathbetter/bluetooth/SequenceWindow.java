@@ -0,0 +1,198 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Sliding bitmap window over the 16-bit rolling counter a node sends in the iBeacon minor field.
+ * <p>
+ * The node repeats each frame several times and the scanner may deliver them out of order, so
+ * the counter is used as a sequence number: the window remembers the highest sequence seen and,
+ * in a 64-bit bitmap, which of the previous 63 sequences have arrived. Each advert is classified
+ * as new, late but unseen, or duplicate in O(1), and the gaps left behind are counted as lost
+ * packets (and un-counted if the missing advert shows up late). Wrap-around from 0xFFFF to 0 is
+ * handled with serial-number arithmetic. An advert far older than the window is taken as a
+ * node restart and resynchronizes the window.
+ * <p>
+ * The scanner is duty-cycled, so the node keeps counting while nobody listens. After
+ * onListeningResumed() the first newer advert moves the window up to it without counting
+ * the sequences sent during the sleep as lost: they were never expected.
+ * <p>
+ * Not thread-safe: one instance per node, used from the service thread.
+ *
+ * @since 2026-10-18
+ */
+public class SequenceWindow {
+    public static final int WINDOW_SIZE = 64;
+    private static final int SEQUENCE_MASK = 0xFFFF;
+    private static final int HALF_RANGE = 0x8000;
+
+    /**
+     * Classification of an advert by its sequence number.
+     */
+    public enum Result {
+        /** The next expected sequence. */
+        IN_ORDER,
+        /** Newer than expected: the sequences in between are counted as lost. */
+        GAP,
+        /** Older than the highest seen but not received before, e.g. a packet counted as lost. */
+        REORDERED,
+        /** Already received. */
+        DUPLICATE,
+        /** Far behind the window, taken as a node restart: the window starts over. */
+        RESTART,
+        /** First newer advert after the scanner slept: the sequences in between were not heard, not lost. */
+        RESUMED;
+
+        /**
+         * Returns whether the advert carries a reading not seen before.
+         *
+         * @return false only for duplicates.
+         */
+        public boolean isNew() {
+            return this != DUPLICATE;
+        }
+    }
+
+    private boolean initialized = false;
+    private boolean resumePending = false;
+    private int highest;
+    private long bitmap; // bit i set = sequence (highest - i) received
+    private long missing; // bit i set = sequence (highest - i) counted as lost by a gap
+
+    private long received;
+    private long duplicates;
+    private long reordered;
+    private long lost;
+    private long restarts;
+
+    /**
+     * Classifies an advert by its sequence number and updates the window and the counters.
+     *      Natural ---> accept() ---> Result
+     *
+     * @param sequence The rolling counter, 0..65535 (higher bits are ignored).
+     * @return How the advert relates to those already seen.
+     */
+    public Result accept(int sequence) {
+        sequence &= SEQUENCE_MASK;
+        if (!initialized) {
+            initialized = true;
+            resumePending = false;
+            resync(sequence);
+            return Result.IN_ORDER;
+        }
+
+        // Signed distance from the highest sequence, modulo 2^16
+        int delta = (sequence - highest) & SEQUENCE_MASK;
+        if (delta >= HALF_RANGE) {
+            delta -= SEQUENCE_MASK + 1;
+        }
+
+        if (delta > 0) {
+            if (resumePending) {
+                // Shifted like a gap, so late copies are still deduplicated, but nothing is lost
+                resumePending = false;
+                bitmap = delta >= WINDOW_SIZE ? 1L : (bitmap << delta) | 1L;
+                missing = delta >= WINDOW_SIZE ? 0 : missing << delta;
+                highest = sequence;
+                received++;
+                return delta == 1 ? Result.IN_ORDER : Result.RESUMED;
+            }
+            if (delta >= WINDOW_SIZE) {
+                bitmap = 1L;
+                missing = ~1L;
+            } else {
+                bitmap = (bitmap << delta) | 1L;
+                missing = (missing << delta) | (((1L << delta) - 1) & ~1L);
+            }
+            highest = sequence;
+            received++;
+            lost += delta - 1;
+            return delta == 1 ? Result.IN_ORDER : Result.GAP;
+        }
+
+        int offset = -delta;
+        if (offset >= WINDOW_SIZE) {
+            restarts++;
+            resync(sequence);
+            return Result.RESTART;
+        }
+
+        long bit = 1L << offset;
+        if ((bitmap & bit) != 0) {
+            duplicates++;
+            return Result.DUPLICATE;
+        }
+        bitmap |= bit;
+        received++;
+        reordered++;
+        // Only a sequence skipped by a gap was counted; one older than the first seen was not
+        if ((missing & bit) != 0) {
+            missing &= ~bit;
+            lost--;
+        }
+        return Result.REORDERED;
+    }
+
+    /**
+     * Tells the window the scanner starts listening again after a sleep. The next newer advert
+     * resynchronizes the window instead of counting the adverts sent meanwhile as lost; gaps
+     * after it count as usual.
+     */
+    public void onListeningResumed() {
+        resumePending = initialized;
+    }
+
+    /**
+     * Forgets the sequence history, keeping the counters.
+     */
+    public void reset() {
+        initialized = false;
+        bitmap = 0;
+        missing = 0;
+    }
+
+    private void resync(int sequence) {
+        highest = sequence;
+        bitmap = 1L;
+        missing = 0;
+        received++;
+    }
+
+    /**
+     * Returns the highest sequence seen, i.e. that of the newest reading.
+     *
+     * @return The sequence, 0..65535, or -1 if none was seen since the last reset.
+     */
+    public int getHighestSequence() {
+        return initialized ? highest : -1;
+    }
+
+    public long getReceivedCount() {
+        return received;
+    }
+
+    public long getDuplicateCount() {
+        return duplicates;
+    }
+
+    public long getReorderedCount() {
+        return reordered;
+    }
+
+    public long getLostCount() {
+        return lost;
+    }
+
+    public long getRestartCount() {
+        return restarts;
+    }
+
+    /**
+     * Returns the fraction of the node's packets that never arrived.
+     *      getLossRatio() ---> Real
+     *
+     * @return lost / (received + lost), 0 if nothing was expected yet.
+     */
+    public double getLossRatio() {
+        long expected = received + lost;
+        return expected == 0 ? 0 : (double) lost / expected;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.mborper.breathbetter.bluetooth;
+
+/**
+ * Tracks the radio link to one node from the RSSI and txPower of its adverts.
+ * <p>
+ * A one-dimensional Kalman filter runs over the path loss, txPower - RSSI in dB, so a node
+ * that changes its calibrated txPower does not look like a jump in distance. The process noise
+ * grows with the time between adverts, which lets the estimate follow a user walking around
+ * after a scan pause while still ironing out the multipath noise of adverts close together.
+ * From the filtered path loss it derives:
+ * <ul>
+ *   <li> a distance estimate with the log-distance path-loss model,
+ *   <li> a trend, the rate at which the path loss changes, in dB per second,
+ *   <li> a link quality between 0 and 1, from the margin above the receiver sensitivity.
+ * </ul>
+ * With these the service can tell a node that faded away because the user walked off from a
+ * node that went silent while its signal was strong, which points to the node itself.
+ * <p>
+ * Every update is O(1) and allocation-free. Not thread-safe.
+ *
+ * @since 2026-10-18
+ */
+public class SignalTracker {
+    public static final double PATH_LOSS_EXPONENT = 2.0; // free space; 2.5-3 indoors
+    public static final int SENSITIVITY_DBM = -100;
+    public static final int STRONG_RSSI_DBM = -60;
+    // Above this path-loss growth the user is considered to be walking away. Far from the node
+    // a walk changes the path loss slowly, so there the weak link quality gives it away instead
+    public static final double FADING_DB_PER_SECOND = 0.5;
+    // Below this quality a fading link is considered about to be lost
+    public static final double WEAK_LINK_QUALITY = 0.4;
+
+    // Variance of a single RSSI reading, (4 dB)^2
+    private static final double MEASUREMENT_VARIANCE = 16.0;
+    // How much the true path loss may drift per second, in dB^2
+    private static final double PROCESS_VARIANCE_PER_SECOND = 4.0;
+    // Time constant of the trend average: long enough to average out the multipath noise
+    private static final double TREND_TIME_CONSTANT_SECONDS = 10.0;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * What a silence of the node most likely means, judged from its last known signal.
+     */
+    public enum SilenceCause {
+        /** No advert was ever tracked. */
+        UNKNOWN,
+        /** The signal was weak or fading: the user walked out of range. */
+        OUT_OF_RANGE,
+        /** The signal was fine: the node stopped advertising. */
+        NODE_SILENT
+    }
+
+    private double pathLoss;
+    private double variance;
+    private double trendDbPerSecond;
+    private int txPower;
+    private long lastTimestampNanos;
+    private long updateCount;
+
+    /**
+     * Creates a tracker with no history.
+     */
+    public SignalTracker() {
+        reset();
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Feeds one advert to the filter.
+     *      Natural, Z, Z ---> update()
+     *
+     * @param timestampNanos Time the advert was received.
+     * @param rssi           Received signal strength in dBm.
+     * @param txPower        Calibrated RSSI at 1 m, as sent by the node.
+     */
+    public void update(long timestampNanos, int rssi, int txPower) {
+        this.txPower = txPower;
+        double measured = txPower - rssi;
+
+        if (updateCount == 0) {
+            pathLoss = measured;
+            variance = MEASUREMENT_VARIANCE;
+            trendDbPerSecond = 0;
+        } else {
+            double dt = Math.max(0, timestampNanos - lastTimestampNanos) / NANOS_PER_SECOND;
+            double previous = pathLoss;
+
+            // Predict: the path loss is assumed constant, with uncertainty growing over time
+            variance += PROCESS_VARIANCE_PER_SECOND * dt;
+            // Correct
+            double gain = variance / (variance + MEASUREMENT_VARIANCE);
+            pathLoss += gain * (measured - pathLoss);
+            variance *= 1 - gain;
+
+            if (dt > 0) {
+                double slope = (pathLoss - previous) / dt;
+                double alpha = 1 - Math.exp(-dt / TREND_TIME_CONSTANT_SECONDS);
+                trendDbPerSecond += alpha * (slope - trendDbPerSecond);
+            }
+        }
+        lastTimestampNanos = timestampNanos;
+        updateCount++;
+    }
+
+    /**
+     * Forgets the history, e.g. when the node is replaced.
+     */
+    public void reset() {
+        pathLoss = 0;
+        variance = 0;
+        trendDbPerSecond = 0;
+        txPower = 0;
+        lastTimestampNanos = 0;
+        updateCount = 0;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the smoothed RSSI.
+     *      getRssi() ---> R
+     *
+     * @return The filtered RSSI in dBm, or NaN before the first advert.
+     */
+    public double getRssi() {
+        return updateCount == 0 ? Double.NaN : txPower - pathLoss;
+    }
+
+    /**
+     * Returns the estimated distance to the node, d = 10 ^ ((txPower - RSSI) / (10 * n)).
+     *      getDistanceMeters() ---> R
+     *
+     * @return The distance in meters, or NaN before the first advert.
+     */
+    public double getDistanceMeters() {
+        return updateCount == 0 ? Double.NaN : Math.pow(10, pathLoss / (10 * PATH_LOSS_EXPONENT));
+    }
+
+    /**
+     * Returns how fast the path loss is changing; positive means the node is getting further.
+     *      getTrendDbPerSecond() ---> R
+     *
+     * @return The trend in dB per second.
+     */
+    public double getTrendDbPerSecond() {
+        return trendDbPerSecond;
+    }
+
+    /**
+     * Returns the quality of the link, from 0 at the receiver sensitivity to 1 at a strong
+     * signal.
+     *      getLinkQuality() ---> R
+     *
+     * @return The quality between 0 and 1; 0 before the first advert.
+     */
+    public double getLinkQuality() {
+        if (updateCount == 0) {
+            return 0;
+        }
+        double quality = (getRssi() - SENSITIVITY_DBM) / (STRONG_RSSI_DBM - SENSITIVITY_DBM);
+        return Math.max(0, Math.min(1, quality));
+    }
+
+    /**
+     * Returns whether the signal is dropping steadily, as when the user walks away.
+     *      isFading() ---> T/F
+     *
+     * @return true if the path loss grows faster than FADING_DB_PER_SECOND.
+     */
+    public boolean isFading() {
+        return updateCount > 1 && trendDbPerSecond > FADING_DB_PER_SECOND;
+    }
+
+    /**
+     * Judges what a silence of the node means from the last known signal.
+     *      explainSilence() ---> SilenceCause
+     *
+     * @return The most likely cause.
+     */
+    public SilenceCause explainSilence() {
+        if (updateCount == 0) {
+            return SilenceCause.UNKNOWN;
+        }
+        return isFading() || getLinkQuality() < WEAK_LINK_QUALITY
+                ? SilenceCause.OUT_OF_RANGE
+                : SilenceCause.NODE_SILENT;
+    }
+
+    /**
+     * Returns the variance of the path-loss estimate; it shrinks as adverts agree.
+     *
+     * @return The variance in dB^2.
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    public long getLastTimestampNanos() {
+        return lastTimestampNanos;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+}
@@ -49,36 +49,59 @@ public class Utilities {
     }
 
     /**
-     * Converts a byte array to an integer.
+     * Converts a byte array, read as a signed big-endian number, to an integer.
+     * Longer arrays keep their 4 least significant bytes.
      *      [bytes] ---> bytesToInt() ---> Natural
      *
      * @param bytes The byte array to convert.
      * @return The integer representation of the byte array.
      */
     public static int bytesToInt(byte[] bytes) {
-        return new BigInteger(bytes).intValue();
+        return (int) signedTail(bytes);
     }
 
     /**
-     * Converts a byte array to an integer.
+     * Converts a byte array, read as a signed big-endian number, to a float.
      *      [bytes] ---> bytesToFloat() ---> Float
      *
      * @param bytes The byte array to convert.
      * @return The integer representation of the byte array.
      */
     public static float bytesToFloat(byte[] bytes) {
-        return new BigInteger(bytes).floatValue();
+        if (bytes.length > Long.BYTES) {
+            // Does not fit in a long; rare enough to keep the exact slow path
+            return new BigInteger(bytes).floatValue();
+        }
+        return (float) signedTail(bytes);
     }
 
     /**
-     * Converts a byte array to a long value.
+     * Converts a byte array, read as a signed big-endian number, to a long value.
+     * Longer arrays keep their 8 least significant bytes.
      *      [bytes] ---> bytesToLong() ---> Natural
      *
      * @param bytes The byte array to convert.
      * @return The long representation of the byte array.
      */
     public static long bytesToLong(byte[] bytes) {
-        return new BigInteger(bytes).longValue();
+        return signedTail(bytes);
+    }
+
+    /**
+     * Reads up to the last 8 bytes of the array as a signed big-endian value, giving the same
+     * low-order bits BigInteger would.
+     *      [bytes] ---> signedTail() ---> Z
+     *
+     * @param bytes The byte array to convert.
+     * @return The sign-extended value.
+     * @throws NumberFormatException if the array is empty, as BigInteger does.
+     */
+    private static long signedTail(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new NumberFormatException("Zero length byte array");
+        }
+        int length = Math.min(bytes.length, Long.BYTES);
+        return ByteCodec.signedBE(bytes, bytes.length - length, length);
     }
 
     /**
@@ -89,16 +112,7 @@ public class Utilities {
      * @return The hexadecimal string representation of the byte array.
      */
     public static String bytesToHexString(byte[] bytes) {
-        if (bytes == null) {
-            return "";
-        }
-
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-            sb.append(':');
-        }
-        return sb.toString();
+        return ByteCodec.toHex(bytes, ':');
     }
 
     /**
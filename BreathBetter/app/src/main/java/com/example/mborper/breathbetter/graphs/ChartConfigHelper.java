@@ -12,6 +12,8 @@ import android.widget.Toast;
 
 import com.example.mborper.breathbetter.R;
 import com.example.mborper.breathbetter.activities.MainActivity;
+import com.example.mborper.breathbetter.measurements.BucketRollup;
+import com.example.mborper.breathbetter.measurements.DashboardSeries;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.components.LimitLine;
 import com.github.mikephil.charting.components.XAxis;
@@ -24,16 +26,14 @@ import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.github.mikephil.charting.highlight.Highlight;
 import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import android.graphics.DashPathEffect;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * Helper class to configure and manage the setup of BarChart for visualizing air quality data.
@@ -42,7 +42,7 @@ import java.util.Map;
  *
  * @author Alejandro Rosado
  * @since  2024-11-10
- * last edited: 2025-01-10
+ * last edited: 2026-10-18
  */
 public class ChartConfigHelper {
     private static final String LOG_TAG = "ChartConfigHelper";
@@ -158,8 +158,61 @@ public class ChartConfigHelper {
      * @param context             Context for showing Toast messages
      */
     public static void updateBarChart(BarChart barChart, JsonArray airQualityReadings, Context context) {
+        updateBarChart(barChart, DashboardSeries.fromJson(airQualityReadings), context);
+    }
+
+    /**
+     * Updates the BarChart with air quality readings already parsed, e.g. read from the local
+     * MeasurementHistoryDb before the dashboard response arrives.
+     *
+     * @param barChart  The BarChart to update
+     * @param readings  Air quality readings in time order
+     * @param context   Context for showing Toast messages
+     */
+    public static void updateBarChart(BarChart barChart, DashboardSeries readings, Context context) {
+        BucketRollup buckets = newDashboardRollup();
+        if (readings != null) {
+            buckets.mergeDashboard(readings, null);
+        }
+        updateBarChart(barChart, buckets, null, context);
+    }
+
+    /**
+     * Returns an empty rollup with the 2-hour buckets of the chart, starting at local even hours.
+     *
+     * @return The rollup
+     */
+    public static BucketRollup newDashboardRollup() {
+        long offsetMs = TimeZone.getDefault().getOffset(System.currentTimeMillis());
+        return new BucketRollup(BucketRollup.DEFAULT_BUCKET_MS, offsetMs, BucketRollup.DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Updates the BarChart with the 2-hour buckets already aggregated, one bar per bucket from
+     * the oldest with readings to the newest. A bucket without server readings shows the
+     * node's own readings, if any. Both rollups must come from newDashboardRollup().
+     *
+     * @param barChart      The BarChart to update
+     * @param serverBuckets Buckets of the dashboard readings
+     * @param localBuckets  Buckets of the readings received from the node, or null
+     * @param context       Context for showing Toast messages
+     */
+    public static void updateBarChart(BarChart barChart, BucketRollup serverBuckets,
+                                      BucketRollup localBuckets, Context context) {
+        long firstBucket = serverBuckets.getOldestFilledBucket();
+        long lastBucket = serverBuckets.getNewestBucket();
+        if (localBuckets != null && localBuckets.getOldestFilledBucket() != Long.MIN_VALUE) {
+            firstBucket = firstBucket == Long.MIN_VALUE
+                    ? localBuckets.getOldestFilledBucket()
+                    : Math.min(firstBucket, localBuckets.getOldestFilledBucket());
+            lastBucket = Math.max(lastBucket, localBuckets.getNewestBucket());
+        }
+        if (firstBucket != Long.MIN_VALUE) {
+            // Never more bars than a rollup keeps, even if the two sources are far apart
+            firstBucket = Math.max(firstBucket, lastBucket - serverBuckets.getCapacity() + 1);
+        }
         // Verificar si los datos están disponibles
-        if (airQualityReadings == null || airQualityReadings.size() == 0) {
+        if (firstBucket == Long.MIN_VALUE) {
             Log.e("ChartConfigHelper", "No air quality readings available");
             clearChart(barChart);
             return;
@@ -169,44 +222,23 @@ public class ChartConfigHelper {
         ArrayList<Integer> colorList = new ArrayList<>();
         ArrayList<String> hours = new ArrayList<>();
 
-        // Determinar rango de tiempo desde el primer y último timestamp
-        LocalDateTime startTime = parseTimestamp(airQualityReadings.get(0).getAsJsonObject().get("timestamp").getAsString());
-        LocalDateTime endTime = parseTimestamp(airQualityReadings.get(airQualityReadings.size() - 1).getAsJsonObject().get("timestamp").getAsString());
-
-        // Crear un mapa para almacenar lecturas por hora
-        Map<String, JsonObject> readingsByHour = new HashMap<>();
-        for (int i = 0; i < airQualityReadings.size(); i++) {
-            JsonObject reading = airQualityReadings.get(i).getAsJsonObject();
-            String hour = convertTimestampToHour(reading.get("timestamp").getAsString());
-            readingsByHour.put(hour, reading);
-        }
-
         // Generar las barras para cada intervalo de 2 horas
-        LocalDateTime currentTime = startTime;
+        DateTimeFormatter hourFormatter = DateTimeFormatter.ofPattern("HH'h'");
         int index = 0;
-        while (currentTime.isBefore(endTime)) { // Excluir endTime del bucle
-            String hour = currentTime.format(DateTimeFormatter.ofPattern("HH'h'"));
-            hours.add(hour);
-
-            JsonObject reading = readingsByHour.get(hour);
-            if (reading != null &&
-                    reading.has("proportionalValue") &&
-                    !reading.get("proportionalValue").isJsonNull()) {
-
-                int proportionalValue = reading.get("proportionalValue").getAsInt();
-                String airQuality = reading.has("airQuality") && !reading.get("airQuality").isJsonNull()
-                        ? reading.get("airQuality").getAsString()
-                        : "No Data";
-
-                entries.add(new BarEntry(index, proportionalValue));
-                colorList.add(getColorForAirQuality(airQuality));
+        for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+            hours.add(toLocalDateTime(serverBuckets.getBucketStartMs(bucket)).format(hourFormatter));
+
+            BucketRollup source = serverBuckets.getCount(bucket) > 0 ? serverBuckets
+                    : localBuckets != null && localBuckets.getCount(bucket) > 0 ? localBuckets
+                    : null;
+            if (source != null) {
+                entries.add(new BarEntry(index, source.getMean(bucket)));
+                colorList.add(getColorForAirQuality(source.getWorstQuality(bucket)));
             } else {
                 // Agregar una barra mínima para las horas sin datos
                 entries.add(new BarEntry(index, 0.1f)); // Valor mínimo
                 colorList.add(Color.parseColor("#E0E0E0")); // Gris claro
             }
-
-            currentTime = currentTime.plusHours(2); // Incrementar por 2 horas
             index++;
         }
 
@@ -270,15 +302,13 @@ public class ChartConfigHelper {
 
 
     /**
-     * Helper method to parse a timestamp string into LocalDateTime.
+     * Helper method to convert a Unix time in milliseconds into local LocalDateTime.
      *
-     * @param timestamp The timestamp string to parse
-     * @return Parsed LocalDateTime object
+     * @param timestampMs The time to convert
+     * @return LocalDateTime in the system time zone
      */
-    private static LocalDateTime parseTimestamp(String timestamp) {
-        return ZonedDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME)
-                .withZoneSameInstant(ZoneId.systemDefault())
-                .toLocalDateTime();
+    private static LocalDateTime toLocalDateTime(long timestampMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMs), ZoneId.systemDefault());
     }
 
     /**
@@ -318,38 +348,19 @@ public class ChartConfigHelper {
     }
 
 
-    /**
-     * Converts a timestamp to a local hour format.
-     *
-     * @param timestamp The timestamp to convert
-     * @return Formatted hour string
-     */
-    private static String convertTimestampToHour(String timestamp) {
-        try {
-            ZonedDateTime zonedDateTime = ZonedDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME);
-            LocalDateTime localDateTime = zonedDateTime.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
-            // Cambiar el patrón para formato de 24 horas con "h"
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH'h'");
-            return localDateTime.format(formatter);
-        } catch (Exception e) {
-            Log.e(LOG_TAG, "Error converting timestamp: " + e.getMessage());
-            return "";
-        }
-    }
-
     /**
      * Determines the color for a bar based on air quality.
      *
-     * @param airQuality The air quality status
+     * @param airQuality The air quality code, see DashboardSeries
      * @return Color resource for the bar
      */
-    private static int getColorForAirQuality(String airQuality) {
+    private static int getColorForAirQuality(byte airQuality) {
         switch (airQuality) {
-            case "Good":
+            case DashboardSeries.QUALITY_GOOD:
                 return Color.parseColor("#16A34A"); // Green
-            case "Regular":
+            case DashboardSeries.QUALITY_REGULAR:
                 return Color.parseColor("#EAB308"); // Yellow
-            case "Bad":
+            case DashboardSeries.QUALITY_BAD:
                 return Color.parseColor("#DC2626"); // Red
             default:
                 return Color.parseColor("#E3E3E3"); // Gray for "No Data"
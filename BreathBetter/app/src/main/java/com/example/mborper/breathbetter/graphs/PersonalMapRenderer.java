@@ -0,0 +1,89 @@
+package com.example.mborper.breathbetter.graphs;
+
+import com.example.mborper.breathbetter.measurements.DashboardSeries;
+import com.example.mborper.breathbetter.measurements.GeohashIndex;
+
+import java.util.Locale;
+
+/**
+ * Draws the user's personal pollution map, "where I was exposed", as a self-contained HTML page
+ * with one SVG square per geohash cell, colored like the dashboard chart by the mean reading
+ * of the cell. It needs no network and no map tiles, so the WebView of the map screen can show
+ * it offline and at once.
+ * <p>
+ * The page covers the box around every reading, at the finest precision that keeps it at most
+ * a given number of cells across.
+ *
+ * @since 2026-10-18
+ */
+public class PersonalMapRenderer {
+    public static final int DEFAULT_MAX_CELLS = 48;
+
+    private static final double MIN_MARGIN_DEGREES = 0.005; // About 500 m around a single place
+
+    private PersonalMapRenderer() {
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Builds the page of the cells of an index.
+     *      GeohashIndex, Texto, Z ---> toHtml() ---> Texto
+     *
+     * @param index    The user's readings.
+     * @param title    Heading shown above the map.
+     * @param maxCells Cells across the map at most.
+     * @return The HTML page, or null if the index has no readings.
+     */
+    public static String toHtml(GeohashIndex index, String title, int maxCells) {
+        double[] bounds = index.getBounds();
+        if (bounds == null) {
+            return null;
+        }
+        double latMargin = Math.max(MIN_MARGIN_DEGREES, (bounds[2] - bounds[0]) * 0.1);
+        double lonMargin = Math.max(MIN_MARGIN_DEGREES, (bounds[3] - bounds[1]) * 0.1);
+        final double south = Math.max(-90, bounds[0] - latMargin);
+        final double west = Math.max(-180, bounds[1] - lonMargin);
+        final double north = Math.min(90, bounds[2] + latMargin);
+        final double east = Math.min(180, bounds[3] + lonMargin);
+        // Longitude degrees shrink with the latitude; scaling them keeps the cells square
+        final double xScale = Math.cos(Math.toRadians((south + north) / 2));
+        int precision = index.precisionFor(south, west, north, east, maxCells);
+
+        final StringBuilder cells = new StringBuilder();
+        index.query(south, west, north, east, precision, (cell, cellPrecision, s, w, n, e, count, mean, max, lastTimestampMs) ->
+                cells.append(String.format(Locale.US,
+                        "<rect x=\"%.6f\" y=\"%.6f\" width=\"%.6f\" height=\"%.6f\" fill=\"%s\">"
+                                + "<title>%s: %.3f ppm (max %.3f, %d medidas)</title></rect>\n",
+                        (w - west) * xScale, north - n, (e - w) * xScale, n - s,
+                        colorOf(mean), GeohashIndex.toGeohash(cell, cellPrecision), mean, max, count)));
+
+        return String.format(Locale.US,
+                "<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\">"
+                        + "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">"
+                        + "<style>body{margin:0;font-family:sans-serif;background:#FFFFFF}"
+                        + "h3{margin:12px 16px;color:#212121}"
+                        + "svg{display:block;width:100vw;height:80vh;background:#F5F5F5}"
+                        + "rect{fill-opacity:0.75}</style></head><body>\n<h3>%s</h3>\n"
+                        + "<svg viewBox=\"0 0 %.6f %.6f\" preserveAspectRatio=\"xMidYMid meet\">\n%s</svg>\n"
+                        + "</body></html>\n",
+                escape(title), (east - west) * xScale, north - south, cells);
+    }
+
+    /**
+     * Returns the chart color of a reading in ppm.
+     */
+    private static String colorOf(float ppm) {
+        switch (DashboardSeries.qualityOf(DashboardSeries.proportionalValueOf(ppm))) {
+            case DashboardSeries.QUALITY_GOOD:
+                return "#16A34A"; // Green
+            case DashboardSeries.QUALITY_REGULAR:
+                return "#EAB308"; // Yellow
+            default:
+                return "#DC2626"; // Red
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Reads the bit fields written by a BitWriter, most significant bit first.
+ *
+ * @since 2026-10-18
+ */
+final class BitReader {
+    private final long[] words;
+    private int position;
+
+    /**
+     * Creates a reader positioned at the first bit.
+     *
+     * @param words The encoded words.
+     */
+    BitReader(long[] words) {
+        this.words = words;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Reads an unsigned field.
+     *      Natural ---> read() ---> Z
+     *
+     * @param count Number of bits, 1 to 64.
+     * @return The field in the low bits of the result.
+     */
+    long read(int count) {
+        int index = position >>> 6;
+        int used = position & 63;
+        int available = 64 - used;
+        long value;
+        if (count <= available) {
+            value = (words[index] << used) >>> (64 - count);
+        } else {
+            long high = (words[index] << used) >>> (64 - count);
+            value = high | (words[index + 1] >>> (64 - (count - available)));
+        }
+        position += count;
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) != 0;
+    }
+
+    /**
+     * Reads a field written from a signed value and sign-extends it.
+     *      Natural ---> readSigned() ---> Z
+     *
+     * @param count Number of bits, 1 to 64.
+     * @return The signed value.
+     */
+    long readSigned(int count) {
+        long value = read(count);
+        return count == 64 ? value : (value << (64 - count)) >> (64 - count);
+    }
+
+    int getPosition() {
+        return position;
+    }
+}
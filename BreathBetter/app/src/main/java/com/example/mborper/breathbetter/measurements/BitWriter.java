@@ -0,0 +1,75 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.util.Arrays;
+
+/**
+ * Appends bit fields, most significant bit first, to a fixed array of 64-bit words.
+ * <p>
+ * The array is sized by the caller for the worst case, so write() never grows or copies it and
+ * costs O(1). Used by TimeSeriesChunk to encode its columns.
+ *
+ * @since 2026-10-18
+ */
+final class BitWriter {
+    private final long[] words;
+    private int bitLength;
+
+    /**
+     * Creates a writer able to hold the given number of bits.
+     *
+     * @param capacityBits Bits the writer can hold at most.
+     */
+    BitWriter(int capacityBits) {
+        this.words = new long[(capacityBits + 63) >>> 6];
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Appends the low bits of a value.
+     *      Z, Natural ---> write()
+     *
+     * @param value The value; only its low count bits are written.
+     * @param count Number of bits, 1 to 64.
+     */
+    void write(long value, int count) {
+        if (count < 64) {
+            value &= (1L << count) - 1;
+        }
+        int index = bitLength >>> 6;
+        int used = bitLength & 63;
+        int free = 64 - used;
+        if (count <= free) {
+            words[index] |= value << (free - count);
+        } else {
+            words[index] |= value >>> (count - free);
+            words[index + 1] = value << (64 - (count - free));
+        }
+        bitLength += count;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    int getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Returns a copy of the words holding the bits written so far.
+     *
+     * @return The used words.
+     */
+    long[] toWords() {
+        return Arrays.copyOf(words, (bitLength + 63) >>> 6);
+    }
+
+    /**
+     * Returns the backing words, for reading them while more bits may be appended.
+     *
+     * @return The words, not to be modified.
+     */
+    long[] words() {
+        return words;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.util.Arrays;
+
+/**
+ * Running aggregates of readings in fixed time buckets, e.g. the 2-hour bars of the dashboard
+ * chart, kept for the newest capacity buckets.
+ * <p>
+ * A bucket is identified by its index since the epoch, floor((t + offset) / bucketMs), so
+ * readings of the same hour on different days never share a bucket. Each bucket holds a
+ * count, a sum, a max and the worst air quality code in parallel arrays used as a ring, and
+ * add() updates one of them in O(1). A reading newer than the newest bucket moves the window
+ * forward, and the buckets that fall out of it are reused; one older than the window is
+ * dropped.
+ * <p>
+ * Dashboard responses, which repeat the readings already merged, go through mergeDashboard(),
+ * which only touches the buckets of new or changed readings.
+ * <p>
+ * Not thread-safe.
+ *
+ * @since 2026-10-18
+ */
+public class BucketRollup {
+    public static final long DEFAULT_BUCKET_MS = 2 * 60 * 60 * 1000L;
+    public static final int DEFAULT_BUCKETS = 12; // 24 h of 2-hour buckets
+
+    private final long bucketMs;
+    private final long offsetMs;
+    private final long[] slotBuckets; // Bucket held by each slot, or Long.MIN_VALUE
+    private final int[] counts;
+    private final double[] sums;
+    private final float[] maxes;
+    private final byte[] worstQualities;
+    private long newestBucket = Long.MIN_VALUE;
+    private long updateCount;
+
+    /**
+     * Creates an empty rollup.
+     *
+     * @param bucketMs Length of a bucket in milliseconds.
+     * @param offsetMs Added to the Unix time before bucketing, e.g. the time zone offset so
+     *                 buckets start at local even hours.
+     * @param capacity Number of buckets kept, newest first.
+     */
+    public BucketRollup(long bucketMs, long offsetMs, int capacity) {
+        if (bucketMs <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Bucket length and capacity must be positive");
+        }
+        this.bucketMs = bucketMs;
+        this.offsetMs = offsetMs;
+        slotBuckets = new long[capacity];
+        counts = new int[capacity];
+        sums = new double[capacity];
+        maxes = new float[capacity];
+        worstQualities = new byte[capacity];
+        Arrays.fill(slotBuckets, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the bucket a time falls in.
+     *      Natural ---> bucketOf() ---> Z
+     *
+     * @param timestampMs Unix time in milliseconds.
+     * @return The bucket index.
+     */
+    public long bucketOf(long timestampMs) {
+        return Math.floorDiv(timestampMs + offsetMs, bucketMs);
+    }
+
+    /**
+     * Returns the Unix time at which a bucket starts.
+     *      Z ---> getBucketStartMs() ---> Natural
+     *
+     * @param bucket The bucket index.
+     * @return Its start, Unix milliseconds.
+     */
+    public long getBucketStartMs(long bucket) {
+        return bucket * bucketMs - offsetMs;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Adds a reading to its bucket.
+     *      Natural, Real, Z ---> add() ---> T/F
+     *
+     * @param timestampMs Time of the reading, Unix milliseconds.
+     * @param value       The value, e.g. on the chart's proportional scale.
+     * @param airQuality  One of the DashboardSeries.QUALITY_ codes.
+     * @return false if the reading is older than the oldest bucket kept, and was dropped.
+     */
+    public boolean add(long timestampMs, float value, byte airQuality) {
+        long bucket = bucketOf(timestampMs);
+        if (bucket > newestBucket) {
+            // The slots skipped over still name older buckets, so they read as empty and
+            // are reset when a reading of their new bucket arrives
+            newestBucket = bucket;
+        } else if (bucket <= newestBucket - slotBuckets.length) {
+            return false;
+        }
+        int slot = slotOf(bucket);
+        if (slotBuckets[slot] != bucket) {
+            resetSlot(slot, bucket);
+        }
+        if (counts[slot] == 0 || value > maxes[slot]) {
+            maxes[slot] = value;
+        }
+        counts[slot]++;
+        sums[slot] += value;
+        if (airQuality > worstQualities[slot]) {
+            worstQualities[slot] = airQuality;
+        }
+        updateCount++;
+        return true;
+    }
+
+    private int slotOf(long bucket) {
+        return (int) Math.floorMod(bucket, (long) slotBuckets.length);
+    }
+
+    private void resetSlot(int slot, long bucket) {
+        slotBuckets[slot] = bucket;
+        counts[slot] = 0;
+        sums[slot] = 0;
+        maxes[slot] = 0;
+        worstQualities[slot] = DashboardSeries.QUALITY_NONE;
+    }
+
+    /**
+     * Empties one bucket, if it is in the window.
+     *      Z ---> clearBucket()
+     *
+     * @param bucket The bucket index.
+     */
+    public void clearBucket(long bucket) {
+        if (contains(bucket)) {
+            resetSlot(slotOf(bucket), bucket);
+            updateCount++;
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Merges a dashboard response given the previous one already merged. Only the buckets of
+     * readings that are new or changed are touched: each is cleared and refilled from the
+     * response, so readings repeated by every poll are not counted twice and a reading the
+     * server revised replaces its old value.
+     *      DashboardSeries, DashboardSeries ---> mergeDashboard() ---> Natural
+     *
+     * @param series   The readings of the response, in time order.
+     * @param previous The readings merged last time, or null if none.
+     * @return The number of buckets refilled; 0 if nothing changed.
+     */
+    public int mergeDashboard(DashboardSeries series, DashboardSeries previous) {
+        DashboardSeries delta = previous == null ? series : series.delta(previous);
+        int refilled = 0;
+        int next = 0; // Walks series once, since both are in time order
+        long lastBucket = Long.MIN_VALUE;
+        for (int i = 0; i < delta.size(); i++) {
+            long bucket = bucketOf(delta.getTimestamp(i));
+            if (bucket == lastBucket) {
+                continue;
+            }
+            lastBucket = bucket;
+            refilled++;
+            clearBucket(bucket);
+            while (next < series.size() && bucketOf(series.getTimestamp(next)) < bucket) {
+                next++;
+            }
+            for (; next < series.size() && bucketOf(series.getTimestamp(next)) == bucket; next++) {
+                int value = series.getProportionalValue(next);
+                if (value != DashboardSeries.NO_VALUE) {
+                    add(series.getTimestamp(next), value, series.getAirQuality(next));
+                }
+            }
+        }
+        return refilled;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns whether a bucket is one of the capacity newest.
+     */
+    private boolean contains(long bucket) {
+        return newestBucket != Long.MIN_VALUE
+                && bucket <= newestBucket && bucket > newestBucket - slotBuckets.length;
+    }
+
+    private int validSlot(long bucket) {
+        if (!contains(bucket)) {
+            return -1;
+        }
+        int slot = slotOf(bucket);
+        return slotBuckets[slot] == bucket ? slot : -1;
+    }
+
+    /**
+     * Returns the number of readings in a bucket.
+     *      Z ---> getCount() ---> Natural
+     *
+     * @param bucket The bucket index.
+     * @return The count, 0 if the bucket is empty or outside the window.
+     */
+    public int getCount(long bucket) {
+        int slot = validSlot(bucket);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * Returns the mean of the readings in a bucket.
+     *      Z ---> getMean() ---> Real
+     *
+     * @param bucket The bucket index.
+     * @return The mean, NaN if the bucket is empty.
+     */
+    public float getMean(long bucket) {
+        int slot = validSlot(bucket);
+        return slot < 0 || counts[slot] == 0 ? Float.NaN : (float) (sums[slot] / counts[slot]);
+    }
+
+    /**
+     * Returns the highest reading in a bucket.
+     *      Z ---> getMax() ---> Real
+     *
+     * @param bucket The bucket index.
+     * @return The max, NaN if the bucket is empty.
+     */
+    public float getMax(long bucket) {
+        int slot = validSlot(bucket);
+        return slot < 0 || counts[slot] == 0 ? Float.NaN : maxes[slot];
+    }
+
+    /**
+     * Returns the worst air quality among the readings in a bucket.
+     *      Z ---> getWorstQuality() ---> Z
+     *
+     * @param bucket The bucket index.
+     * @return One of the DashboardSeries.QUALITY_ codes, QUALITY_NONE if the bucket is empty.
+     */
+    public byte getWorstQuality(long bucket) {
+        int slot = validSlot(bucket);
+        return slot < 0 ? DashboardSeries.QUALITY_NONE : worstQualities[slot];
+    }
+
+    /**
+     * Returns the oldest bucket of the window that holds readings.
+     *
+     * @return Its index, or Long.MIN_VALUE if the rollup is empty.
+     */
+    public long getOldestFilledBucket() {
+        if (newestBucket == Long.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        for (long bucket = newestBucket - slotBuckets.length + 1; bucket <= newestBucket; bucket++) {
+            if (getCount(bucket) > 0) {
+                return bucket;
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the newest bucket of the window, which may be empty if its readings were
+     * cleared.
+     *
+     * @return Its index, or Long.MIN_VALUE if nothing was ever added.
+     */
+    public long getNewestBucket() {
+        return newestBucket;
+    }
+
+    public int getCapacity() {
+        return slotBuckets.length;
+    }
+
+    /**
+     * Returns a counter that grows whenever a bucket changes, so a chart can tell whether it
+     * has to be redrawn.
+     *
+     * @return The number of updates so far.
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+}
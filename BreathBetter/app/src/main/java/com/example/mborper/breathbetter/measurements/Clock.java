@@ -0,0 +1,21 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Source of monotonic time in milliseconds.
+ * <p>
+ * Components that schedule work take a Clock instead of reading the system time directly,
+ * so that they can be driven by a fake clock in JVM unit tests and long simulations.
+ * On the device it is usually backed by SystemClock::elapsedRealtime.
+ *
+ * @since 2026-10-18
+ */
+public interface Clock {
+
+    /**
+     * Returns the current time of this clock.
+     *      now() ---> Natural
+     *
+     * @return The time in milliseconds. Only differences between values are meaningful.
+     */
+    long now();
+}
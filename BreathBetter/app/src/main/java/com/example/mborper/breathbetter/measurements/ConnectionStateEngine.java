@@ -0,0 +1,370 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection state of any number of nodes, keyed by node ID, with loss detected at each node's
+ * real deadline instead of by polling.
+ * <p>
+ * Every node has exactly one deadline on a HashedTimerWheel: its last advert plus its timeout,
+ * the engine's default unless the caller gives the node its own, e.g. from how often it is
+ * expected to be heard.
+ * Adverts do not touch the wheel; they only move the node's last-seen time forward. When the
+ * deadline comes up, the wheel thread compares it with the last-seen time and either moves the
+ * deadline to where it really is now or declares the node lost. So a node advertising every
+ * second costs one atomic update per advert and one wheel visit per timeout period.
+ * <p>
+ * The status and the last-seen time of a node live together in one AtomicLong, so every
+ * transition is a single compare-and-set: nodeSeen() can be called from any thread without
+ * locks, and a loss can never be declared over an advert that raced with it.
+ * <p>
+ * advance() must be called from a single thread, e.g. a shared HandlerThread, at
+ * getNextDeadlineMs() and whenever pendingSignal runs; between deadlines it has nothing to do.
+ *
+ * @since 2026-10-18
+ */
+public class ConnectionStateEngine {
+    public static final long DEFAULT_TIMEOUT_MS = 40000;
+    public static final long DEFAULT_TICK_MS = 500;
+    private static final int WHEEL_SIZE = 256; // one turn is longer than any usual timeout
+
+    private static final NodeConnectionState.ConnectionStatus[] STATUSES =
+            NodeConnectionState.ConnectionStatus.values();
+    private static final int CONNECTED = NodeConnectionState.ConnectionStatus.CONNECTED.ordinal();
+    private static final int DISCONNECTED = NodeConnectionState.ConnectionStatus.DISCONNECTED.ordinal();
+    private static final int RECONNECTING = NodeConnectionState.ConnectionStatus.RECONNECTING.ordinal();
+    private static final int STATUS_BITS = 2;
+    private static final long STATUS_MASK = (1 << STATUS_BITS) - 1;
+
+    /**
+     * Receives the status changes of the nodes.
+     */
+    public interface Listener {
+        /**
+         * Called on the advance() thread when a node's deadline passes without adverts.
+         *
+         * @param nodeId     The node.
+         * @param lastSeenMs Time of its last advert.
+         */
+        void onConnectionLost(String nodeId, long lastSeenMs);
+
+        /**
+         * Called on the thread that reported the advert when a lost node is heard again.
+         *
+         * @param nodeId The node.
+         */
+        void onConnectionRestored(String nodeId);
+    }
+
+    /**
+     * State of one node. Only the state word is shared between threads; the wheel links are
+     * touched by the advance() thread alone.
+     */
+    private static final class NodeState extends HashedTimerWheel.Entry {
+        final String nodeId;
+        final AtomicLong state; // lastSeenMs << STATUS_BITS | status
+        volatile long timeoutMs;
+        volatile boolean removed = false;
+
+        NodeState(String nodeId, long state, long timeoutMs) {
+            this.nodeId = nodeId;
+            this.state = new AtomicLong(state);
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    private final Clock clock;
+    private final long timeoutMs;
+    private final HashedTimerWheel wheel;
+    private final ConcurrentHashMap<String, NodeState> nodes = new ConcurrentHashMap<>();
+    // Nodes that need a deadline: new, reconnected or reset. Drained by advance()
+    private final Queue<NodeState> pending = new ConcurrentLinkedQueue<>();
+    private final HashedTimerWheel.ExpiryHandler expiryHandler = this::onDeadline;
+    private final Runnable pendingSignal;
+
+    private volatile Listener listener;
+
+    /**
+     * Creates an engine with the default timeout and tick.
+     *
+     * @param clock         Source of time, for both adverts and deadlines.
+     * @param pendingSignal Called when a node needs a deadline, so an idle ticker can restart;
+     *                      may be null.
+     */
+    public ConnectionStateEngine(Clock clock, Runnable pendingSignal) {
+        this(clock, DEFAULT_TIMEOUT_MS, DEFAULT_TICK_MS, pendingSignal);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param clock         Source of time, for both adverts and deadlines.
+     * @param timeoutMs     Time without adverts after which a node is lost.
+     * @param tickMs        Precision of the deadlines.
+     * @param pendingSignal Called when a node needs a deadline; may be null.
+     */
+    public ConnectionStateEngine(Clock clock, long timeoutMs, long tickMs, Runnable pendingSignal) {
+        this.clock = clock;
+        this.timeoutMs = timeoutMs;
+        this.wheel = new HashedTimerWheel(tickMs, WHEEL_SIZE, clock.now());
+        this.pendingSignal = pendingSignal;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Records a valid advert from a node. Lock-free; callable from any thread. A new node
+     * starts connected with the default timeout, a lost one goes to RECONNECTING and a
+     * reconnecting one to CONNECTED.
+     *      Texto ---> nodeSeen() ---> ConnectionStatus
+     *
+     * @param nodeId The node.
+     * @return The status of the node after the advert.
+     */
+    public NodeConnectionState.ConnectionStatus nodeSeen(String nodeId) {
+        return seen(nodeId, 0);
+    }
+
+    /**
+     * Records a valid advert from a node and the time it may now stay silent before it is
+     * lost, e.g. a few of the intervals at which it is expected to be heard.
+     *      Texto, Natural ---> nodeSeen() ---> ConnectionStatus
+     *
+     * @param nodeId    The node.
+     * @param timeoutMs Time without adverts after which the node is lost, from now on.
+     * @return The status of the node after the advert.
+     */
+    public NodeConnectionState.ConnectionStatus nodeSeen(String nodeId, long timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeoutMs);
+        }
+        return seen(nodeId, timeoutMs);
+    }
+
+    /**
+     * Records an advert, and sets the node's timeout unless it is 0.
+     */
+    private NodeConnectionState.ConnectionStatus seen(String nodeId, long timeoutMs) {
+        long now = clock.now();
+        NodeState node = nodes.get(nodeId);
+        if (node == null) {
+            NodeState created = new NodeState(nodeId, pack(now, CONNECTED),
+                    timeoutMs > 0 ? timeoutMs : this.timeoutMs);
+            node = nodes.putIfAbsent(nodeId, created);
+            if (node == null) {
+                enqueue(created);
+                return NodeConnectionState.ConnectionStatus.CONNECTED;
+            }
+        }
+        if (timeoutMs > 0) {
+            setTimeout(node, timeoutMs);
+        }
+
+        while (true) {
+            long current = node.state.get();
+            int status = status(current);
+            int next = status == DISCONNECTED ? RECONNECTING : CONNECTED;
+            long update = pack(Math.max(now, lastSeen(current)), next);
+            if (update == current || node.state.compareAndSet(current, update)) {
+                if (status == DISCONNECTED) {
+                    // The node lost its deadline along with the connection
+                    enqueue(node);
+                    Listener l = listener;
+                    if (l != null) {
+                        l.onConnectionRestored(nodeId);
+                    }
+                }
+                return STATUSES[next];
+            }
+        }
+    }
+
+    /**
+     * Changes the time a node may stay silent before it is lost. A longer timeout takes effect
+     * when its current deadline comes up, a shorter one on the next advance(). Does nothing for
+     * a node not tracked.
+     *      Texto, Natural ---> setTimeout()
+     *
+     * @param nodeId    The node.
+     * @param timeoutMs Time without adverts after which the node is lost.
+     */
+    public void setTimeout(String nodeId, long timeoutMs) {
+        NodeState node = nodes.get(nodeId);
+        if (node != null) {
+            setTimeout(node, timeoutMs);
+        }
+    }
+
+    private void setTimeout(NodeState node, long timeoutMs) {
+        long previous = node.timeoutMs;
+        node.timeoutMs = timeoutMs;
+        if (timeoutMs < previous && status(node.state.get()) != DISCONNECTED) {
+            enqueue(node); // Its deadline must come forward
+        }
+    }
+
+    /**
+     * Marks a node connected as of now, whatever its state. Lock-free.
+     *      Texto ---> forceConnected()
+     *
+     * @param nodeId The node.
+     */
+    public void forceConnected(String nodeId) {
+        long now = clock.now();
+        NodeState node = nodes.get(nodeId);
+        if (node == null) {
+            nodeSeen(nodeId);
+            return;
+        }
+        long current;
+        do {
+            current = node.state.get();
+        } while (!node.state.compareAndSet(current, pack(Math.max(now, lastSeen(current)), CONNECTED)));
+        if (status(current) == DISCONNECTED) {
+            enqueue(node);
+        }
+    }
+
+    /**
+     * Stops tracking a node. Its deadline is dropped the next time the wheel reaches it.
+     *      Texto ---> remove()
+     *
+     * @param nodeId The node.
+     */
+    public void remove(String nodeId) {
+        NodeState node = nodes.remove(nodeId);
+        if (node != null) {
+            node.removed = true;
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Gives deadlines to the nodes that need one and fires every deadline that has passed.
+     * Must always be called from the same thread.
+     *      advance() ---> Natural
+     *
+     * @return The number of deadlines that came up, lost or moved.
+     */
+    public int advance() {
+        long now = clock.now();
+        NodeState node;
+        while ((node = pending.poll()) != null) {
+            long state = node.state.get();
+            if (!node.removed && status(state) != DISCONNECTED) {
+                wheel.schedule(node, lastSeen(state) + node.timeoutMs);
+            }
+        }
+        return wheel.advance(now, expiryHandler);
+    }
+
+    /**
+     * Handles a deadline that came up: moves it if the node was heard since, otherwise
+     * declares the node lost. Runs on the advance() thread.
+     */
+    private void onDeadline(HashedTimerWheel.Entry entry, long nowMs) {
+        NodeState node = (NodeState) entry;
+        if (node.removed) {
+            return;
+        }
+        while (true) {
+            long current = node.state.get();
+            if (status(current) == DISCONNECTED) {
+                return;
+            }
+            long deadline = lastSeen(current) + node.timeoutMs;
+            if (deadline > nowMs) {
+                wheel.schedule(node, deadline);
+                return;
+            }
+            if (node.state.compareAndSet(current, pack(lastSeen(current), DISCONNECTED))) {
+                Listener l = listener;
+                if (l != null) {
+                    l.onConnectionLost(node.nodeId, lastSeen(current));
+                }
+                return;
+            }
+        }
+    }
+
+    private void enqueue(NodeState node) {
+        pending.offer(node);
+        if (pendingSignal != null) {
+            pendingSignal.run();
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the status of a node.
+     *      Texto ---> getStatus() ---> ConnectionStatus
+     *
+     * @param nodeId The node.
+     * @return Its status; DISCONNECTED for a node never seen.
+     */
+    public NodeConnectionState.ConnectionStatus getStatus(String nodeId) {
+        NodeState node = nodes.get(nodeId);
+        return node == null ? NodeConnectionState.ConnectionStatus.DISCONNECTED : STATUSES[status(node.state.get())];
+    }
+
+    /**
+     * Returns the time of a node's last advert.
+     *
+     * @param nodeId The node.
+     * @return The time, or -1 for a node never seen.
+     */
+    public long getLastSeenMs(String nodeId) {
+        NodeState node = nodes.get(nodeId);
+        return node == null ? -1 : lastSeen(node.state.get());
+    }
+
+    /**
+     * Returns when advance() next has something to do.
+     *      getNextDeadlineMs() ---> Natural
+     *
+     * @return The time of the earliest deadline, now if a node is waiting for one, or
+     *         Long.MAX_VALUE if there is none.
+     */
+    public long getNextDeadlineMs() {
+        return pending.isEmpty() ? wheel.getNextExpiryMs() : clock.now();
+    }
+
+    /**
+     * Returns whether there is nothing left for advance() to do, so the ticker may stop.
+     *
+     * @return true if no deadline is scheduled and no node is waiting for one.
+     */
+    public boolean isIdle() {
+        return pending.isEmpty() && wheel.size() == 0;
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    public int getScheduledCount() {
+        return wheel.size();
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    private static long pack(long lastSeenMs, int status) {
+        return lastSeenMs << STATUS_BITS | status;
+    }
+
+    private static long lastSeen(long state) {
+        return state >> STATUS_BITS;
+    }
+
+    private static int status(long state) {
+        return (int) (state & STATUS_MASK);
+    }
+}
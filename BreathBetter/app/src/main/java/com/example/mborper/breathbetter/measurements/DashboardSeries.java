@@ -0,0 +1,238 @@
+package com.example.mborper.breathbetter.measurements;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Air quality readings of the dashboard chart, in time order, kept in primitive arrays: the
+ * time of each reading, its proportional value and its air quality as a small code.
+ * <p>
+ * It is filled from the airQualityReadings the API returns with fromJson(), or from the local
+ * MeasurementHistoryDb, so the chart can be drawn the same way from either. delta() tells which
+ * readings of a fresh response are new or changed compared with the stored ones.
+ * <p>
+ * Not thread-safe.
+ *
+ * @since 2026-10-18
+ */
+public class DashboardSeries {
+    public static final int NO_VALUE = -1;
+
+    public static final byte QUALITY_NONE = 0;
+    public static final byte QUALITY_GOOD = 1;
+    public static final byte QUALITY_REGULAR = 2;
+    public static final byte QUALITY_BAD = 3;
+
+    private long[] timestamps;
+    private int[] proportionalValues;
+    private byte[] airQualities;
+    private int size;
+
+    /**
+     * Creates an empty series.
+     *
+     * @param initialCapacity Readings it can hold before growing.
+     */
+    public DashboardSeries(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        timestamps = new long[capacity];
+        proportionalValues = new int[capacity];
+        airQualities = new byte[capacity];
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Parses the airQualityReadings array of the dashboard response. Readings without a valid
+     * timestamp are skipped, and missing values are kept as NO_VALUE and QUALITY_NONE.
+     *      JsonArray ---> fromJson() ---> DashboardSeries
+     *
+     * @param readings Objects with "timestamp" (ISO-8601), "proportionalValue" and "airQuality".
+     * @return The series, empty if readings is null.
+     */
+    public static DashboardSeries fromJson(JsonArray readings) {
+        DashboardSeries series = new DashboardSeries(readings == null ? 0 : readings.size());
+        if (readings == null) {
+            return series;
+        }
+        for (JsonElement element : readings) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject reading = element.getAsJsonObject();
+            if (!has(reading, "timestamp")) {
+                continue;
+            }
+            long timestamp;
+            try {
+                timestamp = ZonedDateTime.parse(reading.get("timestamp").getAsString(),
+                        DateTimeFormatter.ISO_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            int proportionalValue = has(reading, "proportionalValue")
+                    ? reading.get("proportionalValue").getAsInt()
+                    : NO_VALUE;
+            byte airQuality = has(reading, "airQuality")
+                    ? qualityCode(reading.get("airQuality").getAsString())
+                    : QUALITY_NONE;
+            series.add(timestamp, proportionalValue, airQuality);
+        }
+        return series;
+    }
+
+    private static boolean has(JsonObject object, String member) {
+        return object.has(member) && !object.get(member).isJsonNull();
+    }
+
+    /**
+     * Returns the code of an air quality name as the API sends it.
+     *      Texto ---> qualityCode() ---> Z
+     *
+     * @param airQuality "Good", "Regular" or "Bad".
+     * @return The code, QUALITY_NONE for anything else.
+     */
+    public static byte qualityCode(String airQuality) {
+        if ("Good".equals(airQuality)) {
+            return QUALITY_GOOD;
+        } else if ("Regular".equals(airQuality)) {
+            return QUALITY_REGULAR;
+        } else if ("Bad".equals(airQuality)) {
+            return QUALITY_BAD;
+        }
+        return QUALITY_NONE;
+    }
+
+    /**
+     * Returns where an O3 reading received from the node falls on the 0 to 100 proportional
+     * scale of the dashboard, on which GasAlertManager.PPM_DANGER_THRESHOLD is 100.
+     *      Real ---> proportionalValueOf() ---> Z
+     *
+     * @param ppm The reading in ppm.
+     * @return The proportional value, clamped to 0..100.
+     */
+    public static int proportionalValueOf(float ppm) {
+        float proportional = ppm * 100f / GasAlertManager.PPM_DANGER_THRESHOLD;
+        return Math.round(Math.min(Math.max(proportional, 0f), 100f));
+    }
+
+    /**
+     * Returns the air quality code of a proportional value: Bad from the danger threshold up,
+     * Regular from half of it, as the colours of the dashboard slider.
+     *      Z ---> qualityOf() ---> Z
+     *
+     * @param proportionalValue Value on the 0 to 100 scale.
+     * @return One of the QUALITY_ codes.
+     */
+    public static byte qualityOf(int proportionalValue) {
+        if (proportionalValue >= 100) {
+            return QUALITY_BAD;
+        } else if (proportionalValue >= 50) {
+            return QUALITY_REGULAR;
+        }
+        return QUALITY_GOOD;
+    }
+
+    /**
+     * Adds a reading at the end of the series, growing it if needed.
+     *      Natural, Z, Z ---> add()
+     *
+     * @param timestampMs       Time of the reading, Unix milliseconds.
+     * @param proportionalValue Value on the chart's scale, or NO_VALUE.
+     * @param airQuality        One of the QUALITY_ codes.
+     */
+    public void add(long timestampMs, int proportionalValue, byte airQuality) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            proportionalValues = Arrays.copyOf(proportionalValues, capacity);
+            airQualities = Arrays.copyOf(airQualities, capacity);
+        }
+        timestamps[size] = timestampMs;
+        proportionalValues[size] = proportionalValue;
+        airQualities[size] = airQuality;
+        size++;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the readings of this series that are missing from, or different in, a previous
+     * one. Both must be in time order; a single merge pass compares them.
+     *      DashboardSeries ---> delta() ---> DashboardSeries
+     *
+     * @param previous The readings already known, e.g. stored locally.
+     * @return The new or changed readings, in time order.
+     */
+    public DashboardSeries delta(DashboardSeries previous) {
+        DashboardSeries delta = new DashboardSeries(4);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < previous.size && previous.timestamps[j] < timestamps[i]) {
+                j++;
+            }
+            boolean known = j < previous.size
+                    && previous.timestamps[j] == timestamps[i]
+                    && previous.proportionalValues[j] == proportionalValues[i]
+                    && previous.airQualities[j] == airQualities[i];
+            if (!known) {
+                delta.add(timestamps[i], proportionalValues[i], airQualities[i]);
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Returns whether another series holds exactly the same readings, e.g. to skip redrawing
+     * a chart that would not change.
+     *
+     * @param other The other series, or null.
+     * @return true if both have the same readings in the same order.
+     */
+    public boolean sameReadings(DashboardSeries other) {
+        if (other == null || other.size != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (timestamps[i] != other.timestamps[i]
+                    || proportionalValues[i] != other.proportionalValues[i]
+                    || airQualities[i] != other.airQualities[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int i) {
+        checkIndex(i);
+        return timestamps[i];
+    }
+
+    public int getProportionalValue(int i) {
+        checkIndex(i);
+        return proportionalValues[i];
+    }
+
+    public byte getAirQuality(int i) {
+        checkIndex(i);
+        return airQualities[i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        }
+    }
+}
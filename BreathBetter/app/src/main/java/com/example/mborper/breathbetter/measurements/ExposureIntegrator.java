@@ -0,0 +1,229 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Streaming personal exposure: the time-weighted dose of the readings received from the node,
+ * in ppm·hours, per local day for the last few days.
+ * <p>
+ * Each new sample adds the area of the trapezoid between it and the previous one, so a sample
+ * costs O(1) and nothing is kept but the previous sample and one total per day. Two samples
+ * further apart than the maximum gap are not interpolated across: that time counts as not
+ * covered, since the user may have been anywhere. A segment that crosses local midnight is
+ * split there, with the value interpolated at the boundary, so each day gets its own share;
+ * day boundaries come from the time zone, DST changes included, and are cached so the time
+ * zone is only looked up when a sample enters a new day.
+ * <p>
+ * Samples must arrive in time order; older or repeated ones are rejected. Thread-safe: the
+ * service adds samples and the UI reads the totals.
+ *
+ * @since 2026-10-18
+ */
+public class ExposureIntegrator {
+    public static final long DEFAULT_MAX_GAP_MS = 10 * 60 * 1000L; // Twice the longest scan interval
+    public static final int DEFAULT_DAYS = 7;
+
+    private static final double MS_PER_HOUR = 60 * 60 * 1000.0;
+
+    private final ZoneId zone;
+    private final long maxGapMs;
+    private final long[] slotDays; // Epoch day held by each slot, or Long.MIN_VALUE
+    private final double[] doses; // ppm·ms
+    private final long[] coveredMs;
+
+    private long lastTimestampMs = Long.MIN_VALUE;
+    private float lastValue;
+    // Local day of the last segment integrated, [dayStartMs, dayEndMs)
+    private long dayStartMs;
+    private long dayEndMs;
+    private int daySlot;
+
+    private long sampleCount;
+    private long gapCount;
+    private long rejectedCount;
+
+    /**
+     * Creates an empty integrator.
+     *
+     * @param zone     Time zone whose midnights split the days.
+     * @param maxGapMs Longest time between two samples that is still interpolated.
+     * @param days     Number of days kept, today included.
+     */
+    public ExposureIntegrator(ZoneId zone, long maxGapMs, int days) {
+        if (maxGapMs <= 0 || days <= 0) {
+            throw new IllegalArgumentException("Gap and days must be positive");
+        }
+        this.zone = zone;
+        this.maxGapMs = maxGapMs;
+        slotDays = new long[days];
+        doses = new double[days];
+        coveredMs = new long[days];
+        Arrays.fill(slotDays, Long.MIN_VALUE);
+    }
+
+    /**
+     * Creates an integrator with DEFAULT_MAX_GAP_MS and DEFAULT_DAYS.
+     *
+     * @param zone Time zone whose midnights split the days.
+     */
+    public ExposureIntegrator(ZoneId zone) {
+        this(zone, DEFAULT_MAX_GAP_MS, DEFAULT_DAYS);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Adds a sample, integrating the segment from the previous one if the gap allows it.
+     *      Natural, Real ---> add() ---> T/F
+     *
+     * @param timestampMs Capture time, Unix milliseconds.
+     * @param ppm         The reading in ppm.
+     * @return false if the sample was rejected: not newer than the last one, or not a number.
+     */
+    public synchronized boolean add(long timestampMs, float ppm) {
+        if (timestampMs <= lastTimestampMs || Float.isNaN(ppm) || Float.isInfinite(ppm)) {
+            rejectedCount++;
+            return false;
+        }
+        if (lastTimestampMs != Long.MIN_VALUE) {
+            if (timestampMs - lastTimestampMs <= maxGapMs) {
+                integrate(lastTimestampMs, lastValue, timestampMs, ppm);
+            } else {
+                gapCount++;
+            }
+        }
+        lastTimestampMs = timestampMs;
+        lastValue = ppm;
+        sampleCount++;
+        return true;
+    }
+
+    /**
+     * Adds the trapezoid between two samples, split at every local midnight in between.
+     */
+    private void integrate(long fromMs, float fromValue, long toMs, float toValue) {
+        long start = fromMs;
+        double startValue = fromValue;
+        while (start < toMs) {
+            enterDay(start);
+            long end = Math.min(toMs, dayEndMs);
+            double endValue = end == toMs
+                    ? toValue
+                    : fromValue + (toValue - fromValue) * (double) (end - fromMs) / (toMs - fromMs);
+            doses[daySlot] += (startValue + endValue) / 2 * (end - start);
+            coveredMs[daySlot] += end - start;
+            start = end;
+            startValue = endValue;
+        }
+    }
+
+    /**
+     * Makes the local day that contains a time the current one, reusing the oldest slot if
+     * the day is new. Times only move forward, so days do too.
+     */
+    private void enterDay(long timestampMs) {
+        if (timestampMs >= dayStartMs && timestampMs < dayEndMs) {
+            return;
+        }
+        LocalDate date = Instant.ofEpochMilli(timestampMs).atZone(zone).toLocalDate();
+        long day = date.toEpochDay();
+        dayStartMs = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        dayEndMs = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        daySlot = (int) Math.floorMod(day, (long) slotDays.length);
+        if (slotDays[daySlot] != day) {
+            slotDays[daySlot] = day;
+            doses[daySlot] = 0;
+            coveredMs[daySlot] = 0;
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the dose of one local day.
+     *      LocalDate ---> getDose() ---> R
+     *
+     * @param date The day.
+     * @return The dose in ppm·hours, 0 if the day has no samples or is no longer kept.
+     */
+    public synchronized double getDose(LocalDate date) {
+        int slot = slotOf(date.toEpochDay());
+        return slot < 0 ? 0 : doses[slot] / MS_PER_HOUR;
+    }
+
+    /**
+     * Returns how much of one local day the dose covers, i.e. the time between samples that
+     * were close enough to integrate.
+     *      LocalDate ---> getCoveredMs() ---> Natural
+     *
+     * @param date The day.
+     * @return The covered time in milliseconds.
+     */
+    public synchronized long getCoveredMs(LocalDate date) {
+        int slot = slotOf(date.toEpochDay());
+        return slot < 0 ? 0 : coveredMs[slot];
+    }
+
+    /**
+     * Returns the dose of the local day that contains a time, e.g. today.
+     *      Natural ---> getDayDose() ---> R
+     *
+     * @param nowMs A time in the day, Unix milliseconds.
+     * @return The dose in ppm·hours.
+     */
+    public double getDayDose(long nowMs) {
+        return getDose(toLocalDate(nowMs));
+    }
+
+    /**
+     * Returns the dose of the last days up to the one that contains a time, e.g. the last
+     * week with today.
+     *      Natural, Z ---> getDoseOfLastDays() ---> R
+     *
+     * @param nowMs A time in the last day, Unix milliseconds.
+     * @param days  Number of days, at most the number kept.
+     * @return The dose in ppm·hours.
+     */
+    public synchronized double getDoseOfLastDays(long nowMs, int days) {
+        long lastDay = toLocalDate(nowMs).toEpochDay();
+        double total = 0;
+        for (long d = lastDay - Math.min(days, slotDays.length) + 1; d <= lastDay; d++) {
+            int slot = slotOf(d);
+            if (slot >= 0) {
+                total += doses[slot];
+            }
+        }
+        return total / MS_PER_HOUR;
+    }
+
+    private LocalDate toLocalDate(long timestampMs) {
+        return Instant.ofEpochMilli(timestampMs).atZone(zone).toLocalDate();
+    }
+
+    private int slotOf(long epochDay) {
+        int slot = (int) Math.floorMod(epochDay, (long) slotDays.length);
+        return slotDays[slot] == epochDay ? slot : -1;
+    }
+
+    public synchronized long getLastTimestampMs() {
+        return lastTimestampMs;
+    }
+
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Returns the number of times two samples were too far apart to interpolate across.
+     *
+     * @return The gap count.
+     */
+    public synchronized long getGapCount() {
+        return gapCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+}
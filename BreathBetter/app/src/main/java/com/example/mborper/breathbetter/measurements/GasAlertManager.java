@@ -49,7 +49,7 @@ public class GasAlertManager {
     private static final int ERROR_NOTIFICATION_ID = 3;
 
     // Gas concentration threshold in PPM (Parts Per Million) to trigger an alert
-    private static final int PPM_DANGER_THRESHOLD = 100; // Adjust based on official guidelines
+    public static final int PPM_DANGER_THRESHOLD = 100; // Adjust based on official guidelines
 
     // Gas concentration threshold in PPM (Parts Per Million) to trigger an error
     private static final int PPM_MAX_VALID_VALUE = 1000;
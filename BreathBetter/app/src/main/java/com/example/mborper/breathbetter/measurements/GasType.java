@@ -0,0 +1,13 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Gas a measurement is of. All of them are measured in ppm. The ordinal is stored by
+ * MeasurementHistoryDb, so new gases go at the end.
+ *
+ * @since 2026-10-18
+ */
+public enum GasType {
+    O3,
+    CO,
+    NO2
+}
@@ -0,0 +1,396 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index of the user's own geolocated readings, bucketed by geohash, with running
+ * aggregates per cell: count, sum, max and the time of the last reading.
+ * <p>
+ * Every reading updates its cell at each precision from 1 to maxPrecision characters, so all
+ * zoom levels are ready and an update costs O(maxPrecision). Cells live in one open-addressing
+ * table of parallel primitive arrays, keyed by the geohash bits with a leading 1 bit that
+ * encodes the precision. A viewport query descends from the 32 one-character cells into the
+ * children that exist and overlap the viewport, so it costs in proportion to the non-empty
+ * cells it touches, not to the area or to the readings.
+ * <p>
+ * Readings must arrive in time order, as they do from the node; older ones are skipped, so the
+ * index can be rebuilt from storage without counting anything twice. Readings without a
+ * location, sent as 0, 0, are skipped too. Thread-safe: the service adds readings and the map
+ * queries them.
+ *
+ * @since 2026-10-18
+ */
+public class GeohashIndex {
+    public static final int DEFAULT_MAX_PRECISION = 7; // Cells of about 150 x 150 m
+    public static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int MIN_CAPACITY = 64;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Receives the cells of a viewport query.
+     */
+    public interface CellVisitor {
+        void onCell(long cell, int precision, double south, double west, double north, double east,
+                    int count, float mean, float max, long lastTimestampMs);
+    }
+
+    private static GeohashIndex instance;
+
+    private final int maxPrecision;
+    private long[] keys; // 0 for an empty slot
+    private int[] counts;
+    private double[] sums;
+    private float[] maxes;
+    private long[] lastTimestamps;
+    private int mask;
+    private int cellCount;
+
+    private long sampleCount;
+    private long lastTimestampMs = Long.MIN_VALUE;
+    private double south = Double.NaN;
+    private double west;
+    private double north;
+    private double east;
+
+    /**
+     * Returns the index of the user's readings, shared by the service that fills it and the
+     * map that draws it.
+     *
+     * @return The shared instance.
+     */
+    public static synchronized GeohashIndex getInstance() {
+        if (instance == null) {
+            instance = new GeohashIndex(DEFAULT_MAX_PRECISION);
+        }
+        return instance;
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param maxPrecision Length of the finest geohash, 1 to MAX_PRECISION characters.
+     */
+    public GeohashIndex(int maxPrecision) {
+        if (maxPrecision < 1 || maxPrecision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be 1 to " + MAX_PRECISION + ": " + maxPrecision);
+        }
+        this.maxPrecision = maxPrecision;
+        allocate(MIN_CAPACITY);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Adds a reading to its cell at every precision.
+     *      Real, Real, Real, Natural ---> add() ---> T/F
+     *
+     * @param latitude    Latitude in degrees.
+     * @param longitude   Longitude in degrees.
+     * @param value       The reading, e.g. O3 in ppm.
+     * @param timestampMs Capture time, Unix milliseconds.
+     * @return false if it was skipped: no location, or not newer than the last reading.
+     */
+    public synchronized boolean add(double latitude, double longitude, float value, long timestampMs) {
+        if (timestampMs <= lastTimestampMs || !isLocation(latitude, longitude)
+                || Float.isNaN(value) || Float.isInfinite(value)) {
+            return false;
+        }
+        lastTimestampMs = timestampMs;
+        long bits = encodeBits(latitude, longitude, maxPrecision);
+        if ((cellCount + maxPrecision) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        for (int precision = 1; precision <= maxPrecision; precision++) {
+            long cell = bits >>> (5 * (maxPrecision - precision));
+            int slot = findOrInsert(key(cell, precision));
+            if (counts[slot] == 0 || value > maxes[slot]) {
+                maxes[slot] = value;
+            }
+            counts[slot]++;
+            sums[slot] += value;
+            lastTimestamps[slot] = timestampMs;
+        }
+        if (sampleCount++ == 0) {
+            south = north = latitude;
+            west = east = longitude;
+        } else {
+            south = Math.min(south, latitude);
+            north = Math.max(north, latitude);
+            west = Math.min(west, longitude);
+            east = Math.max(east, longitude);
+        }
+        return true;
+    }
+
+    private static boolean isLocation(double latitude, double longitude) {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180
+                && !(latitude == 0 && longitude == 0);
+    }
+
+    /**
+     * Returns the geohash bits of a point, 5 per character, longitude first.
+     */
+    static long encodeBits(double latitude, double longitude, int precision) {
+        double latMin = -90;
+        double latMax = 90;
+        double lonMin = -180;
+        double lonMax = 180;
+        long bits = 0;
+        for (int i = 0; i < 5 * precision; i++) {
+            bits <<= 1;
+            if ((i & 1) == 0) {
+                double mid = (lonMin + lonMax) / 2;
+                if (longitude >= mid) {
+                    bits |= 1;
+                    lonMin = mid;
+                } else {
+                    lonMax = mid;
+                }
+            } else {
+                double mid = (latMin + latMax) / 2;
+                if (latitude >= mid) {
+                    bits |= 1;
+                    latMin = mid;
+                } else {
+                    latMax = mid;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the geohash of a point as text.
+     *      Real, Real, Z ---> encode() ---> Texto
+     *
+     * @param latitude  Latitude in degrees.
+     * @param longitude Longitude in degrees.
+     * @param precision Number of characters, 1 to MAX_PRECISION.
+     * @return The geohash.
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        return toGeohash(encodeBits(latitude, longitude, precision), precision);
+    }
+
+    /**
+     * Returns the text of a cell reported by query().
+     *      Natural, Z ---> toGeohash() ---> Texto
+     *
+     * @param cell      The geohash bits.
+     * @param precision Its number of characters.
+     * @return The geohash.
+     */
+    public static String toGeohash(long cell, int precision) {
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (cell & 31)];
+            cell >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Visits the non-empty cells of one precision that overlap a viewport.
+     *      Real, Real, Real, Real, Z, CellVisitor ---> query() ---> Natural
+     *
+     * @param south     Southern edge of the viewport, degrees.
+     * @param west      Western edge, degrees; a viewport across the antimeridian is not split.
+     * @param north     Northern edge, degrees.
+     * @param east      Eastern edge, degrees.
+     * @param precision Geohash length of the cells, 1 to maxPrecision, e.g. from precisionFor().
+     * @param visitor   Receives each cell, with the lock held.
+     * @return The number of cells visited.
+     */
+    public synchronized int query(double south, double west, double north, double east,
+                                  int precision, CellVisitor visitor) {
+        if (precision < 1 || precision > maxPrecision) {
+            throw new IllegalArgumentException("Precision must be 1 to " + maxPrecision + ": " + precision);
+        }
+        return descend(0, 0, -90, -180, 90, 180, south, west, north, east, precision, visitor);
+    }
+
+    /**
+     * Visits the children of a cell that exist and overlap the viewport, going down to the
+     * target precision. The cell at precision 0 is the whole world.
+     */
+    private int descend(long cell, int precision, double cellSouth, double cellWest,
+                        double cellNorth, double cellEast, double south, double west,
+                        double north, double east, int target, CellVisitor visitor) {
+        int visited = 0;
+        for (int child = 0; child < 32; child++) {
+            long childCell = (cell << 5) | child;
+            int slot = find(key(childCell, precision + 1));
+            if (slot < 0) {
+                continue;
+            }
+            // The 5 bits alternate longitude and latitude, starting where the parent left off
+            double s = cellSouth;
+            double w = cellWest;
+            double n = cellNorth;
+            double e = cellEast;
+            for (int bit = 0; bit < 5; bit++) {
+                boolean high = ((child >>> (4 - bit)) & 1) != 0;
+                if (((5 * precision + bit) & 1) == 0) {
+                    double mid = (w + e) / 2;
+                    if (high) {
+                        w = mid;
+                    } else {
+                        e = mid;
+                    }
+                } else {
+                    double mid = (s + n) / 2;
+                    if (high) {
+                        s = mid;
+                    } else {
+                        n = mid;
+                    }
+                }
+            }
+            if (n < south || s > north || e < west || w > east) {
+                continue;
+            }
+            if (precision + 1 == target) {
+                visitor.onCell(childCell, target, s, w, n, e, counts[slot],
+                        (float) (sums[slot] / counts[slot]), maxes[slot], lastTimestamps[slot]);
+                visited++;
+            } else {
+                visited += descend(childCell, precision + 1, s, w, n, e, south, west, north, east, target, visitor);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Returns the finest precision at which a viewport is at most a number of cells wide and
+     * high, e.g. to match the zoom level of a map.
+     *      Real, Real, Real, Real, Z ---> precisionFor() ---> Z
+     *
+     * @param south    Southern edge of the viewport, degrees.
+     * @param west     Western edge, degrees.
+     * @param north    Northern edge, degrees.
+     * @param east     Eastern edge, degrees.
+     * @param maxCells Cells across the viewport at most.
+     * @return The precision, 1 to maxPrecision.
+     */
+    public int precisionFor(double south, double west, double north, double east, int maxCells) {
+        int precision = 1;
+        while (precision < maxPrecision) {
+            int next = precision + 1;
+            double cellWidth = 360.0 / (1L << ((5 * next + 1) / 2));
+            double cellHeight = 180.0 / (1L << (5 * next / 2));
+            if ((east - west) / cellWidth > maxCells || (north - south) / cellHeight > maxCells) {
+                break;
+            }
+            precision = next;
+        }
+        return precision;
+    }
+
+    // -------------------------------------------------------------------------------
+    private static long key(long cell, int precision) {
+        return (1L << (5 * precision)) | cell; // The leading 1 tells the precision apart
+    }
+
+    private int slotOf(long key) {
+        return (int) ((key * HASH_MULTIPLIER) >>> 32) & mask;
+    }
+
+    private int find(long key) {
+        for (int slot = slotOf(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findOrInsert(long key) {
+        int slot = slotOf(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        cellCount++;
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new int[capacity];
+        sums = new double[capacity];
+        maxes = new float[capacity];
+        lastTimestamps = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        double[] oldSums = sums;
+        float[] oldMaxes = maxes;
+        long[] oldTimestamps = lastTimestamps;
+        allocate(capacity);
+        cellCount = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = findOrInsert(oldKeys[i]);
+                counts[slot] = oldCounts[i];
+                sums[slot] = oldSums[i];
+                maxes[slot] = oldMaxes[i];
+                lastTimestamps[slot] = oldTimestamps[i];
+            }
+        }
+    }
+
+    /**
+     * Removes every reading.
+     */
+    public synchronized void clear() {
+        allocate(MIN_CAPACITY);
+        cellCount = 0;
+        sampleCount = 0;
+        lastTimestampMs = Long.MIN_VALUE;
+        south = Double.NaN;
+    }
+
+    public int getMaxPrecision() {
+        return maxPrecision;
+    }
+
+    /**
+     * Returns the number of non-empty cells, all precisions together.
+     *
+     * @return The cell count.
+     */
+    public synchronized int getCellCount() {
+        return cellCount;
+    }
+
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    public synchronized long getLastTimestampMs() {
+        return lastTimestampMs;
+    }
+
+    /**
+     * Returns the box around every reading, e.g. to fit a map to it.
+     *
+     * @return {south, west, north, east} in degrees, or null if the index is empty.
+     */
+    public synchronized double[] getBounds() {
+        return sampleCount == 0 ? null : new double[]{south, west, north, east};
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GeohashIndex{samples=" + sampleCount + ", cells=" + cellCount
+                + ", bounds=" + Arrays.toString(getBounds()) + "}";
+    }
+}
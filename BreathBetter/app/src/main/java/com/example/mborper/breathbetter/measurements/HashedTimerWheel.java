@@ -0,0 +1,190 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Hashed timer wheel: deadlines are hashed into a ring of slots by the tick they fall in, so
+ * scheduling, cancelling and expiring a timer are O(1) however many timers are pending, and
+ * advancing the wheel only looks at the slot of each elapsed tick.
+ * <p>
+ * Timers are intrusive: the objects being timed extend Entry, so scheduling never allocates.
+ * A deadline fires on the first tick at or after it, i.e. at most one tick late. A deadline
+ * further away than one turn of the wheel stays in its slot and is skipped until its own tick.
+ * <p>
+ * Not thread-safe: every call must come from the thread that advances the wheel.
+ *
+ * @since 2026-10-18
+ */
+public class HashedTimerWheel {
+
+    /**
+     * Something that can be scheduled on the wheel, at most once at a time.
+     */
+    public abstract static class Entry {
+        private Entry previous;
+        private Entry next;
+        private long targetTick;
+        private boolean scheduled;
+
+        /**
+         * Returns whether the entry is waiting on a wheel.
+         *
+         * @return true if scheduled.
+         */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+    }
+
+    /**
+     * Receives the entries whose deadline has passed. The entry is already off the wheel and
+     * may be scheduled again from the callback.
+     */
+    public interface ExpiryHandler {
+        void onExpired(Entry entry, long nowMs);
+    }
+
+    private final Entry[] slots;
+    private final int mask;
+    private final long tickMs;
+    private final long startMs;
+
+    private long nextTick = 1; // tick 0 is the start time itself
+    private int size = 0;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param tickMs    Length of a tick, i.e. the precision of the deadlines.
+     * @param wheelSize Number of slots, a power of two. One turn covers tickMs * wheelSize.
+     * @param startMs   Time of tick 0.
+     */
+    public HashedTimerWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMs);
+        }
+        if (wheelSize <= 0 || (wheelSize & (wheelSize - 1)) != 0) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.slots = new Entry[wheelSize];
+        this.mask = wheelSize - 1;
+        this.tickMs = tickMs;
+        this.startMs = startMs;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Schedules an entry, replacing its previous deadline if it had one. A deadline already in
+     * the past fires on the next tick.
+     *      Entry, Natural ---> schedule()
+     *
+     * @param entry      The entry.
+     * @param deadlineMs Time at which it expires.
+     */
+    public void schedule(Entry entry, long deadlineMs) {
+        if (entry.scheduled) {
+            cancel(entry);
+        }
+        long ticks = deadlineMs - startMs;
+        long target = ticks <= 0 ? 0 : (ticks + tickMs - 1) / tickMs;
+        entry.targetTick = Math.max(target, nextTick);
+
+        int slot = (int) (entry.targetTick & mask);
+        entry.previous = null;
+        entry.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].previous = entry;
+        }
+        slots[slot] = entry;
+        entry.scheduled = true;
+        size++;
+    }
+
+    /**
+     * Removes an entry from the wheel. Does nothing if it is not scheduled.
+     *      Entry ---> cancel()
+     *
+     * @param entry The entry.
+     */
+    public void cancel(Entry entry) {
+        if (!entry.scheduled) {
+            return;
+        }
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            slots[(int) (entry.targetTick & mask)] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        entry.scheduled = false;
+        size--;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Processes every tick up to the given time and hands the expired entries to the handler.
+     *      Natural, ExpiryHandler ---> advance() ---> Natural
+     *
+     * @param nowMs   Current time.
+     * @param handler Receives each expired entry.
+     * @return The number of entries expired.
+     */
+    public int advance(long nowMs, ExpiryHandler handler) {
+        int expired = 0;
+        while (startMs + nextTick * tickMs <= nowMs) {
+            long tick = nextTick++;
+            if (size == 0) {
+                // Nothing to visit: jump straight to the current tick
+                nextTick = Math.max(nextTick, (nowMs - startMs) / tickMs + 1);
+                break;
+            }
+            Entry entry = slots[(int) (tick & mask)];
+            while (entry != null) {
+                Entry following = entry.next;
+                if (entry.targetTick <= tick) {
+                    cancel(entry);
+                    expired++;
+                    handler.onExpired(entry, nowMs);
+                }
+                entry = following;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the time of the tick on which the earliest entry expires, so the caller can sleep
+     * until then instead of advancing every tick. Looks at every slot and entry, so it is meant
+     * for when the caller is about to sleep, not for every tick.
+     *      getNextExpiryMs() ---> Natural
+     *
+     * @return The time, or Long.MAX_VALUE if nothing is scheduled.
+     */
+    public long getNextExpiryMs() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Entry head : slots) {
+            for (Entry entry = head; entry != null; entry = entry.next) {
+                earliest = Math.min(earliest, entry.targetTick);
+            }
+        }
+        return startMs + earliest * tickMs;
+    }
+
+    /**
+     * Returns the number of scheduled entries.
+     *
+     * @return The entry count.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * Retention policy of the on-device history, applied by small background runs.
+ * <p>
+ * Tiers:
+ * <ul>
+ *   <li> raw measurements, kept for rawDays;
+ *   <li> 1-minute rollups of them, with count, sum, min and max, kept for minuteMonths;
+ *   <li> hourly rollups of those, kept forever.
+ * </ul>
+ * Each run moves the oldest data past its retention one tier down, reading and deleting at
+ * most maxRowsPerRun rows, so a run is a short job however large the backlog: after a long
+ * time without runs, several of them work it off a slice at a time. Rollups are merged into
+ * what the next tier already holds, so a bucket split between two runs, or a reading synced
+ * late, is still counted once. Each run then returns at most maxPagesPerRun free pages of the
+ * database file to the file system. If a TimeSeriesStore is attached, its chunks past the raw
+ * cutoff are dropped by the same run, so the store stays bounded too.
+ * <p>
+ * The compactor never touches the ingestion path: the measurements keep being queued and
+ * inserted by MeasurementHistoryDb while a run works, and the storage bounds how long either
+ * waits for the other. Sizes and costs of the runs are kept as metrics. Runs must come from
+ * one thread; the metrics can be read from any.
+ *
+ * @since 2026-10-18
+ */
+public class HistoryCompactor {
+    public static final int DEFAULT_RAW_DAYS = 30;
+    public static final int DEFAULT_MINUTE_MONTHS = 6;
+    public static final int DEFAULT_MAX_ROWS_PER_RUN = 5000;
+    public static final int DEFAULT_MAX_PAGES_PER_RUN = 256; // 1 MB of 4 KB pages
+
+    public static final long MINUTE_MS = 60 * 1000L;
+    public static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    /**
+     * Tiered storage compacted by the runs; MeasurementHistoryDb on the device.
+     */
+    public interface Storage {
+
+        /**
+         * Merges the oldest raw measurements before a time into rollups and deletes them.
+         *
+         * @param beforeMs Measurements before this time are rolled up.
+         * @param bucketMs Length of the rollup buckets.
+         * @param maxRows  Rows to read and delete at most; may be exceeded only by the rows
+         *                 that share the timestamp of the last one.
+         * @return The number of measurements deleted.
+         */
+        int rollUpMeasurements(long beforeMs, long bucketMs, int maxRows);
+
+        /**
+         * Merges the oldest minute rollups before a time into hourly rollups and deletes them.
+         *
+         * @param beforeMs Rollups of buckets before this time are merged.
+         * @param bucketMs Length of the hourly buckets.
+         * @param maxRows  Rows to read and delete at most, as in rollUpMeasurements().
+         * @return The number of minute rollups deleted.
+         */
+        int rollUpMinutes(long beforeMs, long bucketMs, int maxRows);
+
+        /**
+         * Returns free pages at the end of the file to the file system.
+         *
+         * @param maxPages Pages to release at most.
+         * @return The number of pages released.
+         */
+        int releaseFreePages(int maxPages);
+
+        /**
+         * Returns the size of the storage on disk.
+         *
+         * @return The size in bytes.
+         */
+        long getStorageBytes();
+    }
+
+    private final Storage storage;
+    private final Clock clock;
+    private final int rawDays;
+    private final int minuteMonths;
+    private final int maxRowsPerRun;
+    private final int maxPagesPerRun;
+    private volatile TimeSeriesStore store;
+
+    private long runCount;
+    private long rawRowsCompacted;
+    private long minuteRowsCompacted;
+    private long pagesReleased;
+    private long lastRunMs;
+    private long totalRunMs;
+    private long storageBytes = -1;
+    private long storeChunksDropped;
+    private long storeFailures;
+
+    /**
+     * Creates a compactor.
+     *
+     * @param storage        The storage to compact.
+     * @param clock          Measures how long the runs take.
+     * @param rawDays        Days the raw measurements are kept.
+     * @param minuteMonths   Months the minute rollups are kept; at least as long as rawDays.
+     * @param maxRowsPerRun  Rows read and deleted by a run at most, over both tiers.
+     * @param maxPagesPerRun Free pages released by a run at most.
+     */
+    public HistoryCompactor(Storage storage, Clock clock, int rawDays, int minuteMonths,
+                            int maxRowsPerRun, int maxPagesPerRun) {
+        if (rawDays <= 0 || minuteMonths <= 0 || maxRowsPerRun <= 0 || maxPagesPerRun < 0) {
+            throw new IllegalArgumentException("Retention and limits must be positive");
+        }
+        this.storage = storage;
+        this.clock = clock;
+        this.rawDays = rawDays;
+        this.minuteMonths = minuteMonths;
+        this.maxRowsPerRun = maxRowsPerRun;
+        this.maxPagesPerRun = maxPagesPerRun;
+    }
+
+    /**
+     * Creates a compactor with the DEFAULT_ retention and limits.
+     *
+     * @param storage The storage to compact.
+     * @param clock   Measures how long the runs take.
+     */
+    public HistoryCompactor(Storage storage, Clock clock) {
+        this(storage, clock, DEFAULT_RAW_DAYS, DEFAULT_MINUTE_MONTHS, DEFAULT_MAX_ROWS_PER_RUN,
+                DEFAULT_MAX_PAGES_PER_RUN);
+    }
+
+    /**
+     * Attaches the store of raw samples, whose chunks are dropped with the raw tier.
+     *
+     * @param store The store, or null to leave it alone.
+     */
+    public void setTimeSeriesStore(TimeSeriesStore store) {
+        this.store = store;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns the time before which raw measurements are rolled up: rawDays ago, at the
+     * start of its minute so no minute is split on purpose.
+     *      Natural ---> getRawCutoffMs() ---> Natural
+     *
+     * @param nowMs The current Unix time in milliseconds.
+     * @return The cutoff, Unix milliseconds.
+     */
+    public long getRawCutoffMs(long nowMs) {
+        return Math.floorDiv(nowMs - rawDays * DAY_MS, MINUTE_MS) * MINUTE_MS;
+    }
+
+    /**
+     * Returns the time before which minute rollups are merged into hourly ones: minuteMonths
+     * calendar months ago in UTC, at the start of its hour, and never after the raw cutoff.
+     *      Natural ---> getMinuteCutoffMs() ---> Natural
+     *
+     * @param nowMs The current Unix time in milliseconds.
+     * @return The cutoff, Unix milliseconds.
+     */
+    public long getMinuteCutoffMs(long nowMs) {
+        long monthsAgo = Instant.ofEpochMilli(nowMs).atZone(ZoneOffset.UTC)
+                .minusMonths(minuteMonths).toInstant().toEpochMilli();
+        return Math.floorDiv(Math.min(monthsAgo, getRawCutoffMs(nowMs)), HOUR_MS) * HOUR_MS;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Runs one bounded compaction: raw measurements first, then minute rollups with what is
+     * left of the row budget, then free pages, then the store's chunks past the raw cutoff.
+     * A store that cannot be rewritten is counted as a failure and retried by the next run.
+     *      Natural ---> run() ---> T/F
+     *
+     * @param nowMs The current Unix time in milliseconds.
+     * @return true if a tier used up the budget, so there may be more to compact and the
+     *         next run should come soon.
+     */
+    public boolean run(long nowMs) {
+        long start = clock.now();
+        long rawCutoff = getRawCutoffMs(nowMs);
+        int raw = storage.rollUpMeasurements(rawCutoff, MINUTE_MS, maxRowsPerRun);
+        int minutes = 0;
+        if (raw < maxRowsPerRun) {
+            minutes = storage.rollUpMinutes(getMinuteCutoffMs(nowMs), HOUR_MS, maxRowsPerRun - raw);
+        }
+        int pages = maxPagesPerRun > 0 ? storage.releaseFreePages(maxPagesPerRun) : 0;
+        long bytes = storage.getStorageBytes();
+        int chunks = 0;
+        boolean storeFailed = false;
+        TimeSeriesStore timeSeries = store;
+        if (timeSeries != null) {
+            try {
+                chunks = timeSeries.dropBefore(rawCutoff);
+            } catch (IOException e) {
+                storeFailed = true;
+            }
+        }
+        long elapsed = clock.now() - start;
+        synchronized (this) {
+            storeChunksDropped += chunks;
+            if (storeFailed) {
+                storeFailures++;
+            }
+            runCount++;
+            rawRowsCompacted += raw;
+            minuteRowsCompacted += minutes;
+            pagesReleased += pages;
+            lastRunMs = elapsed;
+            totalRunMs += elapsed;
+            storageBytes = bytes;
+        }
+        return raw + minutes >= maxRowsPerRun;
+    }
+
+    public synchronized long getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Returns the number of raw measurements rolled up into minutes so far.
+     *
+     * @return The row count.
+     */
+    public synchronized long getRawRowsCompacted() {
+        return rawRowsCompacted;
+    }
+
+    /**
+     * Returns the number of minute rollups merged into hours so far.
+     *
+     * @return The row count.
+     */
+    public synchronized long getMinuteRowsCompacted() {
+        return minuteRowsCompacted;
+    }
+
+    /**
+     * Returns the number of chunks of the attached store dropped so far.
+     *
+     * @return The chunk count.
+     */
+    public synchronized long getStoreChunksDropped() {
+        return storeChunksDropped;
+    }
+
+    public synchronized long getStoreFailures() {
+        return storeFailures;
+    }
+
+    public synchronized long getPagesReleased() {
+        return pagesReleased;
+    }
+
+    /**
+     * Returns how long the last run took.
+     *
+     * @return The duration in milliseconds.
+     */
+    public synchronized long getLastRunMs() {
+        return lastRunMs;
+    }
+
+    public synchronized long getTotalRunMs() {
+        return totalRunMs;
+    }
+
+    /**
+     * Returns the size of the storage measured after the last run.
+     *
+     * @return The size in bytes, -1 before the first run.
+     */
+    public synchronized long getStorageBytes() {
+        return storageBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "HistoryCompactor{runs=" + runCount + ", raw=" + rawRowsCompacted
+                + ", minutes=" + minuteRowsCompacted + ", pages=" + pagesReleased
+                + ", storeChunks=" + storeChunksDropped + ", storeFailures=" + storeFailures
+                + ", lastRunMs=" + lastRunMs + ", totalRunMs=" + totalRunMs
+                + ", bytes=" + storageBytes + "}";
+    }
+}
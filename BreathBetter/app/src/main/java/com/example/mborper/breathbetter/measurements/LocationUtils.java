@@ -43,6 +43,7 @@ public class LocationUtils {
     private LocationUpdateListener locationUpdateListener;
     private PowerManager.WakeLock wakeLock;
     private boolean isTracking = false;
+    private boolean holdWakeLock = true;
 
     public interface LocationUpdateListener {
         void onLocationUpdated(Location location);
@@ -72,6 +73,20 @@ public class LocationUtils {
         this.locationUpdateListener = listener;
     }
 
+    /**
+     * Sets whether location tracking keeps the CPU awake with a partial WakeLock.
+     * Releases the WakeLock right away when disabled.
+     *
+     * @param holdWakeLock false when the caller does not need the CPU awake between updates.
+     */
+    public void setHoldWakeLock(boolean holdWakeLock) {
+        this.holdWakeLock = holdWakeLock;
+        if (!holdWakeLock && wakeLock.isHeld()) {
+            wakeLock.release();
+            Log.d(TAG, "WakeLock released");
+        }
+    }
+
     /**
      * Sets up the callback to handle location updates and forwards them to the listener.
      */
@@ -149,7 +164,7 @@ public class LocationUtils {
      */
     public void startLocationUpdates() {
 
-        if (!wakeLock.isHeld()) {
+        if (holdWakeLock && !wakeLock.isHeld()) {
             wakeLock.acquire(24 * 60 * 60 * 1000L); // 24 h
             Log.d(TAG, "WakeLock acquired");
         }
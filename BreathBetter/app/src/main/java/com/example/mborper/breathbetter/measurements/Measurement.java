@@ -5,15 +5,25 @@ import java.io.Serializable;
 /**
  * The Measurement class represents the data model for a measurement object.
  * It implements Serializable so that it can be easily passed between activities or services in Android.
+ * <p>
+ * Besides the value and where it was taken, a measurement carries when it was captured, the
+ * node it comes from, the node's sequence number and the gas it is of, so the server no longer
+ * has to stamp it on arrival. The value keeps the o3Value name the API expects, whatever the
+ * gas. Many measurements together are better kept in a MeasurementBatch.
  *
  * @author  Manuel Borregales
  * @since    04/10/2024
+ * last edited: 2026-10-18
  */
 public class Measurement implements Serializable {
 
     private float o3Value;
     private double latitude;
     private double longitude;
+    private String nodeId; // Only set in gateway mode, where one phone uploads for many nodes
+    private long timestamp; // Unix ms of the capture, 0 if unknown
+    private long sequence = -1; // Node's sequence number of the reading, -1 if unknown
+    private GasType gasType = GasType.O3;
 
     /**
      * Returns the O3 Value (parts per million) value of the measurement.
@@ -80,4 +90,94 @@ public class Measurement implements Serializable {
     public void setLongitude(double longitude) {
         this.longitude = longitude;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the UUID of the node the measurement comes from, in gateway mode.
+     *<p>
+     *      getNodeId() ---> Texto:nodeId
+     *
+     * @return nodeId, or null for the node linked to the user.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Sets the UUID of the node the measurement comes from.
+     *<p>
+     *      Texto:nodeId ---> setNodeId()
+     *
+     * @param nodeId The node UUID.
+     */
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Returns when the measurement was captured: when the node took it, for readings synced
+     * from its history, or when the phone received it.
+     *<p>
+     *      getTimestamp() ---> Natural:timestamp
+     *
+     * @return timestamp in Unix milliseconds, or 0 if unknown.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Sets when the measurement was captured.
+     *<p>
+     *      Natural:timestamp ---> setTimestamp()
+     *
+     * @param timestamp The time in Unix milliseconds.
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the node's sequence number of the reading: the rolling advert counter for live
+     * readings, or the record sequence for readings synced from its history.
+     *<p>
+     *      getSequence() ---> Z:sequence
+     *
+     * @return sequence, or -1 if unknown.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the node's sequence number of the reading.
+     *<p>
+     *      Z:sequence ---> setSequence()
+     *
+     * @param sequence The sequence number.
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the gas the value is of.
+     *<p>
+     *      getGasType() ---> GasType:gasType
+     *
+     * @return gasType, O3 unless set otherwise.
+     */
+    public GasType getGasType() {
+        return gasType;
+    }
+
+    /**
+     * Sets the gas the value is of.
+     *<p>
+     *      GasType:gasType ---> setGasType()
+     *
+     * @param gasType The gas.
+     */
+    public void setGasType(GasType gasType) {
+        this.gasType = gasType;
+    }
+}
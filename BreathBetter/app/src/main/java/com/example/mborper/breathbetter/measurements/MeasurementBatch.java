@@ -0,0 +1,273 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity batch of measurements kept column by column, one primitive array per field,
+ * instead of one Measurement object per sample.
+ * <p>
+ * Adding a sample copies its fields into the arrays, so a batch that is cleared and reused
+ * allocates nothing, and a pass over one field, e.g. the values, reads contiguous memory.
+ * writeJson() writes the batch in the same JSON a List of Measurement gets from Gson, so it can
+ * be uploaded without building the objects; toMeasurements() builds them for code that needs
+ * them.
+ * <p>
+ * Not thread-safe.
+ *
+ * @since 2026-10-18
+ */
+public class MeasurementBatch {
+    private static final GasType[] GAS_TYPES = GasType.values();
+
+    private final long[] timestamps;
+    private final float[] values;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] sequences;
+    private final byte[] gasTypes;
+    private final String[] nodeIds;
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param capacity Samples the batch can hold.
+     */
+    public MeasurementBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        timestamps = new long[capacity];
+        values = new float[capacity];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        sequences = new long[capacity];
+        gasTypes = new byte[capacity];
+        nodeIds = new String[capacity];
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Adds a sample at the end of the batch.
+     *      Natural, Real, Real, Real, Texto, Z, GasType ---> add()
+     *
+     * @param timestampMs Capture time, Unix milliseconds, or 0 if unknown.
+     * @param value       The value in ppm.
+     * @param latitude    Latitude in degrees, or NaN if unknown.
+     * @param longitude   Longitude in degrees, or NaN if unknown.
+     * @param nodeId      UUID of the node, or null for the node linked to the user.
+     * @param sequence    Node's sequence number, or -1 if unknown.
+     * @param gasType     Gas the value is of.
+     * @throws IllegalStateException if the batch is full.
+     */
+    public void add(long timestampMs, float value, double latitude, double longitude,
+                    String nodeId, long sequence, GasType gasType) {
+        if (size == timestamps.length) {
+            throw new IllegalStateException("Batch is full: " + size);
+        }
+        timestamps[size] = timestampMs;
+        values[size] = value;
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        nodeIds[size] = nodeId;
+        sequences[size] = sequence;
+        gasTypes[size] = (byte) gasType.ordinal();
+        size++;
+    }
+
+    /**
+     * Adds the fields of a measurement at the end of the batch.
+     *      Measurement ---> add()
+     *
+     * @param measurement The measurement; it is not kept.
+     * @throws IllegalStateException if the batch is full.
+     */
+    public void add(Measurement measurement) {
+        add(measurement.getTimestamp(), measurement.getO3Value(), measurement.getLatitude(),
+                measurement.getLongitude(), measurement.getNodeId(), measurement.getSequence(),
+                measurement.getGasType());
+    }
+
+    /**
+     * Empties the batch, keeping its arrays.
+     */
+    public void clear() {
+        // Drop the node IDs so the batch does not keep them alive
+        for (int i = 0; i < size; i++) {
+            nodeIds[i] = null;
+        }
+        size = 0;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Writes the batch as a JSON array of measurements, with the field names and order Gson
+     * uses for Measurement. Null node IDs are left out, as Gson does, and values that are not
+     * finite are written as null, which Gson would refuse. A location that is not known, i.e.
+     * not finite, is left out too, so it is never taken for 0, 0.
+     *      StringBuilder ---> writeJson() ---> StringBuilder
+     *
+     * @param out Where the JSON is appended.
+     * @return out, for chaining.
+     */
+    public StringBuilder writeJson(StringBuilder out) {
+        out.append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"o3Value\":");
+            appendNumber(out, values[i]);
+            if (hasLocation(i)) {
+                out.append(",\"latitude\":").append(latitudes[i]);
+                out.append(",\"longitude\":").append(longitudes[i]);
+            }
+            if (nodeIds[i] != null) {
+                out.append(",\"nodeId\":");
+                appendString(out, nodeIds[i]);
+            }
+            out.append(",\"timestamp\":").append(timestamps[i]);
+            out.append(",\"sequence\":").append(sequences[i]);
+            out.append(",\"gasType\":\"").append(GAS_TYPES[gasTypes[i]].name()).append("\"}");
+        }
+        return out.append(']');
+    }
+
+    /**
+     * Returns the batch as a JSON array of measurements, see writeJson().
+     *
+     * @return The JSON text.
+     */
+    public String toJson() {
+        return writeJson(new StringBuilder(size * 160 + 2)).toString();
+    }
+
+    private static void appendNumber(StringBuilder out, float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            out.append("null");
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static void appendString(StringBuilder out, String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '\r') {
+                out.append("\\r");
+            } else if (c == '\t') {
+                out.append("\\t");
+            } else if (c == '\b') {
+                out.append("\\b");
+            } else if (c == '\f') {
+                out.append("\\f");
+            } else if (c < 0x20 || c == '<' || c == '>' || c == '&' || c == '=' || c == '\''
+                    || c == '\u2028' || c == '\u2029') {
+                // Gson's default HTML-safe escaping
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Builds a Measurement for every sample, for code that needs the objects.
+     *      toMeasurements() ---> [Measurement]
+     *
+     * @return A new list with the samples in order.
+     */
+    public List<Measurement> toMeasurements() {
+        List<Measurement> measurements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Measurement measurement = new Measurement();
+            measurement.setTimestamp(timestamps[i]);
+            measurement.setO3Value(values[i]);
+            measurement.setLatitude(latitudes[i]);
+            measurement.setLongitude(longitudes[i]);
+            measurement.setNodeId(nodeIds[i]);
+            measurement.setSequence(sequences[i]);
+            measurement.setGasType(GAS_TYPES[gasTypes[i]]);
+            measurements.add(measurement);
+        }
+        return measurements;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == timestamps.length;
+    }
+
+    public long getTimestamp(int i) {
+        checkIndex(i);
+        return timestamps[i];
+    }
+
+    public float getValue(int i) {
+        checkIndex(i);
+        return values[i];
+    }
+
+    /**
+     * Returns whether a sample has a known location.
+     *
+     * @param i Index of the sample.
+     * @return false if its latitude or longitude is NaN or infinite.
+     */
+    public boolean hasLocation(int i) {
+        checkIndex(i);
+        double latitude = latitudes[i];
+        double longitude = longitudes[i];
+        return !Double.isNaN(latitude) && !Double.isInfinite(latitude)
+                && !Double.isNaN(longitude) && !Double.isInfinite(longitude);
+    }
+
+    public double getLatitude(int i) {
+        checkIndex(i);
+        return latitudes[i];
+    }
+
+    public double getLongitude(int i) {
+        checkIndex(i);
+        return longitudes[i];
+    }
+
+    public String getNodeId(int i) {
+        checkIndex(i);
+        return nodeIds[i];
+    }
+
+    public long getSequence(int i) {
+        checkIndex(i);
+        return sequences[i];
+    }
+
+    public GasType getGasType(int i) {
+        checkIndex(i);
+        return GAS_TYPES[gasTypes[i]];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        }
+    }
+}
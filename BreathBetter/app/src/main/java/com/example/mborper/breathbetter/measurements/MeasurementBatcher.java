@@ -0,0 +1,140 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Multiplexes the measurements of many nodes into shared upload batches, so a gateway makes
+ * one request per batch instead of one per node per window.
+ * <p>
+ * A batch is sent when it reaches the maximum size or when its oldest measurement has waited
+ * for the maximum delay, whichever comes first. The delay is checked on add() and on poll(),
+ * which the owner calls periodically, e.g. at the end of every scan window. Measurements are
+ * copied into a MeasurementBatch that is reused for every batch, so batching allocates nothing.
+ * <p>
+ * Not thread-safe: meant to be used from a single thread, like the service thread.
+ *
+ * @since 2026-10-18
+ */
+public class MeasurementBatcher {
+    public static final int DEFAULT_MAX_BATCH = 50;
+    public static final long DEFAULT_MAX_DELAY_MS = 30000;
+
+    /**
+     * Sends a full batch, e.g. as the JSON body of ApiService.sendMeasurementBatchJson(). The
+     * batch is only valid during the call: it is cleared and reused afterwards.
+     */
+    public interface Sender {
+        void send(MeasurementBatch batch);
+    }
+
+    private final long maxDelayMs;
+    private final Clock clock;
+    private final Sender sender;
+
+    private final MeasurementBatch pending;
+    private long oldestAt;
+    private long sentBatches;
+    private long sentMeasurements;
+
+    /**
+     * Creates a batcher.
+     *
+     * @param maxBatch   Measurements per batch at most.
+     * @param maxDelayMs Longest a measurement may wait before its batch is sent.
+     * @param clock      Source of time for the delay.
+     * @param sender     Sends each batch.
+     */
+    public MeasurementBatcher(int maxBatch, long maxDelayMs, Clock clock, Sender sender) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatch);
+        }
+        this.maxDelayMs = maxDelayMs;
+        this.clock = clock;
+        this.sender = sender;
+        this.pending = new MeasurementBatch(maxBatch);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Adds a measurement to the current batch, sending the batch if it is full or due.
+     *      Measurement ---> add()
+     *
+     * @param measurement The measurement, tagged with its node ID; it is not kept.
+     */
+    public void add(Measurement measurement) {
+        add(measurement.getTimestamp(), measurement.getO3Value(), measurement.getLatitude(),
+                measurement.getLongitude(), measurement.getNodeId(), measurement.getSequence(),
+                measurement.getGasType());
+    }
+
+    /**
+     * Adds a sample to the current batch without a Measurement object, sending the batch if it
+     * is full or due.
+     *      Natural, Real, Real, Real, Texto, Z, GasType ---> add()
+     *
+     * @param timestampMs Capture time, Unix milliseconds.
+     * @param value       The value in ppm.
+     * @param latitude    Latitude in degrees.
+     * @param longitude   Longitude in degrees.
+     * @param nodeId      UUID of the node, or null for the node linked to the user.
+     * @param sequence    Node's sequence number, or -1 if unknown.
+     * @param gasType     Gas the value is of.
+     */
+    public void add(long timestampMs, float value, double latitude, double longitude,
+                    String nodeId, long sequence, GasType gasType) {
+        if (pending.isEmpty()) {
+            oldestAt = clock.now();
+        }
+        pending.add(timestampMs, value, latitude, longitude, nodeId, sequence, gasType);
+        if (pending.isFull()) {
+            flush();
+        } else {
+            poll();
+        }
+    }
+
+    /**
+     * Sends the current batch if its oldest measurement has waited long enough.
+     *      poll() ---> T/F
+     *
+     * @return true if a batch was sent.
+     */
+    public boolean poll() {
+        if (!pending.isEmpty() && clock.now() - oldestAt >= maxDelayMs) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sends the current batch now, if it is not empty.
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        sentBatches++;
+        sentMeasurements += pending.size();
+        try {
+            sender.send(pending);
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Returns the number of measurements waiting in the current batch.
+     *
+     * @return The pending count.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getSentBatches() {
+        return sentBatches;
+    }
+
+    public long getSentMeasurements() {
+        return sentMeasurements;
+    }
+}
@@ -0,0 +1,546 @@
+package com.example.mborper.breathbetter.measurements;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * Local SQLite history of the measurements and of the dashboard readings, for history screens
+ * and for drawing the dashboard before, or without, the network.
+ * <p>
+ * The database runs in WAL mode, so the UI reads while the service writes. Measurements are
+ * not written one by one: add() copies them into a MeasurementBatcher, and each batch of
+ * DEFAULT_BATCH_ROWS rows, or whatever waited DEFAULT_BATCH_DELAY_MS, is inserted in a single
+ * transaction through one prepared statement. The owner calls poll() periodically, e.g. once
+ * per scan window, and flush() when it stops.
+ * <p>
+ * Tables:
+ * <ul>
+ *   <li> measurements, a WITHOUT ROWID table keyed by (node_id, ts, gas): the table itself is
+ *        the covering index for the history of one node, and the same reading synced twice is
+ *        stored once. A second index on (ts, gas, value) covers the series of all nodes.
+ *   <li> dashboard_readings, keyed by ts: the readings of the dashboard chart, only written
+ *        where a new response differs from what is stored.
+ *   <li> rollups_minute and rollups_hour, WITHOUT ROWID tables keyed by (ts, node_id, gas),
+ *        where ts is the start of the bucket: samples, sum, min and max of the measurements
+ *        HistoryCompactor rolled up, oldest first, as its retention tiers.
+ * </ul>
+ * Compaction runs on its own thread without the lock taken by add() and poll(), so readings
+ * keep being queued meanwhile; SQLite serializes its transactions with the batch inserts, and
+ * each one is bounded by the row limit of the run. Databases created from version 2 use
+ * incremental auto-vacuum, so the pages freed by compaction can be returned to the file
+ * system a few at a time; older ones keep them for reuse.
+ * Queries fill primitive arrays, a MeasurementBatch or a DashboardSeries, or return a Cursor,
+ * instead of building a list of objects. They should not run on the UI thread.
+ *
+ * @since 2026-10-18
+ */
+public class MeasurementHistoryDb extends SQLiteOpenHelper implements HistoryCompactor.Storage {
+    private static final String LOG_TAG = "MeasurementHistoryDb";
+
+    public static final String DATABASE_NAME = "measurement_history.db";
+    public static final int DEFAULT_BATCH_ROWS = 128;
+    public static final long DEFAULT_BATCH_DELAY_MS = 5000;
+
+    private static final int DATABASE_VERSION = 2;
+    private static final String LINKED_NODE = ""; // node_id of the node linked to the user
+
+    private static final String INSERT_MEASUREMENT = "INSERT OR IGNORE INTO measurements"
+            + " (node_id, ts, gas, value, lat, lon, seq) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPSERT_DASHBOARD_READING = "INSERT OR REPLACE INTO dashboard_readings"
+            + " (ts, proportional_value, air_quality) VALUES (?, ?, ?)";
+
+    private static final String MINUTE_ROLLUPS = "rollups_minute";
+    private static final String HOUR_ROLLUPS = "rollups_hour";
+    // Rollup columns aggregated from raw measurements, or from rollups of shorter buckets
+    private static final String MEASUREMENT_AGGREGATES = "COUNT(*), SUM(value), MIN(value), MAX(value)";
+    private static final String ROLLUP_AGGREGATES = "SUM(samples), SUM(value_sum), MIN(value_min), MAX(value_max)";
+    // The SQLite of API 26 has no UPSERT: update the bucket, and insert it if it is not there
+    private static final String MERGE_ROLLUP = "UPDATE %s SET samples = samples + ?, value_sum = value_sum + ?,"
+            + " value_min = MIN(value_min, ?), value_max = MAX(value_max, ?) WHERE ts = ? AND node_id = ? AND gas = ?";
+    private static final String INSERT_ROLLUP = "INSERT INTO %s"
+            + " (samples, value_sum, value_min, value_max, ts, node_id, gas) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final long INCREMENTAL_VACUUM = 2; // PRAGMA auto_vacuum value
+
+    private static MeasurementHistoryDb instance;
+
+    private final MeasurementBatcher batcher;
+    private SQLiteStatement insertMeasurement;
+    private long writtenRows;
+    private long writtenBatches;
+
+    /**
+     * Returns the database of the app, creating the helper the first time.
+     *
+     * @param context Any context; its application context is kept.
+     * @return The shared instance.
+     */
+    public static synchronized MeasurementHistoryDb getInstance(Context context) {
+        if (instance == null) {
+            instance = new MeasurementHistoryDb(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MeasurementHistoryDb(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.batcher = new MeasurementBatcher(DEFAULT_BATCH_ROWS, DEFAULT_BATCH_DELAY_MS,
+                SystemClock::elapsedRealtime, this::writeBatch);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Only takes effect on a database without tables, i.e. when it is created
+        db.execSQL("PRAGMA auto_vacuum=INCREMENTAL");
+        db.enableWriteAheadLogging();
+        // With WAL, NORMAL only risks the last transactions on a power loss, never corruption
+        db.execSQL("PRAGMA synchronous=NORMAL");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE measurements ("
+                + "node_id TEXT NOT NULL, "
+                + "ts INTEGER NOT NULL, "
+                + "gas INTEGER NOT NULL, "
+                + "value REAL NOT NULL, "
+                + "lat REAL, "
+                + "lon REAL, "
+                + "seq INTEGER, "
+                + "PRIMARY KEY (node_id, ts, gas)) WITHOUT ROWID");
+        // Secondary indexes of a WITHOUT ROWID table also hold its key, node_id included
+        db.execSQL("CREATE INDEX measurements_ts ON measurements (ts, gas, value)");
+        db.execSQL("CREATE TABLE dashboard_readings ("
+                + "ts INTEGER PRIMARY KEY, "
+                + "proportional_value INTEGER NOT NULL, "
+                + "air_quality INTEGER NOT NULL)");
+        createRollupTables(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createRollupTables(db);
+        }
+    }
+
+    private static void createRollupTables(SQLiteDatabase db) {
+        for (String table : new String[]{MINUTE_ROLLUPS, HOUR_ROLLUPS}) {
+            db.execSQL("CREATE TABLE " + table + " ("
+                    + "ts INTEGER NOT NULL, "
+                    + "node_id TEXT NOT NULL, "
+                    + "gas INTEGER NOT NULL, "
+                    + "samples INTEGER NOT NULL, "
+                    + "value_sum REAL NOT NULL, "
+                    + "value_min REAL NOT NULL, "
+                    + "value_max REAL NOT NULL, "
+                    + "PRIMARY KEY (ts, node_id, gas)) WITHOUT ROWID");
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Queues a measurement for the next batch insert, timestamped now unless it carries its
+     * own timestamp.
+     *      Measurement, Natural ---> add()
+     *
+     * @param measurement The measurement; it is not kept.
+     * @param nowMs       The current Unix time in milliseconds.
+     */
+    public synchronized void add(Measurement measurement, long nowMs) {
+        long timestamp = measurement.getTimestamp() > 0 ? measurement.getTimestamp() : nowMs;
+        batcher.add(timestamp, measurement.getO3Value(), measurement.getLatitude(),
+                measurement.getLongitude(), measurement.getNodeId(), measurement.getSequence(),
+                measurement.getGasType());
+    }
+
+    /**
+     * Queues a reading for the next batch insert without a Measurement object.
+     *      Natural, Real, Real, Real, Texto, Z, GasType ---> add()
+     *
+     * @param timestampMs Capture time, Unix milliseconds.
+     * @param value       The value in ppm.
+     * @param latitude    Latitude in degrees, or NaN if unknown; stored as NULL.
+     * @param longitude   Longitude in degrees, or NaN if unknown; stored as NULL.
+     * @param nodeId      UUID of the node, or null for the node linked to the user.
+     * @param sequence    Node's sequence number, or -1 if unknown.
+     * @param gasType     Gas the value is of.
+     */
+    public synchronized void add(long timestampMs, float value, double latitude, double longitude,
+                                 String nodeId, long sequence, GasType gasType) {
+        batcher.add(timestampMs, value, latitude, longitude, nodeId, sequence, gasType);
+    }
+
+    /**
+     * Inserts the queued measurements if the oldest has waited DEFAULT_BATCH_DELAY_MS.
+     */
+    public synchronized void poll() {
+        batcher.poll();
+    }
+
+    /**
+     * Inserts the queued measurements now.
+     */
+    public synchronized void flush() {
+        batcher.flush();
+    }
+
+    /**
+     * Inserts a batch in one transaction. Called by the batcher, with the lock held. A batch
+     * that fails is dropped and logged: the measurement log and store still hold its readings.
+     */
+    private void writeBatch(MeasurementBatch batch) {
+        try {
+            insertBatch(batch);
+        } catch (SQLException e) {
+            Log.e(LOG_TAG, "Cannot insert " + batch.size() + " measurements: " + e.getMessage());
+        }
+    }
+
+    private void insertBatch(MeasurementBatch batch) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (insertMeasurement == null) {
+            insertMeasurement = db.compileStatement(INSERT_MEASUREMENT);
+        }
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                String nodeId = batch.getNodeId(i);
+                insertMeasurement.bindString(1, nodeId == null ? LINKED_NODE : nodeId);
+                insertMeasurement.bindLong(2, batch.getTimestamp(i));
+                insertMeasurement.bindLong(3, batch.getGasType(i).ordinal());
+                insertMeasurement.bindDouble(4, batch.getValue(i));
+                if (batch.hasLocation(i)) {
+                    insertMeasurement.bindDouble(5, batch.getLatitude(i));
+                    insertMeasurement.bindDouble(6, batch.getLongitude(i));
+                } else {
+                    // Unknown, e.g. a reading synced from the node's history; never 0, 0
+                    insertMeasurement.bindNull(5);
+                    insertMeasurement.bindNull(6);
+                }
+                insertMeasurement.bindLong(7, batch.getSequence(i));
+                insertMeasurement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        writtenRows += batch.size();
+        writtenBatches++;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Returns a cursor over the measurements of one node and gas between two times, both
+     * inclusive, in time order. Columns: ts, value, lat, lon, seq; lat and lon are NULL where unknown.
+     *      Texto, GasType, Natural, Natural ---> queryMeasurements() ---> Cursor
+     *
+     * @param nodeId  UUID of the node, or null for the node linked to the user.
+     * @param gasType The gas.
+     * @param fromMs  Start of the range.
+     * @param toMs    End of the range.
+     * @return The cursor, to be closed by the caller.
+     */
+    public Cursor queryMeasurements(String nodeId, GasType gasType, long fromMs, long toMs) {
+        return getReadableDatabase().rawQuery("SELECT ts, value, lat, lon, seq FROM measurements"
+                        + " WHERE node_id = ? AND gas = ? AND ts BETWEEN ? AND ? ORDER BY ts",
+                new String[]{nodeId == null ? LINKED_NODE : nodeId, String.valueOf(gasType.ordinal()),
+                        String.valueOf(fromMs), String.valueOf(toMs)});
+    }
+
+    /**
+     * Reads the measurements of one node and gas between two times into a batch, up to its
+     * free space. To page through a long range, read again from the last timestamp + 1.
+     *      Texto, GasType, Natural, Natural, MeasurementBatch ---> readMeasurements() ---> Natural
+     *
+     * @param nodeId  UUID of the node, or null for the node linked to the user.
+     * @param gasType The gas.
+     * @param fromMs  Start of the range.
+     * @param toMs    End of the range.
+     * @param out     Batch the rows are added to.
+     * @return The number of rows added.
+     */
+    public int readMeasurements(String nodeId, GasType gasType, long fromMs, long toMs, MeasurementBatch out) {
+        int read = 0;
+        try (Cursor cursor = queryMeasurements(nodeId, gasType, fromMs, toMs)) {
+            while (!out.isFull() && cursor.moveToNext()) {
+                out.add(cursor.getLong(0), cursor.getFloat(1),
+                        cursor.isNull(2) ? Double.NaN : cursor.getDouble(2),
+                        cursor.isNull(3) ? Double.NaN : cursor.getDouble(3),
+                        nodeId, cursor.getLong(4), gasType);
+                read++;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads the values of one gas measured by any node between two times into two arrays, in
+     * time order. Answered from the (ts, gas, value) index alone.
+     *      GasType, Natural, Natural, [Natural], [Real] ---> readSeries() ---> Natural
+     *
+     * @param gasType     The gas.
+     * @param fromMs      Start of the range.
+     * @param toMs        End of the range.
+     * @param timestamps  Receives the times; its length limits the rows read.
+     * @param values      Receives the values, at least as long as timestamps.
+     * @return The number of rows read.
+     */
+    public int readSeries(GasType gasType, long fromMs, long toMs, long[] timestamps, float[] values) {
+        int read = 0;
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT ts, value FROM measurements"
+                        + " INDEXED BY measurements_ts WHERE ts BETWEEN ? AND ? AND gas = ? ORDER BY ts",
+                new String[]{String.valueOf(fromMs), String.valueOf(toMs), String.valueOf(gasType.ordinal())})) {
+            while (read < timestamps.length && cursor.moveToNext()) {
+                timestamps[read] = cursor.getLong(0);
+                values[read] = cursor.getFloat(1);
+                read++;
+            }
+        }
+        return read;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Stores the readings of a dashboard response, writing only those that are new or
+     * changed compared with what is stored over the same time span.
+     *      DashboardSeries ---> storeDashboardReadings() ---> Natural
+     *
+     * @param series The readings, in time order.
+     * @return The number of rows written; 0 if nothing changed.
+     */
+    public synchronized int storeDashboardReadings(DashboardSeries series) {
+        if (series.isEmpty()) {
+            return 0;
+        }
+        DashboardSeries stored = readDashboardReadings(series.getTimestamp(0),
+                series.getTimestamp(series.size() - 1));
+        DashboardSeries delta = series.delta(stored);
+        if (delta.isEmpty()) {
+            return 0;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement upsert = db.compileStatement(UPSERT_DASHBOARD_READING);
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < delta.size(); i++) {
+                upsert.bindLong(1, delta.getTimestamp(i));
+                upsert.bindLong(2, delta.getProportionalValue(i));
+                upsert.bindLong(3, delta.getAirQuality(i));
+                upsert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            upsert.close();
+        }
+        return delta.size();
+    }
+
+    /**
+     * Reads the stored dashboard readings between two times, both inclusive.
+     *      Natural, Natural ---> readDashboardReadings() ---> DashboardSeries
+     *
+     * @param fromMs Start of the range.
+     * @param toMs   End of the range.
+     * @return The readings in time order.
+     */
+    public DashboardSeries readDashboardReadings(long fromMs, long toMs) {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT ts, proportional_value, air_quality"
+                        + " FROM dashboard_readings WHERE ts BETWEEN ? AND ? ORDER BY ts",
+                new String[]{String.valueOf(fromMs), String.valueOf(toMs)})) {
+            DashboardSeries series = new DashboardSeries(cursor.getCount());
+            while (cursor.moveToNext()) {
+                series.add(cursor.getLong(0), cursor.getInt(1), (byte) cursor.getInt(2));
+            }
+            return series;
+        }
+    }
+
+    /**
+     * Reads the stored dashboard readings of the span that ends at the newest one, e.g. to
+     * draw the chart as it was last seen.
+     *      Natural ---> readLatestDashboardReadings() ---> DashboardSeries
+     *
+     * @param spanMs Length of the span.
+     * @return The readings in time order, empty if none is stored.
+     */
+    public DashboardSeries readLatestDashboardReadings(long spanMs) {
+        long newest = DatabaseUtils.longForQuery(getReadableDatabase(),
+                "SELECT IFNULL(MAX(ts), -1) FROM dashboard_readings", null);
+        if (newest < 0) {
+            return new DashboardSeries(0);
+        }
+        return readDashboardReadings(newest - spanMs, newest);
+    }
+
+    // -------------------------------------------------------------------------------
+    @Override
+    public int rollUpMeasurements(long beforeMs, long bucketMs, int maxRows) {
+        return rollUp("measurements", MEASUREMENT_AGGREGATES, MINUTE_ROLLUPS, beforeMs, bucketMs, maxRows);
+    }
+
+    @Override
+    public int rollUpMinutes(long beforeMs, long bucketMs, int maxRows) {
+        return rollUp(MINUTE_ROLLUPS, ROLLUP_AGGREGATES, HOUR_ROLLUPS, beforeMs, bucketMs, maxRows);
+    }
+
+    /**
+     * Moves the oldest slice of rows of one tier into the rollups of the next, in one
+     * transaction: their buckets are aggregated in SQL, merged into the rows the target
+     * already has, and the slice is deleted. Does not take the lock of add() and poll().
+     *      Texto, Texto, Texto, Natural, Natural, Z ---> rollUp() ---> Z
+     *
+     * @param source     Table the rows are taken from.
+     * @param aggregates Rollup columns aggregated over the rows of source.
+     * @param target     Rollup table they are merged into.
+     * @param beforeMs   Only rows before this time are taken.
+     * @param bucketMs   Length of the target buckets.
+     * @param maxRows    Size of the slice.
+     * @return The number of rows deleted from source.
+     */
+    private int rollUp(String source, String aggregates, String target, long beforeMs,
+                       long bucketMs, int maxRows) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        SQLiteStatement merge = db.compileStatement(String.format(MERGE_ROLLUP, target));
+        SQLiteStatement insert = db.compileStatement(String.format(INSERT_ROLLUP, target));
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + source + " WHERE ts < ?");
+        try {
+            long end = sliceEnd(db, source, beforeMs, maxRows);
+            if (end < 0) {
+                db.setTransactionSuccessful();
+                return 0;
+            }
+            try (Cursor cursor = db.rawQuery("SELECT (ts / " + bucketMs + ") * " + bucketMs + " AS bucket,"
+                            + " node_id, gas, " + aggregates + " FROM " + source
+                            + " WHERE ts < ? GROUP BY bucket, node_id, gas",
+                    new String[]{String.valueOf(end)})) {
+                while (cursor.moveToNext()) {
+                    bindRollup(merge, cursor);
+                    if (merge.executeUpdateDelete() == 0) {
+                        bindRollup(insert, cursor);
+                        insert.executeInsert();
+                    }
+                }
+            }
+            delete.bindLong(1, end);
+            int deleted = delete.executeUpdateDelete();
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+            merge.close();
+            insert.close();
+            delete.close();
+        }
+    }
+
+    /**
+     * Binds a bucket read by rollUp() to MERGE_ROLLUP or INSERT_ROLLUP, which take the same
+     * parameters in the same order.
+     */
+    private static void bindRollup(SQLiteStatement statement, Cursor bucket) {
+        statement.bindLong(1, bucket.getLong(3));
+        statement.bindDouble(2, bucket.getDouble(4));
+        statement.bindDouble(3, bucket.getDouble(5));
+        statement.bindDouble(4, bucket.getDouble(6));
+        statement.bindLong(5, bucket.getLong(0));
+        statement.bindString(6, bucket.getString(1));
+        statement.bindLong(7, bucket.getLong(2));
+    }
+
+    /**
+     * Returns the end, exclusive, of the oldest slice of at most maxRows rows of a table
+     * before a time. Rows that share a timestamp are never split, so a slice is longer only
+     * if more than maxRows share the first one.
+     *
+     * @return The end, or -1 if there is no row before beforeMs.
+     */
+    private static long sliceEnd(SQLiteDatabase db, String table, long beforeMs, int maxRows) {
+        String[] before = {String.valueOf(beforeMs)};
+        long first = DatabaseUtils.longForQuery(db,
+                "SELECT IFNULL(MIN(ts), -1) FROM " + table + " WHERE ts < ?", before);
+        if (first < 0) {
+            return -1;
+        }
+        try (Cursor cursor = db.rawQuery("SELECT ts FROM " + table
+                + " WHERE ts < ? ORDER BY ts LIMIT 1 OFFSET " + maxRows, before)) {
+            if (!cursor.moveToFirst()) {
+                return beforeMs;
+            }
+            long end = cursor.getLong(0);
+            return end > first ? end : first + 1;
+        }
+    }
+
+    @Override
+    public int releaseFreePages(int maxPages) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != INCREMENTAL_VACUUM) {
+            return 0;
+        }
+        long free = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        if (free == 0) {
+            return 0;
+        }
+        try (Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + maxPages + ")", null)) {
+            while (cursor.moveToNext()) {
+                // The pages are released as the pragma is stepped through
+            }
+        }
+        return (int) (free - DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null));
+    }
+
+    @Override
+    public long getStorageBytes() {
+        File file = new File(getReadableDatabase().getPath());
+        return file.length() + new File(file.getPath() + "-wal").length();
+    }
+
+    /**
+     * Returns a cursor over the rollups of one node and gas whose buckets start between two
+     * times, both inclusive, in time order. Columns: ts, samples, value_sum, value_min,
+     * value_max; the mean of a bucket is value_sum / samples.
+     *      Texto, GasType, T/F, Natural, Natural ---> queryRollups() ---> Cursor
+     *
+     * @param nodeId  UUID of the node, or null for the node linked to the user.
+     * @param gasType The gas.
+     * @param hourly  true for the hourly rollups, false for the minute ones.
+     * @param fromMs  Start of the range.
+     * @param toMs    End of the range.
+     * @return The cursor, to be closed by the caller.
+     */
+    public Cursor queryRollups(String nodeId, GasType gasType, boolean hourly, long fromMs, long toMs) {
+        return getReadableDatabase().rawQuery("SELECT ts, samples, value_sum, value_min, value_max FROM "
+                        + (hourly ? HOUR_ROLLUPS : MINUTE_ROLLUPS)
+                        + " WHERE ts BETWEEN ? AND ? AND node_id = ? AND gas = ? ORDER BY ts",
+                new String[]{String.valueOf(fromMs), String.valueOf(toMs),
+                        nodeId == null ? LINKED_NODE : nodeId, String.valueOf(gasType.ordinal())});
+    }
+
+    public synchronized long getWrittenRows() {
+        return writtenRows;
+    }
+
+    public synchronized long getWrittenBatches() {
+        return writtenBatches;
+    }
+
+    /**
+     * Returns the number of measurements waiting for the next batch insert.
+     *
+     * @return The pending count.
+     */
+    public synchronized int getPendingCount() {
+        return batcher.getPendingCount();
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the accepted measurements, so a reading survives the service being
+ * killed at any moment after it was accepted.
+ * <p>
+ * The log is a directory of segment files, each named after the sequence number of its first
+ * record and mapped into memory whole when it is created. Records have a fixed size and are
+ * numbered consecutively:
+ * <pre>
+ *   segment header: "HAWL" magic, version (4 bytes), record length (4 bytes),
+ *                   first sequence (8 bytes)
+ *   record:         sequence (8 bytes), timestamp in Unix ms (8 bytes), latitude and
+ *                   longitude (8 bytes each, doubles), value (4 bytes, float),
+ *                   CRC-32 of the previous 36 bytes (4 bytes)
+ * </pre>
+ * append() only copies the record into the mapping, without any system call; the kernel
+ * writes the dirty pages back on its own, also after the process dies. force() forces them to
+ * the storage device, which is only needed to survive a power loss. A new segment is created
+ * when the current one is full, and the oldest segments are deleted beyond maxSegments.
+ * <p>
+ * On opening, every segment is scanned up to its first record whose CRC or sequence number
+ * does not match, e.g. one half-written when the process died, and the log continues after
+ * the last valid record. Thread-safe: appends come from the service thread and reads from the
+ * uploaders or the UI.
+ *
+ * @since 2026-10-18
+ */
+public final class MeasurementLog implements Closeable {
+    public static final int RECORD_LENGTH = 40;
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 4096; // 160 KB, 11 hours at 10 s
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    private static final int MAGIC = 0x4841574C; // "HAWL"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 20;
+    private static final int CRC_OFFSET = RECORD_LENGTH - 4;
+    private static final String SUFFIX = ".wal";
+
+    /**
+     * Receives the records of a read.
+     */
+    public interface RecordVisitor {
+        void onRecord(long sequence, long timestampMs, float value, double latitude, double longitude);
+    }
+
+    /**
+     * One mapped segment file.
+     */
+    private static final class Segment {
+        final File file;
+        final long firstSequence;
+        final MappedByteBuffer buffer;
+        int count;
+
+        Segment(File file, long firstSequence, MappedByteBuffer buffer) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.buffer = buffer;
+        }
+    }
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final List<Segment> segments = new ArrayList<>();
+    private final byte[] record = new byte[RECORD_LENGTH];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32 crc = new CRC32();
+
+    private long nextSequence;
+    private long recoveredCount;
+    private long appendedCount;
+    private boolean closed;
+
+    /**
+     * Opens the log in a directory, creating it if needed, and recovers the records already in
+     * it.
+     *
+     * @param directory         Directory of the segment files.
+     * @param recordsPerSegment Records per segment file.
+     * @param maxSegments       Segment files kept at most, the current one included.
+     * @throws IOException if the directory or a segment cannot be opened.
+     */
+    public MeasurementLog(File directory, int recordsPerSegment, int maxSegments) throws IOException {
+        if (recordsPerSegment <= 0 || maxSegments <= 0) {
+            throw new IllegalArgumentException("Segments must hold records and be kept");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the log directory " + directory);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+        recover();
+    }
+
+    /**
+     * Opens the log with the default segment size and count.
+     *
+     * @param directory Directory of the segment files.
+     * @throws IOException if the directory or a segment cannot be opened.
+     */
+    public MeasurementLog(File directory) throws IOException {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_SEGMENTS);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Appends a record. Unless a new segment has to be created, this only writes to memory.
+     *      Natural, Real, Real, Real ---> append() ---> Natural
+     *
+     * @param timestampMs Time of the reading, Unix milliseconds.
+     * @param value       The value, e.g. O3 in ppm.
+     * @param latitude    Latitude in degrees.
+     * @param longitude   Longitude in degrees.
+     * @return The sequence number of the record.
+     * @throws IOException if a new segment cannot be created.
+     */
+    public synchronized long append(long timestampMs, float value, double latitude, double longitude) throws IOException {
+        if (closed) {
+            throw new IOException("Log is closed");
+        }
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.count == recordsPerSegment) {
+            segment = rotate();
+        }
+        long sequence = nextSequence;
+        recordBuffer.clear();
+        recordBuffer.putLong(sequence).putLong(timestampMs).putDouble(latitude).putDouble(longitude).putFloat(value);
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        recordBuffer.putInt((int) crc.getValue());
+
+        segment.buffer.position(HEADER_LENGTH + segment.count * RECORD_LENGTH);
+        segment.buffer.put(record);
+        segment.count++;
+        nextSequence++;
+        appendedCount++;
+        return sequence;
+    }
+
+    /**
+     * Appends a measurement, timestamped now unless it carries its own timestamp.
+     *      Measurement, Natural ---> append() ---> Natural
+     *
+     * @param measurement The measurement.
+     * @param nowMs       The current Unix time in milliseconds.
+     * @return The sequence number of the record.
+     * @throws IOException if a new segment cannot be created.
+     */
+    public long append(Measurement measurement, long nowMs) throws IOException {
+        long timestamp = measurement.getTimestamp() > 0 ? measurement.getTimestamp() : nowMs;
+        return append(timestamp, measurement.getO3Value(), measurement.getLatitude(), measurement.getLongitude());
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Visits the records from a sequence number on, in order. Records already deleted with
+     * their segment are skipped.
+     *      Natural, Natural, RecordVisitor ---> read() ---> Natural
+     *
+     * @param fromSequence First sequence number wanted.
+     * @param maxRecords   Records to visit at most.
+     * @param visitor      Receives each record.
+     * @return The number of records visited.
+     */
+    public synchronized int read(long fromSequence, int maxRecords, RecordVisitor visitor) {
+        int visited = 0;
+        for (Segment segment : segments) {
+            long end = segment.firstSequence + segment.count;
+            if (end <= fromSequence) {
+                continue;
+            }
+            int index = (int) Math.max(0, fromSequence - segment.firstSequence);
+            for (; index < segment.count && visited < maxRecords; index++, visited++) {
+                int offset = HEADER_LENGTH + index * RECORD_LENGTH;
+                ByteBuffer buffer = segment.buffer;
+                visitor.onRecord(buffer.getLong(offset), buffer.getLong(offset + 8),
+                        buffer.getFloat(offset + 32), buffer.getDouble(offset + 16),
+                        buffer.getDouble(offset + 24));
+            }
+            if (visited == maxRecords) {
+                break;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Visits the last record, if any, e.g. to restore the last measurement after a restart.
+     *
+     * @param visitor Receives the record.
+     * @return false if the log is empty.
+     */
+    public synchronized boolean readLast(RecordVisitor visitor) {
+        return nextSequence > getFirstSequence() && read(nextSequence - 1, 1, visitor) == 1;
+    }
+
+    /**
+     * Forces the current segment to the storage device. Costs a system call and a flash write,
+     * so it is meant for when the service stops, not for every append.
+     */
+    public synchronized void force() {
+        if (!closed && !segments.isEmpty()) {
+            segments.get(segments.size() - 1).buffer.force();
+        }
+    }
+
+    /**
+     * Forces the log to the storage device and releases it. Appends fail afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        force();
+        closed = true;
+        segments.clear();
+    }
+
+    private Segment rotate() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.get(segments.size() - 1).buffer.force();
+        }
+        while (segments.size() >= maxSegments) {
+            Segment oldest = segments.remove(0);
+            if (!oldest.file.delete()) {
+                throw new IOException("Cannot delete the old segment " + oldest.file);
+            }
+        }
+        File file = new File(directory, String.format(Locale.US, "%019d%s", nextSequence, SUFFIX));
+        Segment segment = new Segment(file, nextSequence, map(file));
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putInt(8, RECORD_LENGTH);
+        segment.buffer.putLong(12, nextSequence);
+        segments.add(segment);
+        return segment;
+    }
+
+    private MappedByteBuffer map(File file) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_LENGTH + (long) recordsPerSegment * RECORD_LENGTH);
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            throw new IOException("Cannot list the log directory " + directory);
+        }
+        Arrays.sort(files); // Zero-padded names sort by first sequence
+        List<File> unused = new ArrayList<>();
+        boolean ended = false;
+        for (File file : files) {
+            MappedByteBuffer buffer = ended ? null : mapExisting(file);
+            if (buffer == null) {
+                unused.add(file);
+                continue;
+            }
+            long firstSequence = buffer.getLong(12);
+            if (!segments.isEmpty() && firstSequence != nextSequence) {
+                // A gap: what came before is older than a segment that went missing
+                for (Segment segment : segments) {
+                    unused.add(segment.file);
+                }
+                segments.clear();
+            }
+            Segment segment = new Segment(file, firstSequence, buffer);
+            while (segment.count < recordsPerSegment && isValid(segment, segment.count)) {
+                segment.count++;
+            }
+            segments.add(segment);
+            nextSequence = firstSequence + segment.count;
+            if (segment.count < recordsPerSegment) {
+                // Nothing valid can follow the first bad record: later segments are dropped, and
+                // the rest of this one is cleared so no stale record reappears after a new crash
+                clearFrom(segment);
+                ended = true;
+            }
+        }
+        while (segments.size() > maxSegments) {
+            unused.add(segments.remove(0).file);
+        }
+        for (File file : unused) {
+            if (!file.delete()) {
+                throw new IOException("Cannot delete the unusable segment " + file);
+            }
+        }
+        for (Segment segment : segments) {
+            recoveredCount += segment.count;
+        }
+    }
+
+    private MappedByteBuffer mapExisting(File file) throws IOException {
+        if (file.length() != HEADER_LENGTH + (long) recordsPerSegment * RECORD_LENGTH) {
+            return null; // Written with another segment size, or cut short
+        }
+        MappedByteBuffer buffer = map(file);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_LENGTH) {
+            return null;
+        }
+        return buffer;
+    }
+
+    private void clearFrom(Segment segment) {
+        Arrays.fill(record, (byte) 0);
+        for (int index = segment.count; index < recordsPerSegment; index++) {
+            segment.buffer.position(HEADER_LENGTH + index * RECORD_LENGTH);
+            segment.buffer.put(record);
+        }
+    }
+
+    private boolean isValid(Segment segment, int index) {
+        int offset = HEADER_LENGTH + index * RECORD_LENGTH;
+        segment.buffer.position(offset);
+        segment.buffer.get(record);
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        ByteBuffer view = ByteBuffer.wrap(record);
+        return view.getInt(CRC_OFFSET) == (int) crc.getValue()
+                && view.getLong(0) == segment.firstSequence + index;
+    }
+
+    /**
+     * Returns the sequence number the next record will get.
+     *
+     * @return The next sequence number.
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Returns the sequence number of the oldest record still kept.
+     *
+     * @return The first sequence number, equal to getNextSequence() if the log is empty.
+     */
+    public synchronized long getFirstSequence() {
+        return segments.isEmpty() ? nextSequence : segments.get(0).firstSequence;
+    }
+
+    public synchronized long getRecordCount() {
+        return nextSequence - getFirstSequence();
+    }
+
+    /**
+     * Returns how many valid records were found when the log was opened.
+     *
+     * @return The recovered record count.
+     */
+    public synchronized long getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    public synchronized long getAppendedCount() {
+        return appendedCount;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+}
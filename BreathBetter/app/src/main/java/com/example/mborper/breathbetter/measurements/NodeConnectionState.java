@@ -2,22 +2,38 @@ package com.example.mborper.breathbetter.measurements;
 
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.os.Handler;
 
+import com.example.mborper.breathbetter.bluetooth.SignalTracker.SilenceCause;
+
 /**
  * Manages the connection state of the node, including detecting connection loss,
  * attempting reconnections, and notifying listeners about the connection status.
+ * <p>
+ * The states themselves live in a ConnectionStateEngine, which can track any number of nodes
+ * and detects each loss at its real deadline on a timer wheel. This class keeps the original
+ * single-node API on top of it, for the node the phone is linked to, and owns the one shared
+ * thread that advances the wheel. The thread only wakes up at the earliest deadline, or when
+ * a node needs a new one. The linked node is lost after a few of the intervals at which the
+ * service expects to hear it, never before CONNECTION_TIMEOUT_MS.
+ * <p>
+ * In gateway mode there is no linked node: the service tracks each gateway node in the engine
+ * under its UUID instead, and their losses go to the NodeStatusListener.
  *
  * @author Alejandro Rosado
  * @since  2024-12-11
- * last edited: 2025-01-10
+ * last edited: 2026-10-18
  */
 public class NodeConnectionState {
     private static final String LOG_TAG = "NodeConnectionState";
     private static NodeConnectionState instance;
 
-    private boolean wasPreviouslyDisconnected = false;
+    /**
+     * ID under which the single-node API tracks the linked node in the engine.
+     */
+    public static final String DEFAULT_NODE_ID = "linked-node";
 
     /**
      * Enum representing the connection status of the node.
@@ -28,61 +44,90 @@ public class NodeConnectionState {
         RECONNECTING
     }
 
-    private ConnectionStatus currentStatus = ConnectionStatus.DISCONNECTED;
-    private long lastValidMeasurementTimestamp = 0;
     private static final long CONNECTION_TIMEOUT_MS = 40000; // 40 segundos
-    private int consecutiveConnectionAttempts = 0;
-    private static final int MAX_RECONNECTION_ATTEMPTS = 3;
+    private static final int MISSED_READINGS_BEFORE_LOSS = 4; // 40 s at the base 10 s interval
+    private static final long TICK_MS = ConnectionStateEngine.DEFAULT_TICK_MS;
+    private volatile long timeoutMs = CONNECTION_TIMEOUT_MS;
 
-    private HandlerThread handlerThread;
-    private Handler timeoutHandler;
+    // Last estimate of the radio link, from the SignalTracker; quality -1 while unknown
+    private volatile double lastDistanceMeters = Double.NaN;
+    private volatile double lastLinkQuality = -1;
+    private volatile SilenceCause lastSilenceCause = SilenceCause.UNKNOWN;
+    private volatile SilenceCause lossCause = SilenceCause.UNKNOWN;
 
-    private ConnectionStatusListener statusListener;
+    private final HandlerThread handlerThread;
+    private final Handler timeoutHandler;
+    private final ConnectionStateEngine engine;
+
+    private volatile ConnectionStatusListener statusListener;
+    private volatile NodeStatusListener nodeStatusListener;
+    private volatile boolean linkedNodeTracked = true;
 
     /**
-     * Constructor for NodeConnectionState. Initializes the connection state
-     * and sets up a thread to periodically check the connection timeout.
+     * Advances the engine, then sleeps until its earliest deadline; with no deadline left it
+     * stops until a node needs one.
+     */
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // A wake-up may have been posted while this one was waiting; one chain is enough
+            timeoutHandler.removeCallbacks(this);
+            engine.advance();
+            long next = engine.getNextDeadlineMs();
+            if (next != Long.MAX_VALUE) {
+                timeoutHandler.postDelayed(this, Math.max(0, next - SystemClock.elapsedRealtime()));
+            }
+        }
+    };
+
+    /**
+     * Constructor for NodeConnectionState. Starts the shared thread that advances the
+     * connection deadlines and registers the linked node as connected.
      */
     private NodeConnectionState() {
-        // Inicializar HandlerThread
         handlerThread = new HandlerThread("ConnectionTimeoutThread");
         handlerThread.start();
         timeoutHandler = new Handler(handlerThread.getLooper());
 
-        // Determinar el estado inicial en función de mediciones válidas
-        lastValidMeasurementTimestamp = System.currentTimeMillis(); // Simula que inicia conectado
-        currentStatus = ConnectionStatus.CONNECTED;
-
-        startConnectionTimeoutCheck();
-    }
+        engine = new ConnectionStateEngine(SystemClock::elapsedRealtime, CONNECTION_TIMEOUT_MS,
+                TICK_MS, this::wakeUp);
+        engine.setListener(new ConnectionStateEngine.Listener() {
+            @Override
+            public void onConnectionLost(String nodeId, long lastSeenMs) {
+                if (DEFAULT_NODE_ID.equals(nodeId)) {
+                    handleConnectionLoss();
+                    return;
+                }
+                NodeStatusListener l = nodeStatusListener;
+                if (l != null) {
+                    l.onNodeLost(nodeId, lastSeenMs);
+                }
+            }
 
-    /**
-     * Starts a periodic check for connection timeout.
-     * This method runs every 40 seconds to check if the connection is still valid.
-     */
-    private void startConnectionTimeoutCheck() {
-        timeoutHandler.postDelayed(new Runnable() {
             @Override
-            public void run() {
-                checkConnectionTimeout();
-                timeoutHandler.postDelayed(this, CONNECTION_TIMEOUT_MS);
+            public void onConnectionRestored(String nodeId) {
+                if (DEFAULT_NODE_ID.equals(nodeId)) {
+                    Log.i(LOG_TAG, "Node heard again, reconnecting");
+                    triggerReconnectionNotification();
+                    return;
+                }
+                NodeStatusListener l = nodeStatusListener;
+                if (l != null) {
+                    l.onNodeRestored(nodeId);
+                }
             }
-        }, CONNECTION_TIMEOUT_MS);
+        });
+
+        // Simula que inicia conectado
+        engine.nodeSeen(DEFAULT_NODE_ID);
     }
 
     /**
-     * Checks if the connection has timed out by comparing the last valid measurement timestamp
-     * with the current time. If the connection has timed out, it handles the connection loss.
+     * Advances the engine on the shared thread now, so a node that needs a deadline gets it
+     * even if the thread is sleeping until a later one. Callable from any thread.
      */
-    private synchronized void checkConnectionTimeout() {
-        long currentTime = System.currentTimeMillis();
-
-        if (lastValidMeasurementTimestamp == 0 ||
-                currentTime - lastValidMeasurementTimestamp > CONNECTION_TIMEOUT_MS) {
-            if (currentStatus != ConnectionStatus.DISCONNECTED) {
-                handleConnectionLoss();
-            }
-        }
+    private void wakeUp() {
+        timeoutHandler.post(tickRunnable);
     }
 
     /**
@@ -97,6 +142,16 @@ public class NodeConnectionState {
         return instance;
     }
 
+    /**
+     * Returns the engine holding the state of every node, for components that track more
+     * than the linked node.
+     *
+     * @return The shared connection-state engine.
+     */
+    public ConnectionStateEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Listener interface to notify when the connection status changes.
      */
@@ -105,6 +160,15 @@ public class NodeConnectionState {
         void onConnectionRestored();
     }
 
+    /**
+     * Listener for the connection changes of every node other than the linked one, e.g. the
+     * nodes of a gateway. Called on the shared connection thread.
+     */
+    public interface NodeStatusListener {
+        void onNodeLost(String nodeId, long lastSeenMs);
+        void onNodeRestored(String nodeId);
+    }
+
     /**
      * Sets the listener to handle connection status changes.
      *
@@ -114,17 +178,48 @@ public class NodeConnectionState {
         this.statusListener = listener;
     }
 
+    /**
+     * Sets the listener for the nodes tracked under their own ID, e.g. by a gateway.
+     *
+     * @param listener The listener, or null to stop listening.
+     */
+    public void setNodeStatusListener(NodeStatusListener listener) {
+        this.nodeStatusListener = listener;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Starts or stops tracking the linked node. A gateway has no linked node, and nothing
+     * would keep its deadline moving, so it stops tracking it for as long as it runs; when
+     * tracking starts again the node counts as just seen.
+     *      V/F ---> setLinkedNodeTracked()
+     *
+     * @param tracked Whether the service collects from a single linked node.
+     */
+    public void setLinkedNodeTracked(boolean tracked) {
+        if (tracked == linkedNodeTracked) {
+            return;
+        }
+        linkedNodeTracked = tracked;
+        if (tracked) {
+            engine.nodeSeen(DEFAULT_NODE_ID, timeoutMs);
+        } else {
+            engine.remove(DEFAULT_NODE_ID);
+        }
+    }
+
     /**
      * Triggers a connection lost notification.
      * This method is called when the connection is lost.
      */
     private void triggerConnectionLostNotification() {
-        if (statusListener != null) {
+        final ConnectionStatusListener listener = statusListener;
+        if (listener != null) {
             // Usar un Handler para asegurar que la notificación se muestre en el hilo principal
             new Handler(Looper.getMainLooper()).post(new Runnable() {
                 @Override
                 public void run() {
-                    statusListener.onConnectionLost();
+                    listener.onConnectionLost();
                 }
             });
         }
@@ -136,62 +231,83 @@ public class NodeConnectionState {
      */
     private void triggerReconnectionNotification() {
         Log.i(LOG_TAG, "Reconnection notification triggered");
-        if (statusListener != null) {
-            statusListener.onConnectionRestored();
+        ConnectionStatusListener listener = statusListener;
+        if (listener != null) {
+            listener.onConnectionRestored();
         }
-        wasPreviouslyDisconnected = false;
     }
 
     /**
      * Centralized method for updating the connection state based on the validity of the measurement.
      * <p>
-     * If the measurement is valid, it updates the connection status accordingly, either
-     * reconnecting or confirming the connection.
+     * A valid measurement moves the node's deadline forward; a disconnected node goes to
+     * RECONNECTING and, with the next valid measurement, back to CONNECTED. Lock-free.
      *
      * @param isValidMeasurement Indicates whether the received measurement is valid.
      */
-    public synchronized void updateConnectionState(boolean isValidMeasurement) {
-        long currentTime = System.currentTimeMillis();
-
-        if (isValidMeasurement) {
-            // Medición válida
-            lastValidMeasurementTimestamp = currentTime;
-
-            // Si estaba desconectado, intentar reconectar
-            if (currentStatus == ConnectionStatus.DISCONNECTED) {
-                wasPreviouslyDisconnected = true;
-                attemptReconnection();
-            } else {
-                currentStatus = ConnectionStatus.CONNECTED;
-                consecutiveConnectionAttempts = 0;
-                wasPreviouslyDisconnected = false;
-            }
+    public void updateConnectionState(boolean isValidMeasurement) {
+        if (isValidMeasurement && linkedNodeTracked) {
+            engine.nodeSeen(DEFAULT_NODE_ID, timeoutMs);
         }
     }
 
     /**
-     * Handles connection loss by setting the status to disconnected and notifying the listener.
+     * Sets how often the service expects a reading of the linked node, e.g. the scan window
+     * plus the pause the scheduler chose after it. The node is only lost after missing a few
+     * of them, so a long interval does not raise a false loss every cycle.
+     *
+     * @param intervalMs Expected time between two readings; 0 for the default timeout.
      */
-    private void handleConnectionLoss() {
-        currentStatus = ConnectionStatus.DISCONNECTED;
-        consecutiveConnectionAttempts = 0;
-        triggerConnectionLostNotification();
+    public void setExpectedReadingInterval(long intervalMs) {
+        long timeout = getTimeoutForInterval(intervalMs);
+        if (timeout != timeoutMs) {
+            timeoutMs = timeout;
+            engine.setTimeout(DEFAULT_NODE_ID, timeout);
+        }
     }
 
     /**
-     * Attempts to reconnect the node. If the maximum number of reconnection attempts
-     * is reached, the connection status is set to disconnected.
+     * Returns after how long a node heard every intervalMs counts as lost.
+     *
+     * @param intervalMs Expected time between two readings of the node.
+     * @return The loss timeout, never below CONNECTION_TIMEOUT_MS.
      */
-    private void attemptReconnection() {
-        consecutiveConnectionAttempts++;
+    public static long getTimeoutForInterval(long intervalMs) {
+        return Math.max(CONNECTION_TIMEOUT_MS, MISSED_READINGS_BEFORE_LOSS * intervalMs);
+    }
 
-        if (consecutiveConnectionAttempts <= MAX_RECONNECTION_ATTEMPTS) {
-            currentStatus = ConnectionStatus.RECONNECTING;
-            Log.i(LOG_TAG, "Attempting to reconnect. Attempt: " + consecutiveConnectionAttempts);
-            triggerReconnectionNotification();
-        } else {
-            handleConnectionLoss();
+    /**
+     * Records the latest estimate of the radio link to the node. Used when the connection is
+     * lost to tell a user that walked away from a node that stopped advertising.
+     *
+     * @param distanceMeters Estimated distance to the node.
+     * @param linkQuality    Link quality between 0 and 1.
+     * @param silenceCause   What a silence would mean now, from SignalTracker.explainSilence().
+     */
+    public void updateSignal(double distanceMeters, double linkQuality, SilenceCause silenceCause) {
+        lastDistanceMeters = distanceMeters;
+        lastLinkQuality = linkQuality;
+        lastSilenceCause = silenceCause;
+    }
+
+    /**
+     * Handles connection loss by taking the cause the SignalTracker gave for a silence with the
+     * last signal, and notifying the listener. Runs on the shared thread, at the node's deadline.
+     */
+    private void handleConnectionLoss() {
+        lossCause = lastSilenceCause;
+        switch (lossCause) {
+            case OUT_OF_RANGE:
+                Log.i(LOG_TAG, "Connection lost: out of range, last distance " + lastDistanceMeters + " m");
+                break;
+            case NODE_SILENT:
+                Log.i(LOG_TAG, "Connection lost: node stopped advertising");
+                break;
+            default:
+                Log.i(LOG_TAG, "Connection lost: no signal estimate");
+                break;
         }
+        triggerConnectionLostNotification();
     }
 
     /**
@@ -206,10 +322,11 @@ public class NodeConnectionState {
     /**
      * Forcefully resets the connection state, setting it to connected and clearing any previous attempts.
      */
-    public synchronized void forceResetConnectionState() {
-        currentStatus = ConnectionStatus.CONNECTED;
-        lastValidMeasurementTimestamp = System.currentTimeMillis();
-        consecutiveConnectionAttempts = 0;
+    public void forceResetConnectionState() {
+        if (!linkedNodeTracked) {
+            return;
+        }
+        engine.forceConnected(DEFAULT_NODE_ID);
         Log.d(LOG_TAG, "Connection state forcefully reset");
     }
 
@@ -218,8 +335,45 @@ public class NodeConnectionState {
      *
      * @return The current connection status.
      */
-    public synchronized ConnectionStatus getConnectionStatus() {
-        return currentStatus;
+    public ConnectionStatus getConnectionStatus() {
+        return engine.getStatus(DEFAULT_NODE_ID);
+    }
+
+    /**
+     * Returns whether the last connection loss looked like the user walking out of range,
+     * rather than the node going silent.
+     *
+     * @return true if the link was weak or fading just before it was lost.
+     */
+    public boolean isLossOutOfRange() {
+        return lossCause == SilenceCause.OUT_OF_RANGE;
+    }
+
+    /**
+     * Returns the likely cause of the last connection loss.
+     *
+     * @return The cause, UNKNOWN before any loss or if no signal was tracked.
+     */
+    public SilenceCause getLossCause() {
+        return lossCause;
+    }
+
+    /**
+     * Returns the last estimated distance to the node.
+     *
+     * @return The distance in meters, or NaN if unknown.
+     */
+    public double getLastDistanceMeters() {
+        return lastDistanceMeters;
+    }
+
+    /**
+     * Returns the last link quality to the node.
+     *
+     * @return The quality between 0 and 1, or -1 if unknown.
+     */
+    public double getLastLinkQuality() {
+        return lastLinkQuality;
     }
 
     /**
@@ -227,7 +381,7 @@ public class NodeConnectionState {
      *
      * @return true if the node is connected, false otherwise.
      */
-    public synchronized boolean isConnected() {
-        return currentStatus == ConnectionStatus.CONNECTED;
+    public boolean isConnected() {
+        return getConnectionStatus() == ConnectionStatus.CONNECTED;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,182 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Streaming quantile estimator using the P² algorithm (Jain &amp; Chlamtac, 1985).
+ * <p>
+ * Keeps five markers whose heights approximate the minimum, p/2, p, (1+p)/2 quantiles and the
+ * maximum, adjusting them with a piecewise-parabolic formula as samples arrive. Memory and time
+ * per sample are O(1) and nothing is allocated after construction, so an instance can be
+ * reset() and reused for every scan window. With fewer than five samples the exact quantile of
+ * the samples seen is returned.
+ *
+ * @since 2026-10-18
+ */
+public class P2QuantileEstimator {
+    private static final int MARKERS = 5;
+
+    private final double p;
+    private final double[] heights = new double[MARKERS];
+    private final double[] positions = new double[MARKERS];
+    private final double[] desired = new double[MARKERS];
+    private final double[] increments = new double[MARKERS];
+    private final double[] sorted = new double[MARKERS];
+    private long count;
+
+    /**
+     * Creates an estimator for the given quantile.
+     *
+     * @param p The quantile to estimate, between 0 and 1 (0.5 for the median).
+     */
+    public P2QuantileEstimator(double p) {
+        if (p < 0 || p > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + p);
+        }
+        this.p = p;
+        increments[0] = 0;
+        increments[1] = p / 2;
+        increments[2] = p;
+        increments[3] = (1 + p) / 2;
+        increments[4] = 1;
+        reset();
+    }
+
+    /**
+     * Forgets every sample so the estimator can be reused.
+     */
+    public void reset() {
+        count = 0;
+        for (int i = 0; i < MARKERS; i++) {
+            positions[i] = i;
+        }
+        desired[0] = 0;
+        desired[1] = 2 * p;
+        desired[2] = 4 * p;
+        desired[3] = 2 + 2 * p;
+        desired[4] = 4;
+    }
+
+    /**
+     * Adds a sample.
+     *      Real ---> add()
+     *
+     * @param x The sample value.
+     */
+    public void add(double x) {
+        if (count < MARKERS) {
+            heights[(int) count] = x;
+            count++;
+            if (count == MARKERS) {
+                insertionSort(heights, MARKERS);
+            }
+            return;
+        }
+        count++;
+
+        // Find the cell containing x, extending the extremes if needed
+        int k;
+        if (x < heights[0]) {
+            heights[0] = x;
+            k = 0;
+        } else if (x < heights[1]) {
+            k = 0;
+        } else if (x < heights[2]) {
+            k = 1;
+        } else if (x < heights[3]) {
+            k = 2;
+        } else if (x <= heights[4]) {
+            k = 3;
+        } else {
+            heights[4] = x;
+            k = 3;
+        }
+
+        for (int i = k + 1; i < MARKERS; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < MARKERS; i++) {
+            desired[i] += increments[i];
+        }
+
+        // Move the three middle markers towards their desired positions
+        for (int i = 1; i < MARKERS - 1; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int sign = d > 0 ? 1 : -1;
+                double candidate = parabolic(i, sign);
+                if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                    heights[i] = candidate;
+                } else {
+                    heights[i] = linear(i, sign);
+                }
+                positions[i] += sign;
+            }
+        }
+    }
+
+    /**
+     * Returns the current estimate of the quantile.
+     *      getEstimate() ---> Real
+     *
+     * @return The estimate, or NaN if no sample has been added.
+     */
+    public double getEstimate() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count >= MARKERS) {
+            return heights[2];
+        }
+
+        int n = (int) count;
+        System.arraycopy(heights, 0, sorted, 0, n);
+        insertionSort(sorted, n);
+        double rank = p * (n - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    /**
+     * Returns the number of samples added since the last reset.
+     *
+     * @return The sample count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Piecewise-parabolic prediction of the new height of marker i.
+     */
+    private double parabolic(int i, int d) {
+        double nPrev = positions[i - 1];
+        double n = positions[i];
+        double nNext = positions[i + 1];
+        return heights[i] + d / (nNext - nPrev)
+                * ((n - nPrev + d) * (heights[i + 1] - heights[i]) / (nNext - n)
+                + (nNext - n - d) * (heights[i] - heights[i - 1]) / (n - nPrev));
+    }
+
+    /**
+     * Linear prediction of the new height of marker i, used when the parabola is not monotonic.
+     */
+    private double linear(int i, int d) {
+        return heights[i] + d * (heights[i + d] - heights[i]) / (positions[i + d] - positions[i]);
+    }
+
+    /**
+     * Sorts the first n values of a small array in place.
+     */
+    private static void insertionSort(double[] values, int n) {
+        for (int i = 1; i < n; i++) {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+}
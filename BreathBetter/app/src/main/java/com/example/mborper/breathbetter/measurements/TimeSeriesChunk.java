@@ -0,0 +1,313 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Block of consecutive samples compressed column by column, in the style of Facebook's
+ * Gorilla time-series database (Pelkonen et al., 2015).
+ * <p>
+ * Each sample is a timestamp, a float value and a location, encoded as bit fields:
+ * <ul>
+ *   <li> Timestamps, in ticks of the store's resolution, as the delta of the previous delta:
+ *        '0' when the spacing is unchanged, else '10', '110' or '1110' and a 7, 9 or 12-bit
+ *        signed field, or '1111' and 64 bits.
+ *   <li> Values as the XOR with the previous float: '0' when unchanged, '10' and the
+ *        meaningful bits if they fit in the previous window of leading and trailing zeros,
+ *        else '11', 5 bits of leading zeros, 5 bits of length - 1 and the meaningful bits.
+ *   <li> Latitude and longitude in fixed point (1e-7 degrees, about 1 cm) as deltas: '0' when
+ *        unchanged, else '10', '110' or '111' and an 8, 16 or 32-bit zig-zag field.
+ * </ul>
+ * The first sample is written in full. The bit array is sized for the worst case when the
+ * chunk is created, so append() is O(1) and never copies. Once seal() is called the bits are
+ * trimmed to their exact size and the chunk is immutable; a sealed chunk can be read from any
+ * thread.
+ *
+ * @since 2026-10-18
+ */
+public final class TimeSeriesChunk {
+    static final double FIXED_POINT_SCALE = 1e7;
+    // Worst case of a sample after the first: timestamp 68, value 44, latitude and longitude 35
+    private static final int MAX_BITS_PER_SAMPLE = 182;
+    private static final int FIRST_SAMPLE_BITS = 64 + 32 + 32 + 32;
+
+    private final long resolutionMs;
+    private final int maxSamples;
+    private BitWriter writer;
+    private long[] sealedWords;
+    private int bitLength;
+    private int count;
+    private long minTimestampMs;
+    private long maxTimestampMs;
+
+    private long prevTicks;
+    private long prevDelta;
+    private int prevValueBits;
+    private int prevLeading = -1;
+    private int prevTrailing;
+    private int prevLat;
+    private int prevLon;
+
+    /**
+     * Creates an empty chunk open for appends.
+     *
+     * @param resolutionMs Resolution of the timestamps; they are truncated to a multiple of it.
+     * @param maxSamples   Samples the chunk can hold.
+     */
+    TimeSeriesChunk(long resolutionMs, int maxSamples) {
+        this.resolutionMs = resolutionMs;
+        this.maxSamples = maxSamples;
+        this.writer = new BitWriter(FIRST_SAMPLE_BITS + (maxSamples - 1) * MAX_BITS_PER_SAMPLE);
+    }
+
+    /**
+     * Rebuilds a sealed chunk from its persisted form.
+     */
+    TimeSeriesChunk(long resolutionMs, int count, long minTimestampMs, long maxTimestampMs,
+                    long[] words, int bitLength) {
+        this.resolutionMs = resolutionMs;
+        this.maxSamples = count;
+        this.count = count;
+        this.minTimestampMs = minTimestampMs;
+        this.maxTimestampMs = maxTimestampMs;
+        this.sealedWords = words;
+        this.bitLength = bitLength;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Appends a sample. Timestamps must not go backwards.
+     *      Natural, Real, Real, Real ---> append()
+     *
+     * @param timestampMs Time of the sample.
+     * @param value       The value, e.g. O3 in ppm.
+     * @param latitude    Latitude in degrees.
+     * @param longitude   Longitude in degrees.
+     * @throws IllegalStateException if the chunk is sealed or full.
+     */
+    void append(long timestampMs, float value, double latitude, double longitude) {
+        if (writer == null || count == maxSamples) {
+            throw new IllegalStateException("Chunk is sealed or full");
+        }
+        long ticks = Math.floorDiv(timestampMs, resolutionMs);
+        int valueBits = Float.floatToRawIntBits(value);
+        int lat = toFixedPoint(latitude);
+        int lon = toFixedPoint(longitude);
+
+        if (count == 0) {
+            writer.write(ticks, 64);
+            writer.write(valueBits, 32);
+            writer.write(lat, 32);
+            writer.write(lon, 32);
+            minTimestampMs = ticks * resolutionMs;
+        } else {
+            long delta = ticks - prevTicks;
+            writeDeltaOfDelta(delta - prevDelta);
+            writeValue(valueBits);
+            writeCoordinate(lat - prevLat);
+            writeCoordinate(lon - prevLon);
+            prevDelta = delta;
+        }
+        prevTicks = ticks;
+        prevValueBits = valueBits;
+        prevLat = lat;
+        prevLon = lon;
+        maxTimestampMs = ticks * resolutionMs;
+        bitLength = writer.getBitLength();
+        count++;
+    }
+
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            writer.write(0b0, 1);
+        } else if (fitsSigned(dod, 7)) {
+            writer.write(0b10, 2);
+            writer.write(dod, 7);
+        } else if (fitsSigned(dod, 9)) {
+            writer.write(0b110, 3);
+            writer.write(dod, 9);
+        } else if (fitsSigned(dod, 12)) {
+            writer.write(0b1110, 4);
+            writer.write(dod, 12);
+        } else {
+            writer.write(0b1111, 4);
+            writer.write(dod, 64);
+        }
+    }
+
+    private void writeValue(int valueBits) {
+        int xor = valueBits ^ prevValueBits;
+        if (xor == 0) {
+            writer.write(0b0, 1);
+            return;
+        }
+        int leading = Math.min(31, Integer.numberOfLeadingZeros(xor));
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            writer.write(0b10, 2);
+            writer.write(xor >>> prevTrailing, 32 - prevLeading - prevTrailing);
+        } else {
+            int length = 32 - leading - trailing;
+            writer.write(0b11, 2);
+            writer.write(leading, 5);
+            writer.write(length - 1, 5);
+            writer.write(xor >>> trailing, length);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+
+    private void writeCoordinate(int delta) {
+        long zigzag = ((delta << 1) ^ (delta >> 31)) & 0xFFFFFFFFL;
+        if (delta == 0) {
+            writer.write(0b0, 1);
+        } else if (zigzag < 1 << 8) {
+            writer.write(0b10, 2);
+            writer.write(zigzag, 8);
+        } else if (zigzag < 1 << 16) {
+            writer.write(0b110, 3);
+            writer.write(zigzag, 16);
+        } else {
+            writer.write(0b111, 3);
+            writer.write(zigzag, 32);
+        }
+    }
+
+    /**
+     * Trims the bits to their exact size and makes the chunk immutable.
+     */
+    void seal() {
+        if (writer != null) {
+            sealedWords = writer.toWords();
+            writer = null;
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Decodes the chunk and visits its samples between two times, both inclusive. A chunk
+     * outside the range is skipped without decoding anything.
+     *      Natural, Natural, SampleVisitor ---> scan() ---> Natural
+     *
+     * @param fromMs  Start of the range.
+     * @param toMs    End of the range.
+     * @param visitor Receives each sample in the range, in time order.
+     * @return The number of samples visited.
+     */
+    int scan(long fromMs, long toMs, TimeSeriesStore.SampleVisitor visitor) {
+        if (count == 0 || maxTimestampMs < fromMs || minTimestampMs > toMs) {
+            return 0;
+        }
+        BitReader reader = new BitReader(sealedWords != null ? sealedWords : writer.words());
+        long ticks = reader.read(64);
+        int valueBits = (int) reader.read(32);
+        int lat = (int) reader.read(32);
+        int lon = (int) reader.read(32);
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        int visited = 0;
+        for (int i = 0; ; ) {
+            long timestampMs = ticks * resolutionMs;
+            if (timestampMs > toMs) {
+                break;
+            }
+            if (timestampMs >= fromMs) {
+                visitor.onSample(timestampMs, Float.intBitsToFloat(valueBits),
+                        lat / FIXED_POINT_SCALE, lon / FIXED_POINT_SCALE);
+                visited++;
+            }
+            if (++i == count) {
+                break;
+            }
+
+            delta += readDeltaOfDelta(reader);
+            ticks += delta;
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.read(5);
+                    int length = (int) reader.read(5) + 1;
+                    trailing = 32 - leading - length;
+                }
+                valueBits ^= (int) reader.read(32 - leading - trailing) << trailing;
+            }
+            lat += readCoordinate(reader);
+            lon += readCoordinate(reader);
+        }
+        return visited;
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        if (!reader.readBit()) {
+            return 0;
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(7);
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(9);
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(12);
+        }
+        return reader.read(64);
+    }
+
+    private static int readCoordinate(BitReader reader) {
+        long zigzag;
+        if (!reader.readBit()) {
+            return 0;
+        } else if (!reader.readBit()) {
+            zigzag = reader.read(8);
+        } else if (!reader.readBit()) {
+            zigzag = reader.read(16);
+        } else {
+            zigzag = reader.read(32);
+        }
+        int z = (int) zigzag;
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    private static boolean fitsSigned(long value, int bits) {
+        return value >= -(1L << (bits - 1)) && value < 1L << (bits - 1);
+    }
+
+    static int toFixedPoint(double degrees) {
+        return (int) Math.round(degrees * FIXED_POINT_SCALE);
+    }
+
+    public boolean isSealed() {
+        return writer == null;
+    }
+
+    public boolean isFull() {
+        return count == maxSamples;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getMinTimestampMs() {
+        return minTimestampMs;
+    }
+
+    public long getMaxTimestampMs() {
+        return maxTimestampMs;
+    }
+
+    /**
+     * Returns the size of the encoded samples.
+     *
+     * @return The number of bits used.
+     */
+    public int getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Returns the trimmed words of a sealed chunk, for persisting it.
+     *
+     * @return The words, not to be modified.
+     */
+    long[] getWords() {
+        return sealedWords;
+    }
+}
@@ -0,0 +1,426 @@
+package com.example.mborper.breathbetter.measurements;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, on-device store of the measurement time series, so readings survive a failed
+ * upload or a restart of the app.
+ * <p>
+ * Samples go into an open TimeSeriesChunk, which is sealed when it holds samplesPerChunk
+ * samples or spans more than chunkSpanMs; a new chunk then starts. Sealed chunks are immutable
+ * and, when the store has a file, appended to it. Samples must arrive in time order, so the
+ * chunks are sorted by time: a range scan finds the first chunk with a binary search and
+ * decompresses only the chunks that overlap the range.
+ * <p>
+ * The samples of the open chunk are only in memory until it is sealed, e.g. by flush(). On
+ * disk each chunk carries a CRC-32; on loading, the first chunk that is cut short, fails its
+ * CRC or does not follow the previous one in time ends the file, and it is truncated there.
+ * <p>
+ * The store only keeps what dropBefore() leaves: the HistoryCompactor calls it with the cutoff
+ * of the raw tier, so the chunks past it leave memory and the file is rewritten without them.
+ * Thread-safe: appends usually come from the service thread and scans from the UI.
+ *
+ * @since 2026-10-18
+ */
+public class TimeSeriesStore {
+    public static final long DEFAULT_RESOLUTION_MS = 1000;
+    public static final int DEFAULT_SAMPLES_PER_CHUNK = 1024;
+    public static final long DEFAULT_CHUNK_SPAN_MS = 2 * 60 * 60 * 1000L;
+
+    private static final int FILE_MAGIC = 0x48415453; // "HATS"
+    private static final int FILE_VERSION = 2;
+    private static final int FILE_HEADER_LENGTH = 16;
+    // count (4), min timestamp (8), max timestamp (8), bit length (4), word count (4)
+    private static final int CHUNK_HEADER_LENGTH = 28;
+    private static final int CRC_LENGTH = 4;
+
+    /**
+     * Receives the samples of a range scan.
+     */
+    public interface SampleVisitor {
+        void onSample(long timestampMs, float value, double latitude, double longitude);
+    }
+
+    private final File file;
+    private final long resolutionMs;
+    private final int samplesPerChunk;
+    private final long chunkSpanMs;
+
+    private final List<TimeSeriesChunk> sealed = new ArrayList<>();
+    private TimeSeriesChunk active;
+    private long lastTimestampMs = Long.MIN_VALUE;
+    private long sampleCount;
+    private long sealedSamples;
+    private long sealedBits;
+    private long rejectedCount;
+    private long chunksDecoded;
+    private long droppedChunks;
+
+    /**
+     * Creates a store, loading the chunks already in its file.
+     *
+     * @param file            File the sealed chunks are appended to, or null to keep them
+     *                        only in memory.
+     * @param resolutionMs    Resolution of the timestamps.
+     * @param samplesPerChunk Samples per chunk at most.
+     * @param chunkSpanMs     Time a chunk may span at most.
+     * @throws IOException if the file cannot be read or is not a store file.
+     */
+    public TimeSeriesStore(File file, long resolutionMs, int samplesPerChunk, long chunkSpanMs) throws IOException {
+        this.file = file;
+        this.resolutionMs = resolutionMs;
+        this.samplesPerChunk = samplesPerChunk;
+        this.chunkSpanMs = chunkSpanMs;
+        if (file != null && file.length() > 0) {
+            load();
+        }
+    }
+
+    /**
+     * Creates a store with the default resolution and chunk size.
+     *
+     * @param file File the sealed chunks are appended to, or null for memory only.
+     * @throws IOException if the file cannot be read or is not a store file.
+     */
+    public TimeSeriesStore(File file) throws IOException {
+        this(file, DEFAULT_RESOLUTION_MS, DEFAULT_SAMPLES_PER_CHUNK, DEFAULT_CHUNK_SPAN_MS);
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Appends a sample in O(1). Samples older than the last one are rejected, since the store
+     * is append-only.
+     *      Natural, Real, Real, Real ---> append() ---> T/F
+     *
+     * @param timestampMs Time of the sample, Unix milliseconds.
+     * @param value       The value, e.g. O3 in ppm.
+     * @param latitude    Latitude in degrees.
+     * @param longitude   Longitude in degrees.
+     * @return false if the sample was older than the last one and was not stored.
+     * @throws IOException if a chunk sealed by this append cannot be written.
+     */
+    public synchronized boolean append(long timestampMs, float value, double latitude, double longitude) throws IOException {
+        if (timestampMs < lastTimestampMs) {
+            rejectedCount++;
+            return false;
+        }
+        if (active != null && (active.isFull() || timestampMs - active.getMinTimestampMs() >= chunkSpanMs)) {
+            sealActive();
+        }
+        if (active == null) {
+            active = new TimeSeriesChunk(resolutionMs, samplesPerChunk);
+        }
+        active.append(timestampMs, value, latitude, longitude);
+        lastTimestampMs = timestampMs;
+        sampleCount++;
+        return true;
+    }
+
+    /**
+     * Appends a measurement, timestamped now unless it carries its own timestamp.
+     *      Measurement, Natural ---> append() ---> T/F
+     *
+     * @param measurement The measurement.
+     * @param nowMs       The current Unix time in milliseconds.
+     * @return false if it was older than the last sample and was not stored.
+     * @throws IOException if a chunk sealed by this append cannot be written.
+     */
+    public boolean append(Measurement measurement, long nowMs) throws IOException {
+        long timestamp = measurement.getTimestamp() > 0 ? measurement.getTimestamp() : nowMs;
+        return append(timestamp, measurement.getO3Value(), measurement.getLatitude(), measurement.getLongitude());
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Visits the samples between two times, both inclusive, in time order. Only the chunks
+     * that overlap the range are decompressed.
+     *      Natural, Natural, SampleVisitor ---> scan() ---> Natural
+     *
+     * @param fromMs  Start of the range.
+     * @param toMs    End of the range.
+     * @param visitor Receives each sample.
+     * @return The number of samples visited.
+     */
+    public int scan(long fromMs, long toMs, SampleVisitor visitor) {
+        List<TimeSeriesChunk> overlapping = new ArrayList<>();
+        TimeSeriesChunk open;
+        synchronized (this) {
+            int first = firstChunkEndingAfter(fromMs);
+            for (int i = first; i < sealed.size() && sealed.get(i).getMinTimestampMs() <= toMs; i++) {
+                overlapping.add(sealed.get(i));
+            }
+            chunksDecoded += overlapping.size();
+            open = active;
+        }
+        // Sealed chunks are immutable, so they are decoded without holding the lock
+        int visited = 0;
+        for (TimeSeriesChunk chunk : overlapping) {
+            visited += chunk.scan(fromMs, toMs, visitor);
+        }
+        // The open chunk may have been sealed meanwhile; either way its samples come last
+        synchronized (this) {
+            if (open != null && open.getCount() > 0 && open.getMaxTimestampMs() >= fromMs
+                    && open.getMinTimestampMs() <= toMs) {
+                chunksDecoded++;
+                visited += open.scan(fromMs, toMs, visitor);
+            }
+        }
+        return visited;
+    }
+
+    private int firstChunkEndingAfter(long fromMs) {
+        int low = 0;
+        int high = sealed.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sealed.get(mid).getMaxTimestampMs() < fromMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Seals the open chunk, if it has samples, so everything stored so far is on disk.
+     *
+     * @throws IOException if the chunk cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        if (active != null && active.getCount() > 0) {
+            sealActive();
+        }
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Drops the sealed chunks whose samples are all older than a time, from memory and from
+     * the file. The rest of the file is copied after a new header into a temporary file, which
+     * then replaces it, so a crash leaves either the old file or the new one. Appends wait for
+     * the copy; it only happens when a chunk is dropped.
+     *      Natural ---> dropBefore() ---> Natural
+     *
+     * @param beforeMs Chunks ending before this time are dropped.
+     * @return The number of chunks dropped.
+     * @throws IOException if the file cannot be rewritten; the store is then left unchanged.
+     */
+    public synchronized int dropBefore(long beforeMs) throws IOException {
+        int dropped = firstChunkEndingAfter(beforeMs);
+        if (dropped == 0) {
+            return 0;
+        }
+        List<TimeSeriesChunk> old = sealed.subList(0, dropped);
+        if (file != null) {
+            long prefix = FILE_HEADER_LENGTH;
+            for (TimeSeriesChunk chunk : old) {
+                prefix += CHUNK_HEADER_LENGTH + 8L * chunk.getWords().length + CRC_LENGTH;
+            }
+            rewriteFrom(prefix);
+        }
+        for (TimeSeriesChunk chunk : old) {
+            sampleCount -= chunk.getCount();
+            sealedSamples -= chunk.getCount();
+            sealedBits -= chunk.getBitLength();
+        }
+        old.clear();
+        droppedChunks += dropped;
+        return dropped;
+    }
+
+    private void rewriteFrom(long offset) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileOutputStream out = new FileOutputStream(temp)) {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(FILE_MAGIC);
+            header.writeInt(FILE_VERSION);
+            header.writeLong(resolutionMs);
+            header.flush();
+            long length = in.length();
+            for (long position = offset; position < length; ) {
+                position += in.getChannel().transferTo(position, length - position, out.getChannel());
+            }
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private void sealActive() throws IOException {
+        TimeSeriesChunk chunk = active;
+        active = null;
+        chunk.seal();
+        sealed.add(chunk);
+        sealedSamples += chunk.getCount();
+        sealedBits += chunk.getBitLength();
+        if (file != null) {
+            writeChunk(chunk);
+        }
+    }
+
+    private void writeChunk(TimeSeriesChunk chunk) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (file.length() == 0) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(resolutionMs);
+        }
+        long[] words = chunk.getWords();
+        ByteBuffer record = ByteBuffer.allocate(CHUNK_HEADER_LENGTH + 8 * words.length);
+        record.putInt(chunk.getCount());
+        record.putLong(chunk.getMinTimestampMs());
+        record.putLong(chunk.getMaxTimestampMs());
+        record.putInt(chunk.getBitLength());
+        record.putInt(words.length);
+        for (long word : words) {
+            record.putLong(word);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array());
+        out.write(record.array());
+        out.writeInt((int) crc.getValue());
+        try (FileOutputStream stream = new FileOutputStream(file, true)) {
+            stream.write(bytes.toByteArray());
+            stream.getFD().sync();
+        }
+    }
+
+    private void load() throws IOException {
+        long fileLength = file.length();
+        if (fileLength < FILE_HEADER_LENGTH) {
+            throw new IOException("Not a time-series store: " + file);
+        }
+        long validLength = FILE_HEADER_LENGTH;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("Not a time-series store: " + file);
+            }
+            long fileResolution = in.readLong();
+            if (fileResolution != resolutionMs) {
+                throw new IOException("Store resolution is " + fileResolution + " ms, not " + resolutionMs);
+            }
+            byte[] header = new byte[CHUNK_HEADER_LENGTH];
+            CRC32 crc = new CRC32();
+            while (fileLength - validLength >= CHUNK_HEADER_LENGTH + CRC_LENGTH) {
+                TimeSeriesChunk chunk = readChunk(in, header, crc, fileLength - validLength);
+                if (chunk == null) {
+                    break; // A chunk cut short or garbled by a crash while writing it
+                }
+                sealed.add(chunk);
+                sampleCount += chunk.getCount();
+                sealedSamples += chunk.getCount();
+                sealedBits += chunk.getBitLength();
+                lastTimestampMs = chunk.getMaxTimestampMs();
+                validLength += CHUNK_HEADER_LENGTH + 8L * chunk.getWords().length + CRC_LENGTH;
+            }
+        }
+        if (fileLength > validLength) {
+            // Drop the partial chunk so the next one is appended right after the last good one
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+    }
+
+    /**
+     * Reads the next chunk of the file and checks it: its header must be consistent, fit in
+     * what is left of the file and follow the previous chunk in time, and its CRC must match.
+     *
+     * @param in        The file, positioned at the chunk.
+     * @param header    Buffer for the chunk header.
+     * @param crc       CRC to reuse.
+     * @param remaining Bytes left in the file.
+     * @return The chunk, or null if it is not a whole, valid chunk.
+     * @throws IOException if the file cannot be read.
+     */
+    private TimeSeriesChunk readChunk(DataInputStream in, byte[] header, CRC32 crc, long remaining) throws IOException {
+        in.readFully(header);
+        ByteBuffer fields = ByteBuffer.wrap(header);
+        int count = fields.getInt();
+        long min = fields.getLong();
+        long max = fields.getLong();
+        int bitLength = fields.getInt();
+        int wordCount = fields.getInt();
+        // Checked before allocating, so a garbled length cannot ask for more than the file holds
+        if (count <= 0 || min > max || min < lastTimestampMs || bitLength <= 0
+                || wordCount != (bitLength + 63) / 64
+                || CHUNK_HEADER_LENGTH + 8L * wordCount + CRC_LENGTH > remaining) {
+            return null;
+        }
+        byte[] body = new byte[8 * wordCount];
+        in.readFully(body);
+        crc.reset();
+        crc.update(header);
+        crc.update(body);
+        if (in.readInt() != (int) crc.getValue()) {
+            return null;
+        }
+        long[] words = new long[wordCount];
+        ByteBuffer.wrap(body).asLongBuffer().get(words);
+        return new TimeSeriesChunk(resolutionMs, count, min, max, words, bitLength);
+    }
+
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    public synchronized int getSealedChunkCount() {
+        return sealed.size();
+    }
+
+    /**
+     * Returns the average compressed size of the samples in sealed chunks.
+     *
+     * @return Bytes per sample, or 0 if no chunk is sealed.
+     */
+    public synchronized double getBytesPerSample() {
+        return sealedSamples == 0 ? 0 : sealedBits / 8.0 / sealedSamples;
+    }
+
+    /**
+     * Returns the number of samples rejected for being older than the last one.
+     *
+     * @return The rejected count.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns how many chunks range scans have decompressed so far.
+     *
+     * @return The decoded chunk count.
+     */
+    public synchronized long getChunksDecoded() {
+        return chunksDecoded;
+    }
+
+    /**
+     * Returns how many chunks dropBefore() has dropped so far.
+     *
+     * @return The dropped chunk count.
+     */
+    public synchronized long getDroppedChunkCount() {
+        return droppedChunks;
+    }
+
+    public synchronized long getLastTimestampMs() {
+        return lastTimestampMs;
+    }
+}
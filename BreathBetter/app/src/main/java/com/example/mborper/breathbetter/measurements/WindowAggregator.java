@@ -0,0 +1,102 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Streaming aggregator that folds every reading received during a scan window into a single
+ * WindowSummary.
+ * <p>
+ * Count, min, max, mean and last value are kept as running values and the median with a
+ * P2QuantileEstimator, so memory is O(1) however many adverts arrive. The aggregator is meant
+ * to be reused: summarize() returns the window's summary and resets it for the next window.
+ *
+ * @since 2026-10-18
+ */
+public class WindowAggregator {
+    private final P2QuantileEstimator median = new P2QuantileEstimator(0.5);
+
+    private int count;
+    private float min;
+    private float max;
+    private double mean;
+    private float last;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    /**
+     * Creates an empty aggregator.
+     */
+    public WindowAggregator() {
+        reset();
+    }
+
+    /**
+     * Adds a reading to the current window.
+     *      Real, Natural ---> add()
+     *
+     * @param value     The reading, e.g. O3 in ppm.
+     * @param timestamp When it was received, in any monotonic unit.
+     */
+    public void add(float value, long timestamp) {
+        if (count == 0) {
+            min = value;
+            max = value;
+            firstTimestamp = timestamp;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        // Incremental mean avoids the precision loss of a large running sum
+        mean += (value - mean) / count;
+        median.add(value);
+        last = value;
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Returns the number of readings in the current window.
+     *
+     * @return The reading count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns whether the current window has no readings.
+     *
+     * @return true if nothing was added since the last summary.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Builds the summary of the current window and starts a new one.
+     *      summarize() ---> WindowSummary
+     *
+     * @return The summary, or null if the window had no readings.
+     */
+    public WindowSummary summarize() {
+        if (count == 0) {
+            return null;
+        }
+        WindowSummary summary = new WindowSummary(count, min, max, (float) mean,
+                (float) median.getEstimate(), last, firstTimestamp, lastTimestamp);
+        reset();
+        return summary;
+    }
+
+    /**
+     * Discards the readings of the current window.
+     */
+    public void reset() {
+        count = 0;
+        min = 0;
+        max = 0;
+        mean = 0;
+        last = 0;
+        firstTimestamp = 0;
+        lastTimestamp = 0;
+        median.reset();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.mborper.breathbetter.measurements;
+
+/**
+ * Immutable summary of all the readings received from the node during one scan cycle.
+ *
+ * @since 2026-10-18
+ */
+public class WindowSummary {
+    private final int count;
+    private final float min;
+    private final float max;
+    private final float mean;
+    private final float median;
+    private final float last;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    /**
+     * Creates a summary. Normally built by WindowAggregator.summarize().
+     *
+     * @param count          Number of readings.
+     * @param min            Smallest reading.
+     * @param max            Largest reading.
+     * @param mean           Arithmetic mean.
+     * @param median         Approximate median (P² estimate).
+     * @param last           Most recent reading.
+     * @param firstTimestamp Time of the first reading.
+     * @param lastTimestamp  Time of the last reading.
+     */
+    public WindowSummary(int count, float min, float max, float mean, float median, float last,
+                         long firstTimestamp, long lastTimestamp) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.median = median;
+        this.last = last;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float getMean() {
+        return mean;
+    }
+
+    public float getMedian() {
+        return median;
+    }
+
+    public float getLast() {
+        return last;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowSummary{count=" + count + ", min=" + min + ", max=" + max + ", mean=" + mean
+                + ", median=" + median + ", last=" + last + "}";
+    }
+}
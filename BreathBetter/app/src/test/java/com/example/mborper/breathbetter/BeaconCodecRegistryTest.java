@@ -0,0 +1,258 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconCodecRegistry;
+import com.example.mborper.breathbetter.bluetooth.BeaconFormat;
+import com.example.mborper.breathbetter.bluetooth.BeaconReading;
+import com.example.mborper.breathbetter.bluetooth.BeaconUuidMatcher;
+import com.example.mborper.breathbetter.bluetooth.EddystoneTlmDecoder;
+import com.example.mborper.breathbetter.bluetooth.HowsAirFrameCodec;
+import com.example.mborper.breathbetter.bluetooth.ScanIngestor;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Unit tests for the BeaconCodecRegistry class and the decoders it dispatches to.
+ * <p>
+ * HowsAir frames are checked by encoding and decoding them back; iBeacon and Eddystone-TLM
+ * frames are built by hand with their published layouts. The ScanIngestor is checked for
+ * decoding the target's non-iBeacon frames through the registry.
+ *
+ * @since 2026-10-18
+ */
+public class BeaconCodecRegistryTest {
+    private static final String UUID = "MANU-EPSG-GTI-3A";
+    private static final byte[] FLAGS = {0x02, 0x01, 0x06};
+
+    private final BeaconCodecRegistry registry = BeaconCodecRegistry.createDefault();
+    private final BeaconReading reading = new BeaconReading();
+
+    /**
+     * Builds a scan record with the flags followed by a HowsAir manufacturer-data structure.
+     */
+    static byte[] buildHowsAirRecord(byte[] payload, int payloadLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(FLAGS.length + 4 + payloadLength);
+        buffer.put(FLAGS);
+        buffer.put((byte) (3 + payloadLength)).put((byte) 0xFF);
+        buffer.put((byte) HowsAirFrameCodec.COMPANY_ID).put((byte) (HowsAirFrameCodec.COMPANY_ID >>> 8));
+        buffer.put(payload, 0, payloadLength);
+        return buffer.array();
+    }
+
+    /**
+     * Builds an Eddystone-TLM scan record: flags, service UUID list and service data.
+     */
+    private static byte[] buildTlmRecord(int millivolts, int temperatureFixed, long advCount, long uptime) {
+        ByteBuffer buffer = ByteBuffer.allocate(3 + 4 + 4 + 14);
+        buffer.put(FLAGS);
+        buffer.put(new byte[]{0x03, 0x03, (byte) 0xAA, (byte) 0xFE});
+        buffer.put((byte) 17).put((byte) 0x16).put((byte) 0xAA).put((byte) 0xFE);
+        buffer.put(EddystoneTlmDecoder.FRAME_TYPE_TLM).put(EddystoneTlmDecoder.TLM_VERSION);
+        buffer.putShort((short) millivolts);
+        buffer.putShort((short) temperatureFixed);
+        buffer.putInt((int) advCount);
+        buffer.putInt((int) uptime);
+        return buffer.array();
+    }
+
+    /**
+     * Tests that a HowsAir measurement frame survives an encode/decode round trip.
+     */
+    @Test
+    public void testHowsAirRoundTrip() {
+        byte[] payload = new byte[HowsAirFrameCodec.MEASUREMENT_LENGTH];
+        int length = HowsAirFrameCodec.encodeMeasurement(0xFFFE, 0.42f, 12.5f, Float.NaN, 87, -59,
+                payload, 0);
+        assertEquals(HowsAirFrameCodec.MEASUREMENT_LENGTH, length);
+
+        assertTrue(registry.decode(buildHowsAirRecord(payload, length), reading));
+        assertEquals(BeaconFormat.HOWSAIR, reading.format);
+        assertEquals(0xFFFE, reading.sequence);
+        assertEquals(0.42f, reading.o3Ppm, 0.005f);
+        assertEquals(12.5f, reading.coPpm, 0.005f);
+        assertTrue(Float.isNaN(reading.no2Ppm));
+        assertEquals(87, reading.batteryPercent);
+        assertEquals(-59, reading.txPower);
+    }
+
+    /**
+     * Tests that every representable O3 value round-trips exactly at ppm * 100 resolution.
+     */
+    @Test
+    public void testHowsAirGasResolution() {
+        byte[] payload = new byte[HowsAirFrameCodec.MEASUREMENT_LENGTH];
+        for (int hundredths = 0; hundredths < 0xFFFF; hundredths += 7) {
+            HowsAirFrameCodec.encodeMeasurement(1, hundredths / 100f, 0, 0, 50, 0, payload, 0);
+            assertTrue(registry.decode(buildHowsAirRecord(payload, payload.length), reading));
+            assertEquals(hundredths, Math.round(reading.o3Ppm * 100));
+        }
+    }
+
+    /**
+     * Tests that the buzzer command encoder keeps the legacy three-byte layout and that
+     * command frames are not mistaken for measurements.
+     */
+    @Test
+    public void testBuzzerCommandLayout() {
+        byte[] command = new byte[HowsAirFrameCodec.COMMAND_LENGTH];
+        assertEquals(3, HowsAirFrameCodec.encodeBuzzerCommand(HowsAirFrameCodec.BUZZER_ON, command, 0));
+        assertArrayEquals(new byte[]{(byte) 0xBE, (byte) 0xEE, 0x01}, command);
+
+        assertFalse(registry.decode(buildHowsAirRecord(command, command.length), reading));
+    }
+
+    /**
+     * Tests that an iBeacon record is dispatched to the iBeacon decoder.
+     */
+    @Test
+    public void testIBeaconDecode() {
+        byte[] record = IBeaconFrameViewTest.buildFrame(UUID, 4321, 77, -59);
+        BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(UUID);
+
+        assertTrue(registry.decode(record, reading));
+        assertEquals(BeaconFormat.IBEACON, reading.format);
+        assertEquals(matcher.getMsb(), reading.uuidMsb);
+        assertEquals(matcher.getLsb(), reading.uuidLsb);
+        assertEquals(4321, reading.major);
+        assertEquals(77, reading.minor);
+        assertEquals(77, reading.sequence);
+        assertEquals(43.21f, reading.o3Ppm, 1e-4f);
+        assertEquals(-59, reading.txPower);
+    }
+
+    /**
+     * Tests the Eddystone-TLM decoder, including a negative temperature.
+     */
+    @Test
+    public void testEddystoneTlmDecode() {
+        assertTrue(registry.decode(buildTlmRecord(2950, 0xFE80, 123456L, 0xFFFFFFF0L), reading));
+        assertEquals(BeaconFormat.EDDYSTONE_TLM, reading.format);
+        assertEquals(2950, reading.batteryMillivolts);
+        assertEquals(-1.5f, reading.temperatureCelsius, 0f);
+        assertEquals(123456L, reading.advertCount);
+        assertEquals(0xFFFFFFF0L, reading.uptimeDeciseconds);
+
+        assertTrue(registry.decode(buildTlmRecord(0, 0x8000, 1, 1), reading));
+        assertEquals(BeaconReading.UNKNOWN, reading.batteryMillivolts);
+        assertTrue(Float.isNaN(reading.temperatureCelsius));
+    }
+
+    /**
+     * Tests that the ingestor decodes the target's HowsAir and Eddystone-TLM frames only when
+     * they come from its device, queueing the measurement and keeping the telemetry.
+     */
+    @Test
+    public void testIngestorDecodesTargetFrames() {
+        ScanIngestor ingestor = new ScanIngestor(64, () -> { });
+        BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(UUID);
+        byte[] payload = new byte[HowsAirFrameCodec.MEASUREMENT_LENGTH];
+        HowsAirFrameCodec.encodeMeasurement(77, 0.42f, 12.5f, Float.NaN, 87, -59, payload, 0);
+        byte[] record = buildHowsAirRecord(payload, payload.length);
+
+        assertFalse(ingestor.onScanRecord(matcher, record, 1_000L, -70));
+        assertFalse(ingestor.onScanRecord(matcher, record, 1_000L, -70, false));
+        assertTrue(ingestor.onScanRecord(matcher, record, 2_000L, -70, true));
+        assertEquals(87, ingestor.getBatteryPercent());
+
+        int[] last = new int[4];
+        assertEquals(1, ingestor.drain((timestampNanos, major, minor, rssi, txPower) -> {
+            last[0] = major;
+            last[1] = minor;
+            last[2] = rssi;
+            last[3] = txPower;
+        }));
+        assertArrayEquals(new int[]{42, 77, -70, -59}, last);
+
+        assertFalse(ingestor.onScanRecord(matcher, buildTlmRecord(2950, 0x1780, 1, 1), 3_000L, -70, true));
+        assertEquals(2950, ingestor.getBatteryMillivolts());
+        assertEquals(23.5f, ingestor.getTemperatureCelsius(), 0f);
+        assertEquals(0, ingestor.drain((timestampNanos, major, minor, rssi, txPower) -> { }));
+    }
+
+    /**
+     * Tests that unknown company IDs and truncated structures are rejected.
+     */
+    @Test
+    public void testUnknownAndTruncatedRecords() {
+        byte[] record = IBeaconFrameViewTest.buildFrame(UUID, 1, 2, 3);
+        record[5] = 0x59; // Nordic's company ID: no decoder registered
+        assertFalse(registry.decode(record, reading));
+        assertNull(reading.format);
+
+        byte[] truncated = new byte[20];
+        System.arraycopy(IBeaconFrameViewTest.buildFrame(UUID, 1, 2, 3), 0, truncated, 0, 20);
+        assertFalse(registry.decode(truncated, reading));
+        assertFalse(registry.decode(null, reading));
+    }
+
+    /**
+     * Tests lookup and replacement in the codec table.
+     */
+    @Test
+    public void testLookup() {
+        assertNotNull(registry.lookup(BeaconCodecRegistry.AD_TYPE_SERVICE_DATA,
+                EddystoneTlmDecoder.EDDYSTONE_SERVICE_UUID));
+        assertNull(registry.lookup(BeaconCodecRegistry.AD_TYPE_SERVICE_DATA, 0x1234));
+
+        HowsAirFrameCodec replacement = new HowsAirFrameCodec();
+        registry.register(BeaconCodecRegistry.AD_TYPE_MANUFACTURER_DATA, HowsAirFrameCodec.COMPANY_ID,
+                replacement);
+        assertSame(replacement, registry.lookup(BeaconCodecRegistry.AD_TYPE_MANUFACTURER_DATA,
+                HowsAirFrameCodec.COMPANY_ID));
+    }
+
+    /**
+     * Tests that decoding the three formats does not allocate per advert.
+     */
+    @Test
+    public void testNoAllocationPerAdvert() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        byte[] payload = new byte[HowsAirFrameCodec.MEASUREMENT_LENGTH];
+        HowsAirFrameCodec.encodeMeasurement(1, 0.4f, 1f, 2f, 90, -59, payload, 0);
+        byte[][] records = {
+                IBeaconFrameViewTest.buildFrame(UUID, 1234, 1, -59),
+                buildTlmRecord(3000, 0x1700, 10, 10),
+                buildHowsAirRecord(payload, payload.length)
+        };
+
+        long checksum = 0;
+        for (int i = 0; i < 10_000; i++) {
+            checksum += decodeAll(records); // warm up
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            checksum += decodeAll(records);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum != 0);
+        assertTrue("Allocated " + allocated + " bytes for 300000 adverts", allocated < 1024);
+    }
+
+    private long decodeAll(byte[][] records) {
+        long sum = 0;
+        for (byte[] record : records) {
+            if (registry.decode(record, reading)) {
+                sum += reading.format.ordinal() + reading.sequence + reading.advertCount;
+            }
+        }
+        return sum;
+    }
+}
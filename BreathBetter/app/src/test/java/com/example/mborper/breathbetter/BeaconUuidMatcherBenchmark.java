@@ -0,0 +1,112 @@
+package com.example.mborper.breathbetter;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconUuidMatcher;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrame;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrameView;
+import com.example.mborper.breathbetter.bluetooth.Utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the allocation-free BeaconUuidMatcher with the String comparison
+ * the scan path used before (IBeaconFrame + Utilities.bytesToString().equals()).
+ * <p>
+ * The advert mix is 95% foreign iBeacon frames with random UUIDs and 5% frames from our node.
+ * Run from the IDE through main(), or with the JMH runner on the unit test classpath.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeaconUuidMatcherBenchmark {
+
+    private static final String TARGET_UUID = "MANU-EPSG-GTI-3A";
+    private static final int ADVERT_COUNT = 1024;
+    private static final int MATCHING_PERCENT = 5;
+
+    private byte[][] adverts;
+    private BeaconUuidMatcher matcher;
+    private IBeaconFrameView view;
+    private int next;
+
+    /**
+     * Builds the advert mix with a fixed seed so every run sees the same data.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        adverts = new byte[ADVERT_COUNT][];
+        for (int i = 0; i < ADVERT_COUNT; i++) {
+            if (random.nextInt(100) < MATCHING_PERCENT) {
+                adverts[i] = IBeaconFrameViewTest.buildFrame(TARGET_UUID, 1234, i, -59);
+            } else {
+                byte[] frame = IBeaconFrameViewTest.buildFrame(TARGET_UUID, 1234, i, -59);
+                byte[] uuid = new byte[IBeaconFrameView.UUID_LENGTH];
+                random.nextBytes(uuid);
+                System.arraycopy(uuid, 0, frame, IBeaconFrameView.UUID_OFFSET, uuid.length);
+                adverts[i] = frame;
+            }
+        }
+        matcher = BeaconUuidMatcher.forTarget(TARGET_UUID);
+        view = new IBeaconFrameView();
+    }
+
+    /**
+     * Returns the next advert of the mix, cycling through all of them.
+     *
+     * @return A raw scan record
+     */
+    private byte[] nextAdvert() {
+        next = (next + 1) & (ADVERT_COUNT - 1);
+        return adverts[next];
+    }
+
+    /**
+     * Previous path: copy the frame fields and compare the UUID as a String.
+     */
+    @Benchmark
+    public void stringPath(Blackhole blackhole) {
+        IBeaconFrame frame = new IBeaconFrame(nextAdvert());
+        blackhole.consume(Utilities.bytesToString(frame.getUUID()).equals(TARGET_UUID));
+    }
+
+    /**
+     * New path: validate the prefix in place and compare raw bytes with early exit.
+     */
+    @Benchmark
+    public void matcherPath(Blackhole blackhole) {
+        blackhole.consume(view.wrap(nextAdvert()) && matcher.matches(view));
+    }
+
+    /**
+     * Launches the benchmark outside of a build tool.
+     *
+     * @param args Unused
+     * @throws RunnerException if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BeaconUuidMatcherBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
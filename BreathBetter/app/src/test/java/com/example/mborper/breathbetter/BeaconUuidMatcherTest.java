@@ -0,0 +1,95 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconUuidMatcher;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrame;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrameView;
+import com.example.mborper.breathbetter.bluetooth.Utilities;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for the BeaconUuidMatcher class.
+ * <p>
+ * Verifies that the byte matcher agrees with the String comparison it replaces
+ * for both matching and foreign adverts.
+ *
+ * @since 2026-10-18
+ */
+public class BeaconUuidMatcherTest {
+
+    private static final String TARGET_UUID = "MANU-EPSG-GTI-3A";
+
+    /**
+     * Tests that the ASCII target is encoded as the bytes the node broadcasts.
+     */
+    @Test
+    public void testAsciiTargetEncoding() {
+        BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(TARGET_UUID);
+        assertArrayEquals(Utilities.stringToBytes(TARGET_UUID), matcher.getKey());
+    }
+
+    /**
+     * Tests that the canonical hex form of the same UUID builds an equal key.
+     */
+    @Test
+    public void testHexTargetEncoding() {
+        BeaconUuidMatcher ascii = BeaconUuidMatcher.forTarget(TARGET_UUID);
+        BeaconUuidMatcher hex = BeaconUuidMatcher.forTarget("4d414e55-2d45-5053-472d-4754492d3341");
+        assertEquals(ascii.getMsb(), hex.getMsb());
+        assertEquals(ascii.getLsb(), hex.getLsb());
+    }
+
+    /**
+     * Tests that the matcher accepts our node and rejects a UUID differing only in the last byte.
+     */
+    @Test
+    public void testMatchAndNearMiss() {
+        BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(TARGET_UUID);
+        assertTrue(matcher.matches(IBeaconFrameViewTest.buildFrame(TARGET_UUID, 1, 2, 3)));
+        assertFalse(matcher.matches(IBeaconFrameViewTest.buildFrame("MANU-EPSG-GTI-3B", 1, 2, 3)));
+    }
+
+    /**
+     * Tests that the matcher gives the same answer as the old String path on random adverts.
+     */
+    @Test
+    public void testAgreesWithStringPath() {
+        BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(TARGET_UUID);
+        IBeaconFrameView view = new IBeaconFrameView();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 10_000; i++) {
+            byte[] frame = IBeaconFrameViewTest.buildFrame(TARGET_UUID, 0, 0, 0);
+            if (random.nextBoolean()) {
+                frame[IBeaconFrameView.UUID_OFFSET + random.nextInt(16)] = (byte) random.nextInt(256);
+            }
+            boolean expected = Utilities.bytesToString(new IBeaconFrame(frame).getUUID()).equals(TARGET_UUID);
+            assertEquals(expected, view.wrap(frame) && matcher.matches(view));
+        }
+    }
+
+    /**
+     * Tests that short or null records never match.
+     */
+    @Test
+    public void testShortRecords() {
+        BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(TARGET_UUID);
+        assertFalse(matcher.matches((byte[]) null));
+        assertFalse(matcher.matches(new byte[20], IBeaconFrameView.UUID_OFFSET));
+    }
+
+    /**
+     * Tests that malformed targets are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTarget() {
+        BeaconUuidMatcher.forTarget("too-short");
+    }
+}
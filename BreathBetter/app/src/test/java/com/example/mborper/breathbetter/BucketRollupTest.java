@@ -0,0 +1,130 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.BucketRollup;
+import com.example.mborper.breathbetter.measurements.DashboardSeries;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the BucketRollup: bucketing by epoch index, the running aggregates, the
+ * moving window, and merging repeated dashboard responses without counting them twice.
+ *
+ * @since 2026-10-18
+ */
+public class BucketRollupTest {
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final long MIDNIGHT_MS = 1_792_281_600_000L; // 2026-10-18T00:00Z
+
+    private static BucketRollup newRollup() {
+        return new BucketRollup(BucketRollup.DEFAULT_BUCKET_MS, 0, BucketRollup.DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Tests count, mean, max and worst quality of a bucket, and that the same hour of another
+     * day is another bucket.
+     */
+    @Test
+    public void testAggregates() {
+        BucketRollup rollup = newRollup();
+        long bucket = rollup.bucketOf(MIDNIGHT_MS + 8 * HOUR_MS);
+        assertEquals(bucket, rollup.bucketOf(MIDNIGHT_MS + 10 * HOUR_MS - 1));
+        assertEquals(bucket + 1, rollup.bucketOf(MIDNIGHT_MS + 10 * HOUR_MS));
+        assertEquals(bucket - 12, rollup.bucketOf(MIDNIGHT_MS - DAY_MS + 8 * HOUR_MS));
+        assertEquals(MIDNIGHT_MS + 8 * HOUR_MS, rollup.getBucketStartMs(bucket));
+
+        assertTrue(rollup.add(MIDNIGHT_MS + 8 * HOUR_MS, 20, DashboardSeries.QUALITY_GOOD));
+        assertTrue(rollup.add(MIDNIGHT_MS + 9 * HOUR_MS, 60, DashboardSeries.QUALITY_REGULAR));
+        assertTrue(rollup.add(MIDNIGHT_MS + 9 * HOUR_MS + 1, 40, DashboardSeries.QUALITY_GOOD));
+        assertEquals(3, rollup.getCount(bucket));
+        assertEquals(40f, rollup.getMean(bucket), 1e-6f);
+        assertEquals(60f, rollup.getMax(bucket), 0f);
+        assertEquals(DashboardSeries.QUALITY_REGULAR, rollup.getWorstQuality(bucket));
+
+        assertEquals(0, rollup.getCount(bucket - 1));
+        assertTrue(Float.isNaN(rollup.getMean(bucket - 1)));
+        assertEquals(bucket, rollup.getOldestFilledBucket());
+        assertEquals(bucket, rollup.getNewestBucket());
+    }
+
+    /**
+     * Tests that the window moves with the newest reading: buckets that fall out of it read as
+     * empty, readings older than it are dropped, and late ones inside it still count.
+     */
+    @Test
+    public void testWindow() {
+        BucketRollup rollup = newRollup();
+        long first = rollup.bucketOf(MIDNIGHT_MS);
+        for (int i = 0; i < 12; i++) {
+            assertTrue(rollup.add(MIDNIGHT_MS + i * 2 * HOUR_MS, i, DashboardSeries.QUALITY_GOOD));
+        }
+        assertEquals(first, rollup.getOldestFilledBucket());
+
+        // Three buckets later: the first three fall out, the slots of the two skipped are empty
+        assertTrue(rollup.add(MIDNIGHT_MS + DAY_MS + 4 * HOUR_MS, 50, DashboardSeries.QUALITY_REGULAR));
+        assertEquals(first + 14, rollup.getNewestBucket());
+        assertEquals(first + 3, rollup.getOldestFilledBucket());
+        assertEquals(0, rollup.getCount(first));
+        assertEquals(0, rollup.getCount(first + 12));
+        assertEquals(0, rollup.getCount(first + 13));
+        assertEquals(1, rollup.getCount(first + 14));
+
+        assertFalse(rollup.add(MIDNIGHT_MS + 4 * HOUR_MS, 99, DashboardSeries.QUALITY_BAD));
+        assertTrue(rollup.add(MIDNIGHT_MS + DAY_MS + HOUR_MS, 30, DashboardSeries.QUALITY_GOOD));
+        assertEquals(1, rollup.getCount(first + 12));
+        assertEquals(30f, rollup.getMean(first + 12), 0f);
+
+        // A jump past the whole window leaves only the new reading
+        assertTrue(rollup.add(MIDNIGHT_MS + 10 * DAY_MS, 10, DashboardSeries.QUALITY_GOOD));
+        assertEquals(rollup.getNewestBucket(), rollup.getOldestFilledBucket());
+    }
+
+    /**
+     * Tests that merging the same response again changes nothing, and that new and revised
+     * readings only refill their own buckets.
+     */
+    @Test
+    public void testMergeDashboard() {
+        DashboardSeries first = new DashboardSeries(12);
+        for (int i = 0; i < 12; i++) {
+            first.add(MIDNIGHT_MS + i * 2 * HOUR_MS, 10 + i, DashboardSeries.QUALITY_GOOD);
+        }
+        BucketRollup rollup = newRollup();
+        assertEquals(12, rollup.mergeDashboard(first, null));
+        long updates = rollup.getUpdateCount();
+        assertEquals(0, rollup.mergeDashboard(first, first));
+        assertEquals(updates, rollup.getUpdateCount());
+
+        // The next poll moves on by one reading and revises the one at 06h
+        DashboardSeries second = new DashboardSeries(12);
+        for (int i = 1; i < 13; i++) {
+            second.add(MIDNIGHT_MS + i * 2 * HOUR_MS, i == 3 ? 90 : 10 + i,
+                    i == 3 ? DashboardSeries.QUALITY_BAD : DashboardSeries.QUALITY_GOOD);
+        }
+        assertEquals(2, rollup.mergeDashboard(second, first));
+        long base = rollup.bucketOf(MIDNIGHT_MS);
+        assertEquals(1, rollup.getCount(base + 3));
+        assertEquals(90f, rollup.getMean(base + 3), 0f);
+        assertEquals(DashboardSeries.QUALITY_BAD, rollup.getWorstQuality(base + 3));
+        assertEquals(1, rollup.getCount(base + 12));
+        assertEquals(11f, rollup.getMean(base + 1), 0f);
+        assertEquals(0, rollup.getCount(base)); // Out of the window now
+    }
+
+    /**
+     * Tests the scale used for the node's own readings.
+     */
+    @Test
+    public void testLocalScale() {
+        assertEquals(0, DashboardSeries.proportionalValueOf(-3f));
+        assertEquals(42, DashboardSeries.proportionalValueOf(42f));
+        assertEquals(100, DashboardSeries.proportionalValueOf(250f));
+        assertEquals(DashboardSeries.QUALITY_GOOD, DashboardSeries.qualityOf(49));
+        assertEquals(DashboardSeries.QUALITY_REGULAR, DashboardSeries.qualityOf(50));
+        assertEquals(DashboardSeries.QUALITY_BAD, DashboardSeries.qualityOf(100));
+    }
+}
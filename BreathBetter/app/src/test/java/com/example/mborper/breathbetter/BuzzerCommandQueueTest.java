@@ -0,0 +1,205 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.BuzzerCommandQueue;
+import com.example.mborper.breathbetter.bluetooth.HowsAirFrameCodec;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the BuzzerCommandQueue and the buzzer frames of HowsAirFrameCodec.
+ * <p>
+ * A fake transport records what would be advertised and a fake clock drives the ack timeouts.
+ *
+ * @since 2026-10-18
+ */
+public class BuzzerCommandQueueTest {
+    private static final long TIMEOUT = 1000;
+
+    private ScanSchedulerTest.FakeClock clock;
+    private BuzzerCommandQueue queue;
+    private final List<byte[]> advertised = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private boolean advertising;
+
+    /**
+     * Creates a queue over a transport and listener that record everything.
+     */
+    @Before
+    public void setUp() {
+        clock = new ScanSchedulerTest.FakeClock();
+        queue = new BuzzerCommandQueue(clock, new BuzzerCommandQueue.Transport() {
+            @Override
+            public void advertise(byte[] manufacturerData) {
+                advertised.add(manufacturerData);
+                advertising = true;
+            }
+
+            @Override
+            public void stopAdvertising() {
+                advertising = false;
+            }
+        }, TIMEOUT);
+        queue.setListener(new BuzzerCommandQueue.Listener() {
+            @Override
+            public void onCommandSent(boolean on, int commandId) {
+                events.add("sent " + on + " " + commandId);
+            }
+
+            @Override
+            public void onCommandAcknowledged(boolean on, long latencyMs) {
+                events.add("acked " + on + " " + latencyMs);
+            }
+
+            @Override
+            public void onCommandTimedOut(boolean on) {
+                events.add("timeout " + on);
+            }
+        });
+    }
+
+    /**
+     * Answers the last advertised command the way the node does.
+     */
+    private boolean ackLast() {
+        byte[] command = advertised.get(advertised.size() - 1);
+        byte[] ack = new byte[HowsAirFrameCodec.BUZZER_ACK_LENGTH];
+        HowsAirFrameCodec.encodeBuzzerAck(command[2], command[3] & 0xFF, ack, 0);
+        return queue.onManufacturerData(ack);
+    }
+
+    /**
+     * Tests the command and ack frames.
+     */
+    @Test
+    public void testFrames() {
+        byte[] command = new byte[HowsAirFrameCodec.COMMAND_WITH_ID_LENGTH];
+        HowsAirFrameCodec.encodeBuzzerCommand(HowsAirFrameCodec.BUZZER_ON, 200, command, 0);
+        assertEquals((byte) 0xBE, command[0]);
+        assertEquals((byte) 0xEE, command[1]);
+        assertEquals(HowsAirFrameCodec.BUZZER_ON, command[2]);
+        assertEquals((byte) 200, command[3]);
+
+        byte[] ack = new byte[HowsAirFrameCodec.BUZZER_ACK_LENGTH];
+        HowsAirFrameCodec.encodeBuzzerAck(HowsAirFrameCodec.BUZZER_ON, 200, ack, 0);
+        assertEquals(1 << 8 | 200, HowsAirFrameCodec.decodeBuzzerAck(ack, 0, ack.length));
+        assertEquals(-1, HowsAirFrameCodec.decodeBuzzerAck(command, 0, command.length));
+        assertEquals(-1, HowsAirFrameCodec.decodeBuzzerAck(null, 0, 0));
+    }
+
+    /**
+     * Tests a command acknowledged after some delay.
+     */
+    @Test
+    public void testAckLatency() {
+        queue.request(true);
+        assertTrue(advertising);
+        assertTrue(queue.isInFlight());
+        clock.advance(180);
+        assertTrue(ackLast());
+
+        assertFalse(advertising);
+        assertFalse(queue.isInFlight());
+        assertEquals("acked true 180", events.get(1));
+        assertEquals(180, queue.getLastLatencyMs());
+        assertFalse("A repeated ack is ignored", ackLast());
+    }
+
+    /**
+     * Tests that a burst of toggles while a command is in flight ends in a single command with
+     * the latest state.
+     */
+    @Test
+    public void testCoalescing() {
+        queue.request(true);
+        for (int i = 0; i < 9; i++) {
+            queue.request(i % 2 == 1); // false, true, ..., false
+        }
+        assertEquals(1, advertised.size());
+        assertEquals(8, queue.getCoalescedCount());
+
+        clock.advance(100);
+        ackLast();
+        assertEquals(2, advertised.size());
+        assertEquals(HowsAirFrameCodec.BUZZER_OFF, advertised.get(1)[2]);
+        clock.advance(50);
+        ackLast();
+        assertEquals(2, queue.getAckedCount());
+        assertEquals(75.0, queue.getMeanLatencyMs(), 1e-9);
+        assertEquals(100, queue.getMaxLatencyMs());
+    }
+
+    /**
+     * Tests that toggling back to the state being sent needs no second command.
+     */
+    @Test
+    public void testToggleBackIsDropped() {
+        queue.request(true);
+        queue.request(false);
+        queue.request(true);
+        ackLast();
+        assertEquals(1, advertised.size());
+        assertFalse(queue.isInFlight());
+    }
+
+    /**
+     * Tests that a stale ack of an earlier command is not taken for the current one.
+     */
+    @Test
+    public void testStaleAckIgnored() {
+        queue.request(true);
+        byte[] first = advertised.get(0);
+        clock.advance(TIMEOUT);
+        assertTrue(queue.poll());
+        queue.request(true);
+        assertEquals(first[3] + 1, advertised.get(1)[3]);
+
+        byte[] ack = new byte[HowsAirFrameCodec.BUZZER_ACK_LENGTH];
+        HowsAirFrameCodec.encodeBuzzerAck(first[2], first[3], ack, 0);
+        assertFalse(queue.onManufacturerData(ack));
+        assertTrue(queue.isInFlight());
+    }
+
+    /**
+     * Tests that a command without ack times out and the waiting request is then sent.
+     */
+    @Test
+    public void testTimeout() {
+        queue.request(true);
+        queue.request(false);
+        clock.advance(TIMEOUT - 1);
+        assertFalse(queue.poll());
+        assertEquals(TIMEOUT, queue.getDeadlineMs());
+        clock.advance(1);
+        assertTrue(queue.poll());
+        assertEquals("timeout true", events.get(1));
+        assertEquals(1, queue.getTimeoutCount());
+        assertEquals(2, advertised.size());
+        assertTrue(advertising);
+
+        queue.cancel();
+        assertFalse(advertising);
+        assertEquals(-1, queue.getDeadlineMs());
+    }
+
+    /**
+     * Tests that the 8-bit command ID wraps around without using 0.
+     */
+    @Test
+    public void testIdWraps() {
+        for (int i = 0; i < 300; i++) {
+            queue.request(i % 2 == 0);
+            int id = advertised.get(i)[3] & 0xFF;
+            assertTrue("id " + id, id >= 1 && id <= 255);
+            assertTrue(ackLast());
+        }
+        assertEquals(300, queue.getSentCount());
+    }
+}
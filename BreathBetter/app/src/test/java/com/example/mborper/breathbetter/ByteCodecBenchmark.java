@@ -0,0 +1,115 @@
+package com.example.mborper.breathbetter;
+
+import com.example.mborper.breathbetter.bluetooth.ByteCodec;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrameView;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the primitive ByteCodec readers with the BigInteger and String.format
+ * conversions Utilities used before.
+ * <p>
+ * The "legacy" benchmarks reproduce the old code path for a field: copy it out of the frame
+ * (as IBeaconFrame did) and convert the copy with BigInteger.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteCodecBenchmark {
+
+    private byte[] frame;
+
+    @Setup
+    public void setUp() {
+        frame = IBeaconFrameViewTest.buildFrame("MANU-EPSG-GTI-3A", 4321, 65000, -59);
+    }
+
+    /**
+     * Old major decoding: copy plus BigInteger.floatValue().
+     */
+    @Benchmark
+    public float legacyMajorFloat() {
+        byte[] major = Arrays.copyOfRange(frame, IBeaconFrameView.MAJOR_OFFSET, IBeaconFrameView.MAJOR_OFFSET + 2);
+        return new BigInteger(major).floatValue() / 100;
+    }
+
+    /**
+     * New major decoding: read in place.
+     */
+    @Benchmark
+    public float codecMajorFloat() {
+        return ByteCodec.u16BE(frame, IBeaconFrameView.MAJOR_OFFSET) / 100f;
+    }
+
+    /**
+     * Old UUID half decoding: copy plus BigInteger.longValue().
+     */
+    @Benchmark
+    public long legacyLong() {
+        byte[] half = Arrays.copyOfRange(frame, IBeaconFrameView.UUID_OFFSET, IBeaconFrameView.UUID_OFFSET + 8);
+        return new BigInteger(half).longValue();
+    }
+
+    /**
+     * New UUID half decoding.
+     */
+    @Benchmark
+    public long codecLong() {
+        return ByteCodec.i64BE(frame, IBeaconFrameView.UUID_OFFSET);
+    }
+
+    /**
+     * Old hex dump of the frame, one String.format per byte.
+     */
+    @Benchmark
+    public void legacyHex(Blackhole blackhole) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : frame) {
+            sb.append(String.format("%02x", b));
+            sb.append(':');
+        }
+        blackhole.consume(sb.toString());
+    }
+
+    /**
+     * New table-driven hex dump.
+     */
+    @Benchmark
+    public void codecHex(Blackhole blackhole) {
+        blackhole.consume(ByteCodec.toHex(frame, ':'));
+    }
+
+    /**
+     * Launches the benchmark outside of a build tool.
+     *
+     * @param args Unused
+     * @throws RunnerException if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ByteCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.mborper.breathbetter.bluetooth.ByteCodec;
+import com.example.mborper.breathbetter.bluetooth.Utilities;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Unit tests for the ByteCodec class and the Utilities conversions built on it.
+ * <p>
+ * BigInteger and String.format, which Utilities used before, serve as the reference: every
+ * 16-bit input is checked exhaustively and longer widths with random inputs.
+ *
+ * @since 2026-10-18
+ */
+public class ByteCodecTest {
+
+    /**
+     * Tests every 16-bit input against the previous BigInteger conversions and the typed readers.
+     */
+    @Test
+    public void testEvery16BitInputMatchesBigInteger() {
+        byte[] bytes = new byte[2];
+        for (int value = 0; value <= 0xFFFF; value++) {
+            bytes[0] = (byte) (value >>> 8);
+            bytes[1] = (byte) value;
+            BigInteger reference = new BigInteger(bytes);
+
+            assertEquals(reference.intValue(), Utilities.bytesToInt(bytes));
+            assertEquals(reference.longValue(), Utilities.bytesToLong(bytes));
+            assertEquals(reference.floatValue(), Utilities.bytesToFloat(bytes), 0f);
+
+            assertEquals(value, ByteCodec.u16BE(bytes, 0));
+            assertEquals(reference.intValue(), ByteCodec.s16BE(bytes, 0));
+            assertEquals(((value & 0xFF) << 8) | (value >>> 8), ByteCodec.u16LE(bytes, 0));
+        }
+    }
+
+    /**
+     * Tests every byte value against String.format and the single-byte readers.
+     */
+    @Test
+    public void testEveryByteMatchesFormat() {
+        byte[] single = new byte[1];
+        for (int value = 0; value <= 0xFF; value++) {
+            single[0] = (byte) value;
+            assertEquals(String.format("%02x", single[0]) + ":", Utilities.bytesToHexString(single));
+            assertEquals(value, ByteCodec.u8(single, 0));
+            assertEquals(new BigInteger(single).intValue(), Utilities.bytesToInt(single));
+        }
+        assertEquals("", Utilities.bytesToHexString(null));
+        assertEquals("0aff", ByteCodec.toHex(new byte[]{0x0A, (byte) 0xFF}, (char) 0));
+    }
+
+    /**
+     * Tests lengths 1 to 12 with random contents, including those longer than a long.
+     */
+    @Test
+    public void testRandomWidthsMatchBigInteger() {
+        Random random = new Random(3);
+        for (int length = 1; length <= 12; length++) {
+            for (int i = 0; i < 2000; i++) {
+                byte[] bytes = new byte[length];
+                random.nextBytes(bytes);
+                BigInteger reference = new BigInteger(bytes);
+
+                assertEquals(reference.intValue(), Utilities.bytesToInt(bytes));
+                assertEquals(reference.longValue(), Utilities.bytesToLong(bytes));
+                assertEquals(reference.floatValue(), Utilities.bytesToFloat(bytes), 0f);
+            }
+        }
+    }
+
+    /**
+     * Tests the fixed-width readers at an offset and the writers.
+     */
+    @Test
+    public void testFixedWidthReadersAndWriters() {
+        byte[] bytes = new byte[12];
+        ByteCodec.writeU32BE(bytes, 2, 0xFEDCBA98L);
+        assertEquals(0xFEDCBA98L, ByteCodec.u32BE(bytes, 2));
+        assertEquals(0xFEDCBA98, ByteCodec.s32BE(bytes, 2));
+
+        ByteCodec.writeU16BE(bytes, 10, 0x8001);
+        assertEquals(0x8001, ByteCodec.u16BE(bytes, 10));
+        assertEquals(-32767, ByteCodec.s16BE(bytes, 10));
+
+        byte[] longBytes = BigInteger.valueOf(-1234567890123L).toByteArray();
+        byte[] padded = new byte[9];
+        System.arraycopy(longBytes, 0, padded, 9 - longBytes.length, longBytes.length);
+        for (int i = 1; i < 9 - longBytes.length; i++) {
+            padded[i] = (byte) 0xFF; // sign extension of the shorter two's complement form
+        }
+        assertEquals(-1234567890123L, ByteCodec.i64BE(padded, 1));
+        assertEquals(-1234567890123L, ByteCodec.signedBE(longBytes, 0, longBytes.length));
+    }
+
+    /**
+     * Tests that an empty array is rejected, as the BigInteger conversions did.
+     */
+    @Test(expected = NumberFormatException.class)
+    public void testEmptyArrayIsRejected() {
+        Utilities.bytesToInt(new byte[0]);
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.ConnectionStateEngine;
+import com.example.mborper.breathbetter.measurements.HashedTimerWheel;
+import com.example.mborper.breathbetter.measurements.NodeConnectionState.ConnectionStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for the HashedTimerWheel and the ConnectionStateEngine.
+ * <p>
+ * Deadlines are checked against a fake clock, hundreds of nodes are run on one wheel, and
+ * several threads report adverts while another advances the wheel to look for false losses.
+ *
+ * @since 2026-10-18
+ */
+public class ConnectionStateEngineTest {
+    private static final long TIMEOUT = ConnectionStateEngine.DEFAULT_TIMEOUT_MS;
+    private static final long TICK = ConnectionStateEngine.DEFAULT_TICK_MS;
+
+    private ScanSchedulerTest.FakeClock clock;
+    private ConnectionStateEngine engine;
+    private final List<String> events = new ArrayList<>();
+    private final ConcurrentHashMap<String, Long> lostAt = new ConcurrentHashMap<>();
+
+    private static class TestEntry extends HashedTimerWheel.Entry {
+    }
+
+    /**
+     * Creates an engine that records every event.
+     */
+    @Before
+    public void setUp() {
+        clock = new ScanSchedulerTest.FakeClock();
+        clock.advance(1000);
+        engine = new ConnectionStateEngine(clock, null);
+        engine.setListener(new ConnectionStateEngine.Listener() {
+            @Override
+            public void onConnectionLost(String nodeId, long lastSeenMs) {
+                events.add("lost " + nodeId + " " + lastSeenMs);
+                lostAt.put(nodeId, clock.now());
+            }
+
+            @Override
+            public void onConnectionRestored(String nodeId) {
+                events.add("restored " + nodeId);
+            }
+        });
+    }
+
+    /**
+     * Advances the fake clock tick by tick, advancing the engine on each.
+     */
+    private void run(long ms) {
+        for (long t = 0; t < ms; t += TICK) {
+            clock.advance(TICK);
+            engine.advance();
+        }
+    }
+
+    /**
+     * Tests that deadlines fire on the first tick at or after them, also beyond one turn of
+     * the wheel, and that cancelled entries never fire.
+     */
+    @Test
+    public void testWheelDeadlines() {
+        HashedTimerWheel wheel = new HashedTimerWheel(10, 8, 0);
+        TestEntry near = new TestEntry();
+        TestEntry far = new TestEntry();
+        TestEntry cancelled = new TestEntry();
+        wheel.schedule(near, 25);
+        wheel.schedule(far, 1000); // 100 ticks, more than 12 turns
+        wheel.schedule(cancelled, 30);
+        wheel.cancel(cancelled);
+        assertEquals(2, wheel.size());
+
+        final List<Long> fired = new ArrayList<>();
+        HashedTimerWheel.ExpiryHandler handler = (entry, now) -> fired.add(now);
+        for (long now = 0; now <= 2000; now += 5) {
+            wheel.advance(now, handler);
+            if (now == 25) {
+                assertTrue(fired.isEmpty());
+            }
+        }
+        assertEquals(2, fired.size());
+        assertEquals(30, (long) fired.get(0));
+        assertEquals(1000, (long) fired.get(1));
+        assertFalse(far.isScheduled());
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests that a silent node is lost at its deadline, not up to a polling period later.
+     */
+    @Test
+    public void testLossAtDeadline() {
+        engine.nodeSeen("a");
+        long seen = clock.now();
+        run(TIMEOUT - TICK);
+        assertEquals(ConnectionStatus.CONNECTED, engine.getStatus("a"));
+        run(2 * TICK);
+        assertEquals(ConnectionStatus.DISCONNECTED, engine.getStatus("a"));
+        assertEquals("lost a " + seen, events.get(0));
+        long lag = lostAt.get("a") - (seen + TIMEOUT);
+        assertTrue("lag " + lag, lag >= 0 && lag <= TICK);
+        assertTrue(engine.isIdle());
+    }
+
+    /**
+     * Tests that a node can carry its own timeout, that plain adverts keep it, and that
+     * shortening it brings the deadline forward.
+     */
+    @Test
+    public void testPerNodeTimeout() {
+        long longTimeout = 3 * TIMEOUT;
+        engine.nodeSeen("a", longTimeout);
+        run(TIMEOUT + TICK);
+        engine.nodeSeen("a"); // Keeps the long timeout
+        long seen = clock.now();
+        run(TIMEOUT + TICK);
+        assertEquals(ConnectionStatus.CONNECTED, engine.getStatus("a"));
+        run(longTimeout - TIMEOUT);
+        assertEquals(ConnectionStatus.DISCONNECTED, engine.getStatus("a"));
+        assertEquals("lost a " + seen, events.get(0));
+
+        engine.nodeSeen("b", longTimeout);
+        engine.setTimeout("b", TIMEOUT);
+        long seenB = clock.now();
+        run(TIMEOUT + TICK);
+        assertEquals(ConnectionStatus.DISCONNECTED, engine.getStatus("b"));
+        long lag = lostAt.get("b") - (seenB + TIMEOUT);
+        assertTrue("lag " + lag, lag >= 0 && lag <= TICK);
+    }
+
+    /**
+     * Tests that the engine reports its earliest deadline, so the ticker can sleep until it,
+     * and none once every node is lost.
+     */
+    @Test
+    public void testNextDeadline() {
+        assertEquals(Long.MAX_VALUE, engine.getNextDeadlineMs());
+        engine.nodeSeen("a");
+        long seen = clock.now();
+        assertEquals(clock.now(), engine.getNextDeadlineMs()); // Still queued
+        engine.advance();
+        long next = engine.getNextDeadlineMs();
+        assertTrue("next " + next, next >= seen + TIMEOUT && next <= seen + TIMEOUT + TICK);
+
+        // Jumping straight to it is enough to detect the loss
+        clock.advance(next - clock.now());
+        engine.advance();
+        assertEquals(ConnectionStatus.DISCONNECTED, engine.getStatus("a"));
+        assertEquals(Long.MAX_VALUE, engine.getNextDeadlineMs());
+    }
+
+    /**
+     * Tests that adverts keep a node connected with one wheel visit per timeout period.
+     */
+    @Test
+    public void testAdvertsMoveDeadline() {
+        engine.nodeSeen("a");
+        int visits = 0;
+        for (int i = 0; i < 600; i++) { // 5 minutes, an advert every 500 ms
+            clock.advance(TICK);
+            engine.nodeSeen("a");
+            visits += engine.advance();
+        }
+        assertTrue(events.isEmpty());
+        assertEquals(1, engine.getScheduledCount());
+        assertTrue("visits " + visits, visits <= 300_000 / TIMEOUT + 1);
+    }
+
+    /**
+     * Tests the reconnection sequence: lost, reconnecting, connected, and lost again.
+     */
+    @Test
+    public void testReconnection() {
+        engine.nodeSeen("a");
+        run(TIMEOUT + TICK);
+        assertEquals(ConnectionStatus.RECONNECTING, engine.nodeSeen("a"));
+        assertEquals("restored a", events.get(1));
+        assertEquals(ConnectionStatus.CONNECTED, engine.nodeSeen("a"));
+        run(TIMEOUT + TICK);
+        assertEquals(ConnectionStatus.DISCONNECTED, engine.getStatus("a"));
+        assertEquals(3, events.size());
+
+        engine.forceConnected("a");
+        assertEquals(ConnectionStatus.CONNECTED, engine.getStatus("a"));
+        run(TICK);
+        assertEquals(1, engine.getScheduledCount());
+    }
+
+    /**
+     * Tests that hundreds of nodes going silent at different times are each lost within one
+     * tick of their own deadline.
+     */
+    @Test
+    public void testManyNodes() {
+        int nodes = 500;
+        for (int i = 0; i < nodes; i++) {
+            engine.nodeSeen("node-" + i);
+        }
+        long[] lastSeen = new long[nodes];
+        for (int step = 0; step < 400; step++) {
+            clock.advance(TICK);
+            for (int i = 0; i < nodes; i++) {
+                if (step < i % 200) { // node i stops advertising after i % 200 steps
+                    engine.nodeSeen("node-" + i);
+                    lastSeen[i] = clock.now();
+                }
+            }
+            engine.advance();
+        }
+        run(TIMEOUT);
+
+        assertEquals(nodes, lostAt.size());
+        for (int i = 0; i < nodes; i++) {
+            long seen = Math.max(lastSeen[i], 1000);
+            long lag = lostAt.get("node-" + i) - (seen + TIMEOUT);
+            assertTrue("node " + i + " lag " + lag, lag >= 0 && lag <= TICK);
+        }
+        assertTrue(engine.isIdle());
+    }
+
+    /**
+     * Tests that a removed node is dropped without events.
+     */
+    @Test
+    public void testRemove() {
+        engine.nodeSeen("a");
+        engine.remove("a");
+        run(TIMEOUT + TICK);
+        assertTrue(events.isEmpty());
+        assertEquals(0, engine.getNodeCount());
+        assertEquals(ConnectionStatus.DISCONNECTED, engine.getStatus("a"));
+    }
+
+    /**
+     * Reports adverts of 200 nodes from four threads while the main thread advances the wheel
+     * with a short timeout: no node may be lost while it is advertising, and all must be lost
+     * once they all stop. The clock only moves once every thread has reported all its nodes
+     * again, so the result does not depend on how the threads are scheduled.
+     */
+    @Test
+    public void testConcurrentAdverts() throws InterruptedException {
+        final AtomicLong now = new AtomicLong(1);
+        final ConnectionStateEngine real = new ConnectionStateEngine(now::get, 100, 2, null);
+        final ConcurrentHashMap<String, Long> lost = new ConcurrentHashMap<>();
+        real.setListener(new ConnectionStateEngine.Listener() {
+            @Override
+            public void onConnectionLost(String nodeId, long lastSeenMs) {
+                lost.put(nodeId, lastSeenMs);
+            }
+
+            @Override
+            public void onConnectionRestored(String nodeId) {
+            }
+        });
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicIntegerArray passes = new AtomicIntegerArray(4);
+        Thread[] producers = new Thread[passes.length()];
+        for (int p = 0; p < producers.length; p++) {
+            final int producer = p;
+            producers[p] = new Thread(() -> {
+                while (running.get()) {
+                    for (int i = 0; i < 50; i++) {
+                        real.nodeSeen("node-" + (producer * 50 + i));
+                    }
+                    passes.incrementAndGet(producer);
+                }
+            });
+            producers[p].start();
+        }
+
+        // Five timeouts, 1 ms per step, with the wheel advanced while the adverts come in
+        int[] seen = new int[producers.length];
+        for (int step = 0; step < 500; step++) {
+            for (int p = 0; p < producers.length; p++) {
+                while (passes.get(p) <= seen[p]) {
+                    Thread.yield();
+                }
+                seen[p] = passes.get(p);
+            }
+            now.incrementAndGet();
+            real.advance();
+        }
+        running.set(false);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue("Lost while advertising: " + lost.keySet(), lost.isEmpty());
+
+        for (int step = 0; step < 100 + 2 * 2; step++) {
+            now.incrementAndGet();
+            real.advance();
+        }
+        assertEquals(200, lost.size());
+        assertEquals(ConnectionStatus.DISCONNECTED, real.getStatus("node-7"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.DashboardSeries;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the DashboardSeries: parsing the dashboard response, and telling which
+ * readings of a new response have to be stored or redrawn.
+ *
+ * @since 2026-10-18
+ */
+public class DashboardSeriesTest {
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long START_MS = 1_790_000_000_000L;
+
+    private static DashboardSeries series(int count, int firstValue) {
+        DashboardSeries series = new DashboardSeries(1);
+        for (int i = 0; i < count; i++) {
+            series.add(START_MS + i * 2 * HOUR_MS, firstValue + i, DashboardSeries.QUALITY_GOOD);
+        }
+        return series;
+    }
+
+    /**
+     * Tests that readings are parsed to Unix milliseconds and codes, keeping missing values as
+     * NO_VALUE and skipping readings without a usable timestamp.
+     */
+    @Test
+    public void testFromJson() {
+        JsonArray readings = new Gson().fromJson("["
+                + "{\"timestamp\":\"2026-10-18T08:00:00Z\",\"proportionalValue\":40,\"airQuality\":\"Good\"},"
+                + "{\"timestamp\":\"2026-10-18T12:00:00+02:00\",\"proportionalValue\":null,\"airQuality\":\"Bad\"},"
+                + "{\"proportionalValue\":10,\"airQuality\":\"Regular\"},"
+                + "{\"timestamp\":\"yesterday\",\"proportionalValue\":10},"
+                + "{\"timestamp\":\"2026-10-18T14:00:00Z\",\"proportionalValue\":75,\"airQuality\":\"Unknown\"},"
+                + "7]", JsonArray.class);
+        DashboardSeries series = DashboardSeries.fromJson(readings);
+
+        assertEquals(3, series.size());
+        assertEquals(1_792_310_400_000L, series.getTimestamp(0));
+        assertEquals(40, series.getProportionalValue(0));
+        assertEquals(DashboardSeries.QUALITY_GOOD, series.getAirQuality(0));
+        assertEquals(1_792_317_600_000L, series.getTimestamp(1));
+        assertEquals(DashboardSeries.NO_VALUE, series.getProportionalValue(1));
+        assertEquals(DashboardSeries.QUALITY_BAD, series.getAirQuality(1));
+        assertEquals(DashboardSeries.QUALITY_NONE, series.getAirQuality(2));
+
+        assertTrue(DashboardSeries.fromJson(null).isEmpty());
+    }
+
+    /**
+     * Tests that the delta holds only new readings and readings whose values changed.
+     */
+    @Test
+    public void testDelta() {
+        DashboardSeries stored = series(12, 0);
+        assertTrue(stored.delta(stored).isEmpty());
+
+        // The response moved on by two readings and revised one in the middle
+        DashboardSeries response = new DashboardSeries(12);
+        for (int i = 2; i < 14; i++) {
+            response.add(START_MS + i * 2 * HOUR_MS, i == 7 ? 99 : i, DashboardSeries.QUALITY_GOOD);
+        }
+        DashboardSeries delta = response.delta(stored);
+        assertEquals(3, delta.size());
+        assertEquals(START_MS + 7 * 2 * HOUR_MS, delta.getTimestamp(0));
+        assertEquals(99, delta.getProportionalValue(0));
+        assertEquals(START_MS + 12 * 2 * HOUR_MS, delta.getTimestamp(1));
+        assertEquals(START_MS + 13 * 2 * HOUR_MS, delta.getTimestamp(2));
+
+        assertEquals(12, response.delta(new DashboardSeries(0)).size());
+    }
+
+    /**
+     * Tests the comparison used to skip redrawing the chart.
+     */
+    @Test
+    public void testSameReadings() {
+        assertTrue(series(12, 0).sameReadings(series(12, 0)));
+        assertFalse(series(12, 0).sameReadings(series(12, 1)));
+        assertFalse(series(12, 0).sameReadings(series(11, 0)));
+        assertFalse(series(12, 0).sameReadings(null));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.ExposureIntegrator;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Unit tests for the ExposureIntegrator: trapezoidal dose, gaps, the split at local midnight,
+ * DST days and the days kept.
+ *
+ * @since 2026-10-18
+ */
+public class ExposureIntegratorTest {
+    private static final ZoneId MADRID = ZoneId.of("Europe/Madrid");
+    private static final long MINUTE_MS = 60 * 1000L;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(MADRID).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Tests a constant level and a linear ramp, which the trapezoid rule integrates exactly.
+     */
+    @Test
+    public void testTrapezoid() {
+        ExposureIntegrator exposure = new ExposureIntegrator(MADRID);
+        long start = at(2026, 10, 18, 9, 0);
+        for (int i = 0; i <= 360; i++) {
+            assertTrue(exposure.add(start + i * 10_000L, 10f)); // 10 ppm for 1 h
+        }
+        LocalDate day = LocalDate.of(2026, 10, 18);
+        assertEquals(10.0, exposure.getDose(day), 1e-9);
+
+        long rampStart = start + 2 * HOUR_MS;
+        for (int i = 0; i <= 60; i++) {
+            exposure.add(rampStart + i * MINUTE_MS, i); // 0 to 60 ppm over 1 h
+        }
+        assertEquals(10.0 + 30.0, exposure.getDose(day), 1e-9);
+        assertEquals(2 * HOUR_MS, exposure.getCoveredMs(day));
+        assertEquals(1, exposure.getGapCount()); // The hour between both
+        assertEquals(40.0, exposure.getDayDose(start), 1e-9);
+    }
+
+    /**
+     * Tests that samples too far apart are not interpolated, and that old, repeated or
+     * non-numeric samples are rejected without changing the dose.
+     */
+    @Test
+    public void testGapsAndRejects() {
+        ExposureIntegrator exposure = new ExposureIntegrator(MADRID, 5 * MINUTE_MS, 7);
+        long start = at(2026, 10, 18, 12, 0);
+        exposure.add(start, 4f);
+        exposure.add(start + 5 * MINUTE_MS, 4f); // At the limit: integrated
+        exposure.add(start + 11 * MINUTE_MS, 400f); // Past it: not
+        assertFalse(exposure.add(start + 11 * MINUTE_MS, 1f));
+        assertFalse(exposure.add(start, 1f));
+        assertFalse(exposure.add(start + 12 * MINUTE_MS, Float.NaN));
+
+        LocalDate day = LocalDate.of(2026, 10, 18);
+        assertEquals(4.0 * 5 / 60, exposure.getDose(day), 1e-9);
+        assertEquals(5 * MINUTE_MS, exposure.getCoveredMs(day));
+        assertEquals(3, exposure.getRejectedCount());
+        assertEquals(3, exposure.getSampleCount());
+        assertEquals(start + 11 * MINUTE_MS, exposure.getLastTimestampMs());
+    }
+
+    /**
+     * Tests that a segment across local midnight is split there with the interpolated value.
+     */
+    @Test
+    public void testMidnightSplit() {
+        ExposureIntegrator exposure = new ExposureIntegrator(MADRID);
+        exposure.add(at(2026, 10, 18, 23, 56), 0f);
+        exposure.add(at(2026, 10, 19, 0, 4), 80f); // 10 ppm per minute; 40 ppm at midnight
+
+        assertEquals(40.0 / 2 * 4 / 60, exposure.getDose(LocalDate.of(2026, 10, 18)), 1e-9);
+        assertEquals((40.0 + 80) / 2 * 4 / 60, exposure.getDose(LocalDate.of(2026, 10, 19)), 1e-9);
+        assertEquals(4 * MINUTE_MS, exposure.getCoveredMs(LocalDate.of(2026, 10, 19)));
+    }
+
+    /**
+     * Tests the day the clocks go back in Madrid, which lasts 25 hours.
+     */
+    @Test
+    public void testDaylightSavingDay() {
+        ExposureIntegrator exposure = new ExposureIntegrator(MADRID);
+        long start = at(2026, 10, 25, 0, 0);
+        long end = at(2026, 10, 26, 0, 0);
+        assertEquals(25 * HOUR_MS, end - start);
+        for (long t = start - HOUR_MS; t <= end + HOUR_MS; t += MINUTE_MS) {
+            exposure.add(t, 1f);
+        }
+        assertEquals(25.0, exposure.getDose(LocalDate.of(2026, 10, 25)), 1e-9);
+        assertEquals(1.0, exposure.getDose(LocalDate.of(2026, 10, 26)), 1e-9);
+    }
+
+    /**
+     * Tests the dose of the last days, and that days older than the ones kept are forgotten.
+     */
+    @Test
+    public void testDaysKept() {
+        ExposureIntegrator exposure = new ExposureIntegrator(MADRID, 2 * HOUR_MS, 3);
+        for (int day = 1; day <= 4; day++) {
+            exposure.add(at(2026, 11, day, 10, 0), day);
+            exposure.add(at(2026, 11, day, 11, 0), day); // 1 hour at "day" ppm
+        }
+        long now = at(2026, 11, 4, 20, 0);
+        assertEquals(4.0, exposure.getDayDose(now), 1e-9);
+        assertEquals(4.0 + 3 + 2, exposure.getDoseOfLastDays(now, 7), 1e-9);
+        assertEquals(4.0 + 3, exposure.getDoseOfLastDays(now, 2), 1e-9);
+        assertEquals(0.0, exposure.getDose(LocalDate.of(2026, 11, 1)), 0);
+    }
+
+    /**
+     * Tests a long run of dense samples: every one is counted and a whole day in the middle
+     * gets the dose of its mean level, 31.5 ppm for 24 hours.
+     */
+    @Test
+    public void testManySamples() {
+        ExposureIntegrator exposure = new ExposureIntegrator(MADRID);
+        int samples = 2_000_000;
+        long start = at(2026, 10, 18, 0, 0);
+        for (int i = 0; i < samples; i++) {
+            exposure.add(start + i * 250L, i & 63);
+        }
+        assertEquals(samples, exposure.getSampleCount());
+        assertEquals(31.5 * 24, exposure.getDose(LocalDate.of(2026, 10, 19)), 1e-6);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.mborper.breathbetter;
+
+import com.example.mborper.breathbetter.bluetooth.ByteCodec;
+import com.example.mborper.breathbetter.bluetooth.HistorySyncProtocol;
+import com.example.mborper.breathbetter.bluetooth.HistorySyncTransport;
+
+import java.util.ArrayDeque;
+
+/**
+ * Local stand-in for a node serving its history, to drive HistorySyncClient on the JVM.
+ * <p>
+ * It implements the node side of HistorySyncProtocol over the HistorySyncTransport interface.
+ * Every callback is queued instead of called back directly, like the GATT callbacks re-posted
+ * to the service thread, and runUntilIdle() delivers them. Notifications are produced one at a
+ * time, so a link dropped with dropAfterPackets() stops the stream halfway.
+ *
+ * @since 2026-10-18
+ */
+class FakeHistoryPeripheral implements HistorySyncTransport {
+    // A BLE 4.2+ link with a 7.5 ms connection interval fits about 6 notifications per event
+    static final double CONNECTION_INTERVAL_MS = 7.5;
+    static final int PACKETS_PER_INTERVAL = 6;
+
+    private final long recordCount;
+    private final long firstTimestampMs;
+    private final int maxMtu;
+    private final ArrayDeque<Runnable> events = new ArrayDeque<>();
+    private Listener listener;
+
+    private boolean connected;
+    private int mtu = HistorySyncProtocol.DEFAULT_MTU;
+    private long nextSequence;
+    private long dropAfterPackets = -1;
+    private int resendOverlap;
+    private boolean silentDisconnect;
+
+    long ackedSequence = -1;
+    long packetsSent;
+    long bytesSent;
+    long startRequests;
+
+    /**
+     * Creates a node holding the records with sequences 0 to recordCount - 1, one per minute.
+     *
+     * @param recordCount      Records in the node's buffer.
+     * @param firstTimestampMs Time of the first record.
+     * @param maxMtu           Largest MTU the node accepts.
+     */
+    FakeHistoryPeripheral(long recordCount, long firstTimestampMs, int maxMtu) {
+        this.recordCount = recordCount;
+        this.firstTimestampMs = firstTimestampMs;
+        this.maxMtu = maxMtu;
+    }
+
+    /**
+     * Makes the link drop after the given number of packets of the next stream.
+     */
+    void dropAfterPackets(long packets) {
+        this.dropAfterPackets = packets;
+    }
+
+    /**
+     * Makes the node restart every stream this many records before the one asked for.
+     */
+    void resendOverlap(int records) {
+        this.resendOverlap = records;
+    }
+
+    /**
+     * Makes disconnect() never report the disconnection, like a GATT link torn down while it
+     * is still connecting.
+     */
+    void silentDisconnect() {
+        this.silentDisconnect = true;
+    }
+
+    static long timestampOf(long firstTimestampMs, long sequence) {
+        return firstTimestampMs + sequence * 60_000;
+    }
+
+    static float o3Of(long sequence) {
+        return (sequence % 500) / 100f;
+    }
+
+    /**
+     * Delivers the queued callbacks, including the ones they queue, until none is left.
+     */
+    void runUntilIdle() {
+        Runnable event;
+        while ((event = events.poll()) != null) {
+            event.run();
+        }
+    }
+
+    /**
+     * Delivers at most the given number of queued callbacks, e.g. to stop a sync halfway.
+     */
+    void runEvents(int count) {
+        Runnable event;
+        for (int i = 0; i < count && (event = events.poll()) != null; i++) {
+            event.run();
+        }
+    }
+
+    /**
+     * Returns the air time the packets sent so far would take on a real link.
+     *
+     * @return The simulated time in milliseconds.
+     */
+    double getAirTimeMs() {
+        return Math.ceil(packetsSent / (double) PACKETS_PER_INTERVAL) * CONNECTION_INTERVAL_MS;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void connect() {
+        connected = true;
+        events.add(() -> listener.onConnected());
+    }
+
+    @Override
+    public void requestMtu(int mtu) {
+        this.mtu = Math.min(mtu, maxMtu);
+        final int negotiated = this.mtu;
+        events.add(() -> listener.onMtuChanged(negotiated));
+    }
+
+    @Override
+    public void enableNotifications() {
+        events.add(() -> listener.onNotificationsEnabled());
+    }
+
+    @Override
+    public void writeControl(byte[] value) {
+        long sequence = ByteCodec.u32BE(value, 1);
+        if (value[0] == HistorySyncProtocol.OP_START) {
+            startRequests++;
+            ackedSequence = Math.max(ackedSequence, sequence - 1);
+            nextSequence = Math.max(0, sequence - resendOverlap);
+            events.add(this::sendNext);
+        } else if (value[0] == HistorySyncProtocol.OP_ACK) {
+            ackedSequence = Math.max(ackedSequence, sequence);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (connected) {
+            connected = false;
+            if (!silentDisconnect) {
+                events.add(() -> listener.onDisconnected());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+        events.clear();
+    }
+
+    /**
+     * Notifies the next packet of the stream and queues the one after it.
+     */
+    private void sendNext() {
+        if (!connected) {
+            return;
+        }
+        if (dropAfterPackets == 0) {
+            dropAfterPackets = -1;
+            connected = false;
+            listener.onDisconnected();
+            return;
+        }
+        byte[] packet;
+        if (nextSequence >= recordCount) {
+            packet = new byte[HistorySyncProtocol.END_LENGTH];
+            packet[0] = HistorySyncProtocol.PACKET_END;
+            ByteCodec.writeU32BE(packet, 1, recordCount - 1);
+        } else {
+            int count = (int) Math.min(HistorySyncProtocol.recordsPerPacket(mtu), recordCount - nextSequence);
+            packet = new byte[HistorySyncProtocol.RECORDS_HEADER_LENGTH + count * HistorySyncProtocol.RECORD_LENGTH];
+            packet[0] = HistorySyncProtocol.PACKET_RECORDS;
+            packet[1] = (byte) count;
+            int offset = HistorySyncProtocol.RECORDS_HEADER_LENGTH;
+            for (int i = 0; i < count; i++, nextSequence++) {
+                offset += HistorySyncProtocol.encodeRecord(nextSequence,
+                        timestampOf(firstTimestampMs, nextSequence), o3Of(nextSequence), Float.NaN,
+                        Float.NaN, packet, offset);
+            }
+            events.add(this::sendNext);
+        }
+        packetsSent++;
+        bytesSent += packet.length + HistorySyncProtocol.ATT_HEADER_LENGTH;
+        if (dropAfterPackets > 0) {
+            dropAfterPackets--;
+        }
+        listener.onNotification(packet);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.GatewayRouter;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrameView;
+import com.example.mborper.breathbetter.bluetooth.NodeUuidIndex;
+import com.example.mborper.breathbetter.bluetooth.ScanIngestor;
+import com.example.mborper.breathbetter.measurements.ConnectionStateEngine;
+import com.example.mborper.breathbetter.measurements.GasType;
+import com.example.mborper.breathbetter.measurements.Measurement;
+import com.example.mborper.breathbetter.measurements.MeasurementBatcher;
+import com.example.mborper.breathbetter.measurements.NodeConnectionState.ConnectionStatus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for gateway mode: the NodeUuidIndex, the routing of adverts through the
+ * ScanIngestor to per-node pipelines in the GatewayRouter, and the MeasurementBatcher.
+ *
+ * @since 2026-10-18
+ */
+public class GatewayTest {
+
+    /**
+     * Returns the 16-character UUID of the i-th node of a floor.
+     */
+    private static String nodeUuid(int i) {
+        return String.format("FLOOR-3-NODE%04d", i);
+    }
+
+    /**
+     * Tests registration and lookup, including growth well past the initial capacity.
+     */
+    @Test
+    public void testIndexLookup() {
+        NodeUuidIndex index = new NodeUuidIndex();
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, index.add(nodeUuid(i)));
+        }
+        assertEquals(7, index.add(nodeUuid(7)));
+        assertEquals(500, index.size());
+
+        for (int i = 0; i < 500; i++) {
+            byte[] frame = IBeaconFrameViewTest.buildFrame(nodeUuid(i), 1, 1, -59);
+            assertEquals(i, index.lookup(frame, IBeaconFrameView.UUID_OFFSET));
+        }
+        byte[] foreign = IBeaconFrameViewTest.buildFrame("SOME-OTHER-NODE!", 1, 1, -59);
+        assertEquals(-1, index.lookup(foreign, IBeaconFrameView.UUID_OFFSET));
+        assertEquals(-1, index.lookup(new byte[10], IBeaconFrameView.UUID_OFFSET));
+        assertEquals(nodeUuid(42), index.getUuid(42));
+    }
+
+    /**
+     * Tests that the adverts of several interleaved nodes each end up in their own summary,
+     * with per-node deduplication, connection state and alert, and that a node silent from
+     * the start is lost at its deadline.
+     */
+    @Test
+    public void testRoutingToPerNodePipelines() {
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            uuids.add(nodeUuid(i));
+        }
+        ScanSchedulerTest.FakeClock clock = new ScanSchedulerTest.FakeClock();
+        ConnectionStateEngine connections = new ConnectionStateEngine(clock, null);
+        long timeout = 20000;
+        GatewayRouter router = new GatewayRouter(uuids, connections, timeout);
+        assertEquals(3, connections.getNodeCount());
+        connections.advance();
+        clock.advance(timeout / 2);
+        connections.advance();
+        final int[] drainRequests = {0};
+        ScanIngestor ingestor = new ScanIngestor(64, () -> drainRequests[0]++);
+
+        // Node 0 at 0.40 ppm, node 1 at 150 ppm, node 2 silent; every advert sent twice, the
+        // sequence numbers of both nodes overlap
+        for (int seq = 1; seq <= 5; seq++) {
+            for (int copy = 0; copy < 2; copy++) {
+                ingestor.onScanRecord(router.getIndex(), IBeaconFrameViewTest.buildFrame(uuids.get(0), 40, seq, -59), seq, -60);
+                ingestor.onScanRecord(router.getIndex(), IBeaconFrameViewTest.buildFrame(uuids.get(1), 15000, seq, -59), seq, -70);
+                assertFalse(ingestor.onScanRecord(router.getIndex(),
+                        IBeaconFrameViewTest.buildFrame("SOME-OTHER-NODE!", 1, seq, -59), seq, -80));
+            }
+        }
+        assertEquals(1, drainRequests[0]);
+        assertEquals(20, ingestor.drain(router));
+        assertEquals(20, router.getRoutedCount());
+
+        final Map<String, String> summaries = new HashMap<>();
+        int heard = router.closeWindows((nodeId, summary, sequence, alert) ->
+                summaries.put(nodeId, summary.getCount() + "/" + summary.getMedian() + "/" + sequence + "/" + alert));
+        assertEquals(2, heard);
+        assertEquals("5/0.4/5/false", summaries.get(uuids.get(0)));
+        assertEquals("5/150.0/5/true", summaries.get(uuids.get(1)));
+        assertEquals(5, router.getPipeline(1).getDuplicateCount());
+
+        assertEquals(ConnectionStatus.CONNECTED, connections.getStatus(uuids.get(0)));
+        assertEquals(ConnectionStatus.CONNECTED, connections.getStatus(uuids.get(2)));
+
+        // Registered at the start and never heard, node 2 is lost when its deadline comes
+        for (long t = 0; t < timeout / 2 + ConnectionStateEngine.DEFAULT_TICK_MS; t += ConnectionStateEngine.DEFAULT_TICK_MS) {
+            clock.advance(ConnectionStateEngine.DEFAULT_TICK_MS);
+            connections.advance();
+        }
+        assertEquals(ConnectionStatus.CONNECTED, connections.getStatus(uuids.get(0)));
+        assertEquals(ConnectionStatus.CONNECTED, connections.getStatus(uuids.get(1)));
+        assertEquals(ConnectionStatus.DISCONNECTED, connections.getStatus(uuids.get(2)));
+
+        router.release();
+        assertEquals(0, connections.getNodeCount());
+    }
+
+    /**
+     * Tests that batches go out when full or when their oldest measurement is due.
+     */
+    @Test
+    public void testBatcher() {
+        ScanSchedulerTest.FakeClock clock = new ScanSchedulerTest.FakeClock();
+        final List<List<Measurement>> sent = new ArrayList<>();
+        // The batch is reused once send() returns, so the sender copies it
+        MeasurementBatcher batcher = new MeasurementBatcher(3, 1000, clock,
+                batch -> sent.add(batch.toMeasurements()));
+
+        for (int i = 0; i < 6; i++) {
+            Measurement measurement = new Measurement();
+            measurement.setNodeId(nodeUuid(i % 2));
+            batcher.add(measurement);
+        }
+        batcher.add(1_790_000_000_000L, 0.5f, 39, -0.2, nodeUuid(0), 6, GasType.NO2);
+        assertEquals(2, sent.size());
+        assertEquals(3, sent.get(0).size());
+        assertEquals(1, batcher.getPendingCount());
+
+        clock.advance(999);
+        assertFalse(batcher.poll());
+        clock.advance(1);
+        assertTrue(batcher.poll());
+        assertEquals(1, sent.get(2).size());
+        Measurement last = sent.get(2).get(0);
+        assertEquals(nodeUuid(0), last.getNodeId());
+        assertEquals(1_790_000_000_000L, last.getTimestamp());
+        assertEquals(6, last.getSequence());
+        assertEquals(GasType.NO2, last.getGasType());
+
+        batcher.flush();
+        assertEquals(3, batcher.getSentBatches());
+        assertEquals(7, batcher.getSentMeasurements());
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.graphs.PersonalMapRenderer;
+import com.example.mborper.breathbetter.measurements.GeohashIndex;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the GeohashIndex: encoding, the aggregates of every precision, viewport
+ * queries and the readings it skips.
+ *
+ * @since 2026-10-18
+ */
+public class GeohashIndexTest {
+    private static final double GANDIA_LAT = 38.9960;
+    private static final double GANDIA_LON = -0.1660;
+
+    /**
+     * Tests the encoding against known geohashes.
+     */
+    @Test
+    public void testEncode() {
+        assertEquals("u4pruydqqvj", GeohashIndex.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeohashIndex.encode(42.605, -5.603, 5));
+        assertEquals("s0000", GeohashIndex.encode(0.0001, 0.0001, 5));
+        assertEquals("u4pru", GeohashIndex.encode(57.64911, 10.40744, 5));
+    }
+
+    /**
+     * Tests that a reading counts in its cell at every precision, and that a query returns
+     * count, mean and max per cell with its bounds.
+     */
+    @Test
+    public void testAggregates() {
+        GeohashIndex index = new GeohashIndex(7);
+        assertTrue(index.add(GANDIA_LAT, GANDIA_LON, 0.1f, 1000));
+        assertTrue(index.add(GANDIA_LAT + 0.0001, GANDIA_LON, 0.3f, 2000)); // Same 7-char cell
+        assertTrue(index.add(GANDIA_LAT + 0.01, GANDIA_LON, 0.8f, 3000)); // Same 5-char cell
+        assertEquals(3, index.getSampleCount());
+        assertEquals(5 + 2 * 2, index.getCellCount()); // Two cells from precision 6 down
+
+        final Map<String, float[]> cells = new HashMap<>();
+        int visited = index.query(-90, -180, 90, 180, 4, (cell, precision, s, w, n, e, count, mean, max, last) -> {
+            cells.put(GeohashIndex.toGeohash(cell, precision), new float[]{count, mean, max, last});
+            assertTrue(s <= GANDIA_LAT && GANDIA_LAT < n && w <= GANDIA_LON && GANDIA_LON < e);
+        });
+        assertEquals(1, visited);
+        float[] coarse = cells.get(GeohashIndex.encode(GANDIA_LAT, GANDIA_LON, 4));
+        assertNotNull(coarse);
+        assertEquals(3f, coarse[0], 0f);
+        assertEquals(0.4f, coarse[1], 1e-6f);
+        assertEquals(0.8f, coarse[2], 0f);
+        assertEquals(3000f, coarse[3], 0f);
+
+        cells.clear();
+        assertEquals(2, index.query(-90, -180, 90, 180, 7, (cell, precision, s, w, n, e, count, mean, max, last) ->
+                cells.put(GeohashIndex.toGeohash(cell, precision), new float[]{count, mean, max})));
+        float[] fine = cells.get(GeohashIndex.encode(GANDIA_LAT, GANDIA_LON, 7));
+        assertEquals(2f, fine[0], 0f);
+        assertEquals(0.2f, fine[1], 1e-6f);
+    }
+
+    /**
+     * Tests that a query only returns cells that overlap the viewport, with the bounds of the
+     * precision asked for.
+     */
+    @Test
+    public void testViewport() {
+        GeohashIndex index = new GeohashIndex(6);
+        long t = 0;
+        for (int i = 0; i < 100; i++) {
+            index.add(GANDIA_LAT + i * 0.01, GANDIA_LON, i, ++t); // A line 1 degree north
+        }
+        index.add(40.4168, -3.7038, 5, ++t); // Madrid
+
+        final int[] count = {0};
+        final double[] size = new double[2];
+        int visited = index.query(GANDIA_LAT - 0.001, GANDIA_LON - 0.001, GANDIA_LAT + 0.2, GANDIA_LON + 0.001, 6,
+                (cell, precision, s, w, n, e, n2, mean, max, last) -> {
+                    count[0] += n2;
+                    size[0] = n - s;
+                    size[1] = e - w;
+                    assertTrue(n >= GANDIA_LAT - 0.001 && s <= GANDIA_LAT + 0.2);
+                });
+        assertTrue(visited > 0);
+        assertEquals(21, count[0]); // The readings up to 0.2 degrees north
+        assertEquals(180.0 / (1 << 15), size[0], 1e-12);
+        assertEquals(360.0 / (1 << 15), size[1], 1e-12);
+
+        assertEquals(1, index.query(40, -4, 41, -3, 6, (cell, precision, s, w, n, e, n2, mean, max, last) -> { }));
+        assertEquals(0, index.query(-10, 100, 10, 120, 6, (cell, precision, s, w, n, e, n2, mean, max, last) -> { }));
+    }
+
+    /**
+     * Tests that readings without location, out of order or not numbers are skipped.
+     */
+    @Test
+    public void testSkipped() {
+        GeohashIndex index = new GeohashIndex(GeohashIndex.DEFAULT_MAX_PRECISION);
+        assertNull(index.getBounds());
+        assertFalse(index.add(0, 0, 1f, 1000));
+        assertFalse(index.add(91, 0, 1f, 1000));
+        assertFalse(index.add(GANDIA_LAT, GANDIA_LON, Float.NaN, 1000));
+        assertTrue(index.add(GANDIA_LAT, GANDIA_LON, 1f, 1000));
+        assertFalse(index.add(GANDIA_LAT, GANDIA_LON, 1f, 1000)); // E.g. replayed from storage
+        assertEquals(1, index.getSampleCount());
+        assertEquals(1000, index.getLastTimestampMs());
+        double[] bounds = index.getBounds();
+        assertEquals(GANDIA_LAT, bounds[0], 0);
+        assertEquals(GANDIA_LON, bounds[3], 0);
+    }
+
+    /**
+     * Tests the precision chosen for a viewport, and that the personal map has one square per
+     * cell.
+     */
+    @Test
+    public void testPrecisionAndRender() {
+        GeohashIndex index = new GeohashIndex(7);
+        assertEquals(1, index.precisionFor(-90, -180, 90, 180, 8));
+        assertEquals(7, index.precisionFor(GANDIA_LAT, GANDIA_LON, GANDIA_LAT + 0.01, GANDIA_LON + 0.01, 48));
+        assertEquals(4, index.precisionFor(38, -1, 40, 1, 12));
+        assertEquals(5, index.precisionFor(38, -1, 40, 1, 48));
+        assertNull(PersonalMapRenderer.toHtml(index, "Mapa", 48));
+
+        index.add(GANDIA_LAT, GANDIA_LON, 5f, 1);
+        index.add(GANDIA_LAT + 0.02, GANDIA_LON + 0.02, 150f, 2);
+        String html = PersonalMapRenderer.toHtml(index, "Mapa <personal>", 48);
+        assertEquals(2, html.split("<rect ", -1).length - 1);
+        assertTrue(html.contains("#16A34A") && html.contains("#DC2626"));
+        assertTrue(html.contains("Mapa &lt;personal&gt;"));
+    }
+
+    /**
+     * Tests a million readings spread over a city: each is counted once by a query that
+     * covers them all, and the finest cells stay bounded.
+     */
+    @Test
+    public void testManyReadings() {
+        GeohashIndex index = new GeohashIndex(GeohashIndex.DEFAULT_MAX_PRECISION);
+        int samples = 1_000_000;
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < samples; i++) {
+            index.add(GANDIA_LAT + random.nextDouble() * 0.1, GANDIA_LON + random.nextDouble() * 0.1, i & 63, i + 1);
+        }
+        final long[] counted = {0};
+        int visited = index.query(GANDIA_LAT, GANDIA_LON, GANDIA_LAT + 0.1, GANDIA_LON + 0.1, 6,
+                (cell, precision, s, w, n, e, count, mean, max, last) -> counted[0] += count);
+        assertEquals(samples, index.getSampleCount());
+        assertEquals(samples, counted[0]);
+        assertTrue(visited > 0);
+        assertTrue(index.getCellCount() < samples);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.HistoryCompactor;
+import com.example.mborper.breathbetter.measurements.TimeSeriesStore;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Unit tests for the HistoryCompactor: the cutoffs of the tiers, the row budget of a run, that
+ * rolling up keeps every sample counted once, and that the attached TimeSeriesStore is cut at
+ * the raw tier. The storage is an in-memory stand-in.
+ *
+ * @since 2026-10-18
+ */
+public class HistoryCompactorTest {
+    private static final long MINUTE_MS = HistoryCompactor.MINUTE_MS;
+    private static final long HOUR_MS = HistoryCompactor.HOUR_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final long NOW_MS = 1_792_300_000_123L; // 2026-10-18T05:06:40.123Z
+
+    /**
+     * Tiers of samples by time: raw values, and {samples, sum} per minute and per hour.
+     */
+    private static class FakeStorage implements HistoryCompactor.Storage {
+        final TreeMap<Long, Double> raw = new TreeMap<>();
+        final TreeMap<Long, double[]> minutes = new TreeMap<>();
+        final TreeMap<Long, double[]> hours = new TreeMap<>();
+        long bytesPerRow = 40;
+        int freePages;
+
+        @Override
+        public int rollUpMeasurements(long beforeMs, long bucketMs, int maxRows) {
+            int moved = 0;
+            Iterator<Map.Entry<Long, Double>> it = raw.headMap(beforeMs).entrySet().iterator();
+            while (moved < maxRows && it.hasNext()) {
+                Map.Entry<Long, Double> row = it.next();
+                merge(minutes, row.getKey() / bucketMs * bucketMs, 1, row.getValue());
+                it.remove();
+                moved++;
+            }
+            freePages += moved / 100;
+            return moved;
+        }
+
+        @Override
+        public int rollUpMinutes(long beforeMs, long bucketMs, int maxRows) {
+            int moved = 0;
+            Iterator<Map.Entry<Long, double[]>> it = minutes.headMap(beforeMs).entrySet().iterator();
+            while (moved < maxRows && it.hasNext()) {
+                Map.Entry<Long, double[]> row = it.next();
+                merge(hours, row.getKey() / bucketMs * bucketMs, row.getValue()[0], row.getValue()[1]);
+                it.remove();
+                moved++;
+            }
+            return moved;
+        }
+
+        private static void merge(TreeMap<Long, double[]> tier, long bucket, double samples, double sum) {
+            double[] aggregate = tier.get(bucket);
+            if (aggregate == null) {
+                tier.put(bucket, new double[]{samples, sum});
+            } else {
+                aggregate[0] += samples;
+                aggregate[1] += sum;
+            }
+        }
+
+        @Override
+        public int releaseFreePages(int maxPages) {
+            int released = Math.min(maxPages, freePages);
+            freePages -= released;
+            return released;
+        }
+
+        @Override
+        public long getStorageBytes() {
+            return (raw.size() + minutes.size() + hours.size()) * bytesPerRow;
+        }
+
+        double total(int column) {
+            double total = column == 0 ? raw.size() : 0;
+            for (double value : raw.values()) {
+                total += column == 1 ? value : 0;
+            }
+            for (double[] aggregate : minutes.values()) {
+                total += aggregate[column];
+            }
+            for (double[] aggregate : hours.values()) {
+                total += aggregate[column];
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Tests that the raw cutoff starts a minute, that the minute cutoff counts calendar
+     * months and starts an hour, and that it never comes after the raw one.
+     */
+    @Test
+    public void testCutoffs() {
+        HistoryCompactor compactor = new HistoryCompactor(new FakeStorage(), () -> 0, 30, 6, 100, 0);
+        assertEquals(1_789_707_960_000L, compactor.getRawCutoffMs(NOW_MS)); // 2026-09-18T05:06Z
+        assertEquals(1_776_488_400_000L, compactor.getMinuteCutoffMs(NOW_MS)); // 2026-04-18T05:00Z
+
+        HistoryCompactor longRaw = new HistoryCompactor(new FakeStorage(), () -> 0, 400, 6, 100, 0);
+        long rawCutoff = longRaw.getRawCutoffMs(NOW_MS);
+        assertEquals(rawCutoff / HOUR_MS * HOUR_MS, longRaw.getMinuteCutoffMs(NOW_MS));
+    }
+
+    /**
+     * Tests that a backlog is worked off a budget of rows per run, raw tier first, and that
+     * every sample is still counted once with its sum in the coarser tiers.
+     */
+    @Test
+    public void testBudgetAndConservation() {
+        FakeStorage storage = new FakeStorage();
+        // A reading every 10 s for the last year
+        for (long t = NOW_MS - 365 * DAY_MS; t < NOW_MS; t += 10_000) {
+            storage.raw.put(t, (double) (t / 10_000 % 7));
+        }
+        double samples = storage.total(0);
+        double sum = storage.total(1);
+        long[] clock = {0};
+        HistoryCompactor compactor = new HistoryCompactor(storage, () -> clock[0] += 3, 30, 6, 100_000, 64);
+        long initialBytes = storage.getStorageBytes();
+
+        int runs = 0;
+        boolean backlog;
+        do {
+            backlog = compactor.run(NOW_MS);
+            runs++;
+            assertTrue(compactor.getRawRowsCompacted() + compactor.getMinuteRowsCompacted() <= runs * 100_000L);
+        } while (backlog);
+
+        assertEquals(samples, storage.total(0), 0);
+        assertEquals(sum, storage.total(1), 1e-6);
+        assertTrue(storage.raw.firstKey() >= compactor.getRawCutoffMs(NOW_MS));
+        assertTrue(storage.minutes.firstKey() >= compactor.getMinuteCutoffMs(NOW_MS));
+        assertTrue(storage.hours.lastKey() < compactor.getMinuteCutoffMs(NOW_MS));
+        assertEquals(0, storage.hours.firstKey() % HOUR_MS);
+
+        // About 2.8 million raw rows a year become 30 days raw, 5 months of minutes and hours
+        assertEquals(runs, compactor.getRunCount());
+        assertTrue(runs > 28);
+        assertEquals(3, compactor.getLastRunMs());
+        assertEquals(3L * runs, compactor.getTotalRunMs());
+        assertEquals(storage.getStorageBytes(), compactor.getStorageBytes());
+        assertTrue(compactor.getStorageBytes() < initialBytes / 4);
+        assertTrue(compactor.getPagesReleased() <= 64L * runs);
+
+        // Nothing left to do: the next run touches nothing
+        long compacted = compactor.getRawRowsCompacted();
+        assertFalse(compactor.run(NOW_MS));
+        assertEquals(compacted, compactor.getRawRowsCompacted());
+    }
+
+    /**
+     * Tests that the minute tier only gets what the raw tier left of the budget.
+     */
+    @Test
+    public void testBudgetSplit() {
+        FakeStorage storage = new FakeStorage();
+        long oldRaw = NOW_MS - 40 * DAY_MS;
+        for (int i = 0; i < 150; i++) {
+            storage.raw.put(oldRaw + i * MINUTE_MS, 1.0);
+        }
+        long oldMinute = NOW_MS - 400 * DAY_MS;
+        for (int i = 0; i < 80; i++) {
+            storage.minutes.put(oldMinute + i * MINUTE_MS, new double[]{6, 6});
+        }
+        HistoryCompactor compactor = new HistoryCompactor(storage, () -> 0, 30, 6, 100, 0);
+
+        assertTrue(compactor.run(NOW_MS));
+        assertEquals(100, compactor.getRawRowsCompacted());
+        assertEquals(0, compactor.getMinuteRowsCompacted());
+
+        assertTrue(compactor.run(NOW_MS));
+        assertEquals(150, compactor.getRawRowsCompacted());
+        assertEquals(50, compactor.getMinuteRowsCompacted());
+
+        assertFalse(compactor.run(NOW_MS));
+        assertEquals(80, compactor.getMinuteRowsCompacted());
+        assertEquals(2, storage.hours.size());
+        assertEquals(0, compactor.getPagesReleased());
+    }
+
+    /**
+     * Tests that a run drops the store's chunks older than the raw tier, so the store holds
+     * about rawDays of samples however long it has been recording.
+     */
+    @Test
+    public void testStoreBoundedByRawTier() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(null);
+        // A reading every 10 s for the last 90 days
+        for (long t = NOW_MS - 90 * DAY_MS; t < NOW_MS; t += 10_000) {
+            store.append(t, 0.1f, 39, -0.2);
+        }
+        long samples = store.getSampleCount();
+        HistoryCompactor compactor = new HistoryCompactor(new FakeStorage(), () -> 0, 30, 6, 100, 0);
+        compactor.setTimeSeriesStore(store);
+
+        compactor.run(NOW_MS);
+        long kept = store.getSampleCount();
+        assertTrue(kept < samples / 2);
+        final long[] oldest = {Long.MAX_VALUE};
+        store.scan(Long.MIN_VALUE, NOW_MS, (t, v, lat, lon) -> oldest[0] = Math.min(oldest[0], t));
+        // Only the chunk straddling the cutoff may reach behind it, by less than its span
+        long cutoff = compactor.getRawCutoffMs(NOW_MS);
+        assertTrue(oldest[0] > cutoff - TimeSeriesStore.DEFAULT_CHUNK_SPAN_MS);
+        assertEquals(store.getDroppedChunkCount(), compactor.getStoreChunksDropped());
+        assertEquals(0, compactor.getStoreFailures());
+
+        compactor.run(NOW_MS);
+        assertEquals(kept, store.getSampleCount());
+    }
+}
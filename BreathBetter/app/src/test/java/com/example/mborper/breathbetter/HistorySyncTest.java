@@ -0,0 +1,252 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.HistorySink;
+import com.example.mborper.breathbetter.bluetooth.HistorySyncClient;
+import com.example.mborper.breathbetter.bluetooth.HistorySyncProtocol;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the history sync protocol and HistorySyncClient, run against a
+ * FakeHistoryPeripheral: full syncs, MTU fallback, resuming after a dropped link and the
+ * air time saved with a large MTU.
+ *
+ * @since 2026-10-18
+ */
+public class HistorySyncTest {
+    private static final long START_MS = 1_790_000_000_000L; // A whole second, as the node stores
+
+    /**
+     * Sink that keeps everything in memory and checks the records it gets.
+     */
+    private static class MemorySink implements HistorySink {
+        final List<Long> sequences = new ArrayList<>();
+        long committed = -1;
+        int commits;
+        boolean badRecord;
+
+        @Override
+        public void onRecord(long sequence, long timestampMs, float o3Ppm, float coPpm, float no2Ppm) {
+            if (timestampMs != FakeHistoryPeripheral.timestampOf(START_MS, sequence)
+                    || o3Ppm != FakeHistoryPeripheral.o3Of(sequence) || !Float.isNaN(coPpm)) {
+                badRecord = true;
+            }
+            sequences.add(sequence);
+        }
+
+        @Override
+        public void commit(long lastSequence) {
+            committed = lastSequence;
+            commits++;
+        }
+
+        @Override
+        public long getCommittedSequence() {
+            return committed;
+        }
+    }
+
+    private final List<String> finished = new ArrayList<>();
+
+    private HistorySyncClient client(FakeHistoryPeripheral node, MemorySink sink) {
+        HistorySyncClient client = new HistorySyncClient(node, sink,
+                new ScanSchedulerTest.FakeClock(), HistorySyncClient.DEFAULT_ACK_INTERVAL);
+        client.setSyncListener((complete, records, lastSequence, elapsedMs) ->
+                finished.add(complete + " " + records + " " + lastSequence));
+        return client;
+    }
+
+    /**
+     * Tests the packet layouts and how many records fit per MTU.
+     */
+    @Test
+    public void testProtocol() {
+        assertEquals(1, HistorySyncProtocol.recordsPerPacket(HistorySyncProtocol.DEFAULT_MTU));
+        assertEquals(17, HistorySyncProtocol.recordsPerPacket(247));
+        assertEquals(36, HistorySyncProtocol.recordsPerPacket(HistorySyncProtocol.MAX_MTU));
+
+        byte[] packet = new byte[HistorySyncProtocol.RECORDS_HEADER_LENGTH + HistorySyncProtocol.RECORD_LENGTH];
+        packet[0] = HistorySyncProtocol.PACKET_RECORDS;
+        packet[1] = 1;
+        HistorySyncProtocol.encodeRecord(4_000_000_000L, START_MS, 0.42f, Float.NaN, 1.5f, packet, 2);
+        final List<String> decoded = new ArrayList<>();
+        assertEquals(1, HistorySyncProtocol.decodeRecords(packet,
+                (sequence, timestampMs, o3, co, no2) -> decoded.add(sequence + " " + timestampMs + " " + o3 + " " + co + " " + no2)));
+        assertEquals("4000000000 " + START_MS + " 0.42 NaN 1.5", decoded.get(0));
+
+        packet[1] = 2; // Claims more records than it carries
+        assertEquals(-1, HistorySyncProtocol.decodeRecords(packet, (s, t, o3, co, no2) -> { }));
+        assertEquals(-1, HistorySyncProtocol.decodeEnd(packet));
+    }
+
+    /**
+     * Tests a full sync with a large MTU: every record arrives once and in order, acks go out
+     * every ackInterval records and the node ends up with everything acknowledged.
+     */
+    @Test
+    public void testFullSync() {
+        FakeHistoryPeripheral node = new FakeHistoryPeripheral(5000, START_MS, 247);
+        MemorySink sink = new MemorySink();
+        HistorySyncClient client = client(node, sink);
+        assertTrue(client.start());
+        assertFalse(client.start());
+        node.runUntilIdle();
+
+        assertEquals(HistorySyncClient.State.IDLE, client.getState());
+        assertEquals("true 5000 4999", finished.get(0));
+        assertEquals(247, client.getMtu());
+        assertEquals(5000, sink.sequences.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, (long) sink.sequences.get(i));
+        }
+        assertFalse(sink.badRecord);
+        assertEquals(4999, node.ackedSequence);
+        assertEquals((5000 + 16) / 17 + 1, node.packetsSent);
+        assertTrue(client.getAckCount() >= 5000 / HistorySyncClient.DEFAULT_ACK_INTERVAL);
+    }
+
+    /**
+     * Tests a node that refuses a larger MTU: one record per packet, same result.
+     */
+    @Test
+    public void testDefaultMtu() {
+        FakeHistoryPeripheral node = new FakeHistoryPeripheral(300, START_MS, HistorySyncProtocol.DEFAULT_MTU);
+        MemorySink sink = new MemorySink();
+        HistorySyncClient client = client(node, sink);
+        client.start();
+        node.runUntilIdle();
+        assertEquals("true 300 299", finished.get(0));
+        assertEquals(301, node.packetsSent);
+    }
+
+    /**
+     * Tests that a link dropped halfway keeps what arrived, and that the next sync resumes
+     * right after it without storing anything twice, even if the node resends some records.
+     */
+    @Test
+    public void testResumeAfterDrop() {
+        FakeHistoryPeripheral node = new FakeHistoryPeripheral(5000, START_MS, 247);
+        MemorySink sink = new MemorySink();
+        HistorySyncClient client = client(node, sink);
+        node.dropAfterPackets(100);
+        node.resendOverlap(40);
+        client.start();
+        node.runUntilIdle();
+
+        assertEquals("false 1700 1699", finished.get(0));
+        assertEquals(1699, sink.committed);
+        // Acks go out after the packet that reaches 256 records, i.e. every 16 packets of 17;
+        // the records after the last ack were committed on the drop without the node knowing
+        int ackEvery = 16 * 17;
+        assertEquals(1700 / ackEvery * ackEvery - 1, node.ackedSequence);
+
+        client.start();
+        node.runUntilIdle();
+        assertEquals("true 3300 4999", finished.get(1));
+        assertEquals(40, client.getDuplicateCount());
+        assertEquals(5000, sink.sequences.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, (long) sink.sequences.get(i));
+        }
+        assertEquals(4999, node.ackedSequence);
+        assertEquals(2, node.startRequests);
+    }
+
+    /**
+     * Tests that an aborted sync keeps what arrived and that a sync with nothing new finishes
+     * at once.
+     */
+    @Test
+    public void testAbortAndNothingNew() {
+        FakeHistoryPeripheral node = new FakeHistoryPeripheral(10, START_MS, 247);
+        MemorySink sink = new MemorySink();
+        HistorySyncClient client = client(node, sink);
+        client.start();
+        client.abort();
+        node.runUntilIdle();
+        assertEquals("false 0 -1", finished.get(0));
+
+        client.start();
+        node.runUntilIdle();
+        client.start();
+        node.runUntilIdle();
+        assertEquals("true 0 9", finished.get(2));
+        assertEquals(10, sink.sequences.size());
+    }
+
+    /**
+     * Tests that a sync aborted while connecting, whose link never reports the disconnection,
+     * is closed by the second abort instead of waiting in DISCONNECTING for ever.
+     */
+    @Test
+    public void testAbortWhileConnecting() {
+        FakeHistoryPeripheral node = new FakeHistoryPeripheral(10, START_MS, 247);
+        node.silentDisconnect();
+        MemorySink sink = new MemorySink();
+        HistorySyncClient client = client(node, sink);
+        client.start();
+        assertEquals(HistorySyncClient.State.CONNECTING, client.getState());
+        client.abort();
+        node.runUntilIdle();
+        assertEquals(HistorySyncClient.State.DISCONNECTING, client.getState());
+        assertTrue(finished.isEmpty());
+
+        client.abort();
+        assertEquals(HistorySyncClient.State.IDLE, client.getState());
+        assertEquals("false 0 -1", finished.get(0));
+        assertTrue(client.start());
+    }
+
+    /**
+     * Tests that closing a sync halfway, as the service does when it stops, commits what
+     * arrived at once and delivers nothing afterwards.
+     */
+    @Test
+    public void testClose() {
+        FakeHistoryPeripheral node = new FakeHistoryPeripheral(5000, START_MS, 247);
+        MemorySink sink = new MemorySink();
+        HistorySyncClient client = client(node, sink);
+        client.start();
+        node.runEvents(3 + 7); // Connection setup, then 7 packets of 17 records
+        assertEquals(-1, sink.committed);
+
+        client.close();
+        assertEquals(HistorySyncClient.State.IDLE, client.getState());
+        assertEquals("false 119 118", finished.get(0));
+        assertEquals(118, sink.committed);
+        long packets = node.packetsSent;
+        node.runUntilIdle();
+        assertEquals(packets, node.packetsSent);
+        assertEquals(1, finished.size());
+        assertEquals(1, sink.commits);
+    }
+
+    /**
+     * Compares the packets and air time of a day of one-per-second history with the default
+     * and a large MTU.
+     */
+    @Test
+    public void testLargeMtuAirTime() {
+        int records = 86_400;
+        FakeHistoryPeripheral small = new FakeHistoryPeripheral(records, START_MS, HistorySyncProtocol.DEFAULT_MTU);
+        client(small, new MemorySink()).start();
+        small.runUntilIdle();
+
+        FakeHistoryPeripheral large = new FakeHistoryPeripheral(records, START_MS, HistorySyncProtocol.MAX_MTU);
+        MemorySink sink = new MemorySink();
+        client(large, sink).start();
+        large.runUntilIdle();
+
+        assertEquals(records, sink.sequences.size());
+        assertFalse(sink.badRecord);
+        assertTrue(small.packetsSent > 30 * large.packetsSent);
+        assertTrue(small.getAirTimeMs() > 30 * large.getAirTimeMs());
+    }
+}
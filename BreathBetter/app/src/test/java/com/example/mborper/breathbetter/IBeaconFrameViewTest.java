@@ -0,0 +1,163 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrame;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrameView;
+import com.example.mborper.breathbetter.bluetooth.Utilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Unit tests for the IBeaconFrameView class.
+ * <p>
+ * Checks that the zero-copy view validates the iBeacon prefix, reads every field
+ * in place with the same values as IBeaconFrame, and allocates nothing per advert.
+ *
+ * @since 2026-10-18
+ */
+public class IBeaconFrameViewTest {
+
+    private static final String UUID = "MANU-EPSG-GTI-3A";
+
+    private IBeaconFrameView view;
+
+    /**
+     * Creates a fresh view before each test.
+     */
+    @Before
+    public void setUp() {
+        view = new IBeaconFrameView();
+    }
+
+    /**
+     * Builds an iBeacon scan record with the given fields.
+     *
+     * @param uuid    16-character UUID
+     * @param major   Major value
+     * @param minor   Minor value
+     * @param txPower Calibrated txPower
+     * @return The raw scan record
+     */
+    static byte[] buildFrame(String uuid, int major, int minor, int txPower) {
+        ByteBuffer buffer = ByteBuffer.allocate(IBeaconFrameView.FRAME_LENGTH);
+        buffer.put(new byte[]{0x02, 0x01, 0x06});        // flags
+        buffer.put(new byte[]{0x1A, (byte) 0xFF});        // AD header
+        buffer.put(new byte[]{0x4C, 0x00});               // company ID
+        buffer.put(new byte[]{0x02, 0x15});               // iBeacon type and length
+        buffer.put(Utilities.stringToBytes(uuid));
+        buffer.putShort((short) major);
+        buffer.putShort((short) minor);
+        buffer.put((byte) txPower);
+        return buffer.array();
+    }
+
+    /**
+     * Tests that every field read in place matches the copying IBeaconFrame.
+     */
+    @Test
+    public void testFieldsMatchCopyingFrame() {
+        byte[] bytes = buildFrame(UUID, 4321, 65000, -59);
+        IBeaconFrame frame = new IBeaconFrame(bytes);
+
+        assertTrue(view.wrap(bytes));
+        assertEquals(ByteBuffer.wrap(frame.getUUID()).getLong(0), view.uuidMsb());
+        assertEquals(ByteBuffer.wrap(frame.getUUID()).getLong(8), view.uuidLsb());
+        assertEquals(4321, view.majorU16());
+        assertEquals(65000, view.minorU16());
+        assertEquals(frame.getTxPower(), view.txPower());
+        assertEquals(0x004C, view.companyId());
+    }
+
+    /**
+     * Tests that major and minor are read as unsigned values.
+     */
+    @Test
+    public void testMajorMinorAreUnsigned() {
+        assertTrue(view.wrap(buildFrame(UUID, 0xFFFF, 0x8000, 0)));
+        assertEquals(0xFFFF, view.majorU16());
+        assertEquals(0x8000, view.minorU16());
+    }
+
+    /**
+     * Tests that frames without the iBeacon prefix or too short are rejected.
+     */
+    @Test
+    public void testRejectsInvalidFrames() {
+        byte[] bytes = buildFrame(UUID, 1, 2, 3);
+        bytes[IBeaconFrameView.BEACON_TYPE_OFFSET] = 0x03;
+        assertFalse(view.wrap(bytes));
+        assertFalse(view.isValid());
+        assertNull(view.bytes());
+
+        assertFalse(view.wrap(new byte[10]));
+        assertFalse(view.wrap(null));
+    }
+
+    /**
+     * Tests that the view can be re-pointed at a different record.
+     */
+    @Test
+    public void testReuseAcrossRecords() {
+        assertTrue(view.wrap(buildFrame(UUID, 10, 20, 0)));
+        assertEquals(10, view.majorU16());
+        assertTrue(view.wrap(buildFrame(UUID, 30, 40, 0)));
+        assertEquals(30, view.majorU16());
+        assertEquals(40, view.minorU16());
+    }
+
+    /**
+     * Tests that wrapping and reading fields does not allocate on the heap.
+     * Skipped on JVMs that cannot report per-thread allocation.
+     */
+    @Test
+    public void testNoAllocationPerAdvert() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        byte[] valid = buildFrame(UUID, 1234, 1, -59);
+        byte[] foreign = buildFrame(UUID, 1234, 1, -59);
+        foreign[IBeaconFrameView.BEACON_LENGTH_OFFSET] = 0x00;
+
+        long checksum = 0;
+        // Warm up so that JIT compilation does not count as allocation
+        for (int i = 0; i < 100_000; i++) {
+            checksum += readAll(valid) + readAll(foreign);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            checksum += readAll(valid) + readAll(foreign);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum != 0);
+        // Tolerates the few bytes the measurement itself may allocate
+        assertTrue("Allocated " + allocated + " bytes for 200000 adverts", allocated < 1024);
+    }
+
+    /**
+     * Wraps a record and folds every field into a checksum.
+     *
+     * @param bytes The scan record
+     * @return A value derived from all fields, or 0 if the record was rejected
+     */
+    private long readAll(byte[] bytes) {
+        if (!view.wrap(bytes)) {
+            return 0;
+        }
+        return view.uuidMsb() ^ view.uuidLsb() + view.majorU16() + view.minorU16() + view.txPower();
+    }
+}
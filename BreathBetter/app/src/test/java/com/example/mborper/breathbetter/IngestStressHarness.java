@@ -0,0 +1,161 @@
+package com.example.mborper.breathbetter;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconPipeline;
+import com.example.mborper.breathbetter.bluetooth.BeaconUuidMatcher;
+import com.example.mborper.breathbetter.bluetooth.ScanIngestor;
+import com.example.mborper.breathbetter.bluetooth.ScanRecordRing;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the ingest path with a SyntheticBeaconGenerator and measures how it holds up.
+ * <p>
+ * A producer thread plays the Bluetooth callback thread: it stamps every record with
+ * System.nanoTime() and hands it to ScanIngestor.onScanRecord(), the same entry point the
+ * service's processScanResult() uses. A consumer thread plays the service thread: it is woken
+ * through the DrainRequest, drains the ring into a BeaconPipeline and records, for every target
+ * advert, the time from generation to processing. The report gives the sustained throughput,
+ * the adverts dropped by the ring and latency percentiles.
+ *
+ * @since 2026-10-18
+ */
+public class IngestStressHarness {
+
+    /**
+     * Outcome of one run.
+     */
+    public static class Report {
+        public long generated;
+        public long targetGenerated;
+        public long queued;
+        public long dropped;
+        public long processed;
+        public long elapsedNanos;
+        public long p50Nanos;
+        public long p90Nanos;
+        public long p99Nanos;
+        public long p999Nanos;
+        public long maxNanos;
+
+        public double getAdvertsPerSecond() {
+            return elapsedNanos == 0 ? 0 : generated * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("generated=%d (%.0f adverts/s), target=%d, queued=%d, dropped=%d, "
+                            + "processed=%d, latency us p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    generated, getAdvertsPerSecond(), targetGenerated, queued, dropped, processed,
+                    p50Nanos / 1e3, p90Nanos / 1e3, p99Nanos / 1e3, p999Nanos / 1e3, maxNanos / 1e3);
+        }
+    }
+
+    private final SyntheticBeaconGenerator.Config config;
+    private final int ringCapacity;
+
+    /**
+     * Creates a harness.
+     *
+     * @param config       Generator settings.
+     * @param ringCapacity Capacity of the ingestor's ring, as in the service.
+     */
+    public IngestStressHarness(SyntheticBeaconGenerator.Config config, int ringCapacity) {
+        this.config = config;
+        this.ringCapacity = ringCapacity;
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Generates the given number of adverts and pushes them through the ingest path.
+     *      Natural, T/F ---> run() ---> Report
+     *
+     * @param adverts Number of adverts to generate.
+     * @param paced   true to hold the generator to its configured rate, false to go flat out.
+     * @return The report of the run.
+     * @throws InterruptedException if interrupted while waiting for the consumer.
+     */
+    public Report run(long adverts, boolean paced) throws InterruptedException {
+        final SyntheticBeaconGenerator generator = new SyntheticBeaconGenerator(config);
+        final BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(SyntheticBeaconGenerator.TARGET_UUID);
+        final BeaconPipeline pipeline = new BeaconPipeline();
+        final AtomicBoolean producerDone = new AtomicBoolean(false);
+        final Thread[] consumerThread = new Thread[1];
+
+        final ScanIngestor ingestor = new ScanIngestor(ringCapacity,
+                () -> LockSupport.unpark(consumerThread[0]));
+
+        // Sized up front, with margin over the expected target adverts, so recording a latency never allocates
+        double targetShare = config.nodeRate / (config.foreignRate + config.nodes * config.nodeRate);
+        final long[] latencies = new long[(int) Math.min(adverts, adverts * targetShare * 2 + 1024)];
+        final int[] latencyCount = {0};
+        final ScanRecordRing.RecordHandler handler = (timestampNanos, major, minor, rssi, txPower) -> {
+            long latency = System.nanoTime() - timestampNanos;
+            if (latencyCount[0] < latencies.length) {
+                latencies[latencyCount[0]++] = latency;
+            }
+            pipeline.onRecord(timestampNanos, major, minor, rssi, txPower);
+        };
+
+        consumerThread[0] = new Thread(() -> {
+            while (true) {
+                boolean done = producerDone.get();
+                if (ingestor.drain(handler) == 0) {
+                    if (done) {
+                        return;
+                    }
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+        }, "ingest-consumer");
+        consumerThread[0].start();
+
+        final long[] queued = {0};
+        SyntheticBeaconGenerator.Sink sink = (bytes, timestampNanos, rssi) -> {
+            if (ingestor.onScanRecord(matcher, bytes, timestampNanos, rssi)) {
+                queued[0]++;
+            }
+        };
+
+        long start = System.nanoTime();
+        for (long i = 0; i < adverts; i++) {
+            if (paced) {
+                long due = start + i * generator.getPeriodNanos();
+                while (System.nanoTime() < due) {
+                    Thread.yield();
+                }
+            }
+            generator.next(sink, System.nanoTime());
+        }
+        producerDone.set(true);
+        LockSupport.unpark(consumerThread[0]);
+        consumerThread[0].join();
+        long elapsed = System.nanoTime() - start;
+
+        Report report = new Report();
+        report.generated = generator.getGeneratedCount();
+        report.targetGenerated = generator.getTargetGeneratedCount();
+        report.queued = queued[0];
+        report.dropped = ingestor.getDroppedCount();
+        report.processed = pipeline.getRecordCount();
+        report.elapsedNanos = elapsed;
+
+        long[] sorted = Arrays.copyOf(latencies, latencyCount[0]);
+        Arrays.sort(sorted);
+        report.p50Nanos = percentile(sorted, 0.50);
+        report.p90Nanos = percentile(sorted, 0.90);
+        report.p99Nanos = percentile(sorted, 0.99);
+        report.p999Nanos = percentile(sorted, 0.999);
+        report.maxNanos = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        return report;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconPipeline;
+import com.example.mborper.breathbetter.bluetooth.BeaconUuidMatcher;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrameView;
+import com.example.mborper.breathbetter.measurements.WindowSummary;
+
+import org.junit.Test;
+
+/**
+ * Stress tests of the ingest path with the SyntheticBeaconGenerator and IngestStressHarness.
+ * <p>
+ * The counters must add up exactly in every run, whatever the speed of the machine; the
+ * throughput and latency of the reports are not asserted, since they depend on it.
+ *
+ * @since 2026-10-18
+ */
+public class IngestStressTest {
+
+    /**
+     * Tests that the generator only lets the target node's adverts through the matcher, that
+     * malformed frames are all rejected and that the stream is repeatable.
+     */
+    @Test
+    public void testGeneratorMix() {
+        SyntheticBeaconGenerator.Config config = new SyntheticBeaconGenerator.Config();
+        config.nodes = 3;
+        config.nodeRate = 500;
+        config.malformedRatio = 0.2;
+        config.distribution = SyntheticBeaconGenerator.UuidDistribution.SKEWED;
+
+        final BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(SyntheticBeaconGenerator.TARGET_UUID);
+        final IBeaconFrameView view = new IBeaconFrameView();
+        final long[] matched = {0};
+        final long[] checksum = {0, 0};
+        for (int run = 0; run < 2; run++) {
+            final int r = run;
+            SyntheticBeaconGenerator generator = new SyntheticBeaconGenerator(config);
+            for (int i = 0; i < 100_000; i++) {
+                generator.next((bytes, timestampNanos, rssi) -> {
+                    checksum[r] = checksum[r] * 31 + rssi + (bytes.length > 26 ? bytes[26] : 0);
+                    if (r == 0 && view.wrap(bytes) && matcher.matches(view)) {
+                        matched[0]++;
+                    }
+                });
+            }
+            if (run == 0) {
+                assertEquals(generator.getTargetGeneratedCount(), matched[0]);
+                assertTrue(generator.getMalformedGeneratedCount() > 10_000);
+                assertTrue(matched[0] > 1000);
+            }
+        }
+        assertEquals(checksum[0], checksum[1]);
+    }
+
+    /**
+     * Tests that the node trajectory reaches the pipeline intact through the generated stream.
+     */
+    @Test
+    public void testTrajectoryReachesPipeline() {
+        SyntheticBeaconGenerator.Config config = new SyntheticBeaconGenerator.Config();
+        config.trajectory = SyntheticBeaconGenerator.Trajectory.constant(0.87);
+        SyntheticBeaconGenerator generator = new SyntheticBeaconGenerator(config);
+        final BeaconPipeline pipeline = new BeaconPipeline();
+        final BeaconUuidMatcher matcher = BeaconUuidMatcher.forTarget(SyntheticBeaconGenerator.TARGET_UUID);
+        final IBeaconFrameView view = new IBeaconFrameView();
+
+        for (int i = 0; i < 50_000; i++) {
+            generator.next((bytes, timestampNanos, rssi) ->
+                    pipeline.onScanRecord(bytes, timestampNanos, rssi, view, matcher));
+        }
+        WindowSummary summary = pipeline.closeWindow();
+        assertEquals(generator.getTargetGeneratedCount(), summary.getCount());
+        assertEquals(0.87f, summary.getMedian(), 1e-6f);
+        assertEquals(0, pipeline.getSequenceWindow().getLostCount());
+    }
+
+    /**
+     * Pushes a crowded scenario through the ingest path flat out: every target advert is either
+     * processed or counted as dropped.
+     */
+    @Test
+    public void testFlatOutAccounting() throws InterruptedException {
+        SyntheticBeaconGenerator.Config config = new SyntheticBeaconGenerator.Config();
+        config.foreignDevices = 10_000;
+        config.foreignRate = 10_000;
+        config.nodes = 3;
+        config.nodeRate = 100;
+
+        IngestStressHarness.Report report = new IngestStressHarness(config, 256).run(1_000_000, false);
+
+        assertEquals(1_000_000, report.generated);
+        assertEquals(report.targetGenerated, report.queued + report.dropped);
+        assertEquals(report.queued, report.processed);
+    }
+
+    /**
+     * Runs a stadium-rate scenario at its real pace: every target advert is either processed
+     * or counted as dropped, as when running flat out.
+     */
+    @Test
+    public void testPacedStadiumRateAccounting() throws InterruptedException {
+        SyntheticBeaconGenerator.Config config = new SyntheticBeaconGenerator.Config();
+        config.foreignDevices = 5000;
+        config.foreignRate = 5000;
+        config.nodes = 2;
+        config.nodeRate = 20;
+
+        IngestStressHarness.Report report = new IngestStressHarness(config, 256).run(5000, true);
+
+        assertEquals(5000, report.generated);
+        assertEquals(report.targetGenerated, report.queued + report.dropped);
+        assertEquals(report.queued, report.processed);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.mborper.breathbetter.measurements.GasType;
+import com.example.mborper.breathbetter.measurements.Measurement;
+import com.example.mborper.breathbetter.measurements.MeasurementBatch;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the MeasurementBatch: its columns, reuse after clear(), and JSON identical to
+ * what Gson writes for the same measurements.
+ *
+ * @since 2026-10-18
+ */
+public class MeasurementBatchTest {
+    private static final long START_MS = 1_790_000_000_000L;
+
+    private static List<Measurement> sampleMeasurements(int count) {
+        List<Measurement> measurements = new ArrayList<>();
+        GasType[] gases = GasType.values();
+        for (int i = 0; i < count; i++) {
+            Measurement measurement = new Measurement();
+            measurement.setTimestamp(START_MS + i * 10_000L);
+            measurement.setO3Value(i / 100f);
+            measurement.setLatitude(38.9965 + i * 1e-5);
+            measurement.setLongitude(-0.1663);
+            measurement.setSequence(i % 3 == 0 ? -1 : 65530 + i);
+            measurement.setGasType(gases[i % gases.length]);
+            measurement.setNodeId(i % 2 == 0 ? null : "FLOOR-3-NODE" + i);
+            measurements.add(measurement);
+        }
+        return measurements;
+    }
+
+    /**
+     * Tests that every field comes back from the columns and as Measurement objects.
+     */
+    @Test
+    public void testColumns() {
+        List<Measurement> measurements = sampleMeasurements(10);
+        MeasurementBatch batch = new MeasurementBatch(10);
+        for (Measurement measurement : measurements) {
+            batch.add(measurement);
+        }
+        assertTrue(batch.isFull());
+        assertEquals(GasType.NO2, batch.getGasType(5));
+        assertEquals(65537, batch.getSequence(7));
+        assertNull(batch.getNodeId(4));
+
+        List<Measurement> copies = batch.toMeasurements();
+        Gson gson = new Gson();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(gson.toJson(measurements.get(i)), gson.toJson(copies.get(i)));
+        }
+        try {
+            batch.add(measurements.get(0));
+            fail("A full batch accepted a sample");
+        } catch (IllegalStateException expected) {
+            // Full
+        }
+        try {
+            batch.getValue(10);
+            fail("Read past the end of the batch");
+        } catch (IndexOutOfBoundsException expected) {
+            // Past the end
+        }
+    }
+
+    /**
+     * Tests that the JSON is exactly what Gson writes for a List of Measurement, the body
+     * the batch endpoint expects, including node IDs that need escaping.
+     */
+    @Test
+    public void testJsonMatchesGson() {
+        List<Measurement> measurements = sampleMeasurements(50);
+        measurements.get(1).setNodeId("node \"<3>\" & a\\b\n");
+        measurements.get(3).setO3Value(Float.MAX_VALUE);
+        measurements.get(5).setLatitude(-1e-9);
+        MeasurementBatch batch = new MeasurementBatch(50);
+        for (Measurement measurement : measurements) {
+            batch.add(measurement);
+        }
+        assertEquals(new Gson().toJson(measurements), batch.toJson());
+
+        batch.clear();
+        assertEquals("[]", batch.toJson());
+        assertEquals(new Gson().toJson(new ArrayList<Measurement>()), batch.toJson());
+    }
+
+    /**
+     * Tests that a value that is not finite is written as null instead of breaking the body,
+     * and that an unknown location, e.g. of a reading synced from the node's history, is left
+     * out rather than sent as 0, 0.
+     */
+    @Test
+    public void testNonFiniteValues() {
+        MeasurementBatch batch = new MeasurementBatch(2);
+        batch.add(START_MS, Float.NaN, Double.POSITIVE_INFINITY, 0, null, 1, GasType.CO);
+        batch.add(START_MS, 0.5f, Double.NaN, Double.NaN, null, 2, GasType.NO2);
+        assertEquals("[{\"o3Value\":null,\"timestamp\":" + START_MS + ",\"sequence\":1,\"gasType\":\"CO\"},"
+                + "{\"o3Value\":0.5,\"timestamp\":" + START_MS + ",\"sequence\":2,\"gasType\":\"NO2\"}]",
+                batch.toJson());
+        assertTrue(Double.isNaN(batch.toMeasurements().get(1).getLatitude()));
+    }
+
+    /**
+     * Tests that a cleared batch is reused as it was, without keeping the old node IDs.
+     */
+    @Test
+    public void testReuse() {
+        MeasurementBatch batch = new MeasurementBatch(4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                batch.add(START_MS + round, round, 0, 0, round == 0 ? "NODE" : null, i, GasType.O3);
+            }
+            assertEquals(4, batch.size());
+            assertEquals(round == 0 ? "NODE" : null, batch.getNodeId(3));
+            assertEquals(START_MS + round, batch.getTimestamp(0));
+            batch.clear();
+            assertTrue(batch.isEmpty());
+        }
+        assertEquals(4, batch.capacity());
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.MeasurementLog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the MeasurementLog: reading back, segment rotation and retention, and
+ * recovery after the process dies with the log open or in the middle of a record.
+ *
+ * @since 2026-10-18
+ */
+public class MeasurementLogTest {
+    private static final long START_MS = 1_790_000_000_000L;
+    private static final int HEADER_LENGTH = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<long[]> readAll(MeasurementLog log, long from) {
+        final List<long[]> records = new ArrayList<>();
+        log.read(from, Integer.MAX_VALUE, (sequence, timestampMs, value, latitude, longitude) ->
+                records.add(new long[]{sequence, timestampMs, Float.floatToIntBits(value),
+                        Double.doubleToLongBits(latitude), Double.doubleToLongBits(longitude)}));
+        return records;
+    }
+
+    private static void append(MeasurementLog log, int i) throws IOException {
+        log.append(START_MS + i * 10_000L, i / 100f, 38.99 + i * 1e-6, -0.16);
+    }
+
+    private static void assertRecord(int i, long[] record) {
+        assertEquals(i, record[0]);
+        assertEquals(START_MS + i * 10_000L, record[1]);
+        assertEquals(Float.floatToIntBits(i / 100f), (int) record[2]);
+        assertEquals(Double.doubleToLongBits(38.99 + i * 1e-6), record[3]);
+        assertEquals(Double.doubleToLongBits(-0.16), record[4]);
+    }
+
+    /**
+     * Tests that records come back exactly, from any sequence number, across segments.
+     */
+    @Test
+    public void testAppendAndRead() throws IOException {
+        MeasurementLog log = new MeasurementLog(folder.newFolder("log"), 100, 10);
+        assertFalse(log.readLast((s, t, v, lat, lon) -> { }));
+        for (int i = 0; i < 250; i++) {
+            assertEquals(i, log.append(START_MS + i * 10_000L, i / 100f, 38.99 + i * 1e-6, -0.16));
+        }
+        assertEquals(3, log.getSegmentCount());
+        List<long[]> records = readAll(log, 0);
+        assertEquals(250, records.size());
+        for (int i = 0; i < 250; i++) {
+            assertRecord(i, records.get(i));
+        }
+        records = readAll(log, 150);
+        assertEquals(100, records.size());
+        assertRecord(150, records.get(0));
+        assertEquals(10, log.read(95, 10, (s, t, v, lat, lon) -> { }));
+
+        final long[] last = new long[1];
+        assertTrue(log.readLast((s, t, v, lat, lon) -> last[0] = s));
+        assertEquals(249, last[0]);
+    }
+
+    /**
+     * Tests that the oldest segments are deleted once maxSegments exist.
+     */
+    @Test
+    public void testRetention() throws IOException {
+        File directory = folder.newFolder("log");
+        MeasurementLog log = new MeasurementLog(directory, 100, 3);
+        for (int i = 0; i < 1050; i++) {
+            append(log, i);
+        }
+        assertEquals(3, log.getSegmentCount());
+        assertEquals(3, directory.list().length);
+        assertEquals(800, log.getFirstSequence());
+        assertEquals(250, log.getRecordCount());
+        List<long[]> records = readAll(log, 0);
+        assertEquals(250, records.size());
+        assertRecord(800, records.get(0));
+    }
+
+    /**
+     * Tests recovery when the process dies with the log open: everything appended is there,
+     * and new records continue the sequence.
+     */
+    @Test
+    public void testRecoveryAfterKill() throws IOException {
+        File directory = folder.newFolder("log");
+        MeasurementLog log = new MeasurementLog(directory, 100, 10);
+        for (int i = 0; i < 230; i++) {
+            append(log, i);
+        }
+        // No close() or force(): the mapped pages are all a killed process leaves behind
+
+        MeasurementLog recovered = new MeasurementLog(directory, 100, 10);
+        assertEquals(230, recovered.getRecoveredCount());
+        assertEquals(230, recovered.getNextSequence());
+        for (int i = 230; i < 260; i++) {
+            append(recovered, i);
+        }
+        recovered.close();
+
+        List<long[]> records = readAll(new MeasurementLog(directory, 100, 10), 0);
+        assertEquals(260, records.size());
+        for (int i = 0; i < 260; i++) {
+            assertRecord(i, records.get(i));
+        }
+    }
+
+    /**
+     * Tests recovery from a record torn in the middle: the log ends at the last valid record,
+     * the torn one is overwritten, and nothing stale after it comes back later.
+     */
+    @Test
+    public void testRecoveryFromTornRecord() throws IOException {
+        File directory = folder.newFolder("log");
+        MeasurementLog log = new MeasurementLog(directory, 100, 10);
+        for (int i = 0; i < 150; i++) {
+            append(log, i);
+        }
+        log.close();
+
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        try (RandomAccessFile raf = new RandomAccessFile(files[1], "rw")) {
+            raf.seek(HEADER_LENGTH + 40L * MeasurementLog.RECORD_LENGTH + 20);
+            raf.write(0x5A); // Record 140 half-written
+        }
+
+        MeasurementLog recovered = new MeasurementLog(directory, 100, 10);
+        assertEquals(140, recovered.getRecoveredCount());
+        assertEquals(140, recovered.append(START_MS + 140 * 10_000L, 1.4f, 38.99 + 140 * 1e-6, -0.16));
+        recovered.close();
+
+        // Records 141 to 149 were cleared, so they do not reappear after the new record 140
+        MeasurementLog reopened = new MeasurementLog(directory, 100, 10);
+        assertEquals(141, reopened.getRecoveredCount());
+        assertRecord(140, readAll(reopened, 140).get(0));
+    }
+
+    /**
+     * Tests that segments which cannot be trusted are ignored and deleted: a truncated one,
+     * and the ones after a segment that stopped at a bad record.
+     */
+    @Test
+    public void testRecoveryDropsBadSegments() throws IOException {
+        File directory = folder.newFolder("log");
+        MeasurementLog log = new MeasurementLog(directory, 100, 10);
+        for (int i = 0; i < 350; i++) {
+            append(log, i);
+        }
+        log.close();
+
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        try (RandomAccessFile raf = new RandomAccessFile(files[1], "rw")) {
+            raf.seek(HEADER_LENGTH + 10L * MeasurementLog.RECORD_LENGTH);
+            raf.writeLong(12345); // Record 110 carries the wrong sequence number
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(files[3], "rw")) {
+            raf.setLength(100);
+        }
+
+        MeasurementLog recovered = new MeasurementLog(directory, 100, 10);
+        assertEquals(110, recovered.getRecoveredCount());
+        assertEquals(2, directory.list().length);
+        for (int i = 110; i < 400; i++) {
+            append(recovered, i);
+        }
+        List<long[]> records = readAll(recovered, 0);
+        assertEquals(400, records.size());
+        for (int i = 0; i < 400; i++) {
+            assertRecord(i, records.get(i));
+        }
+    }
+
+    /**
+     * Tests that the default segments keep rotating without going over their number, and that
+     * the newest records are still read back after many rotations.
+     */
+    @Test
+    public void testDefaultSegmentsRotate() throws IOException {
+        MeasurementLog log = new MeasurementLog(folder.newFolder("log"));
+        int records = MeasurementLog.DEFAULT_RECORDS_PER_SEGMENT * 20;
+        for (int i = 0; i < records; i++) {
+            append(log, i);
+        }
+        assertEquals(MeasurementLog.DEFAULT_MAX_SEGMENTS, log.getSegmentCount());
+        List<long[]> kept = readAll(log, 0);
+        assertEquals(log.getRecordCount(), kept.size());
+        assertRecord(records - 1, kept.get(kept.size() - 1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.ScanRecordRing;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for the ScanRecordRing class.
+ * <p>
+ * Checks ordering, overflow accounting and that records cross from a producer
+ * thread to a consumer thread intact and in order.
+ *
+ * @since 2026-10-18
+ */
+public class ScanRecordRingTest {
+
+    /**
+     * Tests that records come out in the order they went in, with every field intact.
+     */
+    @Test
+    public void testFifoOrder() {
+        ScanRecordRing ring = new ScanRecordRing(4);
+        assertTrue(ring.offer(1L, 10, 100, -60, -59));
+        assertTrue(ring.offer(2L, 20, 200, -70, -59));
+        assertEquals(2, ring.size());
+
+        final long[] expectedTimestamp = {1L};
+        int drained = ring.drain((timestampNanos, major, minor, rssi, txPower) -> {
+            assertEquals(expectedTimestamp[0], timestampNanos);
+            assertEquals(expectedTimestamp[0] * 10, major);
+            assertEquals(expectedTimestamp[0] * 100, minor);
+            assertEquals(-50 - 10 * expectedTimestamp[0], rssi);
+            assertEquals(-59, txPower);
+            expectedTimestamp[0]++;
+        });
+        assertEquals(2, drained);
+        assertEquals(0, ring.size());
+    }
+
+    /**
+     * Tests that a full ring drops new records and counts them.
+     */
+    @Test
+    public void testOverflowIsCounted() {
+        ScanRecordRing ring = new ScanRecordRing(2);
+        assertTrue(ring.offer(1L, 1, 1, 0, 0));
+        assertTrue(ring.offer(2L, 2, 2, 0, 0));
+        assertFalse(ring.offer(3L, 3, 3, 0, 0));
+        assertEquals(1, ring.getDroppedCount());
+
+        ring.drain((timestampNanos, major, minor, rssi, txPower) -> { });
+        assertTrue(ring.offer(4L, 4, 4, 0, 0));
+    }
+
+    /**
+     * Tests that capacities which are not a power of two are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePowerOfTwo() {
+        new ScanRecordRing(100);
+    }
+
+    /**
+     * Tests one producer and one consumer running concurrently: every record that was accepted
+     * arrives exactly once and in order.
+     */
+    @Test
+    public void testConcurrentHandOff() throws InterruptedException {
+        final ScanRecordRing ring = new ScanRecordRing(64);
+        final int total = 500_000;
+        final AtomicBoolean producerDone = new AtomicBoolean(false);
+        final long[] accepted = {0};
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                if (ring.offer(i, i & 0xFFFF, (i >>> 16) & 0xFFFF, -i % 100, 0)) {
+                    accepted[0]++;
+                }
+            }
+            producerDone.set(true);
+        });
+
+        final long[] received = {0};
+        final long[] last = {-1};
+        ScanRecordRing.RecordHandler handler = (timestampNanos, major, minor, rssi, txPower) -> {
+            assertTrue(timestampNanos > last[0]);
+            assertEquals(timestampNanos & 0xFFFF, major);
+            assertEquals((timestampNanos >>> 16) & 0xFFFF, minor);
+            last[0] = timestampNanos;
+            received[0]++;
+        };
+
+        producer.start();
+        while (!producerDone.get()) {
+            ring.drain(handler);
+        }
+        producer.join();
+        ring.drain(handler);
+
+        assertEquals(accepted[0], received[0]);
+        assertEquals(total, accepted[0] + ring.getDroppedCount());
+    }
+}
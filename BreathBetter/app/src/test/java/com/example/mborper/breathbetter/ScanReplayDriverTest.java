@@ -0,0 +1,210 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconUuidMatcher;
+import com.example.mborper.breathbetter.bluetooth.ScanCaptureReader;
+import com.example.mborper.breathbetter.bluetooth.ScanCaptureWriter;
+import com.example.mborper.breathbetter.bluetooth.ScanReplayDriver;
+import com.example.mborper.breathbetter.measurements.WindowSummary;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the scan capture log and the ScanReplayDriver.
+ * <p>
+ * A synthetic capture with known duplicates, gaps, foreign adverts and one dangerous window
+ * is replayed, and the replay must give the same summaries every time.
+ *
+ * @since 2026-10-18
+ */
+public class ScanReplayDriverTest {
+    private static final String UUID = "MANU-EPSG-GTI-3A";
+    private static final String OTHER_UUID = "SOME-OTHER-NODE!";
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Builds a capture of three windows, 10 s apart, each with four adverts of the node sent
+     * twice plus a foreign advert. The third window carries a dangerous O3 level and its second
+     * sequence number is lost.
+     */
+    static byte[] buildCapture() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScanCaptureWriter writer = new ScanCaptureWriter(bytes, 64);
+        int sequence = 0;
+        for (int window = 0; window < 3; window++) {
+            long start = window * 10 * SECOND;
+            int ppmTimes100 = window == 2 ? 15000 : 40 + window;
+            for (int i = 0; i < 4; i++) {
+                sequence++;
+                if (window == 2 && i == 1) {
+                    continue; // lost packet
+                }
+                byte[] frame = IBeaconFrameViewTest.buildFrame(UUID, ppmTimes100 + i, sequence, -59);
+                long t = start + i * 200_000_000L;
+                writer.append(t, -60, frame);
+                writer.append(t + 1_000_000L, -61, frame); // retransmission
+            }
+            writer.append(start + SECOND, -80, IBeaconFrameViewTest.buildFrame(OTHER_UUID, 1, 1, -59));
+        }
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Tests that records come back from the log exactly as written.
+     */
+    @Test
+    public void testCaptureRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScanCaptureWriter writer = new ScanCaptureWriter(bytes);
+        byte[] longRecord = new byte[62];
+        Arrays.fill(longRecord, (byte) 7);
+        writer.append(123L, -70, longRecord);
+        writer.append(Long.MAX_VALUE, 5, new byte[]{1, 2, 3});
+        writer.append(456L, -127, null);
+        writer.close();
+        assertEquals(3, writer.getRecordCount());
+        assertEquals(bytes.size(), writer.getByteCount());
+
+        ScanCaptureReader reader = new ScanCaptureReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(reader.next());
+        assertEquals(123L, reader.getTimestampNanos());
+        assertEquals(-70, reader.getRssi());
+        assertArrayEquals(longRecord, Arrays.copyOf(reader.getBytes(), reader.getLength()));
+
+        assertTrue(reader.next());
+        assertEquals(Long.MAX_VALUE, reader.getTimestampNanos());
+        assertEquals(3, reader.getLength());
+        assertEquals(3, reader.getBytes()[2]);
+        assertEquals("Stale bytes must be cleared", 0, reader.getBytes()[3]);
+
+        assertTrue(reader.next());
+        assertEquals(-127, reader.getRssi());
+        assertEquals(0, reader.getLength());
+        assertFalse(reader.next());
+    }
+
+    /**
+     * Tests that something that is not a capture log is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testRejectsForeignFile() throws IOException {
+        new ScanCaptureReader(new ByteArrayInputStream("not a log".getBytes()));
+    }
+
+    /**
+     * Tests that the replay gives the expected, repeatable summaries and counters.
+     */
+    @Test
+    public void testReplayIsDeterministic() throws Exception {
+        byte[] capture = buildCapture();
+
+        List<String> first = new ArrayList<>();
+        ScanReplayDriver.Result result = replay(capture, ScanReplayDriver.Speed.MAXIMUM, first);
+        List<String> second = new ArrayList<>();
+        replay(capture, ScanReplayDriver.Speed.MAXIMUM, second);
+
+        assertEquals(first, second);
+        assertEquals(3, result.summaries);
+        assertEquals(1, result.alerts);
+        assertEquals(3 * 9 - 2, result.records);
+        assertEquals(22, result.matched);
+        assertEquals(11, result.duplicates);
+        assertEquals(1, result.lost);
+        assertEquals("count=4 median=0.415 alert=false", first.get(0));
+        assertEquals("count=3 median=150.02 alert=true", first.get(2));
+    }
+
+    /**
+     * Tests that WALL_CLOCK speed reproduces the gaps of the capture.
+     */
+    @Test
+    public void testWallClockReplaysGaps() throws Exception {
+        byte[] capture = buildCapture();
+        final long[] slept = {0};
+        ScanReplayDriver driver = new ScanReplayDriver(BeaconUuidMatcher.forTarget(UUID), 3 * SECOND);
+        driver.setSleeper(nanos -> slept[0] += nanos);
+        driver.replay(new ScanCaptureReader(new ByteArrayInputStream(capture)), ScanReplayDriver.Speed.WALL_CLOCK);
+
+        // From the first record at t = 0 to the last one, the foreign advert of window 2
+        assertEquals(21 * SECOND, slept[0]);
+    }
+
+    /**
+     * Writes a large synthetic capture, flushing whenever the writer asks for it as the service
+     * does, and replays it at maximum speed: nothing may be dropped or lost on the way.
+     */
+    @Test
+    public void testReplayLargeCapture() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScanCaptureWriter writer = new ScanCaptureWriter(bytes);
+        int flushes = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String uuid = i % 4 == 0 ? UUID : OTHER_UUID;
+            if (writer.append(i * 10_000_000L, -60, IBeaconFrameViewTest.buildFrame(uuid, 40, i / 2, -59))) {
+                writer.flush();
+                flushes++;
+            }
+        }
+        writer.close();
+        assertEquals(0, writer.getDroppedCount());
+        assertTrue(flushes > 1);
+        assertEquals(bytes.size(), writer.getByteCount());
+
+        ScanReplayDriver.Result result = replay(bytes.toByteArray(), ScanReplayDriver.Speed.MAXIMUM, null);
+        assertEquals(200_000, result.records);
+        assertEquals(50_000, result.matched);
+    }
+
+    /**
+     * Tests that records are dropped and counted, not written, when both buffers are full, and
+     * that a flush makes room again.
+     */
+    @Test
+    public void testFullBuffersDrop() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScanCaptureWriter writer = new ScanCaptureWriter(bytes, 0); // Raised to one largest record
+        byte[] record = new byte[ScanCaptureWriter.MAX_RECORD_LENGTH];
+        assertFalse(writer.append(1L, -60, record));
+        assertTrue(writer.append(2L, -60, record));
+        assertFalse(writer.append(3L, -60, record));
+        assertEquals(1, writer.getDroppedCount());
+        assertEquals(5, bytes.size()); // Only the header until flush()
+
+        writer.flush();
+        assertFalse(writer.append(4L, -60, record));
+        writer.close();
+        assertEquals(3, writer.getRecordCount());
+        assertEquals(bytes.size(), writer.getByteCount());
+
+        ScanCaptureReader reader = new ScanCaptureReader(new ByteArrayInputStream(bytes.toByteArray()));
+        long[] expected = {1L, 2L, 4L};
+        for (long timestamp : expected) {
+            assertTrue(reader.next());
+            assertEquals(timestamp, reader.getTimestampNanos());
+        }
+        assertFalse(reader.next());
+    }
+
+    private static ScanReplayDriver.Result replay(byte[] capture, ScanReplayDriver.Speed speed,
+                                                  List<String> summaries) throws Exception {
+        ScanReplayDriver driver = new ScanReplayDriver(BeaconUuidMatcher.forTarget(UUID), 3 * SECOND);
+        if (summaries != null) {
+            driver.setSummaryListener((WindowSummary summary, boolean alert) ->
+                    summaries.add("count=" + summary.getCount() + " median=" + summary.getMedian()
+                            + " alert=" + alert));
+        }
+        return driver.replay(new ScanCaptureReader(new ByteArrayInputStream(capture)), speed);
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.AdaptiveScanScheduler;
+import com.example.mborper.breathbetter.bluetooth.FixedScanScheduler;
+import com.example.mborper.breathbetter.bluetooth.ScanScheduler;
+import com.example.mborper.breathbetter.measurements.Clock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for the scan schedulers.
+ * <p>
+ * Drives the schedulers with a fake clock, both step by step and through a simulated
+ * 24-hour day, and compares the adaptive duty cycle with the fixed one.
+ *
+ * @since 2026-10-18
+ */
+public class ScanSchedulerTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    // The node advertises roughly every 300 ms
+    private static final int NODE_ADVERT_INTERVAL_MS = 300;
+
+    private FakeClock clock;
+
+    /**
+     * Clock whose time only moves when the test advances it.
+     */
+    static class FakeClock implements Clock {
+        long now = 0;
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        void advance(long ms) {
+            now += ms;
+        }
+    }
+
+    /**
+     * Totals collected while simulating a scheduler.
+     */
+    private static class SimulationResult {
+        long scanOnMs = 0;
+        long windows = 0;
+        long hits = 0;
+        long maxGapWhilePresentMs = 0;
+        long firstHitAfterReturnMs = -1;
+    }
+
+    /**
+     * Creates a fresh fake clock before each test.
+     */
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+    }
+
+    /**
+     * Tests that the fixed scheduler reproduces the original 1 s every 10 s cycle.
+     */
+    @Test
+    public void testFixedSchedulerDefaults() {
+        ScanScheduler scheduler = new FixedScanScheduler();
+        scheduler.onWindowStarted();
+        scheduler.onTargetReceived(clock.now());
+        assertEquals(1000, scheduler.getScanWindowMs());
+        assertFalse(scheduler.shouldEndWindowEarly());
+        assertEquals(9000, scheduler.getNextDelayMs());
+    }
+
+    /**
+     * Tests that a hit ends the window early and shrinks the next window towards the latency.
+     */
+    @Test
+    public void testHitEndsWindowAndShrinksIt() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler(clock);
+        scheduler.onWindowStarted();
+        assertEquals(AdaptiveScanScheduler.DEFAULT_WINDOW_MS, scheduler.getScanWindowMs());
+
+        clock.advance(50);
+        scheduler.onTargetReceived(clock.now());
+        assertTrue(scheduler.shouldEndWindowEarly());
+        scheduler.onWindowEnded();
+
+        assertEquals(AdaptiveScanScheduler.BASE_INTERVAL_MS - 50, scheduler.getNextDelayMs());
+
+        scheduler.onWindowStarted();
+        assertEquals(AdaptiveScanScheduler.MIN_WINDOW_MS, scheduler.getScanWindowMs());
+    }
+
+    /**
+     * Tests that a caller waiting for several readings per window never gets a window too short
+     * to receive them, even when the first advert comes at once.
+     */
+    @Test
+    public void testWindowFitsRequiredSamples() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler(clock, 3, NODE_ADVERT_INTERVAL_MS);
+        assertEquals(AdaptiveScanScheduler.MIN_WINDOW_MS + 2 * NODE_ADVERT_INTERVAL_MS, scheduler.getMinWindowMs());
+        for (int i = 0; i < 10; i++) {
+            scheduler.onWindowStarted();
+            assertTrue(scheduler.getScanWindowMs() >= scheduler.getMinWindowMs());
+            clock.advance(10);
+            scheduler.onTargetReceived(clock.now());
+            clock.advance(2 * NODE_ADVERT_INTERVAL_MS);
+            scheduler.onWindowEnded();
+            clock.advance(scheduler.getNextDelayMs());
+        }
+        scheduler.onWindowStarted();
+        assertEquals(scheduler.getMinWindowMs(), scheduler.getScanWindowMs());
+
+        AdaptiveScanScheduler slow = new AdaptiveScanScheduler(clock, 20, NODE_ADVERT_INTERVAL_MS);
+        assertEquals(AdaptiveScanScheduler.MAX_WINDOW_MS, slow.getMinWindowMs());
+    }
+
+    /**
+     * Tests that scan results reported in batches, half a window after the radio received
+     * them, do not inflate the latency: the window follows when the adverts arrived and does
+     * not creep up to the maximum.
+     */
+    @Test
+    public void testLateReportsKeepTheLatency() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler(clock, 3, NODE_ADVERT_INTERVAL_MS);
+        for (int i = 0; i < 20; i++) {
+            scheduler.onWindowStarted();
+            long window = scheduler.getScanWindowMs();
+            long receivedAt = clock.now() + 50;
+            clock.advance(window / 2); // The batch with the first advert is delivered now
+            scheduler.onTargetReceived(receivedAt);
+            clock.advance(window / 2);
+            scheduler.onWindowEnded();
+            clock.advance(scheduler.getNextDelayMs());
+        }
+        assertEquals(50, scheduler.getLatencyAverageMs(), 1);
+        scheduler.onWindowStarted();
+        assertEquals(scheduler.getMinWindowMs(), scheduler.getScanWindowMs());
+    }
+
+    /**
+     * Tests that consecutive misses first widen the window and then back off the interval.
+     */
+    @Test
+    public void testMissesBackOff() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler(clock);
+        long previousInterval = 0;
+        long firstWindow = 0;
+        long widestWindow = 0;
+        for (int i = 0; i < 20; i++) {
+            scheduler.onWindowStarted();
+            long window = scheduler.getScanWindowMs();
+            if (i == 0) {
+                firstWindow = window;
+            }
+            widestWindow = Math.max(widestWindow, window);
+            clock.advance(window);
+            scheduler.onWindowEnded();
+            long interval = window + scheduler.getNextDelayMs();
+            assertTrue(interval >= previousInterval);
+            previousInterval = interval;
+            clock.advance(scheduler.getNextDelayMs());
+        }
+        assertEquals(20, scheduler.getMissStreak());
+        assertTrue(widestWindow > firstWindow);
+        assertEquals(AdaptiveScanScheduler.MAX_INTERVAL_MS, previousInterval);
+    }
+
+    /**
+     * Tests that a low battery stretches the interval and screen-on shortens it.
+     */
+    @Test
+    public void testConditionsChangeInterval() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler(clock);
+        scheduler.updateConditions(true, 100, false);
+        long normal = runHitWindow(scheduler);
+
+        scheduler.updateConditions(true, 10, false);
+        long lowBattery = runHitWindow(scheduler);
+
+        scheduler.updateConditions(true, 100, true);
+        long screenOn = runHitWindow(scheduler);
+
+        assertTrue(lowBattery > normal);
+        assertTrue(screenOn < normal);
+    }
+
+    /**
+     * Tests that a stationary user is sampled less often than a moving one.
+     */
+    @Test
+    public void testStationaryBacksOff() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler(clock);
+        scheduler.updateConditions(true, 100, false);
+        long moving = runHitWindow(scheduler);
+
+        clock.advance(AdaptiveScanScheduler.STATIONARY_AFTER_MS + 1);
+        scheduler.updateConditions(false, 100, false);
+        long stationary = runHitWindow(scheduler);
+
+        assertTrue(stationary > moving);
+    }
+
+    /**
+     * Tests that a fading weak link is scanned harder, that losing it then backs off as usual
+     * and that a node going silent with a strong signal backs off at once.
+     */
+    @Test
+    public void testSignalDrivesScanning() {
+        AdaptiveScanScheduler steady = new AdaptiveScanScheduler(clock);
+        steady.updateConditions(true, 100, false);
+        steady.onSignalUpdate(2.0, 0.9, false);
+        long steadyDelay = runHitWindow(steady);
+
+        AdaptiveScanScheduler fading = new AdaptiveScanScheduler(clock);
+        fading.updateConditions(true, 100, false);
+        fading.onSignalUpdate(15.0, 0.2, true);
+        long fadingDelay = runHitWindow(fading);
+        assertTrue(fading.isLinkFading());
+        assertTrue(fadingDelay < steadyDelay);
+        fading.onWindowStarted();
+        assertEquals(2 * AdaptiveScanScheduler.DEFAULT_WINDOW_MS, fading.getScanWindowMs());
+
+        // The fading node is lost: the first misses widen the window, no back-off yet
+        clock.advance(fading.getScanWindowMs());
+        fading.onWindowEnded();
+        fading.onWindowStarted();
+        assertTrue(fading.getScanWindowMs() > AdaptiveScanScheduler.DEFAULT_WINDOW_MS);
+
+        // The strong node goes silent: no wider windows, the interval backs off immediately
+        steady.onWindowStarted();
+        clock.advance(steady.getScanWindowMs());
+        steady.onWindowEnded();
+        assertTrue(steady.getNextDelayMs() > steadyDelay);
+        steady.onWindowStarted();
+        assertTrue(steady.getScanWindowMs() <= AdaptiveScanScheduler.DEFAULT_WINDOW_MS);
+    }
+
+    /**
+     * Simulates a full day and checks that the adaptive scheduler keeps the radio on much less
+     * than the fixed one, still samples a present node at least every base interval while the user
+     * moves, and finds the node again within the maximum back-off after it returns.
+     * <p>
+     * Day plan: 0-8 h at home with the node, stationary, screen off; 8-9 h commuting; 9-17 h node
+     * left behind; 17-18 h commuting back; 18-24 h at home with the screen on half of the time.
+     */
+    @Test
+    public void testSimulatedDay() {
+        SimulationResult fixed = simulateDay(new FixedScanScheduler(), new FakeClock());
+        FakeClock adaptiveClock = new FakeClock();
+        SimulationResult adaptive = simulateDay(new AdaptiveScanScheduler(adaptiveClock), adaptiveClock);
+
+        assertTrue("adaptive radio time " + adaptive.scanOnMs + " vs fixed " + fixed.scanOnMs,
+                adaptive.scanOnMs * 3 < fixed.scanOnMs);
+        assertTrue("adaptive windows " + adaptive.windows + " vs fixed " + fixed.windows,
+                adaptive.windows < fixed.windows);
+        assertTrue("hits " + adaptive.hits, adaptive.hits > fixed.hits / 3);
+        assertTrue("max gap " + adaptive.maxGapWhilePresentMs,
+                adaptive.maxGapWhilePresentMs <= 4 * AdaptiveScanScheduler.BASE_INTERVAL_MS);
+        assertTrue("reacquired after " + adaptive.firstHitAfterReturnMs,
+                adaptive.firstHitAfterReturnMs >= 0
+                        && adaptive.firstHitAfterReturnMs <= AdaptiveScanScheduler.MAX_INTERVAL_MS + AdaptiveScanScheduler.MAX_WINDOW_MS);
+    }
+
+    /**
+     * Runs one window in which the target is found after 100 ms.
+     *
+     * @param scheduler The scheduler
+     * @return The delay until the next window
+     */
+    private long runHitWindow(ScanScheduler scheduler) {
+        scheduler.onWindowStarted();
+        clock.advance(100);
+        scheduler.onTargetReceived(clock.now());
+        scheduler.onWindowEnded();
+        return scheduler.getNextDelayMs();
+    }
+
+    /**
+     * Runs a scheduler through the simulated day plan.
+     *
+     * @param scheduler The scheduler under test
+     * @param clock     The clock the scheduler reads, advanced by the simulation
+     * @return The totals for the day
+     */
+    private SimulationResult simulateDay(ScanScheduler scheduler, FakeClock clock) {
+        SimulationResult result = new SimulationResult();
+        Random random = new Random(1234);
+        long lastHit = -1;
+        boolean nodeWasPresent = true;
+        long returnedAt = -1;
+
+        while (clock.now < 24 * HOUR) {
+            long t = clock.now;
+            boolean present = t < 9 * HOUR || t >= 17 * HOUR;
+            boolean moving = (t >= 8 * HOUR && t < 9 * HOUR) || (t >= 17 * HOUR && t < 18 * HOUR);
+            boolean screenOn = t >= 18 * HOUR && (t / (15 * 60 * 1000L)) % 2 == 0;
+            int battery = (int) Math.max(5, 100 - t / (15 * 60 * 1000L));
+
+            if (present && !nodeWasPresent) {
+                returnedAt = t;
+            }
+            if (!present || !moving) {
+                lastHit = -1;
+            }
+            nodeWasPresent = present;
+
+            scheduler.updateConditions(moving, battery, screenOn);
+            scheduler.onWindowStarted();
+            long window = scheduler.getScanWindowMs();
+            long latency = random.nextInt(NODE_ADVERT_INTERVAL_MS);
+
+            if (present && latency < window) {
+                clock.advance(latency);
+                scheduler.onTargetReceived(clock.now());
+                result.hits++;
+                if (lastHit >= 0 && moving) {
+                    result.maxGapWhilePresentMs = Math.max(result.maxGapWhilePresentMs, clock.now - lastHit);
+                }
+                if (returnedAt >= 0 && result.firstHitAfterReturnMs < 0) {
+                    result.firstHitAfterReturnMs = clock.now - returnedAt;
+                }
+                lastHit = clock.now;
+                if (!scheduler.shouldEndWindowEarly()) {
+                    clock.advance(window - latency);
+                }
+            } else {
+                clock.advance(window);
+            }
+
+            scheduler.onWindowEnded();
+            result.scanOnMs += clock.now - t;
+            result.windows++;
+            clock.advance(scheduler.getNextDelayMs());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.SequenceWindow;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the SequenceWindow class.
+ * <p>
+ * Covers duplicates, gaps, late arrivals, the 16-bit wrap-around, node restarts and the gaps
+ * left by a duty-cycled scanner.
+ *
+ * @since 2026-10-18
+ */
+public class SequenceWindowTest {
+
+    /**
+     * Tests that retransmissions of the same sequence are reported as duplicates.
+     */
+    @Test
+    public void testDuplicatesAreDetected() {
+        SequenceWindow window = new SequenceWindow();
+        assertEquals(SequenceWindow.Result.IN_ORDER, window.accept(10));
+        assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(10));
+        assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(10));
+        assertEquals(SequenceWindow.Result.IN_ORDER, window.accept(11));
+        assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(10));
+
+        assertEquals(2, window.getReceivedCount());
+        assertEquals(3, window.getDuplicateCount());
+        assertEquals(0, window.getLostCount());
+        assertFalse(SequenceWindow.Result.DUPLICATE.isNew());
+    }
+
+    /**
+     * Tests that gaps are counted as lost and that a late packet fills its gap exactly once.
+     */
+    @Test
+    public void testGapAndReorder() {
+        SequenceWindow window = new SequenceWindow();
+        window.accept(100);
+        assertEquals(SequenceWindow.Result.GAP, window.accept(104));
+        assertEquals(3, window.getLostCount());
+
+        assertEquals(SequenceWindow.Result.REORDERED, window.accept(102));
+        assertEquals(2, window.getLostCount());
+        assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(102));
+        assertEquals(2, window.getLostCount());
+        assertEquals(1, window.getReorderedCount());
+
+        assertEquals(2.0 / 5.0, window.getLossRatio(), 1e-9);
+    }
+
+    /**
+     * Tests that packets older than the first sequence seen are new readings but were never
+     * counted as lost, so the loss count and ratio never go below zero.
+     */
+    @Test
+    public void testArrivalsBeforeFirstSequence() {
+        SequenceWindow window = new SequenceWindow();
+        window.accept(100);
+        assertEquals(SequenceWindow.Result.REORDERED, window.accept(99));
+        assertEquals(SequenceWindow.Result.REORDERED, window.accept(98));
+        assertEquals(0, window.getLostCount());
+        assertEquals(0.0, window.getLossRatio(), 0);
+
+        assertEquals(SequenceWindow.Result.GAP, window.accept(102));
+        assertEquals(1, window.getLostCount());
+        assertEquals(SequenceWindow.Result.REORDERED, window.accept(97));
+        assertEquals(1, window.getLostCount());
+        assertEquals(SequenceWindow.Result.REORDERED, window.accept(101));
+        assertEquals(0, window.getLostCount());
+        assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(101));
+        assertEquals(0, window.getLostCount());
+
+        // After a jump past the window, only the skipped sequences can be recovered
+        assertEquals(SequenceWindow.Result.GAP, window.accept(102 + 100));
+        assertEquals(99, window.getLostCount());
+        assertEquals(SequenceWindow.Result.REORDERED, window.accept(102 + 100 - 5));
+        assertEquals(98, window.getLostCount());
+    }
+
+    /**
+     * Tests that the counter wrapping from 0xFFFF to 0 is seen as in order.
+     */
+    @Test
+    public void testWrapAround() {
+        SequenceWindow window = new SequenceWindow();
+        window.accept(0xFFFE);
+        assertEquals(SequenceWindow.Result.IN_ORDER, window.accept(0xFFFF));
+        assertEquals(SequenceWindow.Result.IN_ORDER, window.accept(0));
+        assertEquals(SequenceWindow.Result.GAP, window.accept(2));
+        assertEquals(SequenceWindow.Result.REORDERED, window.accept(1));
+        assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(0xFFFF));
+        assertEquals(0, window.getLostCount());
+    }
+
+    /**
+     * Tests that a jump larger than the window clears the bitmap.
+     */
+    @Test
+    public void testLargeJumpClearsBitmap() {
+        SequenceWindow window = new SequenceWindow();
+        window.accept(1);
+        window.accept(1 + SequenceWindow.WINDOW_SIZE + 10);
+        assertEquals(SequenceWindow.WINDOW_SIZE + 9, window.getLostCount());
+        // Just inside the new window and never received
+        assertTrue(window.accept(1 + 11 + 1).isNew());
+    }
+
+    /**
+     * Tests that a sequence far behind the window is taken as a node restart.
+     */
+    @Test
+    public void testRestartResynchronizes() {
+        SequenceWindow window = new SequenceWindow();
+        for (int i = 5000; i < 5010; i++) {
+            window.accept(i);
+        }
+        assertEquals(SequenceWindow.Result.RESTART, window.accept(0));
+        assertEquals(SequenceWindow.Result.IN_ORDER, window.accept(1));
+        assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(0));
+        assertEquals(1, window.getRestartCount());
+        assertEquals(0, window.getLostCount());
+    }
+
+    /**
+     * Tests that the adverts sent while a duty-cycled scanner sleeps are not counted as lost,
+     * while a gap inside a listening window still is. The node advertises a new sequence every
+     * 100 ms; the scanner listens 1 s out of every 10 s and misses one advert per window.
+     */
+    @Test
+    public void testDutyCycledGapsAreNotLoss() {
+        SequenceWindow window = new SequenceWindow();
+        int windows = 20;
+        for (int w = 0; w < windows; w++) {
+            window.onListeningResumed();
+            int first = (w * 100) & 0xFFFF;
+            for (int i = 0; i < 10; i++) {
+                if (i == 5) {
+                    continue; // Lost over the air
+                }
+                SequenceWindow.Result result = window.accept(first + i);
+                if (w > 0 && i == 0) {
+                    assertEquals(SequenceWindow.Result.RESUMED, result);
+                }
+                window.accept(first + i); // Retransmission
+            }
+            // A late copy from before the sleep is still a duplicate
+            if (w > 0) {
+                assertEquals(SequenceWindow.Result.DUPLICATE, window.accept(first + 9));
+            }
+        }
+        assertEquals(windows, window.getLostCount());
+        assertEquals(windows * 9, window.getReceivedCount());
+        assertEquals(0.1, window.getLossRatio(), 1e-9);
+
+        // Without being told, the sleep would count as 90 adverts lost
+        window.accept(windows * 100);
+        assertEquals(windows + 90, window.getLostCount());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconPipeline;
+import com.example.mborper.breathbetter.bluetooth.SignalTracker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for the SignalTracker.
+ * <p>
+ * Feeds the filter noisy RSSI for a node at a known distance, a user walking away and a node
+ * that goes silent, with the same log-distance model the tracker inverts.
+ *
+ * @since 2026-10-18
+ */
+public class SignalTrackerTest {
+    private static final int TX_POWER = -59;
+    private static final long ADVERT_NANOS = 300_000_000L;
+
+    /**
+     * Returns the RSSI the model predicts at a distance.
+     */
+    private static double rssiAt(double meters) {
+        return TX_POWER - 10 * SignalTracker.PATH_LOSS_EXPONENT * Math.log10(meters);
+    }
+
+    /**
+     * Tests that nothing is reported before the first advert.
+     */
+    @Test
+    public void testEmpty() {
+        SignalTracker tracker = new SignalTracker();
+        assertTrue(Double.isNaN(tracker.getRssi()));
+        assertTrue(Double.isNaN(tracker.getDistanceMeters()));
+        assertEquals(0, tracker.getLinkQuality(), 0);
+        assertFalse(tracker.isFading());
+        assertEquals(SignalTracker.SilenceCause.UNKNOWN, tracker.explainSilence());
+    }
+
+    /**
+     * Tests that the filter removes most of the RSSI noise of a static node and finds its distance.
+     */
+    @Test
+    public void testStaticNodeConverges() {
+        SignalTracker tracker = new SignalTracker();
+        Random random = new Random(7);
+        double trueRssi = rssiAt(3.0);
+        double rawError = 0;
+        double filteredError = 0;
+        for (int i = 0; i < 200; i++) {
+            int rssi = (int) Math.round(trueRssi + random.nextGaussian() * 4);
+            tracker.update(i * ADVERT_NANOS, rssi, TX_POWER);
+            if (i >= 50) {
+                rawError += Math.abs(rssi - trueRssi);
+                filteredError += Math.abs(tracker.getRssi() - trueRssi);
+            }
+        }
+        assertTrue(filteredError < rawError / 2);
+        assertEquals(3.0, tracker.getDistanceMeters(), 1.0);
+        assertFalse(tracker.isFading());
+        assertEquals(SignalTracker.SilenceCause.NODE_SILENT, tracker.explainSilence());
+    }
+
+    /**
+     * Tests that a user walking away is detected as fading and ends up out of range.
+     */
+    @Test
+    public void testWalkingAwayFades() {
+        SignalTracker tracker = new SignalTracker();
+        Random random = new Random(11);
+        // 1 m/s away from the node, from 1 m to 40 m
+        boolean sawFading = false;
+        for (int i = 0; i < 130; i++) {
+            double meters = 1 + i * 0.3;
+            int rssi = (int) Math.round(rssiAt(meters) + random.nextGaussian() * 2);
+            tracker.update(i * ADVERT_NANOS, rssi, TX_POWER);
+            sawFading |= tracker.isFading();
+        }
+        assertTrue(sawFading);
+        assertTrue(tracker.getDistanceMeters() > 20);
+        assertTrue(tracker.getLinkQuality() < SignalTracker.WEAK_LINK_QUALITY);
+        assertEquals(SignalTracker.SilenceCause.OUT_OF_RANGE, tracker.explainSilence());
+    }
+
+    /**
+     * Tests that a quick approach is not flagged as fading and that a long pause lets the
+     * estimate jump to the new level.
+     */
+    @Test
+    public void testPauseFollowsNewLevel() {
+        SignalTracker tracker = new SignalTracker();
+        for (int i = 0; i < 20; i++) {
+            tracker.update(i * ADVERT_NANOS, -90, TX_POWER);
+        }
+        long later = 20 * ADVERT_NANOS + 60_000_000_000L;
+        tracker.update(later, -60, TX_POWER);
+        assertTrue(tracker.getRssi() > -65);
+        assertFalse(tracker.isFading());
+    }
+
+    /**
+     * Tests that the pipeline tracks the signal of retransmissions too.
+     */
+    @Test
+    public void testPipelineTracksEveryAdvert() {
+        BeaconPipeline pipeline = new BeaconPipeline();
+        pipeline.onRecord(0, 42, 1, -70, TX_POWER);
+        pipeline.onRecord(ADVERT_NANOS, 42, 1, -72, TX_POWER);
+        assertEquals(1, pipeline.getDuplicateCount());
+        assertEquals(2, pipeline.getSignalTracker().getUpdateCount());
+    }
+}
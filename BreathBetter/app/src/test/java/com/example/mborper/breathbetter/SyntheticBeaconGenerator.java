@@ -0,0 +1,245 @@
+package com.example.mborper.breathbetter;
+
+import com.example.mborper.breathbetter.bluetooth.BeaconUuidMatcher;
+import com.example.mborper.breathbetter.bluetooth.IBeaconFrameView;
+
+import java.util.Random;
+
+/**
+ * Generates a synthetic stream of raw scan records as seen in a crowded BLE environment: many
+ * foreign iBeacons, some malformed or non-iBeacon frames, and one or more HowsAir nodes whose
+ * O3 value follows a trajectory.
+ * <p>
+ * Frames are built once up front and the node frames are patched in place, so generating a
+ * record costs a few random draws and no allocation; the stress harness measures the ingest
+ * path, not the generator. Seeded, so the same configuration always gives the same stream.
+ *
+ * @since 2026-10-18
+ */
+public class SyntheticBeaconGenerator {
+    public static final String TARGET_UUID = "MANU-EPSG-GTI-3A";
+
+    /**
+     * O3 value of a node, in ppm, as a function of time.
+     */
+    public interface Trajectory {
+        double valueAt(long timestampNanos);
+
+        static Trajectory constant(double ppm) {
+            return t -> ppm;
+        }
+
+        static Trajectory ramp(double fromPpm, double toPpm, long durationNanos) {
+            return t -> fromPpm + (toPpm - fromPpm) * Math.min(1.0, (double) t / durationNanos);
+        }
+
+        static Trajectory sine(double meanPpm, double amplitudePpm, long periodNanos) {
+            return t -> meanPpm + amplitudePpm * Math.sin(2 * Math.PI * t / periodNanos);
+        }
+    }
+
+    /**
+     * How the foreign adverts are spread over the foreign devices.
+     */
+    public enum UuidDistribution {
+        /** Every device advertises equally often. */
+        UNIFORM,
+        /** A few chatty devices send most adverts (Zipf-like, exponent 1). */
+        SKEWED
+    }
+
+    /**
+     * Receives every generated record.
+     */
+    public interface Sink {
+        void accept(byte[] bytes, long timestampNanos, int rssi);
+    }
+
+    /**
+     * Generator settings. Rates are in adverts per second of synthetic time.
+     */
+    public static class Config {
+        public int foreignDevices = 2000;
+        public double foreignRate = 5000;
+        public UuidDistribution distribution = UuidDistribution.UNIFORM;
+        public double malformedRatio = 0.05;
+        public int nodes = 1; // node 0 has the target UUID, the others near-miss UUIDs
+        public double nodeRate = 10;
+        public Trajectory trajectory = Trajectory.constant(0.42);
+        public long seed = 42;
+    }
+
+    private final Config config;
+    private final Random random;
+    private final byte[][] foreignFrames;
+    private final double[] skewedCdf;
+    private final byte[][] malformedFrames;
+    private final byte[][] nodeFrames;
+    private final int[] nodeSequences;
+    private final long periodNanos;
+    private final double nodeShare;
+
+    private long time = 0;
+    private long generated = 0;
+    private long targetGenerated = 0;
+    private long malformedGenerated = 0;
+
+    /**
+     * Creates a generator and builds every frame it will send.
+     *
+     * @param config The settings.
+     */
+    public SyntheticBeaconGenerator(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+
+        foreignFrames = new byte[config.foreignDevices][];
+        for (int i = 0; i < config.foreignDevices; i++) {
+            byte[] frame = IBeaconFrameViewTest.buildFrame(TARGET_UUID, random.nextInt(0x10000),
+                    random.nextInt(0x10000), -59);
+            for (int b = 0; b < IBeaconFrameView.UUID_LENGTH; b++) {
+                frame[IBeaconFrameView.UUID_OFFSET + b] = (byte) random.nextInt(256);
+            }
+            foreignFrames[i] = frame;
+        }
+
+        skewedCdf = new double[config.foreignDevices];
+        double sum = 0;
+        for (int i = 0; i < config.foreignDevices; i++) {
+            sum += 1.0 / (i + 1);
+            skewedCdf[i] = sum;
+        }
+        for (int i = 0; i < config.foreignDevices; i++) {
+            skewedCdf[i] /= sum;
+        }
+
+        malformedFrames = buildMalformedFrames();
+
+        nodeFrames = new byte[config.nodes][];
+        nodeSequences = new int[config.nodes];
+        byte[] target = BeaconUuidMatcher.forTarget(TARGET_UUID).getKey();
+        for (int n = 0; n < config.nodes; n++) {
+            byte[] frame = IBeaconFrameViewTest.buildFrame(TARGET_UUID, 0, 0, -59);
+            if (n > 0) {
+                // Same UUID except the last byte: the worst case for the early-exit comparison
+                frame[IBeaconFrameView.UUID_OFFSET + 15] = (byte) (target[15] + n);
+            }
+            nodeFrames[n] = frame;
+        }
+
+        double totalRate = config.foreignRate + config.nodes * config.nodeRate;
+        periodNanos = Math.max(1, Math.round(1e9 / totalRate));
+        nodeShare = config.nodes * config.nodeRate / totalRate;
+    }
+
+    /**
+     * Frames every real scanner sees and the ingest path must reject without reading fields.
+     */
+    private static byte[][] buildMalformedFrames() {
+        byte[] truncated = new byte[20];
+        System.arraycopy(IBeaconFrameViewTest.buildFrame(TARGET_UUID, 1, 1, -59), 0, truncated, 0, 20);
+
+        byte[] wrongLength = IBeaconFrameViewTest.buildFrame(TARGET_UUID, 1, 1, -59);
+        wrongLength[IBeaconFrameView.BEACON_LENGTH_OFFSET] = 0x14;
+
+        byte[] eddystone = new byte[31];
+        byte[] header = {0x02, 0x01, 0x06, 0x03, 0x03, (byte) 0xAA, (byte) 0xFE, 0x11, 0x16,
+                (byte) 0xAA, (byte) 0xFE, 0x20, 0x00};
+        System.arraycopy(header, 0, eddystone, 0, header.length);
+
+        return new byte[][]{truncated, wrongLength, eddystone, new byte[0]};
+    }
+
+    // -------------------------------------------------------------------------------
+    /**
+     * Generates the next record, advancing the synthetic clock by one advert period.
+     *      Sink ---> next()
+     *
+     * @param sink Receives the record.
+     */
+    public void next(Sink sink) {
+        next(sink, time);
+    }
+
+    /**
+     * Generates the next record with a caller-supplied timestamp, e.g. System.nanoTime() when
+     * the harness measures latency.
+     *      Sink, Natural ---> next()
+     *
+     * @param sink           Receives the record.
+     * @param timestampNanos Timestamp given to the record.
+     */
+    public void next(Sink sink, long timestampNanos) {
+        long t = time;
+        time += periodNanos;
+        generated++;
+        int rssi = -40 - random.nextInt(60);
+
+        if (random.nextDouble() < nodeShare) {
+            int n = random.nextInt(config.nodes);
+            byte[] frame = nodeFrames[n];
+            int major = (int) Math.max(0, Math.min(0xFFFF, Math.round(config.trajectory.valueAt(t) * 100)));
+            int sequence = nodeSequences[n]++ & 0xFFFF;
+            frame[IBeaconFrameView.MAJOR_OFFSET] = (byte) (major >>> 8);
+            frame[IBeaconFrameView.MAJOR_OFFSET + 1] = (byte) major;
+            frame[IBeaconFrameView.MINOR_OFFSET] = (byte) (sequence >>> 8);
+            frame[IBeaconFrameView.MINOR_OFFSET + 1] = (byte) sequence;
+            if (n == 0) {
+                targetGenerated++;
+            }
+            sink.accept(frame, timestampNanos, rssi);
+            return;
+        }
+
+        if (random.nextDouble() < config.malformedRatio) {
+            malformedGenerated++;
+            sink.accept(malformedFrames[random.nextInt(malformedFrames.length)], timestampNanos, rssi);
+            return;
+        }
+
+        sink.accept(foreignFrames[pickForeignDevice()], timestampNanos, rssi);
+    }
+
+    private int pickForeignDevice() {
+        if (config.distribution == UuidDistribution.UNIFORM) {
+            return random.nextInt(foreignFrames.length);
+        }
+        double u = random.nextDouble();
+        int low = 0;
+        int high = skewedCdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (skewedCdf[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the synthetic time of the next record.
+     *
+     * @return Nanoseconds since the start of the stream.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public long getGeneratedCount() {
+        return generated;
+    }
+
+    public long getTargetGeneratedCount() {
+        return targetGenerated;
+    }
+
+    public long getMalformedGeneratedCount() {
+        return malformedGenerated;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.TimeSeriesStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for the TimeSeriesStore and its Gorilla-style chunks: exact round trips, the
+ * compressed size at steady state, range scans that skip chunks, reloading from disk, and
+ * dropping the oldest chunks to keep the store bounded.
+ *
+ * @since 2026-10-18
+ */
+public class TimeSeriesStoreTest {
+    private static final long START_MS = 1_790_000_000_000L;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * One stored sample, as visited by a scan.
+     */
+    private static class Sample {
+        final long timestampMs;
+        final float value;
+        final double latitude;
+        final double longitude;
+
+        Sample(long timestampMs, float value, double latitude, double longitude) {
+            this.timestampMs = timestampMs;
+            this.value = value;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    private static List<Sample> scanAll(TimeSeriesStore store, long from, long to) {
+        final List<Sample> samples = new ArrayList<>();
+        store.scan(from, to, (t, v, lat, lon) -> samples.add(new Sample(t, v, lat, lon)));
+        return samples;
+    }
+
+    private static void assertSame(Sample expected, Sample actual) {
+        assertEquals(expected.timestampMs, actual.timestampMs);
+        assertEquals(Float.floatToRawIntBits(expected.value), Float.floatToRawIntBits(actual.value));
+        assertEquals(expected.latitude, actual.latitude, 1e-7);
+        assertEquals(expected.longitude, actual.longitude, 1e-7);
+    }
+
+    /**
+     * Tests that irregular data, with every encoding branch, comes back exactly.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(null, 1000, 100, HOUR);
+        Random random = new Random(7);
+        List<Sample> expected = new ArrayList<>();
+        long t = START_MS;
+        double lat = 38.9965;
+        double lon = -0.1663;
+        float[] specials = {Float.NaN, 0f, -0f, -3.5f, Float.MAX_VALUE, Float.MIN_VALUE, 1000f};
+        for (int i = 0; i < 5000; i++) {
+            switch (random.nextInt(5)) {
+                case 0: t += 10_000; break;                             // Regular spacing
+                case 1: t += 1000 * random.nextInt(600); break;         // Small jitter
+                case 2: t += 1000L * random.nextInt(100_000); break;    // Gaps of hours
+                default: t += random.nextInt(3) * 1000; break;          // Bursts, repeats
+            }
+            float value = random.nextInt(10) == 0
+                    ? specials[random.nextInt(specials.length)]
+                    : Math.round(random.nextFloat() * 200) / 100f;
+            if (random.nextBoolean()) {
+                lat += random.nextGaussian() * (random.nextBoolean() ? 1e-5 : 1);
+                lon += random.nextGaussian() * (random.nextBoolean() ? 1e-5 : 1);
+                lat = Math.max(-90, Math.min(90, lat));
+                lon = Math.max(-180, Math.min(180, lon));
+            }
+            assertTrue(store.append(t, value, lat, lon));
+            expected.add(new Sample(t, value, Math.round(lat * 1e7) / 1e7, Math.round(lon * 1e7) / 1e7));
+        }
+        store.append(t + 1000, 1f, 90, 180);
+        store.append(t + 2000, 1f, -90, -180); // Largest coordinate jumps
+        expected.add(new Sample(t + 1000, 1f, 90, 180));
+        expected.add(new Sample(t + 2000, 1f, -90, -180));
+
+        List<Sample> actual = scanAll(store, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+        assertTrue(store.getSealedChunkCount() >= 50);
+    }
+
+    /**
+     * Tests the compressed size of a node at rest in clean air: a window summary every 10 s
+     * with a few seconds of jitter now and then, a median that changes in one window out of
+     * five, and a fixed location.
+     */
+    @Test
+    public void testSteadyStateSize() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(null);
+        Random random = new Random(3);
+        long t = START_MS;
+        int centi = 40;
+        for (int i = 0; i < 100_000; i++) {
+            t += 10_000 + (random.nextInt(10) == 0 ? 1000 * (random.nextInt(5) - 2) : 0);
+            if (random.nextInt(5) == 0) {
+                centi = Math.max(0, centi + random.nextInt(3) - 1);
+            }
+            store.append(t, centi / 100f, 38.9965, -0.1663);
+        }
+        store.flush();
+        double steady = store.getBytesPerSample();
+
+        TimeSeriesStore walking = new TimeSeriesStore(null);
+        t = START_MS;
+        for (int i = 0; i < 100_000; i++) {
+            t += 10_000;
+            walking.append(t, (40 + random.nextInt(20)) / 100f, 38.9965 + i * 1e-5, -0.1663 - i * 1e-5);
+        }
+        walking.flush();
+        assertTrue("bytes per sample " + steady, steady < 2);
+        // Still far below the 28 bytes of a raw sample
+        assertTrue("bytes per sample walking " + walking.getBytesPerSample(), walking.getBytesPerSample() < 8);
+    }
+
+    /**
+     * Tests that a range scan decompresses only the chunks it overlaps, and the open one.
+     */
+    @Test
+    public void testRangeScanSkipsChunks() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(null, 1000, 100, HOUR);
+        for (int i = 0; i < 10_000; i++) {
+            store.append(START_MS + i * 10_000L, i, 0, 0); // 100 chunks of 1000 s each
+        }
+        List<Sample> samples = scanAll(store, START_MS + 250_000, START_MS + 1_249_999);
+        assertEquals(100, samples.size());
+        assertEquals(25, (int) samples.get(0).value);
+        assertEquals(124, (int) samples.get(99).value);
+        assertEquals(2, store.getChunksDecoded());
+
+        assertEquals(1, scanAll(store, START_MS + 99_990_000, Long.MAX_VALUE).size());
+        assertEquals(3, store.getChunksDecoded());
+        assertEquals(0, scanAll(store, 0, START_MS - 1).size());
+        assertEquals(3, store.getChunksDecoded());
+    }
+
+    /**
+     * Tests that older samples are rejected and chunks are sealed by time span too.
+     */
+    @Test
+    public void testAppendOnly() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(null, 1000, 1000, HOUR);
+        assertTrue(store.append(START_MS, 1f, 0, 0));
+        assertTrue(store.append(START_MS, 2f, 0, 0));
+        assertFalse(store.append(START_MS - 1, 3f, 0, 0));
+        assertEquals(1, store.getRejectedCount());
+        assertTrue(store.append(START_MS + HOUR, 4f, 0, 0));
+        assertEquals(1, store.getSealedChunkCount());
+        assertEquals(3, store.getSampleCount());
+    }
+
+    /**
+     * Tests that sealed chunks are reloaded from disk, and that a chunk cut short by a crash is
+     * dropped without losing the ones before it or the ones appended after reopening.
+     */
+    @Test
+    public void testReload() throws IOException {
+        File file = folder.newFile("measurements.hats");
+        TimeSeriesStore store = new TimeSeriesStore(file, 1000, 100, HOUR);
+        for (int i = 0; i < 350; i++) {
+            store.append(START_MS + i * 1000L, i / 10f, 39, -0.2);
+        }
+        store.flush();
+        assertEquals(4, store.getSealedChunkCount());
+
+        // Cut the last chunk in half, as a crash while writing it would
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length - 20);
+        }
+        TimeSeriesStore reopened = new TimeSeriesStore(file, 1000, 100, HOUR);
+        assertEquals(300, reopened.getSampleCount());
+        for (int i = 300; i < 400; i++) {
+            reopened.append(START_MS + i * 1000L, i / 10f, 39, -0.2);
+        }
+        reopened.flush();
+
+        List<Sample> samples = scanAll(new TimeSeriesStore(file, 1000, 100, HOUR), Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(400, samples.size());
+        for (int i = 0; i < 400; i++) {
+            assertSame(new Sample(START_MS + i * 1000L, i / 10f, 39, -0.2), samples.get(i));
+        }
+    }
+
+    /**
+     * Tests that a chunk whose bytes were garbled, or whose length field claims more than the
+     * file holds, ends the file like a torn one instead of failing the load.
+     */
+    @Test
+    public void testCorruptChunkIsTruncated() throws IOException {
+        File file = folder.newFile("measurements.hats");
+        TimeSeriesStore store = new TimeSeriesStore(file, 1000, 100, HOUR);
+        for (int i = 0; i < 300; i++) {
+            store.append(START_MS + i * 1000L, i / 10f, 39, -0.2);
+        }
+        store.flush();
+
+        // File header of 16 bytes, then chunks of a 28-byte header, the words and a CRC
+        long secondChunk;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(16 + 24);
+            secondChunk = 16 + 28 + 8L * raf.readInt() + 4;
+            raf.seek(secondChunk + 28 + 3);
+            int b = raf.read();
+            raf.seek(secondChunk + 28 + 3);
+            raf.write(b ^ 0x10);
+        }
+        TimeSeriesStore reopened = new TimeSeriesStore(file, 1000, 100, HOUR);
+        assertEquals(100, reopened.getSampleCount());
+        assertEquals(START_MS + 99_000, reopened.getLastTimestampMs());
+        assertEquals(secondChunk, file.length());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(16 + 24);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+        reopened = new TimeSeriesStore(file, 1000, 100, HOUR);
+        assertEquals(0, reopened.getSampleCount());
+        assertEquals(Long.MIN_VALUE, reopened.getLastTimestampMs());
+        assertEquals(16, file.length());
+
+        reopened.append(START_MS, 1f, 39, -0.2);
+        reopened.flush();
+        assertEquals(1, scanAll(new TimeSeriesStore(file, 1000, 100, HOUR), Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    /**
+     * Tests that dropping old chunks frees them from memory and from the file, keeps the
+     * open chunk and everything newer, and leaves a file that reloads and takes appends.
+     */
+    @Test
+    public void testDropBefore() throws IOException {
+        File file = folder.newFile("measurements.hats");
+        TimeSeriesStore store = new TimeSeriesStore(file, 1000, 100, HOUR);
+        for (int i = 0; i < 450; i++) {
+            store.append(START_MS + i * 1000L, i / 10f, 39, -0.2);
+        }
+        assertEquals(4, store.getSealedChunkCount());
+        long fullLength = file.length();
+
+        assertEquals(0, store.dropBefore(START_MS));
+        // The second chunk ends at sample 199, so only the first one goes
+        assertEquals(1, store.dropBefore(START_MS + 150_000));
+        assertEquals(3, store.getSealedChunkCount());
+        assertEquals(350, store.getSampleCount());
+        assertTrue(file.length() < fullLength);
+        assertEquals(100, scanAll(store, Long.MIN_VALUE, START_MS + 199_000).size());
+
+        assertEquals(3, store.dropBefore(START_MS + 400_000));
+        assertEquals(0, store.getSealedChunkCount());
+        assertEquals(16, file.length());
+        assertEquals(50, scanAll(store, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(4, store.getDroppedChunkCount());
+
+        for (int i = 450; i < 500; i++) {
+            store.append(START_MS + i * 1000L, i / 10f, 39, -0.2);
+        }
+        store.flush();
+        List<Sample> samples = scanAll(new TimeSeriesStore(file, 1000, 100, HOUR), Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(100, samples.size());
+        for (int i = 0; i < 100; i++) {
+            assertSame(new Sample(START_MS + (400 + i) * 1000L, (400 + i) / 10f, 39, -0.2), samples.get(i));
+        }
+    }
+}
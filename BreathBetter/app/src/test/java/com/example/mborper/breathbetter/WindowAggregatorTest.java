@@ -0,0 +1,119 @@
+package com.example.mborper.breathbetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mborper.breathbetter.measurements.P2QuantileEstimator;
+import com.example.mborper.breathbetter.measurements.WindowAggregator;
+import com.example.mborper.breathbetter.measurements.WindowSummary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for the WindowAggregator and P2QuantileEstimator classes.
+ * <p>
+ * Checks the exact statistics against a direct computation and that the P² median stays close
+ * to the true median of the window.
+ *
+ * @since 2026-10-18
+ */
+public class WindowAggregatorTest {
+
+    /**
+     * Tests count, min, max, mean and last value of a small window.
+     */
+    @Test
+    public void testSummaryStatistics() {
+        WindowAggregator aggregator = new WindowAggregator();
+        float[] values = {0.42f, 0.40f, 0.47f, 0.39f, 0.44f, 0.41f};
+        for (int i = 0; i < values.length; i++) {
+            aggregator.add(values[i], 1000L + i);
+        }
+
+        WindowSummary summary = aggregator.summarize();
+        assertEquals(6, summary.getCount());
+        assertEquals(0.39f, summary.getMin(), 0f);
+        assertEquals(0.47f, summary.getMax(), 0f);
+        assertEquals(0.4217f, summary.getMean(), 1e-4f);
+        assertEquals(0.41f, summary.getLast(), 0f);
+        assertEquals(1000L, summary.getFirstTimestamp());
+        assertEquals(1005L, summary.getLastTimestamp());
+    }
+
+    /**
+     * Tests that summarize() starts a new window and returns null when nothing was added.
+     */
+    @Test
+    public void testSummarizeResetsWindow() {
+        WindowAggregator aggregator = new WindowAggregator();
+        assertNull(aggregator.summarize());
+
+        aggregator.add(5f, 1L);
+        assertEquals(1, aggregator.summarize().getCount());
+        assertTrue(aggregator.isEmpty());
+
+        aggregator.add(7f, 2L);
+        WindowSummary summary = aggregator.summarize();
+        assertEquals(7f, summary.getMin(), 0f);
+        assertEquals(7f, summary.getMedian(), 0f);
+    }
+
+    /**
+     * Tests that the median is exact while fewer than five samples have been seen.
+     */
+    @Test
+    public void testMedianExactForFewSamples() {
+        P2QuantileEstimator estimator = new P2QuantileEstimator(0.5);
+        estimator.add(3);
+        estimator.add(1);
+        assertEquals(2.0, estimator.getEstimate(), 0.0);
+        estimator.add(10);
+        assertEquals(3.0, estimator.getEstimate(), 0.0);
+    }
+
+    /**
+     * Tests that the P² median of noisy readings stays within a small error of the true median,
+     * also with a few outliers mixed in.
+     */
+    @Test
+    public void testMedianApproximation() {
+        Random random = new Random(7);
+        P2QuantileEstimator estimator = new P2QuantileEstimator(0.5);
+        double[] samples = new double[2000];
+        for (int i = 0; i < samples.length; i++) {
+            double value = 0.45 + random.nextGaussian() * 0.05;
+            if (i % 97 == 0) {
+                value = 9.99; // corrupted advert
+            }
+            samples[i] = value;
+            estimator.add(value);
+        }
+
+        Arrays.sort(samples);
+        double trueMedian = (samples[999] + samples[1000]) / 2;
+        assertEquals(trueMedian, estimator.getEstimate(), 0.01);
+    }
+
+    /**
+     * Tests that a reset estimator behaves like a new one.
+     */
+    @Test
+    public void testEstimatorReuse() {
+        P2QuantileEstimator estimator = new P2QuantileEstimator(0.5);
+        for (int i = 0; i < 100; i++) {
+            estimator.add(i);
+        }
+        estimator.reset();
+        assertEquals(0, estimator.getCount());
+        assertTrue(Double.isNaN(estimator.getEstimate()));
+
+        for (int i = 1; i <= 9; i++) {
+            estimator.add(i);
+        }
+        assertEquals(5.0, estimator.getEstimate(), 0.5);
+    }
+}